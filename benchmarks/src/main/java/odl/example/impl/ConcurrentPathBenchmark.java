@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Delay-constrained path queries on the published snapshot of a {@link NetworkGraphImpl}
+ * while another thread keeps flapping a link, which publishes a new epoch every time.
+ * Run with -tg to vary the number of querying threads, e.g. -tg 8,1.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConcurrentPathBenchmark {
+
+    private static final QosRequirement DELAY_BOUND = new QosRequirement(1000, 12, Double.POSITIVE_INFINITY,
+            Double.POSITIVE_INFINITY);
+
+    @State(Scope.Group)
+    public static class Graph {
+        NetworkGraphImpl graph;
+        List<Link> flapping;
+
+        @Setup
+        public void setUp(TopologyState topology) {
+            graph = new NetworkGraphImpl();
+            graph.addLinks(topology.links);
+            flapping = Collections.singletonList(topology.links.get(0));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Queries {
+        final QosPathEngine engine = new QosPathEngine();
+        int next;
+
+        int nextPair() {
+            next = (next + 1) & (TopologyState.PAIRS - 1);
+            return next;
+        }
+    }
+
+    @Benchmark
+    @Group("queriesUnderUpdates")
+    @GroupThreads(3)
+    public PathResult query(TopologyState topology, Graph graph, Queries queries) {
+        int pair = queries.nextPair();
+        GraphIndex index = graph.graph.getGraphIndex();
+        return queries.engine.computePath(index, queries.engine.getArcMetrics(index), topology.sources[pair],
+                topology.destinations[pair], DELAY_BOUND);
+    }
+
+    @Benchmark
+    @Group("queriesUnderUpdates")
+    @GroupThreads(1)
+    public GraphIndex flap(Graph graph) {
+        graph.graph.removeLinks(graph.flapping);
+        graph.graph.addLinks(graph.flapping);
+        return graph.graph.getGraphIndex();
+    }
+}
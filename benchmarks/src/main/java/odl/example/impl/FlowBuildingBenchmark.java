@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowInput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Building the AddFlowInput of an application hop, as done for every switch of a path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class FlowBuildingBenchmark {
+
+    @Param({"10", "10000"})
+    public int switches;
+
+    private final SwitchConfigurator configurator = new SwitchConfigurator();
+    private String[] switchIds;
+    private DesiredFlow[] flows;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        switchIds = new String[switches];
+        flows = new DesiredFlow[switches];
+        for(int s = 0; s < switches; s++) {
+            switchIds[s] = Topologies.switchId(s).getValue();
+            flows[s] = new DesiredFlow(ApplicationMatch.DEFAULT_SOURCE_ADDRESS,
+                    ApplicationMatch.DEFAULT_DESTINATION_ADDRESS, switchIds[s] + ":" + (1 + s % 48),
+                    SwitchConfigurator.APPLICATION_QUEUE_ID);
+        }
+    }
+
+    @Benchmark
+    public AddFlowInput buildFlow() {
+        if(++next == switches) {
+            next = 0;
+        }
+        return configurator.buildFlow(switchIds[next], flows[next]);
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.test.AbstractDataBrokerTest;
+
+
+/**
+ * The in-memory data broker of the MD-SAL binding tests, with the schema of all YANG
+ * models on the class path, for running the module without a controller.
+ */
+final class InMemoryDataBroker extends AbstractDataBrokerTest {
+
+    private InMemoryDataBroker() {
+
+    }
+
+    static DataBroker create() throws Exception {
+        InMemoryDataBroker broker = new InMemoryDataBroker();
+        broker.setup();
+        return broker.getDataBroker();
+    }
+}
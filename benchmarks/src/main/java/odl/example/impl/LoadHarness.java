@@ -0,0 +1,228 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.JdkFutureAdapters;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.sal.binding.api.BindingAwareBroker.ProviderContext;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.SalFlowService;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.AddApplicationInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.AddApplicationInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.OdlexampleService;
+import org.opendaylight.yangtools.yang.common.RpcResult;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * End-to-end load test of the module on a single machine. It runs the
+ * {@link ExampleProvider} on an in-memory data broker with a synthetic network and
+ * simulated switches, and calls addApplication at a fixed rate.
+ *
+ * Requests are issued open-loop: the latency of a request is measured from the time it
+ * was due, so a stalled module shows up as latency rather than as a lower request rate.
+ * Options, with their defaults:
+ * <pre>
+ * --topology FAT_TREE   FAT_TREE, LEAF_SPINE or RANDOM
+ * --switches 1000       number of switches
+ * --rate 1000           applications added per second
+ * --warmup 10           seconds of load before measuring
+ * --duration 30         seconds of measured load
+ * --bandwidth 0         bandwidth of every application in kbit/s
+ * --latency-us 500      latency of the simulated switches
+ * --failure-rate 0      share of flow modifications failing
+ * </pre>
+ */
+public final class LoadHarness {
+
+    private final Map<String, String> options;
+    private OdlexampleService service;
+
+    private LoadHarness(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for(int i = 0; i + 1 < args.length; i += 2) {
+            if(!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected an option instead of " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        new LoadHarness(options).run();
+        // the data broker leaves non-daemon threads behind
+        System.exit(0);
+    }
+
+    private String option(String name, String defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    private void run() throws Exception {
+        Topologies.Kind topology = Topologies.Kind.valueOf(option("topology", "FAT_TREE"));
+        int switches = Integer.parseInt(option("switches", "1000"));
+        int rate = Integer.parseInt(option("rate", "1000"));
+        int warmup = Integer.parseInt(option("warmup", "10"));
+        int duration = Integer.parseInt(option("duration", "30"));
+        BigDecimal bandwidth = new BigDecimal(option("bandwidth", "0"));
+        long latencyMicros = Long.parseLong(option("latency-us", "500"));
+        double failureRate = Double.parseDouble(option("failure-rate", "0"));
+
+        DataBroker db = InMemoryDataBroker.create();
+        SyntheticNetwork network = new SyntheticNetwork(Topologies.generate(topology, switches));
+        network.write(db);
+        SimulatedSalFlowService flowService = new SimulatedSalFlowService(latencyMicros, failureRate);
+        ExampleProvider provider = start(db, flowService);
+        System.out.printf("%s topology of %d switches, %d applications/s, switch latency %d us, failure rate %s%n",
+                topology, network.getSwitchCount(), rate, latencyMicros, failureRate);
+
+        try {
+            drive(rate, warmup, bandwidth, 1, null);
+            Runtime.getRuntime().gc();
+            for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                pool.resetPeakUsage();
+            }
+            long[] latencies = new long[rate * duration];
+            long start = System.nanoTime();
+            Outcome outcome = drive(rate, duration, bandwidth, rate * warmup + 1, latencies);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            report(outcome, latencies, seconds, flowService);
+        } finally {
+            provider.close();
+            flowService.close();
+        }
+    }
+
+    /**
+     * Runs the provider as the controller would, with the data broker and flow service
+     * handed out by a mocked session.
+     */
+    private ExampleProvider start(DataBroker db, SalFlowService flowService) {
+        ProviderContext session = Mockito.mock(ProviderContext.class);
+        Mockito.when(session.getSALService(DataBroker.class)).thenReturn(db);
+        Mockito.when(session.getRpcService(SalFlowService.class)).thenReturn(flowService);
+        ExampleProvider provider = new ExampleProvider();
+        provider.onSessionInitiated(session);
+        ArgumentCaptor<OdlexampleService> implementation = ArgumentCaptor.forClass(OdlexampleService.class);
+        Mockito.verify(session).addRpcImplementation(Mockito.eq(OdlexampleService.class), implementation.capture());
+        service = implementation.getValue();
+        return provider;
+    }
+
+    /**
+     * Adds applications at the rate for the given seconds and waits for all of them.
+     * Latencies are recorded in nanoseconds if an array is given.
+     */
+    private Outcome drive(int rate, int seconds, BigDecimal bandwidth, int firstAppId, final long[] latencies)
+            throws InterruptedException {
+        int total = rate * seconds;
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        final Outcome outcome = new Outcome(total);
+        long start = System.nanoTime();
+        for(int i = 0; i < total; i++) {
+            final long due = start + i * interval;
+            long now;
+            while((now = System.nanoTime()) < due) {
+                LockSupport.parkNanos(due - now);
+            }
+            AddApplicationInput input = new AddApplicationInputBuilder()
+                    .setAppId(firstAppId + i)
+                    .setBandwidth(bandwidth)
+                    // applications between the same hosts need distinct matches
+                    .setIpProtocol(ApplicationMatch.TCP)
+                    .setDstPort(1 + (firstAppId + i) % 65535)
+                    .build();
+            Futures.addCallback(JdkFutureAdapters.listenInPoolThread(service.addApplication(input)),
+                    new FutureCallback<RpcResult<Void>>() {
+                        @Override
+                        public void onSuccess(RpcResult<Void> result) {
+                            outcome.complete(latencies, System.nanoTime() - due, result.isSuccessful());
+                        }
+
+                        @Override
+                        public void onFailure(Throwable t) {
+                            outcome.complete(latencies, System.nanoTime() - due, false);
+                        }
+                    });
+        }
+        if(!outcome.done.await(60, TimeUnit.SECONDS)) {
+            System.out.printf("%d applications did not complete within 60 s%n", outcome.done.getCount());
+        }
+        return outcome;
+    }
+
+    private static void report(Outcome outcome, long[] latencies, double seconds,
+                               SimulatedSalFlowService flowService) {
+        int count = outcome.recorded.get();
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        long peakHeap = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        Runtime.getRuntime().gc();
+        long retainedHeap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+        System.out.printf("completed %d applications in %.1f s: %.0f/s, %d failed%n",
+                count, seconds, count / seconds, outcome.failed.get());
+        System.out.printf("latency ms: p50 %.3f  p99 %.3f  p999 %.3f  max %.3f%n",
+                percentile(sorted, 0.5), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                count == 0 ? 0 : sorted[count - 1] / 1e6);
+        System.out.printf("heap MB: peak %.1f  retained %.1f%n", peakHeap / 1048576.0, retainedHeap / 1048576.0);
+        System.out.printf("flows: %d added, %d removed, %d failed by the switches%n",
+                flowService.getAdded(), flowService.getRemoved(), flowService.getFailed());
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if(sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(rank, 0)] / 1e6;
+    }
+
+    private static final class Outcome {
+        private final CountDownLatch done;
+        private final AtomicInteger recorded = new AtomicInteger();
+        private final AtomicLong failed = new AtomicLong();
+
+        private Outcome(int total) {
+            done = new CountDownLatch(total);
+        }
+
+        private void complete(long[] latencies, long latency, boolean successful) {
+            if(latencies != null) {
+                latencies[recorded.getAndIncrement()] = latency;
+            }
+            if(!successful) {
+                failed.incrementAndGet();
+            }
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Building the topology graph from the links of a topology, including the snapshot
+ * published for it, the duplicate check done when the topology listener reports links
+ * that are already known, and building a snapshot alone.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NetworkGraphBenchmark {
+
+    @State(Scope.Thread)
+    public static class EmptyGraph {
+        NetworkGraphImpl graph;
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            graph = new NetworkGraphImpl();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FullGraph {
+        NetworkGraphImpl graph;
+
+        @Setup
+        public void setUp(TopologyState topology) {
+            graph = new NetworkGraphImpl();
+            graph.addLinks(topology.links);
+        }
+    }
+
+    @Benchmark
+    public NetworkGraphImpl addLinks(TopologyState topology, EmptyGraph empty) {
+        empty.graph.addLinks(topology.links);
+        return empty.graph;
+    }
+
+    @Benchmark
+    public NetworkGraphImpl addKnownLinks(TopologyState topology, FullGraph full) {
+        full.graph.addLinks(topology.links);
+        return full.graph;
+    }
+
+    @Benchmark
+    public GraphIndex buildIndex(TopologyState topology) {
+        return GraphIndex.build(topology.links);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Path queries between random switch pairs on the graph index, without the path cache:
+ * unconstrained queries served from the shortest path trees, delay-constrained queries
+ * (LARAC), the k-shortest candidates of the multipath engine, and all pairs at once as a
+ * parallel batch, as when addApplications adds many applications.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PathBenchmark {
+
+    private static final QosRequirement DELAY_BOUND = new QosRequirement(1000, 12, Double.POSITIVE_INFINITY,
+            Double.POSITIVE_INFINITY);
+
+    @State(Scope.Thread)
+    public static class Queries {
+        final QosPathEngine engine = new QosPathEngine();
+        int next;
+
+        int nextPair() {
+            next = (next + 1) & (TopologyState.PAIRS - 1);
+            return next;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Batch {
+        final QosPathEngine engine = new QosPathEngine();
+        final List<PathDemand> demands = new ArrayList<>();
+
+        @Setup
+        public void setUp(TopologyState topology) {
+            for(int pair = 0; pair < TopologyState.PAIRS; pair++) {
+                demands.add(new PathDemand(topology.sources[pair], topology.destinations[pair], DELAY_BOUND));
+            }
+        }
+    }
+
+    @Benchmark
+    public PathResult unconstrained(TopologyState topology, Queries queries) {
+        int pair = queries.nextPair();
+        return queries.engine.computePath(topology.index, topology.metrics, topology.sources[pair],
+                topology.destinations[pair], QosRequirement.BEST_EFFORT);
+    }
+
+    @Benchmark
+    public PathResult delayConstrained(TopologyState topology, Queries queries) {
+        int pair = queries.nextPair();
+        return queries.engine.computePath(topology.index, topology.metrics, topology.sources[pair],
+                topology.destinations[pair], DELAY_BOUND);
+    }
+
+    @Benchmark
+    public List<PathResult> candidates(TopologyState topology, Queries queries) {
+        int pair = queries.nextPair();
+        return queries.engine.computeCandidates(topology.index, topology.metrics, topology.sources[pair],
+                topology.destinations[pair], DELAY_BOUND, MultipathEngine.DEFAULT_K);
+    }
+
+    @Benchmark
+    public List<PathResult> batch(TopologyState topology, Batch batch) {
+        return batch.engine.computePaths(topology.index, topology.metrics, batch.demands, ForkJoinPool.commonPool());
+    }
+}
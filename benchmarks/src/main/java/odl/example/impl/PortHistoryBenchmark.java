@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Appending samples to the port history, as the statistics collector does for every port
+ * it samples, and querying an hour of one port.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class PortHistoryBenchmark {
+
+    @Param({"100", "10000"})
+    public int ports;
+
+    private final PortHistoryStore store = new PortHistoryStore(PortHistoryStore.DEFAULT_SEGMENT_RECORDS);
+    private final PortRates rates = new PortRates();
+    private Path directory;
+    private String[] portIds;
+    private long start;
+    private long time;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("odlexample-port-history");
+        store.open(directory, PortHistoryStore.DEFAULT_RAW_RETENTION_SECONDS,
+                PortHistoryStore.DEFAULT_DOWNSAMPLED_RETENTION_SECONDS);
+        portIds = new String[ports];
+        for(int p = 0; p < ports; p++) {
+            portIds[p] = Topologies.switchId(p / 48).getValue() + ":" + (1 + p % 48);
+        }
+        start = System.currentTimeMillis();
+        time = start;
+        // an hour of samples every five seconds for the queries
+        for(int i = 0; i < 720 * ports; i++) {
+            append();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.close();
+        for(File file : directory.toFile().listFiles()) {
+            delete(file);
+        }
+        directory.toFile().delete();
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if(children != null) {
+            for(File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Benchmark
+    public void append() {
+        if(++next == ports) {
+            next = 0;
+            time += 5000;
+        }
+        rates.txBitRate = next;
+        store.append(portIds[next], time, next, next, next, next, rates);
+    }
+
+    @Benchmark
+    public PortHistory queryHour() {
+        return store.query(portIds[0], start, start + TimeUnit.HOURS.toMillis(1));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.AddApplicationInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.AddApplicationInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntry;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Conversions between the RPC input, the registry entry and the QoS requirement done
+ * on every admission and registry read.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class RegistryConversionBenchmark {
+
+    private final AddApplicationInput input = new AddApplicationInputBuilder()
+            .setAppId(42)
+            .setBandwidth(new BigDecimal("1000"))
+            .setPacketDelay(new BigDecimal("20"))
+            .setPacketLoss(new BigDecimal("0.01"))
+            .setJitter(new BigDecimal("5"))
+            .build();
+    private final ApplicationRegistryEntry entry = toEntry(input);
+
+    private static ApplicationRegistryEntry toEntry(AddApplicationInput input) {
+        return new ApplicationRegistryEntryBuilder()
+                .setAppId(input.getAppId())
+                .setJitter(input.getJitter())
+                .setPacketLoss(input.getPacketLoss())
+                .setPacketDelay(input.getPacketDelay())
+                .setBandwidth(input.getBandwidth())
+                .build();
+    }
+
+    @Benchmark
+    public ApplicationRegistryEntry inputToEntry() {
+        return toEntry(input);
+    }
+
+    @Benchmark
+    public AddApplicationInput entryToInput() {
+        return ApplicationRegistryCache.toInput(entry);
+    }
+
+    @Benchmark
+    public QosRequirement entryToQos() {
+        return QosRequirement.fromEntry(entry);
+    }
+
+    @Benchmark
+    public QosRequirement inputToQos() {
+        return QosRequirement.fromInput(input);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowOutput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowOutputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.RemoveFlowInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.RemoveFlowOutput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.RemoveFlowOutputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.SalFlowService;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.UpdateFlowInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.UpdateFlowOutput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.UpdateFlowOutputBuilder;
+import org.opendaylight.yangtools.yang.common.RpcError.ErrorType;
+import org.opendaylight.yangtools.yang.common.RpcResult;
+import org.opendaylight.yangtools.yang.common.RpcResultBuilder;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Flow service of simulated switches. Every flow modification completes after the given
+ * latency, and fails with the given probability, without any switch behind it.
+ */
+public class SimulatedSalFlowService implements SalFlowService, AutoCloseable {
+
+    private final long latencyMicros;
+    private final double failureRate;
+    private final ScheduledExecutorService executor;
+    private final AtomicLong added = new AtomicLong();
+    private final AtomicLong removed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public SimulatedSalFlowService(long latencyMicros, double failureRate) {
+        this.latencyMicros = latencyMicros;
+        this.failureRate = failureRate;
+        this.executor = Executors.newScheduledThreadPool(2, new ThreadFactoryBuilder()
+                .setNameFormat("simulated-switch-%d").setDaemon(true).build());
+    }
+
+    @Override
+    public Future<RpcResult<AddFlowOutput>> addFlow(AddFlowInput input) {
+        added.incrementAndGet();
+        return respond(new AddFlowOutputBuilder().build());
+    }
+
+    @Override
+    public Future<RpcResult<RemoveFlowOutput>> removeFlow(RemoveFlowInput input) {
+        removed.incrementAndGet();
+        return respond(new RemoveFlowOutputBuilder().build());
+    }
+
+    @Override
+    public Future<RpcResult<UpdateFlowOutput>> updateFlow(UpdateFlowInput input) {
+        return respond(new UpdateFlowOutputBuilder().build());
+    }
+
+    private <T> Future<RpcResult<T>> respond(final T output) {
+        final SettableFuture<RpcResult<T>> future = SettableFuture.create();
+        Runnable completion = new Runnable() {
+            @Override
+            public void run() {
+                if(failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+                    failed.incrementAndGet();
+                    future.set(RpcResultBuilder.<T>failed()
+                            .withError(ErrorType.APPLICATION, "simulated switch failure").build());
+                } else {
+                    future.set(RpcResultBuilder.success(output).build());
+                }
+            }
+        };
+        if(latencyMicros > 0) {
+            executor.schedule(completion, latencyMicros, TimeUnit.MICROSECONDS);
+        } else {
+            completion.run();
+        }
+        return future;
+    }
+
+    public long getAdded() {
+        return added.get();
+    }
+
+    public long getRemoved() {
+        return removed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressCapableNodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressCapableNodeConnectorBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.Addresses;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.AddressesBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowCapableNode;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowCapableNodeBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowCapableNodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowCapableNodeConnectorBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.TopologyId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.TopologyBuilder;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * The operational data the openflow plugin, the topology manager and the address tracker
+ * would write for a synthetic topology: the flow:1 topology, a flow-capable inventory
+ * node per switch with its ports, and the two application hosts attached to the first
+ * and the last switch.
+ */
+public class SyntheticNetwork {
+
+    public static final long PORT_SPEED_KBPS = 10000000;
+
+    private final List<Link> links;
+    private final Map<NodeId, List<String>> portsByNode = new LinkedHashMap<>();
+
+    public SyntheticNetwork(List<Link> links) {
+        this.links = links;
+        for(Link link : links) {
+            List<String> ports = portsByNode.get(link.getSource().getSourceNode());
+            if(ports == null) {
+                ports = new ArrayList<>();
+                portsByNode.put(link.getSource().getSourceNode(), ports);
+            }
+            ports.add(link.getSource().getSourceTp().getValue());
+        }
+    }
+
+    public int getSwitchCount() {
+        return portsByNode.size();
+    }
+
+    public void write(DataBroker db) throws Exception {
+        WriteTransaction transaction = db.newWriteOnlyTransaction();
+        transaction.put(LogicalDatastoreType.OPERATIONAL, NetworkGraphImpl.getTopologyInstanceIdentifier(),
+                new TopologyBuilder().setTopologyId(new TopologyId("flow:1")).setLink(links).build(), true);
+
+        List<NodeId> switches = new ArrayList<>(portsByNode.keySet());
+        NodeId sourceSwitch = switches.get(0);
+        NodeId destinationSwitch = switches.get(switches.size() - 1);
+        for(Map.Entry<NodeId, List<String>> node : portsByNode.entrySet()) {
+            List<NodeConnector> connectors = new ArrayList<>();
+            for(String port : node.getValue()) {
+                connectors.add(connector(port).build());
+            }
+            String hostPort = node.getKey().getValue() + ":" + (node.getValue().size() + 1);
+            if(node.getKey().equals(sourceSwitch)) {
+                connectors.add(host(hostPort, ApplicationMatch.DEFAULT_SOURCE_ADDRESS, "00:00:00:00:00:01"));
+            }
+            if(node.getKey().equals(destinationSwitch)) {
+                connectors.add(host(hostPort, ApplicationMatch.DEFAULT_DESTINATION_ADDRESS, "00:00:00:00:00:02"));
+            }
+            org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId nodeId =
+                    new org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId(node.getKey().getValue());
+            Node inventoryNode = new NodeBuilder()
+                    .setId(nodeId)
+                    .setNodeConnector(connectors)
+                    .addAugmentation(FlowCapableNode.class, new FlowCapableNodeBuilder().build())
+                    .build();
+            transaction.put(LogicalDatastoreType.OPERATIONAL,
+                    InstanceIdentifier.create(Nodes.class).child(Node.class, new NodeKey(nodeId)), inventoryNode, true);
+        }
+        transaction.submit().checkedGet();
+    }
+
+    private static NodeConnectorBuilder connector(String port) {
+        return new NodeConnectorBuilder()
+                .setId(new NodeConnectorId(port))
+                .addAugmentation(FlowCapableNodeConnector.class,
+                        new FlowCapableNodeConnectorBuilder().setCurrentSpeed(PORT_SPEED_KBPS).build());
+    }
+
+    private static NodeConnector host(String port, String ipAddress, String macAddress) {
+        long now = System.currentTimeMillis();
+        Addresses address = new AddressesBuilder()
+                .setId(1L)
+                .setIp(new IpAddress(new Ipv4Address(ipAddress)))
+                .setMac(new MacAddress(macAddress))
+                .setFirstSeen(now)
+                .setLastSeen(now)
+                .build();
+        return connector(port)
+                .addAugmentation(AddressCapableNodeConnector.class, new AddressCapableNodeConnectorBuilder()
+                        .setAddresses(Collections.singletonList(address)).build())
+                .build();
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The timer wheel of the flow refresh scheduler with all flows tracked: moving the refresh
+ * of one flow, as installing it again does, and one tick taking the flows due and
+ * scheduling their next refresh. A tick handles about flows / 255 entries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class TimerWheelBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int flows;
+
+    private final Random random = new Random(42);
+    private final List<Integer> due = new ArrayList<>();
+    private TimerWheel<Integer> wheel;
+    private int[] handles;
+    private long tick;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        wheel = new TimerWheel<>(0, flows);
+        handles = new int[flows];
+        for(int i = 0; i < flows; i++) {
+            handles[i] = wheel.schedule(i, 1 + random.nextInt(FlowTemplateCompiler.HARD_TIMEOUT));
+        }
+    }
+
+    @Benchmark
+    public void reschedule() {
+        next = (next + 1) % flows;
+        wheel.reschedule(handles[next], wheel.getTick()
+                + FlowRefreshScheduler.refreshDelay(FlowTemplateCompiler.HARD_TIMEOUT, random));
+    }
+
+    @Benchmark
+    public int tick() {
+        wheel.advance(tick++);
+        due.clear();
+        wheel.poll(Integer.MAX_VALUE, due);
+        for(int i = 0; i < due.size(); i++) {
+            int flow = due.get(i);
+            handles[flow] = wheel.schedule(flow, tick
+                    + FlowRefreshScheduler.refreshDelay(FlowTemplateCompiler.HARD_TIMEOUT, random));
+        }
+        return due.size();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.LinkId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.TpId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.link.attributes.DestinationBuilder;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.link.attributes.SourceBuilder;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.LinkBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Synthetic switch topologies with openflow style ids, as the topology manager of the
+ * openflow plugin reports them: one link per direction, named after its source port.
+ */
+public final class Topologies {
+
+    public enum Kind {
+        /** k-ary fat tree, the smallest one with at least the requested number of switches. */
+        FAT_TREE,
+        /** Two tier leaf-spine with one spine per sixteen leaves and up to eight uplinks per leaf. */
+        LEAF_SPINE,
+        /** Random connected graph of average degree four. */
+        RANDOM
+    }
+
+    private static final long SEED = 42;
+    private static final int LEAF_UPLINKS = 8;
+
+    private final List<Link> links = new ArrayList<>();
+    private final int[] nextPort;
+
+    private Topologies(int switchCount) {
+        nextPort = new int[switchCount];
+    }
+
+    /**
+     * Returns both directions of every link of the topology.
+     */
+    public static List<Link> generate(Kind kind, int switches) {
+        switch(kind) {
+            case FAT_TREE:
+                return fatTree(switches);
+            case LEAF_SPINE:
+                return leafSpine(switches);
+            default:
+                return random(switches);
+        }
+    }
+
+    public static NodeId switchId(int s) {
+        return new NodeId("openflow:" + (s + 1));
+    }
+
+    private static List<Link> fatTree(int switches) {
+        int k = 2;
+        while(5 * k * k / 4 < switches) {
+            k += 2;
+        }
+        int half = k / 2;
+        int cores = half * half;
+        Topologies topology = new Topologies(cores + k * k);
+        // cores first, then per pod its aggregation and edge switches
+        for(int pod = 0; pod < k; pod++) {
+            int firstAggregation = cores + pod * k;
+            int firstEdge = firstAggregation + half;
+            for(int a = 0; a < half; a++) {
+                for(int c = 0; c < half; c++) {
+                    topology.connect(a * half + c, firstAggregation + a);
+                }
+                for(int e = 0; e < half; e++) {
+                    topology.connect(firstAggregation + a, firstEdge + e);
+                }
+            }
+        }
+        return topology.links;
+    }
+
+    private static List<Link> leafSpine(int switches) {
+        int spines = Math.max(2, switches / 17);
+        int leaves = Math.max(1, switches - spines);
+        int uplinks = Math.min(spines, LEAF_UPLINKS);
+        Topologies topology = new Topologies(spines + leaves);
+        for(int leaf = 0; leaf < leaves; leaf++) {
+            for(int j = 0; j < uplinks; j++) {
+                topology.connect(spines + leaf, (leaf + j * (spines / uplinks)) % spines);
+            }
+        }
+        return topology.links;
+    }
+
+    private static List<Link> random(int switches) {
+        Random random = new Random(SEED);
+        Topologies topology = new Topologies(switches);
+        // a random spanning tree keeps the graph connected
+        for(int s = 1; s < switches; s++) {
+            topology.connect(random.nextInt(s), s);
+        }
+        for(int i = 0; i < switches + 1; i++) {
+            int a = random.nextInt(switches);
+            int b = random.nextInt(switches);
+            if(a != b) {
+                topology.connect(a, b);
+            }
+        }
+        return topology.links;
+    }
+
+    private void connect(int a, int b) {
+        String aTp = switchId(a).getValue() + ":" + (++nextPort[a]);
+        String bTp = switchId(b).getValue() + ":" + (++nextPort[b]);
+        links.add(link(switchId(a), aTp, switchId(b), bTp));
+        links.add(link(switchId(b), bTp, switchId(a), aTp));
+    }
+
+    private static Link link(NodeId source, String sourceTp, NodeId destination, String destinationTp) {
+        return new LinkBuilder()
+                .setLinkId(new LinkId(sourceTp))
+                .setSource(new SourceBuilder().setSourceNode(source).setSourceTp(new TpId(sourceTp)).build())
+                .setDestination(new DestinationBuilder().setDestNode(destination)
+                        .setDestTp(new TpId(destinationTp)).build())
+                .build();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * A synthetic topology per benchmark trial, with a fixed sequence of random switch pairs
+ * to query so that every run sees the same workload.
+ */
+@State(Scope.Benchmark)
+public class TopologyState {
+
+    static final int PAIRS = 1024;
+
+    @Param({"FAT_TREE", "LEAF_SPINE", "RANDOM"})
+    public String topology;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int switches;
+
+    List<Link> links;
+    GraphIndex index;
+    ArcMetrics metrics;
+    NodeId[] sources;
+    NodeId[] destinations;
+
+    @Setup
+    public void setUp() {
+        links = Topologies.generate(Topologies.Kind.valueOf(topology), switches);
+        index = GraphIndex.build(links);
+        LinkQualityTable table = new LinkQualityTable();
+        Random random = new Random(7);
+        for(int arc = 0; arc < index.getArcCount(); arc++) {
+            table.update(index.getArcTp(arc), new LinkQuality(1000000, 1 + random.nextInt(5),
+                    random.nextInt(100) / 100000.0, random.nextDouble() * 0.8));
+        }
+        metrics = ArcMetrics.build(index, table);
+
+        sources = new NodeId[PAIRS];
+        destinations = new NodeId[PAIRS];
+        for(int i = 0; i < PAIRS; i++) {
+            sources[i] = index.getVertex(random.nextInt(index.getVertexCount()));
+            destinations[i] = index.getVertex(random.nextInt(index.getVertexCount()));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import com.google.common.net.InetAddresses;
+
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeListener;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeIdentifier;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeModification;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressCapableNodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.Addresses;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Index of host IPv4 and IPv6 addresses to the switch connector they were learned on.
+ *
+ * It follows the address tracker augmentation of every node connector in the operational
+ * inventory through a data-tree change listener, so lookups never touch the datastore.
+ */
+public class AddressIndex implements DataTreeChangeListener<AddressCapableNodeConnector> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AddressIndex.class);
+    private static final AddressIndex instance = new AddressIndex();
+
+    private final ConcurrentMap<String, AttachmentPoint> pointsByAddress = new ConcurrentHashMap<>();
+    private final ConcurrentMap<AttachmentPoint, Set<String>> addressesByPoint = new ConcurrentHashMap<>();
+    private ListenerRegistration<AddressIndex> registration;
+
+    protected AddressIndex() {
+
+    }
+
+    public static AddressIndex getInstance() {
+        return instance;
+    }
+
+    public synchronized void init(DataBroker db) {
+        if(registration != null) {
+            return;
+        }
+        InstanceIdentifier<AddressCapableNodeConnector> addressesIid = InstanceIdentifier.create(Nodes.class)
+                .child(Node.class)
+                .child(NodeConnector.class)
+                .augmentation(AddressCapableNodeConnector.class);
+        registration = db.registerDataTreeChangeListener(
+                new DataTreeIdentifier<>(LogicalDatastoreType.OPERATIONAL, addressesIid), this);
+    }
+
+    public synchronized void close() {
+        if(registration != null) {
+            registration.close();
+            registration = null;
+        }
+        pointsByAddress.clear();
+        addressesByPoint.clear();
+    }
+
+    /**
+     * Returns where the address is attached, or null if it is not known.
+     */
+    public AttachmentPoint lookup(String ipAddress) {
+        AttachmentPoint point = pointsByAddress.get(ipAddress);
+        if(point == null && ipAddress.indexOf(':') >= 0) {
+            point = pointsByAddress.get(normalize(ipAddress));
+        }
+        return point;
+    }
+
+    public int size() {
+        return pointsByAddress.size();
+    }
+
+    @Override
+    public void onDataTreeChanged(Collection<DataTreeModification<AddressCapableNodeConnector>> changes) {
+        for(DataTreeModification<AddressCapableNodeConnector> change : changes) {
+            InstanceIdentifier<AddressCapableNodeConnector> iid = change.getRootPath().getRootIdentifier();
+            NodeKey nodeKey = iid.firstKeyOf(Node.class);
+            NodeConnectorKey connectorKey = iid.firstKeyOf(NodeConnector.class);
+            if(nodeKey == null || connectorKey == null) {
+                continue;
+            }
+            AttachmentPoint point = new AttachmentPoint(nodeKey.getId(), connectorKey.getId());
+            update(point, change.getRootNode().getDataAfter());
+        }
+    }
+
+    void update(AttachmentPoint point, AddressCapableNodeConnector addressCapable) {
+        Set<String> addresses = new HashSet<>();
+        if(addressCapable != null && addressCapable.getAddresses() != null) {
+            for(Addresses address : addressCapable.getAddresses()) {
+                String value = toString(address.getIp());
+                if(value != null) {
+                    addresses.add(value);
+                }
+            }
+        }
+
+        Set<String> previous = addresses.isEmpty() ? addressesByPoint.remove(point)
+                : addressesByPoint.put(point, Collections.unmodifiableSet(addresses));
+        if(previous != null) {
+            for(String address : previous) {
+                if(!addresses.contains(address)) {
+                    pointsByAddress.remove(address, point);
+                }
+            }
+        }
+        for(String address : addresses) {
+            AttachmentPoint moved = pointsByAddress.put(address, point);
+            if(moved != null && !moved.equals(point)) {
+                LOG.debug("Address {} moved from {} to {}", address, moved, point);
+            }
+        }
+    }
+
+    private static String toString(IpAddress ip) {
+        if(ip == null) {
+            return null;
+        }
+        if(ip.getIpv4Address() != null) {
+            return ip.getIpv4Address().getValue();
+        }
+        if(ip.getIpv6Address() != null) {
+            return normalize(ip.getIpv6Address().getValue());
+        }
+        return null;
+    }
+
+    private static String normalize(String ipv6Address) {
+        try {
+            return InetAddresses.toAddrString(InetAddresses.forString(ipv6Address));
+        } catch(IllegalArgumentException e) {
+            return ipv6Address;
+        }
+    }
+}
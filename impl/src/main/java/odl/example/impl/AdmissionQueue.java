@@ -0,0 +1,363 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+
+/**
+ * Bounded ingress stage limiting how many applications are set up at once.
+ *
+ * Up to {@link #maxInFlight} submissions run at a time. Further submissions wait in
+ * three priority classes derived from the QoS of the application, which are served by
+ * smooth weighted round robin, so low-delay applications go first without starving the
+ * others. Within a class the tenants take turns, one submission each.
+ *
+ * The queue holds at most {@link #capacity} submissions. When it is full, a submission
+ * takes the place of the newest one of the tenant with the most waiting, if that tenant
+ * has at least two more waiting than the submitting one, and is rejected otherwise. A
+ * flooding tenant thus cannot lock the others out. Rejections fail at once with an
+ * {@link AdmissionRejectedException} telling when to retry: the time the submissions
+ * waiting take at the measured service time.
+ *
+ * Waiting submissions are counted as in flight of the wait metrics, their waits are
+ * recorded when they start and rejected submissions are counted as failures. As in the
+ * {@link FlowInstallPipeline}, no thread waits: queued submissions are started by the
+ * thread completing the previous one.
+ */
+public class AdmissionQueue {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdmissionQueue.class);
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+    static final long MIN_RETRY_AFTER_MILLIS = 100;
+    static final long MAX_RETRY_AFTER_MILLIS = 30000;
+    static final String DEFAULT_TENANT = "";
+
+    /**
+     * Priority classes and their share of the submissions started while all are waiting.
+     */
+    public enum Priority {
+        LOW_DELAY(8),
+        GUARANTEED(4),
+        BEST_EFFORT(1);
+
+        private final int weight;
+
+        Priority(int weight) {
+            this.weight = weight;
+        }
+
+        /**
+         * Delay or jitter bounds make an application low-delay, a bandwidth guarantee
+         * makes it guaranteed.
+         */
+        public static Priority of(QosRequirement qos) {
+            if(qos.isDelayConstrained() || !Double.isInfinite(qos.getMaxJitter())) {
+                return LOW_DELAY;
+            }
+            return qos.getBandwidth() > 0 ? GUARANTEED : BEST_EFFORT;
+        }
+    }
+
+    private final int capacity;
+    private final int maxInFlight;
+    private final OperationMetrics waits;
+    // guarded by this
+    private final ClassQueue[] classes = new ClassQueue[Priority.values().length];
+    private final Map<String, Integer> queuedByTenant = new HashMap<>();
+    private int queued;
+    private int inFlight;
+    private boolean draining;
+    private double serviceNanos;
+
+    public AdmissionQueue(int capacity, int maxInFlight, OperationMetrics waits) {
+        this.capacity = capacity;
+        this.maxInFlight = maxInFlight;
+        this.waits = waits;
+        for(Priority priority : Priority.values()) {
+            classes[priority.ordinal()] = new ClassQueue(priority);
+        }
+    }
+
+    /**
+     * Runs the work once it is admitted and returns its result. The work starts the
+     * setup and returns its future, it must not block. A null tenant is the default one.
+     */
+    public <T> ListenableFuture<T> submit(String tenant, Priority priority, Callable<ListenableFuture<T>> work) {
+        Task<T> task = new Task<>(tenant == null ? DEFAULT_TENANT : tenant, priority, work);
+        Task<?> rejected = null;
+        long retryAfterMillis = 0;
+        boolean runNow = false;
+        synchronized(this) {
+            if(queued == 0 && inFlight < maxInFlight) {
+                inFlight++;
+                runNow = true;
+            } else if(queued < capacity) {
+                enqueue(task);
+            } else {
+                rejected = evictFor(task);
+                retryAfterMillis = getRetryAfterMillis();
+            }
+        }
+        if(runNow) {
+            waits.stop(waits.start(), true);
+            run(task);
+            return task.result;
+        }
+        if(rejected != null) {
+            if(rejected == task) {
+                waits.fail();
+            } else {
+                waits.stop(rejected.enqueued, false);
+            }
+            LOG.debug("Admission queue full, rejected a submission of tenant '{}'", rejected.tenant);
+            rejected.result.setException(new AdmissionRejectedException(
+                    "Too many applications waiting, retry after " + retryAfterMillis + " ms", retryAfterMillis));
+        }
+        drain();
+        return task.result;
+    }
+
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    public synchronized int getQueued(Priority priority) {
+        return classes[priority.ordinal()].size;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Returns the milliseconds after which a rejected submission should be retried.
+     */
+    synchronized long getRetryAfterMillis() {
+        long millis = (long) ((queued + 1) * serviceNanos / maxInFlight / 1e6);
+        return Math.min(Math.max(millis, MIN_RETRY_AFTER_MILLIS), MAX_RETRY_AFTER_MILLIS);
+    }
+
+    private void enqueue(Task<?> task) {
+        task.enqueued = waits.start();
+        classes[task.priority.ordinal()].add(task);
+        Integer count = queuedByTenant.get(task.tenant);
+        queuedByTenant.put(task.tenant, count == null ? 1 : count + 1);
+        queued++;
+    }
+
+    /**
+     * Makes room for the task in the full queue by dropping the newest submission of the
+     * tenant with the most waiting, lowest priority first, and returns the dropped one.
+     * Returns the task itself if no tenant has at least two more waiting than its own.
+     */
+    private Task<?> evictFor(Task<?> task) {
+        Integer own = queuedByTenant.get(task.tenant);
+        String largest = null;
+        int largestCount = 0;
+        for(Map.Entry<String, Integer> tenant : queuedByTenant.entrySet()) {
+            if(tenant.getValue() > largestCount) {
+                largest = tenant.getKey();
+                largestCount = tenant.getValue();
+            }
+        }
+        // swapping tasks of tenants one apart would only swap their counts
+        if(largest == null || largestCount <= (own == null ? 0 : own) + 1) {
+            return task;
+        }
+        Task<?> victim = null;
+        for(int c = classes.length - 1; c >= 0 && victim == null; c--) {
+            victim = classes[c].removeNewest(largest);
+        }
+        forget(victim);
+        enqueue(task);
+        return victim;
+    }
+
+    /**
+     * Takes the next task to start: the class is picked by smooth weighted round robin
+     * over the classes with tasks, the tenant in turn within the class.
+     */
+    private Task<?> poll() {
+        ClassQueue picked = null;
+        int totalWeight = 0;
+        for(ClassQueue queue : classes) {
+            if(queue.size == 0) {
+                continue;
+            }
+            queue.current += queue.priority.weight;
+            totalWeight += queue.priority.weight;
+            if(picked == null || queue.current > picked.current) {
+                picked = queue;
+            }
+        }
+        if(picked == null) {
+            return null;
+        }
+        picked.current -= totalWeight;
+        Task<?> task = picked.poll();
+        forget(task);
+        return task;
+    }
+
+    private void forget(Task<?> task) {
+        int count = queuedByTenant.get(task.tenant) - 1;
+        if(count == 0) {
+            queuedByTenant.remove(task.tenant);
+        } else {
+            queuedByTenant.put(task.tenant, count);
+        }
+        queued--;
+    }
+
+    /**
+     * Starts waiting tasks while there are free slots. Tasks completing at once would
+     * otherwise recurse into here, so only one thread drains at a time and picks up the
+     * slots freed meanwhile.
+     */
+    private void drain() {
+        synchronized(this) {
+            if(draining) {
+                return;
+            }
+            draining = true;
+        }
+        while(true) {
+            Task<?> task;
+            synchronized(this) {
+                task = inFlight < maxInFlight ? poll() : null;
+                if(task == null) {
+                    draining = false;
+                    return;
+                }
+                inFlight++;
+            }
+            waits.stop(task.enqueued, true);
+            run(task);
+        }
+    }
+
+    private <T> void run(final Task<T> task) {
+        final long start = System.nanoTime();
+        ListenableFuture<T> future;
+        try {
+            future = task.work.call();
+        } catch(Exception e) {
+            future = Futures.immediateFailedFuture(e);
+        }
+        Futures.addCallback(future, new FutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                onComplete(start);
+                task.result.set(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                onComplete(start);
+                task.result.setException(t);
+            }
+        });
+    }
+
+    private void onComplete(long start) {
+        long elapsed = System.nanoTime() - start;
+        synchronized(this) {
+            inFlight--;
+            serviceNanos = serviceNanos == 0 ? elapsed : serviceNanos + (elapsed - serviceNanos) / 8;
+        }
+        drain();
+    }
+
+    private static final class Task<T> {
+        private final String tenant;
+        private final Priority priority;
+        private final Callable<ListenableFuture<T>> work;
+        private final SettableFuture<T> result = SettableFuture.create();
+        private long enqueued;
+
+        private Task(String tenant, Priority priority, Callable<ListenableFuture<T>> work) {
+            this.tenant = tenant;
+            this.priority = priority;
+            this.work = work;
+        }
+    }
+
+    /**
+     * Tasks of one priority class, queued per tenant with the tenants taking turns.
+     */
+    private static final class ClassQueue {
+        private final Priority priority;
+        private final Map<String, Deque<Task<?>>> byTenant = new HashMap<>();
+        private final Deque<String> turns = new ArrayDeque<>();
+        private int size;
+        // credit of the weighted round robin
+        private int current;
+
+        private ClassQueue(Priority priority) {
+            this.priority = priority;
+        }
+
+        void add(Task<?> task) {
+            Deque<Task<?>> tasks = byTenant.get(task.tenant);
+            if(tasks == null) {
+                tasks = new ArrayDeque<>();
+                byTenant.put(task.tenant, tasks);
+                turns.add(task.tenant);
+            }
+            tasks.add(task);
+            size++;
+        }
+
+        Task<?> poll() {
+            String tenant = turns.poll();
+            Deque<Task<?>> tasks = byTenant.get(tenant);
+            Task<?> task = tasks.poll();
+            if(tasks.isEmpty()) {
+                byTenant.remove(tenant);
+            } else {
+                turns.add(tenant);
+            }
+            size--;
+            if(size == 0) {
+                current = 0;
+            }
+            return task;
+        }
+
+        Task<?> removeNewest(String tenant) {
+            Deque<Task<?>> tasks = byTenant.get(tenant);
+            if(tasks == null) {
+                return null;
+            }
+            Task<?> task = tasks.pollLast();
+            if(tasks.isEmpty()) {
+                byTenant.remove(tenant);
+                turns.remove(tenant);
+            }
+            size--;
+            if(size == 0) {
+                current = 0;
+            }
+            return task;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+
+/**
+ * Rejection of an application by the full {@link AdmissionQueue}, with the time after
+ * which to try again.
+ */
+public class AdmissionRejectedException extends ApplicationSetupException {
+
+    private static final long serialVersionUID = 1L;
+    /** Application tag of the RPC error, whose info holds the milliseconds to wait. */
+    public static final String RETRY_AFTER = "retry-after";
+
+    private final long retryAfterMillis;
+
+    public AdmissionRejectedException(String message, long retryAfterMillis) {
+        super(RESOURCE_DENIED, message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.Match;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.layer._3.match.Ipv4Match;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.layer._4.match.TcpMatch;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.layer._4.match.UdpMatch;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.AddApplicationInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntry;
+
+
+/**
+ * The traffic of one application: IPv4 packets from the source to the destination host,
+ * optionally only those of one transport protocol and destination port. Applications
+ * given no hosts use {@link #DEFAULT_SOURCE_ADDRESS} and {@link #DEFAULT_DESTINATION_ADDRESS}.
+ *
+ * The match selects the flow entry of the application on every switch of its path, so
+ * no two applications may have the same {@link #getKey() key}.
+ */
+public final class ApplicationMatch {
+
+    public static final String DEFAULT_SOURCE_ADDRESS = "10.0.0.1";
+    public static final String DEFAULT_DESTINATION_ADDRESS = "10.0.0.2";
+    public static final short TCP = 6;
+    public static final short UDP = 17;
+
+    private final String srcAddress;
+    private final String dstAddress;
+    private final Short ipProtocol;
+    private final Integer dstPort;
+    private final String key;
+
+    /**
+     * Creates the match of all IPv4 traffic between the hosts.
+     */
+    public ApplicationMatch(String srcAddress, String dstAddress) {
+        this(srcAddress, dstAddress, null, null);
+    }
+
+    /**
+     * Creates the match of the traffic between the hosts of the protocol, or of any if it
+     * is null, to the destination port, or to any if it is null.
+     */
+    public ApplicationMatch(String srcAddress, String dstAddress, Short ipProtocol, Integer dstPort) {
+        this.srcAddress = srcAddress;
+        this.dstAddress = dstAddress;
+        this.ipProtocol = ipProtocol;
+        this.dstPort = dstPort;
+        this.key = key(srcAddress + "/32", dstAddress + "/32", ipProtocol, dstPort);
+    }
+
+    public static ApplicationMatch fromInput(AddApplicationInput input) {
+        return of(input.getSrcAddress(), input.getDstAddress(), input.getIpProtocol(), input.getDstPort());
+    }
+
+    public static ApplicationMatch fromEntry(ApplicationRegistryEntry entry) {
+        return of(entry.getSrcAddress(), entry.getDstAddress(), entry.getIpProtocol(), entry.getDstPort());
+    }
+
+    private static ApplicationMatch of(String srcAddress, String dstAddress, Short ipProtocol, Integer dstPort) {
+        return new ApplicationMatch(srcAddress == null ? DEFAULT_SOURCE_ADDRESS : srcAddress,
+                dstAddress == null ? DEFAULT_DESTINATION_ADDRESS : dstAddress, ipProtocol, dstPort);
+    }
+
+    /**
+     * Returns the key of the match of an installed flow, or null if it is not a match
+     * built from an application match.
+     */
+    static String keyOf(Match match) {
+        if(match == null || !(match.getLayer3Match() instanceof Ipv4Match)) {
+            return null;
+        }
+        Ipv4Match ipv4 = (Ipv4Match) match.getLayer3Match();
+        if(ipv4.getIpv4Source() == null || ipv4.getIpv4Destination() == null) {
+            return null;
+        }
+        Short ipProtocol = match.getIpMatch() == null ? null : match.getIpMatch().getIpProtocol();
+        Integer dstPort = null;
+        if(match.getLayer4Match() instanceof TcpMatch) {
+            TcpMatch tcp = (TcpMatch) match.getLayer4Match();
+            dstPort = tcp.getTcpDestinationPort() == null ? null : tcp.getTcpDestinationPort().getValue();
+        } else if(match.getLayer4Match() instanceof UdpMatch) {
+            UdpMatch udp = (UdpMatch) match.getLayer4Match();
+            dstPort = udp.getUdpDestinationPort() == null ? null : udp.getUdpDestinationPort().getValue();
+        }
+        return key(ipv4.getIpv4Source().getValue(), ipv4.getIpv4Destination().getValue(), ipProtocol, dstPort);
+    }
+
+    private static String key(String srcPrefix, String dstPrefix, Short ipProtocol, Integer dstPort) {
+        String key = srcPrefix + "->" + dstPrefix;
+        if(ipProtocol != null) {
+            key += "/" + ipProtocol;
+        }
+        if(dstPort != null) {
+            key += ":" + dstPort;
+        }
+        return key;
+    }
+
+    /**
+     * Returns whether a switch can match it: a destination port needs TCP or UDP.
+     */
+    public boolean isValid() {
+        return dstPort == null || (ipProtocol != null && (ipProtocol == TCP || ipProtocol == UDP));
+    }
+
+    public String getSrcAddress() {
+        return srcAddress;
+    }
+
+    public String getDstAddress() {
+        return dstAddress;
+    }
+
+    public Short getIpProtocol() {
+        return ipProtocol;
+    }
+
+    public Integer getDstPort() {
+        return dstPort;
+    }
+
+    /**
+     * Returns the key of the flow entry of the match, equal for equal matches.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof ApplicationMatch && key.equals(((ApplicationMatch) o).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
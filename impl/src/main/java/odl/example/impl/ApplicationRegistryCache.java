@@ -0,0 +1,297 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.DataObjectModification;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeListener;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeIdentifier;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeModification;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.AddApplicationInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.AddApplicationInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.ApplicationRegistry;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntry;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntryKey;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+
+/**
+ * Bounded read-through cache of application registry entries keyed by appId.
+ *
+ * Entries live in preallocated slots indexed by a primitive map and are evicted with the
+ * CLOCK algorithm, so a hit neither boxes the key nor allocates. Lookups are optimistic
+ * reads of a {@link StampedLock} and only take the read lock when a change raced with them,
+ * so concurrent hits do not contend. Applications known to be missing are cached as well. A data-tree change listener on the registry keeps cached
+ * entries current, and bumps a generation that keeps a concurrent load from caching a
+ * value read before the change, see {@link #fill}.
+ */
+public class ApplicationRegistryCache implements DataTreeChangeListener<ApplicationRegistryEntry> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApplicationRegistryCache.class);
+    public static final int DEFAULT_MAX_ENTRIES = 65536;
+    /** Returned by {@link #get} for applications known not to be registered. */
+    static final AddApplicationInput ABSENT = new AddApplicationInputBuilder().build();
+
+    private final int capacity;
+    private final LongIntHashMap slotsByAppId;
+    private final int[] slotAppIds;
+    private final AddApplicationInput[] slotApplications;
+    private final QosRequirement[] slotQos;
+    private final boolean[] referenced;
+    private final StampedLock lock = new StampedLock();
+    // guarded by lock
+    private int used;
+    private int hand;
+    private long generation;
+    private long evictions;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private ListenerRegistration<ApplicationRegistryCache> registration;
+
+    public ApplicationRegistryCache(int capacity) {
+        this.capacity = capacity;
+        this.slotsByAppId = new LongIntHashMap(capacity);
+        this.slotAppIds = new int[capacity];
+        this.slotApplications = new AddApplicationInput[capacity];
+        this.slotQos = new QosRequirement[capacity];
+        this.referenced = new boolean[capacity];
+    }
+
+    public synchronized void init(DataBroker db) {
+        if(registration != null) {
+            return;
+        }
+        InstanceIdentifier<ApplicationRegistryEntry> entriesIid = InstanceIdentifier.create(ApplicationRegistry.class)
+                .child(ApplicationRegistryEntry.class);
+        registration = db.registerDataTreeChangeListener(
+                new DataTreeIdentifier<>(LogicalDatastoreType.OPERATIONAL, entriesIid), this);
+    }
+
+    public synchronized void close() {
+        if(registration != null) {
+            registration.close();
+            registration = null;
+        }
+        clear();
+    }
+
+    /**
+     * Returns the cached application, {@link #ABSENT} if it is known not to be registered,
+     * or null on a miss.
+     */
+    public AddApplicationInput get(int appId) {
+        long stamp = lock.tryOptimisticRead();
+        int slot = -1;
+        AddApplicationInput application = null;
+        try {
+            slot = slotsByAppId.get(appId, -1);
+            application = slot < 0 ? null : slotApplications[slot];
+        } catch(RuntimeException e) {
+            // a change raced with the lookup, validate fails below
+        }
+        if(!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                slot = slotsByAppId.get(appId, -1);
+                application = slot < 0 ? null : slotApplications[slot];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if(slot < 0) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        // racy, a lost or misplaced CLOCK bit only changes which entry is evicted next
+        referenced[slot] = true;
+        return application;
+    }
+
+    /**
+     * Returns the QoS requirement of the cached application, or null if it is not cached
+     * or not registered.
+     */
+    public QosRequirement getQos(int appId) {
+        long stamp = lock.tryOptimisticRead();
+        int slot = -1;
+        QosRequirement qos = null;
+        try {
+            slot = slotsByAppId.get(appId, -1);
+            qos = slot < 0 ? null : slotQos[slot];
+        } catch(RuntimeException e) {
+            // a change raced with the lookup, validate fails below
+        }
+        if(!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                slot = slotsByAppId.get(appId, -1);
+                qos = slot < 0 ? null : slotQos[slot];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if(slot < 0) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        referenced[slot] = true;
+        return qos;
+    }
+
+    /**
+     * Returns a counter that changes on every registry change. Loaders read it before
+     * reading the datastore and pass it to {@link #fill}.
+     */
+    public long getGeneration() {
+        long stamp = lock.readLock();
+        try {
+            return generation;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Caches the application read from the datastore, null if it was not registered,
+     * unless the registry changed since the given generation.
+     */
+    public void fill(int appId, AddApplicationInput application, long readAt) {
+        long stamp = lock.writeLock();
+        try {
+            if(readAt != generation) {
+                return;
+            }
+            int slot = slotsByAppId.get(appId, -1);
+            if(slot < 0) {
+                slot = allocateSlot();
+                slotsByAppId.put(appId, slot);
+                slotAppIds[slot] = appId;
+            }
+            store(slot, application);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void store(int slot, AddApplicationInput application) {
+        if(application == null) {
+            slotApplications[slot] = ABSENT;
+            slotQos[slot] = null;
+        } else {
+            slotApplications[slot] = application;
+            slotQos[slot] = QosRequirement.fromInput(application);
+        }
+    }
+
+    private int allocateSlot() {
+        if(used < capacity) {
+            return used++;
+        }
+        while(referenced[hand]) {
+            referenced[hand] = false;
+            hand = (hand + 1) % capacity;
+        }
+        int victim = hand;
+        hand = (hand + 1) % capacity;
+        slotsByAppId.remove(slotAppIds[victim], -1);
+        evictions++;
+        return victim;
+    }
+
+    @Override
+    public void onDataTreeChanged(Collection<DataTreeModification<ApplicationRegistryEntry>> changes) {
+        for(DataTreeModification<ApplicationRegistryEntry> change : changes) {
+            ApplicationRegistryEntryKey key = change.getRootPath().getRootIdentifier()
+                    .firstKeyOf(ApplicationRegistryEntry.class);
+            if(key == null || key.getAppId() == null) {
+                continue;
+            }
+            DataObjectModification<ApplicationRegistryEntry> root = change.getRootNode();
+            ApplicationRegistryEntry after = root.getModificationType() == DataObjectModification.ModificationType.DELETE
+                    ? null : root.getDataAfter();
+            update(key.getAppId(), after);
+        }
+    }
+
+    /**
+     * Applies a registry change to the cached entry of the application, if any.
+     */
+    void update(int appId, ApplicationRegistryEntry entry) {
+        AddApplicationInput application = entry == null ? null : toInput(entry);
+        long stamp = lock.writeLock();
+        try {
+            generation++;
+            int slot = slotsByAppId.get(appId, -1);
+            if(slot >= 0) {
+                store(slot, application);
+                LOG.debug("Refreshed cached application {}", appId);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    static AddApplicationInput toInput(ApplicationRegistryEntry entry) {
+        AddApplicationInputBuilder builder = new AddApplicationInputBuilder();
+        builder.fieldsFrom(entry);
+        return builder.setAppId(entry.getAppId()).build();
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            generation++;
+            slotsByAppId.clear();
+            for(int i = 0; i < used; i++) {
+                slotApplications[i] = null;
+                slotQos[i] = null;
+                referenced[i] = false;
+            }
+            used = 0;
+            hand = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return slotsByAppId.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        long stamp = lock.readLock();
+        try {
+            return evictions;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
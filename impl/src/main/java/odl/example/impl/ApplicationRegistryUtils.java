@@ -10,6 +10,7 @@ package odl.example.impl;
 import com.google.common.base.Optional;
 import com.google.common.util.concurrent.CheckedFuture;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
 import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
 import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
@@ -17,16 +18,18 @@ import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.controller.md.sal.common.api.data.ReadFailedException;
 import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.AddApplicationInput;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.AddApplicationInputBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.ApplicationRegistry;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.ApplicationRegistryBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntry;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntryBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntryKey;
+import org.opendaylight.yangtools.yang.binding.DataObject;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+
 
 /**
  * Created by geopet on 26/5/2016.
@@ -36,6 +39,9 @@ public class ApplicationRegistryUtils {
     private static final Logger LOG = LoggerFactory.getLogger(ApplicationRegistryUtils.class);
     private static ApplicationRegistryUtils instance = null;
     private DataBroker db;
+    private ApplicationRegistryWriter writer;
+    private final ApplicationRegistryCache cache =
+            new ApplicationRegistryCache(ApplicationRegistryCache.DEFAULT_MAX_ENTRIES);
     protected ApplicationRegistryUtils() {
 
     }
@@ -49,6 +55,24 @@ public class ApplicationRegistryUtils {
 
     public void setDb(DataBroker db) {
         this.db = db;
+        if(writer != null) {
+            writer.close();
+        }
+        writer = new ApplicationRegistryWriter(db, ApplicationRegistryWriter.DEFAULT_MAX_BATCH_SIZE,
+                ApplicationRegistryWriter.DEFAULT_MAX_DELAY_MILLIS);
+        cache.init(db);
+    }
+
+    public void close() {
+        if(writer != null) {
+            writer.close();
+            writer = null;
+        }
+        cache.close();
+    }
+
+    public ApplicationRegistryCache getCache() {
+        return cache;
     }
 
     public void initializeDataTree() {
@@ -57,32 +81,46 @@ public class ApplicationRegistryUtils {
         InstanceIdentifier<ApplicationRegistry> iid = InstanceIdentifier.create(ApplicationRegistry.class);
         ApplicationRegistry greetingRegistry = new ApplicationRegistryBuilder()
                 .build();
-        transaction.put(LogicalDatastoreType.OPERATIONAL, iid, greetingRegistry);
+        // merged, so the entries of a restarted member or of the other members are kept
+        transaction.merge(LogicalDatastoreType.OPERATIONAL, iid, greetingRegistry);
         CheckedFuture<Void, TransactionCommitFailedException> future = transaction.submit();
         Futures.addCallback(future, new LoggingFuturesCallBack<>("Failed to create application registry", LOG));
     }
 
-    public void writeToApplicationRegistry(AddApplicationInput input) {
-        LOG.info("Writing to application registry input {}.", input);
-        WriteTransaction transaction = db.newWriteOnlyTransaction();
-        InstanceIdentifier<ApplicationRegistryEntry> iid = toInstanceIdentifier(input);
-        ApplicationRegistryEntry application = new ApplicationRegistryEntryBuilder()
-                .setAppId(input.getAppId())
-                .setJitter(input.getJitter())
-                .setPacketLoss(input.getPacketLoss())
-                .setPacketDelay(input.getPacketDelay())
-                .setBandwidth(input.getBandwidth())
-                .build();
-        transaction.put(LogicalDatastoreType.OPERATIONAL, iid, application);
-        CheckedFuture<Void, TransactionCommitFailedException> future = transaction.submit();
-        Futures.addCallback(future, new LoggingFuturesCallBack<Void>("Failed to write to application registry", LOG));
+    /**
+     * Writes the application to the registry. Writes are batched with other
+     * applications, the returned future completes when the batch is committed.
+     */
+    public ListenableFuture<Void> writeToApplicationRegistry(AddApplicationInput input) {
+        LOG.debug("Writing to application registry input {}.", input);
+        return writer.put(toEntry(input.getAppId(), input));
     }
 
-    private InstanceIdentifier<ApplicationRegistryEntry> toInstanceIdentifier(AddApplicationInput input) {
-        InstanceIdentifier<ApplicationRegistryEntry> iid = InstanceIdentifier.create(ApplicationRegistry.class)
-                .child(ApplicationRegistryEntry.class,
-                        new ApplicationRegistryEntryKey(input.getAppId()));
-        return iid;
+    /**
+     * Returns the registry entry of an application given with the application-qos and
+     * application-match groupings.
+     */
+    static ApplicationRegistryEntry toEntry(Integer appId, DataObject application) {
+        ApplicationRegistryEntryBuilder builder = new ApplicationRegistryEntryBuilder();
+        builder.fieldsFrom(application);
+        return builder.setAppId(appId).build();
+    }
+
+    /**
+     * Writes the entries to the registry in one transaction. The returned future
+     * completes when it is committed.
+     */
+    public ListenableFuture<Void> writeAllToApplicationRegistry(List<ApplicationRegistryEntry> entries) {
+        LOG.debug("Writing {} entries to application registry.", entries.size());
+        return writer.putAll(entries);
+    }
+
+    /**
+     * Removes the application from the registry, batched like the writes.
+     */
+    public ListenableFuture<Void> removeFromApplicationRegistry(int appId) {
+        LOG.debug("Removing application {} from application registry.", appId);
+        return writer.delete(appId);
     }
 
     private InstanceIdentifier<ApplicationRegistryEntry> toInstanceIdentifier(int input) {
@@ -93,28 +131,49 @@ public class ApplicationRegistryUtils {
     }
 
 
+    /**
+     * Returns the registered application, or null if there is none. Served from the
+     * registry cache, the datastore is only read on a miss.
+     */
     public AddApplicationInput readFromApplicationRegistry(int appId) {
-        LOG.info("Reading from application registry for appID {}.", appId);
-        AddApplicationInput application = null;
+        AddApplicationInput cached = cache.get(appId);
+        if(cached != null) {
+            return cached == ApplicationRegistryCache.ABSENT ? null : cached;
+        }
+        LOG.debug("Reading from application registry for appID {}.", appId);
+        long generation = cache.getGeneration();
+        OperationMetrics metrics = MetricsRegistry.getInstance().getRegistryRead();
+        long start = metrics.start();
         ReadOnlyTransaction transaction = db.newReadOnlyTransaction();
         InstanceIdentifier<ApplicationRegistryEntry> iid = toInstanceIdentifier(appId);
-        CheckedFuture<Optional<ApplicationRegistryEntry>, ReadFailedException> future =
-                transaction.read(LogicalDatastoreType.OPERATIONAL, iid);
-        Optional<ApplicationRegistryEntry> optional = Optional.absent();
+        Optional<ApplicationRegistryEntry> optional;
         try {
-            optional = future.checkedGet();
+            optional = transaction.read(LogicalDatastoreType.OPERATIONAL, iid).checkedGet();
+            metrics.stop(start, true);
         } catch (ReadFailedException e) {
+            metrics.stop(start, false);
             LOG.error("Reading application failed:",e);
+            return null;
+        } finally {
+            transaction.close();
         }
+        AddApplicationInput application = null;
         if(optional.isPresent()) {
-            application = new AddApplicationInputBuilder()
-                    .setAppId(optional.get().getAppId())
-                    .setJitter(optional.get().getJitter())
-                    .setPacketLoss(optional.get().getPacketLoss())
-                    .setPacketDelay(optional.get().getPacketDelay())
-                    .setBandwidth(optional.get().getBandwidth())
-                    .build();
+            application = ApplicationRegistryCache.toInput(optional.get());
         }
+        cache.fill(appId, application, generation);
         return application;
     }
+
+    /**
+     * Returns the QoS requirement of the registered application, or null if there is none.
+     */
+    public QosRequirement readQos(int appId) {
+        QosRequirement qos = cache.getQos(appId);
+        if(qos != null) {
+            return qos;
+        }
+        AddApplicationInput application = readFromApplicationRegistry(appId);
+        return application == null ? null : QosRequirement.fromInput(application);
+    }
 }
@@ -0,0 +1,268 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.opendaylight.controller.md.sal.binding.api.BindingTransactionChain;
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
+import org.opendaylight.controller.md.sal.common.api.data.AsyncTransaction;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionChain;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionChainListener;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.ApplicationRegistry;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntry;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntryKey;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Write-behind writer for the application registry.
+ *
+ * Puts and deletes are held for up to {@link #maxDelayMillis}, or until
+ * {@link #maxBatchSize} applications are pending, and then committed in one transaction
+ * on a transaction chain. Writes to the same appId within a batch collapse into the last
+ * one. Every caller gets a future completing with the commit of the batch holding its write.
+ *
+ * Batches are built and submitted on a single thread, the chain lets their commits overlap.
+ */
+public class ApplicationRegistryWriter implements TransactionChainListener, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApplicationRegistryWriter.class);
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1024;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 10;
+
+    private final DataBroker db;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService executor;
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private Map<Integer, PendingWrite> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+    private boolean closed;
+    // only used on the executor thread
+    private BindingTransactionChain chain;
+
+    public ApplicationRegistryWriter(DataBroker db, int maxBatchSize, long maxDelayMillis) {
+        this.db = db;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("odlexample-registry-writer-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Queues the entry to be written, replacing any pending write of the same appId.
+     */
+    public ListenableFuture<Void> put(ApplicationRegistryEntry entry) {
+        return enqueue(entry.getAppId(), entry);
+    }
+
+    /**
+     * Queues the removal of the application, replacing any pending write of it.
+     */
+    public ListenableFuture<Void> delete(int appId) {
+        return enqueue(appId, null);
+    }
+
+    /**
+     * Queues the entries and commits them right away, together with any pending writes,
+     * in one transaction regardless of the batch size. The returned future completes
+     * with that commit.
+     */
+    public ListenableFuture<Void> putAll(Collection<ApplicationRegistryEntry> entries) {
+        SettableFuture<Void> future = SettableFuture.create();
+        synchronized(this) {
+            if(closed) {
+                future.setException(new IllegalStateException("Application registry writer is closed"));
+                return future;
+            }
+            for(ApplicationRegistryEntry entry : entries) {
+                addPending(entry.getAppId(), entry, future);
+            }
+            executor.execute(flushTask);
+        }
+        return future;
+    }
+
+    private void addPending(Integer appId, ApplicationRegistryEntry entry, SettableFuture<Void> future) {
+        PendingWrite write = pending.get(appId);
+        if(write == null) {
+            write = new PendingWrite();
+            pending.put(appId, write);
+        }
+        write.entry = entry;
+        write.waiters.add(future);
+    }
+
+    private ListenableFuture<Void> enqueue(Integer appId, ApplicationRegistryEntry entry) {
+        SettableFuture<Void> future = SettableFuture.create();
+        synchronized(this) {
+            if(closed) {
+                future.setException(new IllegalStateException("Application registry writer is closed"));
+                return future;
+            }
+            addPending(appId, entry, future);
+
+            if(pending.size() >= maxBatchSize) {
+                executor.execute(flushTask);
+            } else if(!flushScheduled) {
+                flushScheduled = true;
+                executor.schedule(flushTask, maxDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        return future;
+    }
+
+    private void flush() {
+        Map<Integer, PendingWrite> batch;
+        synchronized(this) {
+            flushScheduled = false;
+            if(pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+
+        final List<SettableFuture<Void>> waiters = new ArrayList<>();
+        final OperationMetrics metrics = MetricsRegistry.getInstance().getRegistryWrite();
+        final long start = metrics.start();
+        CheckedFuture<Void, TransactionCommitFailedException> commit;
+        try {
+            if(chain == null) {
+                chain = db.createTransactionChain(this);
+            }
+            WriteTransaction transaction = chain.newWriteOnlyTransaction();
+            for(Map.Entry<Integer, PendingWrite> write : batch.entrySet()) {
+                InstanceIdentifier<ApplicationRegistryEntry> iid = toInstanceIdentifier(write.getKey());
+                if(write.getValue().entry == null) {
+                    transaction.delete(LogicalDatastoreType.OPERATIONAL, iid);
+                } else {
+                    transaction.put(LogicalDatastoreType.OPERATIONAL, iid, write.getValue().entry);
+                }
+                waiters.addAll(write.getValue().waiters);
+            }
+            commit = transaction.submit();
+        } catch(RuntimeException e) {
+            waiters.clear();
+            for(PendingWrite write : batch.values()) {
+                waiters.addAll(write.waiters);
+            }
+            resetChain();
+            commit = Futures.immediateFailedCheckedFuture(new TransactionCommitFailedException(
+                    "Failed to submit application registry batch", e));
+        }
+        LOG.debug("Submitted application registry batch of {} writes for {} callers", batch.size(), waiters.size());
+
+        Futures.addCallback(commit, new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                metrics.stop(start, true);
+                for(SettableFuture<Void> waiter : waiters) {
+                    waiter.set(null);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                metrics.stop(start, false);
+                LOG.warn("Failed to write to application registry", t);
+                for(SettableFuture<Void> waiter : waiters) {
+                    waiter.setException(t);
+                }
+            }
+        });
+    }
+
+    private void resetChain() {
+        if(chain != null) {
+            try {
+                chain.close();
+            } catch(RuntimeException e) {
+                LOG.debug("Closing failed transaction chain failed:", e);
+            }
+            chain = null;
+        }
+    }
+
+    @Override
+    public void onTransactionChainFailed(final TransactionChain<?, ?> failedChain,
+                                         AsyncTransaction<?, ?> transaction, Throwable cause) {
+        LOG.warn("Application registry transaction chain failed, recreating it:", cause);
+        // the failed batch is reported through its commit future, later batches use a new chain
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if(chain == failedChain) {
+                    resetChain();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onTransactionChainSuccessful(TransactionChain<?, ?> chain) {
+        LOG.debug("Application registry transaction chain closed");
+    }
+
+    /**
+     * Commits the pending writes and stops the writer.
+     */
+    @Override
+    public void close() {
+        synchronized(this) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+        }
+        executor.execute(flushTask);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                resetChain();
+            }
+        });
+        executor.shutdown();
+    }
+
+    static InstanceIdentifier<ApplicationRegistryEntry> toInstanceIdentifier(int appId) {
+        return InstanceIdentifier.create(ApplicationRegistry.class)
+                .child(ApplicationRegistryEntry.class, new ApplicationRegistryEntryKey(appId));
+    }
+
+    private static final class PendingWrite {
+        private ApplicationRegistryEntry entry;
+        private final List<SettableFuture<Void>> waiters = new ArrayList<>(1);
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+
+/**
+ * Failure of a step of application setup, carrying the RPC error tag to report.
+ */
+public class ApplicationSetupException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+    public static final String DATA_MISSING = "data-missing";
+    public static final String INVALID_VALUE = "invalid-value";
+    public static final String RESOURCE_DENIED = "resource-denied";
+    public static final String OPERATION_FAILED = "operation-failed";
+
+    private final String errorTag;
+
+    public ApplicationSetupException(String errorTag, String message) {
+        super(message);
+        this.errorTag = errorTag;
+    }
+
+    public ApplicationSetupException(String errorTag, String message, Throwable cause) {
+        super(message, cause);
+        this.errorTag = errorTag;
+    }
+
+    public String getErrorTag() {
+        return errorTag;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+
+/**
+ * Link qualities of a graph index laid out per arc, so that path searches read primitive
+ * arrays instead of looking up the quality table on every relaxation. Loss is kept as
+ * -ln(1 - loss), which is additive along a path.
+ */
+public final class ArcMetrics {
+
+    private final GraphIndex index;
+    private final long version;
+    private final double[] capacity;
+    private final double[] delay;
+    private final double[] loss;
+    private final double[] lossCost;
+    private final double[] utilization;
+
+    private ArcMetrics(GraphIndex index, long version, double[] capacity, double[] delay, double[] loss,
+                       double[] lossCost, double[] utilization) {
+        this.index = index;
+        this.version = version;
+        this.capacity = capacity;
+        this.delay = delay;
+        this.loss = loss;
+        this.lossCost = lossCost;
+        this.utilization = utilization;
+    }
+
+    public static ArcMetrics build(GraphIndex index, LinkQualityTable table) {
+        long version = table.getVersion();
+        int arcCount = index.getArcCount();
+        double[] capacity = new double[arcCount];
+        double[] delay = new double[arcCount];
+        double[] loss = new double[arcCount];
+        double[] lossCost = new double[arcCount];
+        double[] utilization = new double[arcCount];
+        for(int arc = 0; arc < arcCount; arc++) {
+            LinkQuality quality = table.get(index.getArcTp(arc));
+            capacity[arc] = quality.getCapacity();
+            delay[arc] = quality.getDelay();
+            loss[arc] = Math.min(Math.max(quality.getLoss(), 0), 0.999999);
+            lossCost[arc] = -Math.log1p(-loss[arc]);
+            utilization[arc] = Math.min(Math.max(quality.getUtilization(), 0), 1);
+        }
+        return new ArcMetrics(index, version, capacity, delay, loss, lossCost, utilization);
+    }
+
+    public boolean isCurrent(GraphIndex index, LinkQualityTable table) {
+        return this.index == index && this.version == table.getVersion();
+    }
+
+    /**
+     * Returns the capacity in kbit/s, or zero when unknown.
+     */
+    public double getCapacity(int arc) {
+        return capacity[arc];
+    }
+
+    public double getDelay(int arc) {
+        return delay[arc];
+    }
+
+    public double getLoss(int arc) {
+        return loss[arc];
+    }
+
+    public double getLossCost(int arc) {
+        return lossCost[arc];
+    }
+
+    /**
+     * Returns the smoothed transmit utilization of the capacity, between 0 and 1.
+     */
+    public double getUtilization(int arc) {
+        return utilization[arc];
+    }
+}
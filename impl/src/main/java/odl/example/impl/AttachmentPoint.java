@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+
+
+/**
+ * The switch and connector where a host address was learned.
+ */
+public final class AttachmentPoint {
+
+    private final NodeId nodeId;
+    private final NodeConnectorId nodeConnectorId;
+
+    public AttachmentPoint(NodeId nodeId, NodeConnectorId nodeConnectorId) {
+        this.nodeId = nodeId;
+        this.nodeConnectorId = nodeConnectorId;
+    }
+
+    public NodeId getNodeId() {
+        return nodeId;
+    }
+
+    public NodeConnectorId getNodeConnectorId() {
+        return nodeConnectorId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof AttachmentPoint)) {
+            return false;
+        }
+        AttachmentPoint that = (AttachmentPoint) o;
+        return nodeId.equals(that.nodeId) && nodeConnectorId.equals(that.nodeConnectorId);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * nodeId.hashCode() + nodeConnectorId.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "AttachmentPoint [node=" + nodeId.getValue() + ", connector=" + nodeConnectorId.getValue() + "]";
+    }
+}
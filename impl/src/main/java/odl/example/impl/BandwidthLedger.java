@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Bandwidth reserved by admitted applications per egress termination point, that is per
+ * direction of a link, checked against the port capacity of the {@link LinkQualityTable}.
+ *
+ * Every port has its own counter in bit/s updated with compare-and-set, so concurrent
+ * admissions only contend on the ports they share. A path is reserved hop by hop and the
+ * hops already taken are given back if one does not fit, so a failed reservation leaves
+ * nothing behind. Ports of unknown capacity accept any reservation.
+ */
+public class BandwidthLedger {
+
+    private static final BandwidthLedger instance = new BandwidthLedger(LinkQualityTable.getInstance());
+
+    private final LinkQualityTable table;
+    private final ConcurrentMap<String, AtomicLong> reserved = new ConcurrentHashMap<>();
+
+    protected BandwidthLedger(LinkQualityTable table) {
+        this.table = table;
+    }
+
+    public static BandwidthLedger getInstance() {
+        return instance;
+    }
+
+    /**
+     * Reserves the bandwidth in kbit/s on every port, or on none of them. Returns false
+     * if a port has not enough capacity left.
+     */
+    public boolean reserve(List<String> tps, double bandwidth) {
+        long bits = toBits(bandwidth);
+        if(bits <= 0) {
+            return true;
+        }
+        for(int i = 0; i < tps.size(); i++) {
+            if(!reserve(tps.get(i), bits)) {
+                for(int j = 0; j < i; j++) {
+                    getCounter(tps.get(j)).addAndGet(-bits);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean reserve(String tp, long bits) {
+        long capacity = toBits(table.get(tp).getCapacity());
+        AtomicLong counter = getCounter(tp);
+        while(true) {
+            long current = counter.get();
+            if(capacity > 0 && current + bits > capacity) {
+                return false;
+            }
+            if(counter.compareAndSet(current, current + bits)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back bandwidth reserved with {@link #reserve}.
+     */
+    public void release(List<String> tps, double bandwidth) {
+        long bits = toBits(bandwidth);
+        if(bits <= 0) {
+            return;
+        }
+        for(String tp : tps) {
+            getCounter(tp).addAndGet(-bits);
+        }
+    }
+
+    private AtomicLong getCounter(String tp) {
+        AtomicLong counter = reserved.get(tp);
+        if(counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = reserved.putIfAbsent(tp, created);
+            if(counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Returns the bandwidth reserved on the port in kbit/s.
+     */
+    public double getReserved(String tp) {
+        AtomicLong counter = reserved.get(tp);
+        return counter == null ? 0 : counter.get() / 1000.0;
+    }
+
+    private static long toBits(double kbits) {
+        return Math.round(kbits * 1000);
+    }
+}
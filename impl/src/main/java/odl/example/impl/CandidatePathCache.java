@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Bounded LRU cache of candidate path sets per switch pair and QoS requirement.
+ *
+ * Sets are updated incrementally: a removed link only drops the candidates crossing it,
+ * and the set is evicted once no candidate is left. A link quality change evicts the
+ * sets using the port, since the order of their candidates may change, and an added link
+ * evicts everything, as it may create new candidates anywhere. Like the {@link PathCache},
+ * a set computed while an invalidation happened is not cached.
+ */
+public class CandidatePathCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 16384;
+    private static final CandidatePathCache instance = new CandidatePathCache(DEFAULT_MAX_ENTRIES);
+
+    private final int maxEntries;
+    private final Map<PathCache.Key, List<PathResult>> entries;
+    private final Map<String, Set<PathCache.Key>> keysByTp = new HashMap<>();
+    private long generation;
+
+    public CandidatePathCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<PathCache.Key, List<PathResult>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PathCache.Key, List<PathResult>> eldest) {
+                if(size() <= CandidatePathCache.this.maxEntries) {
+                    return false;
+                }
+                unindex(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    public static CandidatePathCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the cached candidates, or null on a miss.
+     */
+    public synchronized List<PathResult> get(NodeId source, NodeId destination, QosRequirement qos) {
+        return entries.get(new PathCache.Key(source, destination, qos));
+    }
+
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Caches the feasible candidates unless an invalidation happened since the given generation.
+     */
+    public synchronized void put(NodeId source, NodeId destination, QosRequirement qos,
+                                 List<PathResult> candidates, long computedAt) {
+        if(computedAt != generation || candidates.isEmpty() || !candidates.get(0).isFeasible()) {
+            return;
+        }
+        PathCache.Key key = new PathCache.Key(source, destination, qos);
+        List<PathResult> previous = entries.remove(key);
+        if(previous != null) {
+            unindex(key, previous);
+        }
+        put(key, new ArrayList<>(candidates));
+    }
+
+    private void unindex(PathCache.Key key, List<PathResult> candidates) {
+        for(PathResult candidate : candidates) {
+            for(String tp : candidate.getEgressTps()) {
+                Set<PathCache.Key> keys = keysByTp.get(tp);
+                if(keys != null) {
+                    keys.remove(key);
+                    if(keys.isEmpty()) {
+                        keysByTp.remove(tp);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the candidates crossing the link in either direction.
+     */
+    public synchronized void invalidateLink(Link link) {
+        generation++;
+        String sourceTp = link.getSource().getSourceTp().getValue();
+        String destinationTp = link.getDestination().getDestTp().getValue();
+        Set<PathCache.Key> affected = new HashSet<>();
+        addKeys(affected, sourceTp);
+        addKeys(affected, destinationTp);
+        for(PathCache.Key key : affected) {
+            List<PathResult> candidates = entries.remove(key);
+            if(candidates == null) {
+                continue;
+            }
+            unindex(key, candidates);
+            List<PathResult> remaining = new ArrayList<>(candidates.size());
+            for(PathResult candidate : candidates) {
+                if(!candidate.getEgressTps().contains(sourceTp) && !candidate.getEgressTps().contains(destinationTp)) {
+                    remaining.add(candidate);
+                }
+            }
+            if(!remaining.isEmpty()) {
+                put(key, remaining);
+            }
+        }
+    }
+
+    private void put(PathCache.Key key, List<PathResult> candidates) {
+        entries.put(key, Collections.unmodifiableList(candidates));
+        for(PathResult candidate : candidates) {
+            for(String tp : candidate.getEgressTps()) {
+                Set<PathCache.Key> keys = keysByTp.get(tp);
+                if(keys == null) {
+                    keys = new HashSet<>();
+                    keysByTp.put(tp, keys);
+                }
+                keys.add(key);
+            }
+        }
+    }
+
+    private void addKeys(Set<PathCache.Key> affected, String tp) {
+        Set<PathCache.Key> keys = keysByTp.get(tp);
+        if(keys != null) {
+            affected.addAll(keys);
+        }
+    }
+
+    /**
+     * Evicts the candidate sets using the termination point.
+     */
+    public synchronized void invalidateTp(String tp) {
+        generation++;
+        Set<PathCache.Key> keys = keysByTp.get(tp);
+        if(keys == null) {
+            return;
+        }
+        for(PathCache.Key key : new ArrayList<>(keys)) {
+            List<PathResult> candidates = entries.remove(key);
+            if(candidates != null) {
+                unindex(key, candidates);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+        keysByTp.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Mutable topology graph with node and termination point ids interned to ints.
+ *
+ * Undirected edges are kept in parallel primitive arrays indexed by edge id. Removed edge
+ * ids are recycled, and edges are deduplicated on the unordered pair of their termination
+ * points, so both directions of a link map to the same edge. Path computation does not
+ * traverse this structure directly but an immutable CSR {@link #snapshot()} of it.
+ *
+ * The edges and vertices changed since the last snapshot are tracked, so the next one is
+ * patched from it rather than rebuilt: only the arc ranges of the changed vertices are
+ * rebuilt, the others are copied over in bulk. A snapshot is immutable, so its arrays are
+ * still copied, but a batch touching a few links copies contiguous runs instead of
+ * scattering every edge into the arrays again.
+ *
+ * Every change of the edges starts a new epoch, which snapshots are stamped with. Node ids
+ * are never released, which keeps them stable across snapshots. Not thread-safe, writers
+ * must synchronize externally.
+ */
+public class CompactGraph {
+
+    private static final int NO_EDGE = -1;
+    /** Snapshots are rebuilt rather than patched when more than one in this many vertices changed. */
+    private static final int PATCH_MAX_CHANGED_SHARE = 8;
+
+    private final Map<NodeId, Integer> nodeIndex = new HashMap<>();
+    private NodeId[] nodes = new NodeId[16];
+    private int nodeCount;
+
+    private final Map<String, Integer> tpIndex = new HashMap<>();
+    private String[] tps = new String[16];
+    private int tpCount;
+
+    private int[] edgeSource = new int[16];
+    private int[] edgeTarget = new int[16];
+    private int[] edgeSourceTp = new int[16];
+    private int[] edgeTargetTp = new int[16];
+    private Link[] edgeLink = new Link[16];
+    private int edgeSlots;
+    private int edgeCount;
+    private int[] freeEdges = new int[16];
+    private int freeCount;
+    private final LongIntHashMap edgeByTps = new LongIntHashMap();
+    private long epoch;
+    private GraphIndex last;
+    private final BitSet changedEdges = new BitSet();
+    private final BitSet changedVertices = new BitSet();
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    private int internNode(NodeId nodeId) {
+        Integer index = nodeIndex.get(nodeId);
+        if(index != null) {
+            return index;
+        }
+        if(nodeCount == nodes.length) {
+            nodes = Arrays.copyOf(nodes, nodeCount * 2);
+        }
+        nodes[nodeCount] = nodeId;
+        nodeIndex.put(nodeId, nodeCount);
+        return nodeCount++;
+    }
+
+    private int internTp(String tpId) {
+        Integer index = tpIndex.get(tpId);
+        if(index != null) {
+            return index;
+        }
+        if(tpCount == tps.length) {
+            tps = Arrays.copyOf(tps, tpCount * 2);
+        }
+        tps[tpCount] = tpId;
+        tpIndex.put(tpId, tpCount);
+        return tpCount++;
+    }
+
+    private static long edgeKey(int tpA, int tpB) {
+        int low = Math.min(tpA, tpB);
+        int high = Math.max(tpA, tpB);
+        return ((long) low << 32) | (high & 0xffffffffL);
+    }
+
+    /**
+     * Adds the link as an undirected edge. Returns false if the edge is already present
+     * in either direction, or if the link is a loop.
+     */
+    public boolean addLink(Link link) {
+        NodeId sourceNode = link.getSource().getSourceNode();
+        NodeId destinationNode = link.getDestination().getDestNode();
+        if(sourceNode.equals(destinationNode)) {
+            return false;
+        }
+        int sourceTp = internTp(link.getSource().getSourceTp().getValue());
+        int destinationTp = internTp(link.getDestination().getDestTp().getValue());
+        long key = edgeKey(sourceTp, destinationTp);
+        if(edgeByTps.get(key, NO_EDGE) != NO_EDGE) {
+            return false;
+        }
+
+        int edge;
+        if(freeCount > 0) {
+            edge = freeEdges[--freeCount];
+        } else {
+            if(edgeSlots == edgeLink.length) {
+                growEdges(edgeSlots * 2);
+            }
+            edge = edgeSlots++;
+        }
+        edgeSource[edge] = internNode(sourceNode);
+        edgeTarget[edge] = internNode(destinationNode);
+        edgeSourceTp[edge] = sourceTp;
+        edgeTargetTp[edge] = destinationTp;
+        edgeLink[edge] = link;
+        edgeByTps.put(key, edge);
+        edgeCount++;
+        epoch++;
+        changed(edge);
+        return true;
+    }
+
+    /**
+     * Removes the edge of the link, in either direction. Returns the link the edge was
+     * added with, or null if there was no such edge.
+     */
+    public Link removeLink(Link link) {
+        Integer sourceTp = tpIndex.get(link.getSource().getSourceTp().getValue());
+        Integer destinationTp = tpIndex.get(link.getDestination().getDestTp().getValue());
+        if(sourceTp == null || destinationTp == null) {
+            return null;
+        }
+        int edge = edgeByTps.remove(edgeKey(sourceTp, destinationTp), NO_EDGE);
+        if(edge == NO_EDGE) {
+            return null;
+        }
+        Link removed = edgeLink[edge];
+        edgeLink[edge] = null;
+        changed(edge);
+        if(freeCount == freeEdges.length) {
+            freeEdges = Arrays.copyOf(freeEdges, freeCount * 2);
+        }
+        freeEdges[freeCount++] = edge;
+        edgeCount--;
+        epoch++;
+        return removed;
+    }
+
+    public List<Link> getLinks() {
+        List<Link> links = new ArrayList<>(edgeCount);
+        for(int edge = 0; edge < edgeSlots; edge++) {
+            if(edgeLink[edge] != null) {
+                links.add(edgeLink[edge]);
+            }
+        }
+        return links;
+    }
+
+    /**
+     * Removes all edges. Interned ids are kept.
+     */
+    public void clear() {
+        Arrays.fill(edgeLink, 0, edgeSlots, null);
+        edgeSlots = 0;
+        edgeCount = 0;
+        freeCount = 0;
+        edgeByTps.clear();
+        epoch++;
+        last = null;
+        changedEdges.clear();
+        changedVertices.clear();
+    }
+
+    private void changed(int edge) {
+        changedEdges.set(edge);
+        changedVertices.set(edgeSource[edge]);
+        changedVertices.set(edgeTarget[edge]);
+    }
+
+    private void growEdges(int capacity) {
+        edgeSource = Arrays.copyOf(edgeSource, capacity);
+        edgeTarget = Arrays.copyOf(edgeTarget, capacity);
+        edgeSourceTp = Arrays.copyOf(edgeSourceTp, capacity);
+        edgeTargetTp = Arrays.copyOf(edgeTargetTp, capacity);
+        edgeLink = Arrays.copyOf(edgeLink, capacity);
+    }
+
+    /**
+     * Returns the immutable CSR view of the current edges, with two arcs per edge,
+     * stamped with the current epoch. It is patched from the previous snapshot if few
+     * vertices changed since, and built from scratch otherwise.
+     */
+    public GraphIndex snapshot() {
+        if(last == null || last.getEpoch() != epoch) {
+            boolean patch = last != null
+                    && changedVertices.cardinality() <= nodeCount / PATCH_MAX_CHANGED_SHARE;
+            last = patch ? patch(last) : rebuild();
+            changedEdges.clear();
+            changedVertices.clear();
+        }
+        return last;
+    }
+
+    private GraphIndex rebuild() {
+        int[] offsets = new int[nodeCount + 1];
+        for(int edge = 0; edge < edgeSlots; edge++) {
+            if(edgeLink[edge] != null) {
+                offsets[edgeSource[edge] + 1]++;
+                offsets[edgeTarget[edge] + 1]++;
+            }
+        }
+        for(int v = 0; v < nodeCount; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+
+        Arcs arcs = new Arcs(edgeCount * 2);
+        int[] next = Arrays.copyOf(offsets, nodeCount);
+        for(int edge = 0; edge < edgeSlots; edge++) {
+            if(edgeLink[edge] != null) {
+                addArcs(arcs, next, edge);
+            }
+        }
+        return toIndex(offsets, arcs, null);
+    }
+
+    /**
+     * Builds the snapshot from the previous one. Vertex, termination point and unchanged
+     * edge ids are stable, so the arcs of unchanged vertices are copied as they are, in
+     * runs of consecutive vertices. The arcs of changed vertices are those of their
+     * unchanged edges in the previous snapshot plus those of their changed edges that
+     * still exist.
+     */
+    private GraphIndex patch(GraphIndex previous) {
+        int previousCount = previous.getVertexCount();
+        int[] offsets = new int[nodeCount + 1];
+        for(int v = 0; v < previousCount; v++) {
+            if(!changedVertices.get(v)) {
+                offsets[v + 1] = previous.endArc(v) - previous.firstArc(v);
+            }
+        }
+        for(int v = changedVertices.nextSetBit(0); v >= 0 && v < previousCount; v = changedVertices.nextSetBit(v + 1)) {
+            for(int arc = previous.firstArc(v); arc < previous.endArc(v); arc++) {
+                if(!changedEdges.get(previous.getArcEdge(arc))) {
+                    offsets[v + 1]++;
+                }
+            }
+        }
+        for(int edge = changedEdges.nextSetBit(0); edge >= 0; edge = changedEdges.nextSetBit(edge + 1)) {
+            if(edgeLink[edge] != null) {
+                offsets[edgeSource[edge] + 1]++;
+                offsets[edgeTarget[edge] + 1]++;
+            }
+        }
+        for(int v = 0; v < nodeCount; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+
+        Arcs arcs = new Arcs(edgeCount * 2);
+        for(int v = 0; v < previousCount; ) {
+            if(changedVertices.get(v)) {
+                v++;
+                continue;
+            }
+            int end = Math.min(changedVertices.nextSetBit(v), previousCount);
+            if(end < 0) {
+                end = previousCount;
+            }
+            previous.copyArcs(previous.firstArc(v), previous.firstArc(end), arcs.source, arcs.target, arcs.edge,
+                    arcs.tp, arcs.link, offsets[v]);
+            v = end;
+        }
+        int[] next = Arrays.copyOf(offsets, nodeCount);
+        for(int v = changedVertices.nextSetBit(0); v >= 0 && v < previousCount; v = changedVertices.nextSetBit(v + 1)) {
+            for(int arc = previous.firstArc(v); arc < previous.endArc(v); arc++) {
+                if(!changedEdges.get(previous.getArcEdge(arc))) {
+                    previous.copyArcs(arc, arc + 1, arcs.source, arcs.target, arcs.edge, arcs.tp, arcs.link,
+                            next[v]++);
+                }
+            }
+        }
+        for(int edge = changedEdges.nextSetBit(0); edge >= 0; edge = changedEdges.nextSetBit(edge + 1)) {
+            if(edgeLink[edge] != null) {
+                addArcs(arcs, next, edge);
+            }
+        }
+        return toIndex(offsets, arcs, previous);
+    }
+
+    /**
+     * Adds both arcs of the edge at the next free position of their source vertex.
+     */
+    private void addArcs(Arcs arcs, int[] next, int edge) {
+        int u = edgeSource[edge];
+        int v = edgeTarget[edge];
+        int forward = next[u]++;
+        arcs.source[forward] = u;
+        arcs.target[forward] = v;
+        arcs.edge[forward] = edge;
+        arcs.tp[forward] = edgeSourceTp[edge];
+        arcs.link[forward] = edgeLink[edge];
+        int backward = next[v]++;
+        arcs.source[backward] = v;
+        arcs.target[backward] = u;
+        arcs.edge[backward] = edge;
+        arcs.tp[backward] = edgeTargetTp[edge];
+        arcs.link[backward] = edgeLink[edge];
+    }
+
+    /**
+     * Wraps the arcs into a snapshot. The snapshot gets its own copy of the node index,
+     * shared with the previous snapshot if no node was added since.
+     */
+    private GraphIndex toIndex(int[] offsets, Arcs arcs, GraphIndex previous) {
+        Map<NodeId, Integer> vertexIndex = previous != null && previous.getVertexCount() == nodeCount
+                ? previous.getVertexIndex() : Collections.unmodifiableMap(new HashMap<>(nodeIndex));
+        return new GraphIndex(epoch, Arrays.copyOf(nodes, nodeCount), vertexIndex, offsets, arcs.source,
+                arcs.target, arcs.edge, arcs.tp, Arrays.copyOf(tps, tpCount), arcs.link);
+    }
+
+    /**
+     * Arc arrays of a snapshot being built.
+     */
+    private static final class Arcs {
+        private final int[] source;
+        private final int[] target;
+        private final int[] edge;
+        private final int[] tp;
+        private final Link[] link;
+
+        private Arcs(int count) {
+            source = new int[count];
+            target = new int[count];
+            edge = new int[count];
+            tp = new int[count];
+            link = new Link[count];
+        }
+    }
+}
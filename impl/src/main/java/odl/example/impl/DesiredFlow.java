@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+
+/**
+ * An application flow that should be on a switch: the traffic of an {@link ApplicationMatch}
+ * sent to a queue and out of a connector. Flows with the same {@link #getMatchKey() match key}
+ * occupy the same flow entry of the switch. The switch removes the entry after its hard
+ * timeout unless the {@link FlowRefreshScheduler} installs it again before.
+ */
+public final class DesiredFlow {
+
+    private final ApplicationMatch match;
+    private final String egressConnector;
+    private final long queueId;
+    private final int hardTimeout;
+    private final String matchKey;
+
+    public DesiredFlow(String srcAddress, String dstAddress, String egressConnector, long queueId) {
+        this(srcAddress, dstAddress, egressConnector, queueId, FlowTemplateCompiler.HARD_TIMEOUT);
+    }
+
+    /**
+     * Creates a flow the switch removes after the hard timeout in seconds, or never if
+     * it is 0.
+     */
+    public DesiredFlow(String srcAddress, String dstAddress, String egressConnector, long queueId,
+                       int hardTimeout) {
+        this(new ApplicationMatch(srcAddress, dstAddress), egressConnector, queueId, hardTimeout);
+    }
+
+    public DesiredFlow(ApplicationMatch match, String egressConnector, long queueId, int hardTimeout) {
+        this.match = match;
+        this.egressConnector = egressConnector;
+        this.queueId = queueId;
+        this.hardTimeout = hardTimeout;
+        this.matchKey = match.getKey();
+    }
+
+    public ApplicationMatch getMatch() {
+        return match;
+    }
+
+    public String getSrcAddress() {
+        return match.getSrcAddress();
+    }
+
+    public String getDstAddress() {
+        return match.getDstAddress();
+    }
+
+    public String getEgressConnector() {
+        return egressConnector;
+    }
+
+    /**
+     * Returns the port number the flow outputs to, as it appears in the flow's actions.
+     */
+    public String getEgressPort() {
+        return FlowTemplateCompiler.portOf(egressConnector);
+    }
+
+    public long getQueueId() {
+        return queueId;
+    }
+
+    public int getHardTimeout() {
+        return hardTimeout;
+    }
+
+    public String getMatchKey() {
+        return matchKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof DesiredFlow)) {
+            return false;
+        }
+        DesiredFlow that = (DesiredFlow) o;
+        return queueId == that.queueId && hardTimeout == that.hardTimeout && matchKey.equals(that.matchKey)
+                && egressConnector.equals(that.egressConnector);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * matchKey.hashCode() + egressConnector.hashCode()) + Long.hashCode(queueId))
+                + hardTimeout;
+    }
+
+    @Override
+    public String toString() {
+        return "DesiredFlow [" + matchKey + ", egress=" + egressConnector + ", queue=" + queueId
+                + ", hardTimeout=" + hardTimeout + "]";
+    }
+}
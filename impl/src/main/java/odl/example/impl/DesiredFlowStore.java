@@ -0,0 +1,598 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.DataObjectModification;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeListener;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeIdentifier;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeModification;
+import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
+import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.ApplicationRegistry;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.DesiredFlows;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntry;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntryKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.desired.flows.ApplicationFlows;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.desired.flows.ApplicationFlowsBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.desired.flows.ApplicationFlowsKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.desired.flows.application.flows.SwitchFlow;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.desired.flows.application.flows.SwitchFlowBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.desired.flows.application.flows.SwitchFlowKey;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * The application flows that should be on every switch.
+ *
+ * Applications record their flows when their path is planned, and lose them when they
+ * are deleted from the application registry. Flows recorded by a setup are pending until
+ * it {@link #commitApplication commits} them; a failed setup
+ * {@link #rollbackApplication rolls back} to the flows the application had before. The flows of an application all have its
+ * {@link ApplicationMatch}, and an application cannot record flows with the match of
+ * another. Only flows shared by other members may still want the same flow entry of a
+ * switch, the one recorded last is kept until it is withdrawn.
+ *
+ * The flows are also written to the operational desired-flows container, with the ports
+ * the bandwidth of the application is reserved on. In a cluster the member adding an
+ * application only programs the switches it owns, so every member applies the flows other
+ * members write there and reconciles the switches it owns whose flows changed. It also
+ * reserves the bandwidth the other members reserved in its own {@link BandwidthLedger},
+ * so no member admits applications against capacity another one gave away. A restarted
+ * member rebuilds its flows and reservations from there, and until it has the store is not
+ * {@link #isLoaded() loaded}: a switch reconciled against it would lose all its flows.
+ */
+public class DesiredFlowStore implements DataTreeChangeListener<ApplicationRegistryEntry> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DesiredFlowStore.class);
+    private static final DesiredFlowStore instance = new DesiredFlowStore();
+
+    // switch -> match key -> the flows wanted for the entry, by application
+    private final Map<String, Map<String, LinkedHashMap<Integer, DesiredFlow>>> flowsBySwitch = new HashMap<>();
+    // application -> switch -> its flow there
+    private final Map<Integer, Map<String, DesiredFlow>> flowsByApplication = new HashMap<>();
+    // match key -> the application recording flows with it last
+    private final Map<String, Integer> applicationsByMatch = new HashMap<>();
+    // application -> its flows before the pending ones, null if it had none
+    private final Map<Integer, Map<String, DesiredFlow>> replacedFlows = new HashMap<>();
+    private ListenerRegistration<DesiredFlowStore> registration;
+    private ListenerRegistration<SharedFlowsListener> sharedRegistration;
+    private DataBroker db;
+    private Planner planner;
+    private boolean loading;
+    private volatile boolean loaded;
+
+    protected DesiredFlowStore() {
+
+    }
+
+    public static DesiredFlowStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * Plans the flows of registered applications that have none to load.
+     */
+    public interface Planner {
+        void plan(List<ApplicationRegistryEntry> entries);
+    }
+
+    /**
+     * Listens to the registry and the desired-flows container, and starts loading the
+     * flows written before a restart.
+     */
+    public void init(DataBroker db, Planner planner) {
+        synchronized(this) {
+            if(registration != null) {
+                return;
+            }
+            this.db = db;
+            this.planner = planner;
+            InstanceIdentifier<ApplicationRegistryEntry> entriesIid = InstanceIdentifier.create(ApplicationRegistry.class)
+                    .child(ApplicationRegistryEntry.class);
+            registration = db.registerDataTreeChangeListener(
+                    new DataTreeIdentifier<>(LogicalDatastoreType.OPERATIONAL, entriesIid), this);
+            InstanceIdentifier<ApplicationFlows> sharedIid = InstanceIdentifier.create(DesiredFlows.class)
+                    .child(ApplicationFlows.class);
+            sharedRegistration = db.registerDataTreeChangeListener(
+                    new DataTreeIdentifier<>(LogicalDatastoreType.OPERATIONAL, sharedIid), new SharedFlowsListener());
+        }
+        load();
+    }
+
+    public synchronized void close() {
+        loaded = false;
+        if(registration != null) {
+            registration.close();
+            registration = null;
+        }
+        if(sharedRegistration != null) {
+            sharedRegistration.close();
+            sharedRegistration = null;
+        }
+    }
+
+    /**
+     * Returns whether the flows written before a restart have been loaded.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Rebuilds the flows of the registered applications from the desired-flows container
+     * and reserves their bandwidth again, unless the store is loaded or loading already.
+     * Registered applications without flows there are handed to the {@link Planner}, flows
+     * of applications no longer registered are deleted. If reading fails the store stays
+     * unloaded and the next call tries again.
+     */
+    public void load() {
+        final ReadOnlyTransaction transaction;
+        synchronized(this) {
+            if(loaded || loading || db == null) {
+                return;
+            }
+            loading = true;
+            transaction = db.newReadOnlyTransaction();
+        }
+        final ListenableFuture<Optional<ApplicationRegistry>> registry = transaction.read(
+                LogicalDatastoreType.OPERATIONAL, InstanceIdentifier.create(ApplicationRegistry.class));
+        final ListenableFuture<Optional<DesiredFlows>> shared = transaction.read(
+                LogicalDatastoreType.OPERATIONAL, InstanceIdentifier.create(DesiredFlows.class));
+        Futures.addCallback(Futures.<Optional<?>>allAsList(registry, shared), new FutureCallback<List<Optional<?>>>() {
+            @Override
+            public void onSuccess(List<Optional<?>> ignored) {
+                transaction.close();
+                restore(Futures.getUnchecked(registry), Futures.getUnchecked(shared));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                transaction.close();
+                synchronized(DesiredFlowStore.this) {
+                    loading = false;
+                }
+                LOG.warn("Loading the desired flows failed, no flows are removed until it succeeds:", t);
+            }
+        });
+    }
+
+    private void restore(Optional<ApplicationRegistry> registry, Optional<DesiredFlows> shared) {
+        Map<Integer, ApplicationFlows> flowsById = new HashMap<>();
+        if(shared.isPresent() && shared.get().getApplicationFlows() != null) {
+            for(ApplicationFlows flows : shared.get().getApplicationFlows()) {
+                flowsById.put(flows.getAppId(), flows);
+            }
+        }
+        List<ApplicationRegistryEntry> unplanned = new ArrayList<>();
+        if(registry.isPresent() && registry.get().getApplicationRegistryEntry() != null) {
+            for(ApplicationRegistryEntry entry : registry.get().getApplicationRegistryEntry()) {
+                ApplicationFlows flows = flowsById.remove(entry.getAppId());
+                if(flows == null) {
+                    unplanned.add(entry);
+                    continue;
+                }
+                synchronized(this) {
+                    // flows set since the read are newer
+                    if(!flowsByApplication.containsKey(entry.getAppId())) {
+                        applyLocked(entry.getAppId(), toDesiredFlows(flows));
+                    }
+                }
+                reserve(entry, flows.getReservedTp());
+            }
+        }
+        for(Integer appId : flowsById.keySet()) {
+            WriteTransaction transaction = db.newWriteOnlyTransaction();
+            transaction.delete(LogicalDatastoreType.OPERATIONAL, getSharedIid(appId));
+            Futures.addCallback(transaction.submit(), new LoggingFuturesCallBack<Void>(
+                    "Failed to delete the flows of unregistered application " + appId, LOG));
+        }
+        LOG.info("Loaded the desired flows of {} applications, {} to plan again", getApplicationCount(),
+                unplanned.size());
+        if(!unplanned.isEmpty() && planner != null) {
+            planner.plan(unplanned);
+        }
+        synchronized(this) {
+            loading = false;
+            loaded = true;
+        }
+        FlowReconciler.getInstance().requestReconcileAll();
+    }
+
+    private static void reserve(ApplicationRegistryEntry entry, List<String> egressTps) {
+        MultipathEngine engine = MultipathEngine.getInstance();
+        if(egressTps == null || egressTps.isEmpty() || engine.getEgressTps(entry.getAppId()) != null) {
+            return;
+        }
+        if(!engine.restore(entry.getAppId(), egressTps, QosRequirement.fromEntry(entry).getBandwidth())) {
+            LOG.warn("Ports {} no longer have the bandwidth of application {}", egressTps, entry.getAppId());
+        }
+    }
+
+    @Override
+    public void onDataTreeChanged(Collection<DataTreeModification<ApplicationRegistryEntry>> changes) {
+        for(DataTreeModification<ApplicationRegistryEntry> change : changes) {
+            if(change.getRootNode().getModificationType() != DataObjectModification.ModificationType.DELETE) {
+                continue;
+            }
+            ApplicationRegistryEntryKey key = change.getRootPath().getRootIdentifier()
+                    .firstKeyOf(ApplicationRegistryEntry.class);
+            if(key != null && key.getAppId() != null) {
+                // every member sees the deletion, deleting the flows twice is harmless
+                removeApplication(key.getAppId());
+                MultipathEngine.getInstance().release(key.getAppId());
+            }
+        }
+    }
+
+    /**
+     * Replaces the flows of the application with the given flow per switch, pending until
+     * they are committed, and writes them to the desired-flows container. Fails if another
+     * application has flows with the same match.
+     */
+    public void setApplication(int appId, Map<String, DesiredFlow> flows) throws ApplicationSetupException {
+        stageApplication(appId, flows);
+        write(appId, flows);
+    }
+
+    /**
+     * Like {@link #setApplication}, but leaves writing the flows to
+     * {@link #writeApplications}, so that those of many applications are written together.
+     */
+    public synchronized void stageApplication(int appId, Map<String, DesiredFlow> flows)
+            throws ApplicationSetupException {
+        for(DesiredFlow flow : flows.values()) {
+            Integer holder = applicationsByMatch.get(flow.getMatchKey());
+            if(holder != null && holder != appId) {
+                throw new ApplicationSetupException(ApplicationSetupException.RESOURCE_DENIED,
+                        "Application " + holder + " already has the match " + flow.getMatch());
+            }
+        }
+        if(!replacedFlows.containsKey(appId)) {
+            replacedFlows.put(appId, flowsByApplication.get(appId));
+        }
+        applyLocked(appId, flows);
+    }
+
+    /**
+     * Writes the flows of the applications to the desired-flows container in one
+     * transaction. Applications without flows are skipped.
+     */
+    public void writeApplications(Collection<Integer> appIds) {
+        if(db == null || appIds.isEmpty()) {
+            return;
+        }
+        List<ApplicationFlows> written = new ArrayList<>(appIds.size());
+        synchronized(this) {
+            for(Integer appId : appIds) {
+                Map<String, DesiredFlow> flows = flowsByApplication.get(appId);
+                if(flows != null) {
+                    written.add(toApplicationFlows(appId, flows));
+                }
+            }
+        }
+        if(written.isEmpty()) {
+            return;
+        }
+        WriteTransaction transaction = db.newWriteOnlyTransaction();
+        for(ApplicationFlows applicationFlows : written) {
+            transaction.put(LogicalDatastoreType.OPERATIONAL, getSharedIid(applicationFlows.getAppId()),
+                    applicationFlows);
+        }
+        Futures.addCallback(transaction.submit(), new LoggingFuturesCallBack<Void>(
+                "Failed to write the flows of " + written.size() + " applications", LOG));
+    }
+
+    /**
+     * Makes the pending flows of the application its flows, and reconciles the switches
+     * only the flows they replace were on. Does nothing if none are pending.
+     */
+    public void commitApplication(int appId) {
+        Set<String> switches = new HashSet<>();
+        synchronized(this) {
+            if(!replacedFlows.containsKey(appId)) {
+                return;
+            }
+            Map<String, DesiredFlow> replaced = replacedFlows.remove(appId);
+            Map<String, DesiredFlow> flows = flowsByApplication.get(appId);
+            if(replaced != null) {
+                switches.addAll(replaced.keySet());
+            }
+            if(flows != null) {
+                switches.removeAll(flows.keySet());
+            }
+        }
+        for(String switchId : switches) {
+            FlowReconciler.getInstance().requestReconcile(switchId);
+        }
+    }
+
+    /**
+     * Withdraws the pending flows of the application, gives it back the flows they
+     * replaced and reconciles the switches that changed. Does nothing if none are pending.
+     */
+    public void rollbackApplication(int appId) {
+        Map<String, DesiredFlow> replaced;
+        Set<String> switches;
+        synchronized(this) {
+            if(!replacedFlows.containsKey(appId)) {
+                return;
+            }
+            replaced = replacedFlows.remove(appId);
+            switches = replaced == null ? removeLocked(appId) : applyLocked(appId, replaced);
+        }
+        if(switches.isEmpty()) {
+            return;
+        }
+        LOG.debug("Rolled back the desired flows of application {}", appId);
+        if(replaced == null) {
+            delete(appId);
+        } else {
+            write(appId, replaced);
+        }
+        for(String switchId : switches) {
+            FlowReconciler.getInstance().requestReconcile(switchId);
+        }
+    }
+
+    private void write(int appId, Map<String, DesiredFlow> flows) {
+        if(db != null) {
+            WriteTransaction transaction = db.newWriteOnlyTransaction();
+            transaction.put(LogicalDatastoreType.OPERATIONAL, getSharedIid(appId), toApplicationFlows(appId, flows));
+            Futures.addCallback(transaction.submit(), new LoggingFuturesCallBack<Void>(
+                    "Failed to write the flows of application " + appId, LOG));
+        }
+    }
+
+    private void delete(int appId) {
+        if(db != null) {
+            WriteTransaction transaction = db.newWriteOnlyTransaction();
+            transaction.delete(LogicalDatastoreType.OPERATIONAL, getSharedIid(appId));
+            Futures.addCallback(transaction.submit(), new LoggingFuturesCallBack<Void>(
+                    "Failed to delete the flows of application " + appId, LOG));
+        }
+    }
+
+    /**
+     * Replaces the flows of the application and returns the switches whose flows changed.
+     */
+    private Set<String> applyLocked(int appId, Map<String, DesiredFlow> flows) {
+        Map<String, DesiredFlow> previous = flowsByApplication.get(appId);
+        if(flows.equals(previous)) {
+            return Collections.emptySet();
+        }
+        Set<String> changed = removeLocked(appId);
+        changed.addAll(flows.keySet());
+        flowsByApplication.put(appId, new HashMap<>(flows));
+        for(Map.Entry<String, DesiredFlow> flow : flows.entrySet()) {
+            Map<String, LinkedHashMap<Integer, DesiredFlow>> switchFlows = flowsBySwitch.get(flow.getKey());
+            if(switchFlows == null) {
+                switchFlows = new HashMap<>();
+                flowsBySwitch.put(flow.getKey(), switchFlows);
+            }
+            LinkedHashMap<Integer, DesiredFlow> wanted = switchFlows.get(flow.getValue().getMatchKey());
+            if(wanted == null) {
+                wanted = new LinkedHashMap<>();
+                switchFlows.put(flow.getValue().getMatchKey(), wanted);
+            }
+            wanted.put(appId, flow.getValue());
+            applicationsByMatch.put(flow.getValue().getMatchKey(), appId);
+        }
+        return changed;
+    }
+
+    /**
+     * Withdraws the flows of the application, pending or not, deletes them from the
+     * desired-flows container and reconciles the switches they were on, so flows already
+     * installed are removed.
+     */
+    public void removeApplication(int appId) {
+        Set<String> switches;
+        synchronized(this) {
+            Map<String, DesiredFlow> replaced = replacedFlows.remove(appId);
+            switches = removeLocked(appId);
+            if(replaced != null) {
+                switches.addAll(replaced.keySet());
+            }
+        }
+        if(switches.isEmpty()) {
+            return;
+        }
+        LOG.debug("Withdrew the desired flows of application {}", appId);
+        delete(appId);
+        for(String switchId : switches) {
+            FlowReconciler.getInstance().requestReconcile(switchId);
+        }
+    }
+
+    /**
+     * Withdraws the flows of the application and returns the switches they were on.
+     */
+    private Set<String> removeLocked(int appId) {
+        Map<String, DesiredFlow> flows = flowsByApplication.remove(appId);
+        if(flows == null) {
+            return new HashSet<>();
+        }
+        for(Map.Entry<String, DesiredFlow> flow : flows.entrySet()) {
+            Map<String, LinkedHashMap<Integer, DesiredFlow>> switchFlows = flowsBySwitch.get(flow.getKey());
+            LinkedHashMap<Integer, DesiredFlow> wanted = switchFlows.get(flow.getValue().getMatchKey());
+            wanted.remove(appId);
+            String matchKey = flow.getValue().getMatchKey();
+            if(Integer.valueOf(appId).equals(applicationsByMatch.get(matchKey))) {
+                applicationsByMatch.remove(matchKey);
+            }
+            if(wanted.isEmpty()) {
+                switchFlows.remove(flow.getValue().getMatchKey());
+                if(switchFlows.isEmpty()) {
+                    flowsBySwitch.remove(flow.getKey());
+                }
+            }
+        }
+        return new HashSet<>(flows.keySet());
+    }
+
+    /**
+     * Returns the flows that should be on the switch by match key.
+     */
+    public synchronized Map<String, DesiredFlow> getFlows(String switchId) {
+        Map<String, LinkedHashMap<Integer, DesiredFlow>> switchFlows = flowsBySwitch.get(switchId);
+        Map<String, DesiredFlow> flows = new HashMap<>();
+        if(switchFlows == null) {
+            return flows;
+        }
+        for(Map.Entry<String, LinkedHashMap<Integer, DesiredFlow>> wanted : switchFlows.entrySet()) {
+            flows.put(wanted.getKey(), lastOf(wanted.getValue()));
+        }
+        return flows;
+    }
+
+    /**
+     * Returns the flow that should be in the entry of the switch with the match key, or
+     * null if there is none.
+     */
+    public synchronized DesiredFlow getFlow(String switchId, String matchKey) {
+        Map<String, LinkedHashMap<Integer, DesiredFlow>> switchFlows = flowsBySwitch.get(switchId);
+        LinkedHashMap<Integer, DesiredFlow> wanted = switchFlows == null ? null : switchFlows.get(matchKey);
+        return wanted == null ? null : lastOf(wanted);
+    }
+
+    private static DesiredFlow lastOf(LinkedHashMap<Integer, DesiredFlow> wanted) {
+        DesiredFlow last = null;
+        for(DesiredFlow flow : wanted.values()) {
+            last = flow;
+        }
+        return last;
+    }
+
+    /**
+     * Returns the application with flows of the match, or null if there is none.
+     */
+    public synchronized Integer getApplication(ApplicationMatch match) {
+        return applicationsByMatch.get(match.getKey());
+    }
+
+    public synchronized Set<String> getSwitches() {
+        return new HashSet<>(flowsBySwitch.keySet());
+    }
+
+    public synchronized int getApplicationCount() {
+        return flowsByApplication.size();
+    }
+
+    static InstanceIdentifier<ApplicationFlows> getSharedIid(int appId) {
+        return InstanceIdentifier.create(DesiredFlows.class)
+                .child(ApplicationFlows.class, new ApplicationFlowsKey(appId));
+    }
+
+    private static ApplicationFlows toApplicationFlows(int appId, Map<String, DesiredFlow> flows) {
+        List<SwitchFlow> switchFlows = new ArrayList<>(flows.size());
+        for(Map.Entry<String, DesiredFlow> flow : flows.entrySet()) {
+            switchFlows.add(new SwitchFlowBuilder()
+                    .setKey(new SwitchFlowKey(flow.getKey()))
+                    .setSwitchId(flow.getKey())
+                    .setSrcAddress(flow.getValue().getSrcAddress())
+                    .setDstAddress(flow.getValue().getDstAddress())
+                    .setIpProtocol(flow.getValue().getMatch().getIpProtocol())
+                    .setDstPort(flow.getValue().getMatch().getDstPort())
+                    .setEgressConnector(flow.getValue().getEgressConnector())
+                    .setQueueId(flow.getValue().getQueueId())
+                    .setHardTimeout(flow.getValue().getHardTimeout())
+                    .build());
+        }
+        return new ApplicationFlowsBuilder()
+                .setKey(new ApplicationFlowsKey(appId))
+                .setAppId(appId)
+                .setReservedTp(MultipathEngine.getInstance().getEgressTps(appId))
+                .setBandwidth(BigDecimal.valueOf(MultipathEngine.getInstance().getBandwidth(appId)))
+                .setSwitchFlow(switchFlows)
+                .build();
+    }
+
+    private static Map<String, DesiredFlow> toDesiredFlows(ApplicationFlows applicationFlows) {
+        Map<String, DesiredFlow> flows = new LinkedHashMap<>();
+        if(applicationFlows.getSwitchFlow() == null) {
+            return flows;
+        }
+        for(SwitchFlow flow : applicationFlows.getSwitchFlow()) {
+            ApplicationMatch match = new ApplicationMatch(flow.getSrcAddress(), flow.getDstAddress(),
+                    flow.getIpProtocol(), flow.getDstPort());
+            flows.put(flow.getSwitchId(), new DesiredFlow(match, flow.getEgressConnector(), flow.getQueueId(),
+                    flow.getHardTimeout() == null ? FlowTemplateCompiler.HARD_TIMEOUT : flow.getHardTimeout()));
+        }
+        return flows;
+    }
+
+    /**
+     * Applies the flows of the application shared in the desired-flows container, or
+     * withdraws them if it has none, and does the same with its reservation. Returns the
+     * switches whose flows changed. The writes of this member change nothing when they
+     * come back.
+     */
+    Set<String> applyShared(int appId, ApplicationFlows flows) {
+        Set<String> changed;
+        synchronized(this) {
+            changed = flows == null ? removeLocked(appId) : applyLocked(appId, toDesiredFlows(flows));
+        }
+        MultipathEngine engine = MultipathEngine.getInstance();
+        if(flows == null) {
+            engine.release(appId);
+            return changed;
+        }
+        List<String> egressTps = flows.getReservedTp();
+        if(egressTps != null && !egressTps.isEmpty() && !egressTps.equals(engine.getEgressTps(appId))) {
+            double bandwidth = flows.getBandwidth() == null ? 0 : flows.getBandwidth().doubleValue();
+            if(!engine.restore(appId, egressTps, bandwidth)) {
+                LOG.warn("Ports {} do not have the bandwidth another member reserved for application {}",
+                        egressTps, appId);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Applies the flows and reservations other members share and reconciles the owned
+     * switches they change.
+     */
+    private final class SharedFlowsListener implements DataTreeChangeListener<ApplicationFlows> {
+        @Override
+        public void onDataTreeChanged(Collection<DataTreeModification<ApplicationFlows>> changes) {
+            Set<String> changed = new HashSet<>();
+            for(DataTreeModification<ApplicationFlows> change : changes) {
+                ApplicationFlowsKey key = change.getRootPath().getRootIdentifier()
+                        .firstKeyOf(ApplicationFlows.class);
+                if(key == null || key.getAppId() == null) {
+                    continue;
+                }
+                changed.addAll(applyShared(key.getAppId(), change.getRootNode().getDataAfter()));
+            }
+            for(String switchId : changed) {
+                FlowReconciler.getInstance().requestReconcile(switchId);
+            }
+        }
+    }
+}
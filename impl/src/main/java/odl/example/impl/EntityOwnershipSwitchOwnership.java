@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.controller.md.sal.common.api.clustering.CandidateAlreadyRegisteredException;
+import org.opendaylight.controller.md.sal.common.api.clustering.Entity;
+import org.opendaylight.controller.md.sal.common.api.clustering.EntityOwnershipCandidateRegistration;
+import org.opendaylight.controller.md.sal.common.api.clustering.EntityOwnershipChange;
+import org.opendaylight.controller.md.sal.common.api.clustering.EntityOwnershipListener;
+import org.opendaylight.controller.md.sal.common.api.clustering.EntityOwnershipListenerRegistration;
+import org.opendaylight.controller.md.sal.common.api.clustering.EntityOwnershipService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+
+/**
+ * Switch ownership decided by the entity ownership service of the cluster, with one
+ * entity per switch.
+ */
+public class EntityOwnershipSwitchOwnership implements SwitchOwnership, EntityOwnershipListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EntityOwnershipSwitchOwnership.class);
+    public static final String ENTITY_TYPE = "odlexample-switch";
+
+    private final EntityOwnershipService ownershipService;
+    private final EntityOwnershipListenerRegistration listenerRegistration;
+    private final ConcurrentMap<Entity, String> switchIds = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, EntityOwnershipCandidateRegistration> candidates = new ConcurrentHashMap<>();
+    private final Set<String> owned = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public EntityOwnershipSwitchOwnership(EntityOwnershipService ownershipService) {
+        this.ownershipService = ownershipService;
+        this.listenerRegistration = ownershipService.registerListener(ENTITY_TYPE, this);
+    }
+
+    @Override
+    public void registerCandidate(String switchId) {
+        Entity entity = new Entity(ENTITY_TYPE, switchId);
+        if(switchIds.putIfAbsent(entity, switchId) != null) {
+            return;
+        }
+        try {
+            candidates.put(switchId, ownershipService.registerCandidate(entity));
+        } catch(CandidateAlreadyRegisteredException e) {
+            LOG.debug("Already candidate for switch {}", switchId);
+        }
+    }
+
+    @Override
+    public void unregisterCandidate(String switchId) {
+        switchIds.remove(new Entity(ENTITY_TYPE, switchId));
+        EntityOwnershipCandidateRegistration registration = candidates.remove(switchId);
+        if(registration != null) {
+            registration.close();
+        }
+        if(owned.remove(switchId)) {
+            notifyListeners(switchId, false);
+        }
+    }
+
+    @Override
+    public boolean isOwner(String switchId) {
+        return owned.contains(switchId);
+    }
+
+    /**
+     * Always true, the service does not tell whether other members are up.
+     */
+    @Override
+    public boolean isClustered() {
+        return true;
+    }
+
+    @Override
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void ownershipChanged(EntityOwnershipChange ownershipChange) {
+        String switchId = switchIds.get(ownershipChange.getEntity());
+        if(switchId == null) {
+            // another member's switch, or one we withdrew from
+            return;
+        }
+        boolean changed = ownershipChange.isOwner() ? owned.add(switchId) : owned.remove(switchId);
+        if(changed) {
+            LOG.debug("{} ownership of switch {}", ownershipChange.isOwner() ? "Gained" : "Lost", switchId);
+            notifyListeners(switchId, ownershipChange.isOwner());
+        }
+    }
+
+    private void notifyListeners(String switchId, boolean isOwner) {
+        for(Listener listener : listeners) {
+            listener.ownershipChanged(switchId, isOwner);
+        }
+    }
+
+    @Override
+    public void close() {
+        listenerRegistration.close();
+        for(EntityOwnershipCandidateRegistration registration : candidates.values()) {
+            registration.close();
+        }
+        candidates.clear();
+        switchIds.clear();
+        owned.clear();
+    }
+}
@@ -7,41 +7,735 @@
  */
 package odl.example.impl;
 
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.FutureFallback;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowOutput;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.*;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.add.applications.input.Application;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.add.applications.output.ApplicationStatus;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.add.applications.output.ApplicationStatusBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntry;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.get.port.history.output.LossBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.get.port.history.output.RxBitRateBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.get.port.history.output.Sample;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.get.port.history.output.SampleBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.get.port.history.output.TxBitRateBuilder;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+import org.opendaylight.yangtools.yang.common.RpcError.ErrorType;
 import org.opendaylight.yangtools.yang.common.RpcResult;
 import org.opendaylight.yangtools.yang.common.RpcResultBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 
 /**
  * Created by geopet on 26/5/2016.
  */
-public class ExampleImpl implements OdlexampleService {
+public class ExampleImpl implements OdlexampleService, DesiredFlowStore.Planner {
 
     private static final Logger LOG = LoggerFactory.getLogger(ExampleProvider.class);
+    private static final long DEFAULT_HISTORY_RANGE = TimeUnit.HOURS.toMillis(1);
+    private static final int DEFAULT_HISTORY_SAMPLES = 1000;
     private DataBroker db;
+    private final AdmissionQueue admissionQueue;
 
     public ExampleImpl(DataBroker db) {
+        this(db, new AdmissionQueue(AdmissionQueue.DEFAULT_CAPACITY, AdmissionQueue.DEFAULT_MAX_IN_FLIGHT,
+                MetricsRegistry.getInstance().getAdmissionWait()));
+    }
+
+    ExampleImpl(DataBroker db, AdmissionQueue admissionQueue) {
         this.db = db;
+        this.admissionQueue = admissionQueue;
+    }
+
+    /**
+     * Sets the application up once the {@link AdmissionQueue} admits it, with the priority
+     * of its QoS. The reported latency includes the wait in the queue.
+     */
+    @Override
+    public Future<RpcResult<Void>> addApplication(final AddApplicationInput input) {
+        LOG.debug("Adding application {}", input);
+        final OperationMetrics metrics = MetricsRegistry.getInstance().getAddApplication();
+        final long start = metrics.start();
+        final QosRequirement qos = QosRequirement.fromInput(input);
+        ListenableFuture<RpcResult<Void>> result = admissionQueue.submit(input.getTenantId(),
+                AdmissionQueue.Priority.of(qos), new Callable<ListenableFuture<RpcResult<Void>>>() {
+                    @Override
+                    public ListenableFuture<RpcResult<Void>> call() {
+                        return setUpApplication(input, qos, metrics, start);
+                    }
+                });
+        return Futures.withFallback(result, new FutureFallback<RpcResult<Void>>() {
+            @Override
+            public ListenableFuture<RpcResult<Void>> create(Throwable t) {
+                metrics.stop(start, false);
+                return Futures.immediateFuture(ExampleImpl.<Void>toFailedResult("application " + input.getAppId(), t));
+            }
+        });
+    }
+
+    /**
+     * Resolves the host addresses, computes a path meeting its QoS, installs the flows
+     * along it and registers the application, as a chain of futures. No step blocks the
+     * calling thread, and the result only reports success once the application is
+     * registered. The application is only registered once it has a path and its flows
+     * are installed, and only then is the new path and flows {@link #commit committed}. A
+     * failed setup is {@link #abandon abandoned}: an application set up again keeps the
+     * path, flows and registry entry it had, a new one keeps nothing.
+     */
+    private ListenableFuture<RpcResult<Void>> setUpApplication(final AddApplicationInput input,
+                                                               final QosRequirement qos,
+                                                               final OperationMetrics metrics, final long start) {
+        final NodeMonitor monitor = new NodeMonitor(db);
+
+        ListenableFuture<PathHop> installed;
+        try {
+            installed = installFlows(input.getAppId(), ApplicationMatch.fromInput(input), qos,
+                    hardTimeoutOf(input.getFlowHardTimeout()));
+        } catch(ApplicationSetupException e) {
+            installed = Futures.immediateFailedFuture(e);
+        }
+        ListenableFuture<PathHop> registered = Futures.transform(installed,
+                new AsyncFunction<PathHop, PathHop>() {
+                    @Override
+                    public ListenableFuture<PathHop> apply(PathHop lastHop) {
+                        return Futures.transform(ApplicationRegistryUtils.getInstance()
+                                .writeToApplicationRegistry(input), Functions.constant(lastHop));
+                    }
+                });
+        ListenableFuture<RpcResult<Void>> result = Futures.transform(registered,
+                new Function<PathHop, RpcResult<Void>>() {
+                    @Override
+                    public RpcResult<Void> apply(PathHop lastHop) {
+                        commit(input.getAppId());
+                        // statistics baseline of the port the application traffic leaves from
+                        PortRates baseline = monitor.measureNodeStatistics(lastHop.getSwitchId(),
+                                lastHop.getEgressConnector());
+                        LOG.debug("Application {} installed, egress port baseline {}", input.getAppId(), baseline);
+                        metrics.stop(start, true);
+                        return RpcResultBuilder.<Void>success().build();
+                    }
+                });
+        return Futures.withFallback(result, new FutureFallback<RpcResult<Void>>() {
+            @Override
+            public ListenableFuture<RpcResult<Void>> create(Throwable t) {
+                abandon(input.getAppId());
+                return Futures.immediateFailedFuture(t);
+            }
+        });
+    }
+
+    /**
+     * Makes the path and flows a setup of the application planned its own, releasing those
+     * they replace.
+     */
+    static void commit(Integer appId) {
+        MultipathEngine.getInstance().commit(appId);
+        DesiredFlowStore.getInstance().commitApplication(appId);
+    }
+
+    /**
+     * Undoes only what a failed setup of the application did: gives back the bandwidth of
+     * the path it reserved and withdraws the flows it recorded, so reconciliation removes
+     * those installed. The path and flows the application had before are restored, and
+     * the registry is not touched, as a setup only writes it once it succeeded.
+     */
+    static void abandon(Integer appId) {
+        MultipathEngine.getInstance().rollback(appId);
+        DesiredFlowStore.getInstance().rollbackApplication(appId);
+    }
+
+    /**
+     * Submits every application to the {@link AdmissionQueue} like {@link #addApplication},
+     * with its own tenant and priority, and reports one turned away as failed. The
+     * applications admitted during the call are set up together by {@link #setUpAll}, so
+     * their flows are grouped per switch and they are registered with one transaction.
+     * Applications admitted later, once others completed, are set up on their own. An
+     * application given more than once is only set up the first time. The output holds
+     * the outcome of every application.
+     */
+    @Override
+    public Future<RpcResult<AddApplicationsOutput>> addApplications(AddApplicationsInput input) {
+        List<Application> applications = input.getApplication() == null
+                ? Collections.<Application>emptyList() : input.getApplication();
+        LOG.info("Adding {} applications", applications.size());
+        AdmittedBatch batch = new AdmittedBatch();
+        List<ListenableFuture<ApplicationStatus>> statuses = new ArrayList<>(applications.size());
+        Set<Integer> appIds = new HashSet<>();
+        for(Application application : applications) {
+            if(!appIds.add(application.getAppId())) {
+                // failing it must not roll back the setup of the first one
+                statuses.add(Futures.immediateFuture(failedStatus(application.getAppId(),
+                        new ApplicationSetupException(ApplicationSetupException.INVALID_VALUE,
+                                "Application " + application.getAppId() + " is given more than once"))));
+                continue;
+            }
+            final ApplicationRegistryEntry entry =
+                    ApplicationRegistryUtils.toEntry(application.getAppId(), application);
+            ListenableFuture<ApplicationStatus> status = admissionQueue.submit(application.getTenantId(),
+                    AdmissionQueue.Priority.of(QosRequirement.fromEntry(entry)), batch.admit(entry));
+            statuses.add(Futures.withFallback(status, new FutureFallback<ApplicationStatus>() {
+                @Override
+                public ListenableFuture<ApplicationStatus> create(Throwable t) {
+                    return Futures.immediateFuture(failedStatus(entry.getAppId(), t));
+                }
+            }));
+        }
+        batch.close();
+        return Futures.transform(Futures.allAsList(statuses),
+                new Function<List<ApplicationStatus>, RpcResult<AddApplicationsOutput>>() {
+                    @Override
+                    public RpcResult<AddApplicationsOutput> apply(List<ApplicationStatus> statusList) {
+                        return RpcResultBuilder.success(new AddApplicationsOutputBuilder()
+                                .setApplicationStatus(statusList).build()).build();
+                    }
+                });
+    }
+
+    /**
+     * Installs the entries with {@link #installAll} and registers those installed with one
+     * registry transaction, then commits them; the others are abandoned. If the registry
+     * write fails, the installed ones are abandoned too and reported failed. The returned
+     * future does not fail.
+     */
+    private ListenableFuture<List<ApplicationStatus>> setUpAll(final List<ApplicationRegistryEntry> entries) {
+        return Futures.transform(installAll(entries),
+                new AsyncFunction<List<ApplicationStatus>, List<ApplicationStatus>>() {
+                    @Override
+                    public ListenableFuture<List<ApplicationStatus>> apply(final List<ApplicationStatus> statusList) {
+                        final List<ApplicationRegistryEntry> installed = new ArrayList<>(entries.size());
+                        for(int i = 0; i < entries.size(); i++) {
+                            if(statusList.get(i).getStatus() == ApplicationStatus.Status.Installed) {
+                                installed.add(entries.get(i));
+                            } else {
+                                abandon(entries.get(i).getAppId());
+                            }
+                        }
+                        if(installed.isEmpty()) {
+                            return Futures.immediateFuture(statusList);
+                        }
+                        ListenableFuture<List<ApplicationStatus>> registered = Futures.transform(
+                                ApplicationRegistryUtils.getInstance().writeAllToApplicationRegistry(installed),
+                                new Function<Void, List<ApplicationStatus>>() {
+                                    @Override
+                                    public List<ApplicationStatus> apply(Void ignored) {
+                                        for(ApplicationRegistryEntry entry : installed) {
+                                            commit(entry.getAppId());
+                                        }
+                                        return statusList;
+                                    }
+                                });
+                        return Futures.withFallback(registered, new FutureFallback<List<ApplicationStatus>>() {
+                            @Override
+                            public ListenableFuture<List<ApplicationStatus>> create(Throwable t) {
+                                List<ApplicationStatus> failed = new ArrayList<>(statusList.size());
+                                for(ApplicationStatus status : statusList) {
+                                    if(status.getStatus() == ApplicationStatus.Status.Installed) {
+                                        abandon(status.getAppId());
+                                        failed.add(failedStatus(status.getAppId(), t));
+                                    } else {
+                                        failed.add(status);
+                                    }
+                                }
+                                return Futures.immediateFuture(failed);
+                            }
+                        });
+                    }
+                });
+    }
+
+    /**
+     * Reads the samples of the port in the range from the {@link PortHistoryStore}.
+     */
+    @Override
+    public Future<RpcResult<GetPortHistoryOutput>> getPortHistory(GetPortHistoryInput input) {
+        if(input.getNodeConnectorId() == null) {
+            return Futures.immediateFuture(RpcResultBuilder.<GetPortHistoryOutput>failed().withError(
+                    ErrorType.PROTOCOL, ApplicationSetupException.DATA_MISSING, "No node connector given").build());
+        }
+        if(!PortHistoryStore.getInstance().isOpen()) {
+            return Futures.immediateFuture(RpcResultBuilder.<GetPortHistoryOutput>failed().withError(
+                    ErrorType.APPLICATION, ApplicationSetupException.OPERATION_FAILED,
+                    "The port history is not available").build());
+        }
+        long to = input.getTo() == null ? System.currentTimeMillis() : input.getTo().longValue();
+        long from = input.getFrom() == null ? to - DEFAULT_HISTORY_RANGE : input.getFrom().longValue();
+        long maxSamples = input.getMaxSamples() == null ? DEFAULT_HISTORY_SAMPLES : input.getMaxSamples();
+        PortHistory history = PortHistoryStore.getInstance().query(input.getNodeConnectorId(), from, to);
+
+        List<Sample> samples = new ArrayList<>();
+        if(maxSamples > 0) {
+            long stride = Math.max(1, (history.size() + maxSamples - 1) / maxSamples);
+            for(int i = 0; i < history.size(); i += stride) {
+                samples.add(new SampleBuilder()
+                        .setTime(BigInteger.valueOf(history.getTime(i)))
+                        .setTxBitRate(toDecimal(history.get(PortHistory.Field.TX_BIT_RATE, i)))
+                        .setRxBitRate(toDecimal(history.get(PortHistory.Field.RX_BIT_RATE, i)))
+                        .setTxPacketRate(toDecimal(history.get(PortHistory.Field.TX_PACKET_RATE, i)))
+                        .setLoss(toDecimal(history.get(PortHistory.Field.LOSS, i)))
+                        .build());
+            }
+        }
+        GetPortHistoryOutput output = new GetPortHistoryOutputBuilder()
+                .setResolutionSeconds((long) history.getResolution())
+                .setSampleCount((long) history.size())
+                .setTxBitRate(new TxBitRateBuilder()
+                        .setP50(percentile(history, PortHistory.Field.TX_BIT_RATE, 0.5))
+                        .setP95(percentile(history, PortHistory.Field.TX_BIT_RATE, 0.95))
+                        .setP99(percentile(history, PortHistory.Field.TX_BIT_RATE, 0.99))
+                        .setMax(percentile(history, PortHistory.Field.TX_BIT_RATE, 1))
+                        .build())
+                .setRxBitRate(new RxBitRateBuilder()
+                        .setP50(percentile(history, PortHistory.Field.RX_BIT_RATE, 0.5))
+                        .setP95(percentile(history, PortHistory.Field.RX_BIT_RATE, 0.95))
+                        .setP99(percentile(history, PortHistory.Field.RX_BIT_RATE, 0.99))
+                        .setMax(percentile(history, PortHistory.Field.RX_BIT_RATE, 1))
+                        .build())
+                .setLoss(new LossBuilder()
+                        .setP50(percentile(history, PortHistory.Field.LOSS, 0.5))
+                        .setP95(percentile(history, PortHistory.Field.LOSS, 0.95))
+                        .setP99(percentile(history, PortHistory.Field.LOSS, 0.99))
+                        .setMax(percentile(history, PortHistory.Field.LOSS, 1))
+                        .build())
+                .setSample(samples)
+                .build();
+        return Futures.immediateFuture(RpcResultBuilder.success(output).build());
+    }
+
+    private static BigDecimal percentile(PortHistory history, PortHistory.Field field, double quantile) {
+        return toDecimal(history.getPercentile(field, quantile));
+    }
+
+    private static BigDecimal toDecimal(double value) {
+        return BigDecimal.valueOf(value).setScale(4, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Plans the flows of every entry, writes them to the desired-flows container in one
+     * transaction, installs them grouped per switch and returns the status of every entry
+     * in input order. The cheapest paths of all entries are computed as one batch of
+     * {@link QosPathEngine#computePaths}, so entries without a feasible path are turned
+     * away before any is assigned. Only flows on switches this member owns are installed
+     * here, the owners of the others install theirs. The returned future does not fail.
+     */
+    ListenableFuture<List<ApplicationStatus>> installAll(List<ApplicationRegistryEntry> entries) {
+        List<ListenableFuture<ApplicationStatus>> statuses =
+                new ArrayList<>(Collections.<ListenableFuture<ApplicationStatus>>nCopies(entries.size(), null));
+        List<List<ListenableFuture<RpcResult<AddFlowOutput>>>> flowsByEntry = new ArrayList<>(entries.size());
+        Map<String, List<DesiredFlow>> flowsBySwitch = new LinkedHashMap<>();
+        Map<String, List<Integer>> entriesBySwitch = new LinkedHashMap<>();
+        List<Integer> recorded = new ArrayList<>(entries.size());
+
+        Hosts[] hosts = new Hosts[entries.size()];
+        List<PathDemand> demands = new ArrayList<>();
+        List<Integer> demandEntries = new ArrayList<>();
+        for(int i = 0; i < entries.size(); i++) {
+            ApplicationRegistryEntry entry = entries.get(i);
+            try {
+                hosts[i] = resolveHosts(entry.getAppId(), ApplicationMatch.fromEntry(entry));
+            } catch(ApplicationSetupException e) {
+                statuses.set(i, Futures.immediateFuture(failedStatus(entry.getAppId(), e)));
+                continue;
+            }
+            if(!hosts[i].isLocal()) {
+                demands.add(new PathDemand(hosts[i].getSourceNode(), hosts[i].getDestinationNode(),
+                        QosRequirement.fromEntry(entry)));
+                demandEntries.add(i);
+            }
+        }
+        PathResult[] cheapest = new PathResult[entries.size()];
+        if(!demands.isEmpty()) {
+            List<PathResult> paths = QosPathEngine.getInstance().computePaths(demands);
+            for(int j = 0; j < paths.size(); j++) {
+                cheapest[demandEntries.get(j)] = paths.get(j);
+            }
+        }
+
+        for(int i = 0; i < entries.size(); i++) {
+            ApplicationRegistryEntry entry = entries.get(i);
+            flowsByEntry.add(new ArrayList<ListenableFuture<RpcResult<AddFlowOutput>>>());
+            if(hosts[i] == null) {
+                continue;
+            }
+            List<PathHop> hops;
+            Map<String, DesiredFlow> desired;
+            try {
+                hops = planFlows(entry.getAppId(), hosts[i], QosRequirement.fromEntry(entry), cheapest[i]);
+                desired = recordDesiredFlows(entry.getAppId(), hosts[i].getMatch(), hops,
+                        hardTimeoutOf(entry.getFlowHardTimeout()));
+            } catch(ApplicationSetupException e) {
+                statuses.set(i, Futures.immediateFuture(failedStatus(entry.getAppId(), e)));
+                continue;
+            }
+            recorded.add(entry.getAppId());
+            for(PathHop hop : hops) {
+                if(!SwitchConfigurator.getInstance().isOwner(hop.getSwitchId())) {
+                    continue;
+                }
+                List<DesiredFlow> flows = flowsBySwitch.get(hop.getSwitchId());
+                if(flows == null) {
+                    flows = new ArrayList<>();
+                    flowsBySwitch.put(hop.getSwitchId(), flows);
+                    entriesBySwitch.put(hop.getSwitchId(), new ArrayList<Integer>());
+                }
+                flows.add(desired.get(hop.getSwitchId()));
+                entriesBySwitch.get(hop.getSwitchId()).add(i);
+            }
+        }
+
+        DesiredFlowStore.getInstance().writeApplications(recorded);
+
+        for(Map.Entry<String, List<DesiredFlow>> switchFlows : flowsBySwitch.entrySet()) {
+            List<ListenableFuture<RpcResult<AddFlowOutput>>> results =
+                    SwitchConfigurator.getInstance().sendFlows(switchFlows.getKey(), switchFlows.getValue());
+            List<Integer> owners = entriesBySwitch.get(switchFlows.getKey());
+            for(int j = 0; j < results.size(); j++) {
+                flowsByEntry.get(owners.get(j)).add(results.get(j));
+            }
+        }
+
+        for(int i = 0; i < entries.size(); i++) {
+            if(statuses.get(i) == null) {
+                statuses.set(i, toStatus(entries.get(i).getAppId(), flowsByEntry.get(i)));
+            }
+        }
+        return Futures.allAsList(statuses);
     }
 
+    private static ListenableFuture<ApplicationStatus> toStatus(final Integer appId,
+                                                                List<ListenableFuture<RpcResult<AddFlowOutput>>> flows) {
+        ApplicationStatus installed = new ApplicationStatusBuilder().setAppId(appId)
+                .setStatus(ApplicationStatus.Status.Installed).build();
+        ListenableFuture<ApplicationStatus> status = checkFlows(Futures.allAsList(flows), installed);
+        return Futures.withFallback(status, new FutureFallback<ApplicationStatus>() {
+            @Override
+            public ListenableFuture<ApplicationStatus> create(Throwable t) {
+                return Futures.immediateFuture(failedStatus(appId, t));
+            }
+        });
+    }
+
+    private static ApplicationStatus failedStatus(Integer appId, Throwable t) {
+        String tag = t instanceof ApplicationSetupException
+                ? ((ApplicationSetupException) t).getErrorTag() : ApplicationSetupException.OPERATION_FAILED;
+        LOG.debug("Adding application {} failed: {}", appId, t.getMessage());
+        return new ApplicationStatusBuilder().setAppId(appId)
+                .setStatus(ApplicationStatus.Status.Failed)
+                .setErrorTag(tag)
+                .setMessage(t.getMessage())
+                .build();
+    }
+
+    /**
+     * Plans and installs the flows of registered applications found without desired flows
+     * after a restart.
+     */
     @Override
-    public Future<RpcResult<Void>> addApplication(AddApplicationInput input) {
-        LOG.info("Adding application {}", input);
+    public void plan(final List<ApplicationRegistryEntry> entries) {
+        Futures.addCallback(installAll(entries), new FutureCallback<List<ApplicationStatus>>() {
+            @Override
+            public void onSuccess(List<ApplicationStatus> statuses) {
+                for(ApplicationStatus status : statuses) {
+                    // registered already; flows that failed to install are retried by reconciliation
+                    commit(status.getAppId());
+                    if(status.getStatus() != ApplicationStatus.Status.Installed) {
+                        LOG.warn("Restoring application {} failed: {}", status.getAppId(), status.getMessage());
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                LOG.warn("Restoring {} applications failed:", entries.size(), t);
+            }
+        });
+    }
+
+    /**
+     * Computes the path of the application and installs a flow on every hop this member
+     * owns, leaving the other hops to their owners. The returned future completes with the
+     * last hop once the flows installed here are.
+     */
+    ListenableFuture<PathHop> installFlows(Integer appId, ApplicationMatch match, QosRequirement qos,
+                                           int hardTimeout) throws ApplicationSetupException {
+        List<PathHop> hops = planFlows(appId, match, qos);
+        Map<String, DesiredFlow> desired = recordDesiredFlows(appId, match, hops, hardTimeout);
+        DesiredFlowStore.getInstance().writeApplications(Collections.singletonList(appId));
+        List<ListenableFuture<RpcResult<AddFlowOutput>>> flows = new ArrayList<>(hops.size());
+        for(PathHop hop : hops) {
+            if(SwitchConfigurator.getInstance().isOwner(hop.getSwitchId())) {
+                flows.add(SwitchConfigurator.getInstance().send(hop.getSwitchId(), desired.get(hop.getSwitchId())));
+            }
+        }
+        return checkFlows(Futures.allAsList(flows), hops.get(hops.size() - 1));
+    }
+
+    /**
+     * Records the flows of the application in the {@link DesiredFlowStore}, so they are
+     * restored by reconciliation even if installing them fails now. If another application
+     * took the match meanwhile, the path is released again. The caller writes them to the
+     * desired-flows container with {@link DesiredFlowStore#writeApplications}.
+     */
+    private static Map<String, DesiredFlow> recordDesiredFlows(Integer appId, ApplicationMatch match,
+                                                               List<PathHop> hops, int hardTimeout)
+            throws ApplicationSetupException {
+        Map<String, DesiredFlow> flows = new LinkedHashMap<>();
+        for(PathHop hop : hops) {
+            flows.put(hop.getSwitchId(), new DesiredFlow(match, hop.getEgressConnector(),
+                    SwitchConfigurator.APPLICATION_QUEUE_ID, hardTimeout));
+        }
+        try {
+            DesiredFlowStore.getInstance().stageApplication(appId, flows);
+        } catch(ApplicationSetupException e) {
+            MultipathEngine.getInstance().rollback(appId);
+            throw e;
+        }
+        return flows;
+    }
+
+    /**
+     * Returns the hard timeout of the flows of an application, the default if it sets none.
+     */
+    static int hardTimeoutOf(Integer flowHardTimeout) {
+        return flowHardTimeout == null ? FlowTemplateCompiler.HARD_TIMEOUT : flowHardTimeout;
+    }
+
+    /**
+     * Returns a future failing if any of the flows was not installed, and completing with
+     * the value otherwise.
+     */
+    private static <T> ListenableFuture<T> checkFlows(ListenableFuture<List<RpcResult<AddFlowOutput>>> flows,
+                                                      final T value) {
+        return Futures.transform(flows, new AsyncFunction<List<RpcResult<AddFlowOutput>>, T>() {
+            @Override
+            public ListenableFuture<T> apply(List<RpcResult<AddFlowOutput>> results)
+                    throws ApplicationSetupException {
+                for(RpcResult<AddFlowOutput> result : results) {
+                    if(!result.isSuccessful()) {
+                        throw new ApplicationSetupException(ApplicationSetupException.OPERATION_FAILED,
+                                "Flow installation failed: " + result.getErrors());
+                    }
+                }
+                return Futures.immediateFuture(value);
+            }
+        });
+    }
+
+    /**
+     * Resolves the hosts of the application match and assigns it one of the candidate
+     * paths. Returns the switches along it with their egress connector, ending with the
+     * switch of the destination host. Fails without assigning a path if the match is
+     * invalid or another application has it.
+     */
+    List<PathHop> planFlows(Integer appId, ApplicationMatch match, QosRequirement qos)
+            throws ApplicationSetupException {
+        return planFlows(appId, resolveHosts(appId, match), qos, null);
+    }
+
+    /**
+     * Checks the application match and resolves its hosts.
+     */
+    private static Hosts resolveHosts(Integer appId, ApplicationMatch match) throws ApplicationSetupException {
+        if(!match.isValid()) {
+            throw new ApplicationSetupException(ApplicationSetupException.INVALID_VALUE,
+                    "Application " + appId + " matches a destination port without TCP or UDP: " + match);
+        }
+        Integer holder = DesiredFlowStore.getInstance().getApplication(match);
+        if(holder != null && !holder.equals(appId)) {
+            throw new ApplicationSetupException(ApplicationSetupException.RESOURCE_DENIED,
+                    "Application " + holder + " already has the match " + match);
+        }
+        return new Hosts(match, resolve(match.getSrcAddress()), resolve(match.getDstAddress()));
+    }
+
+    /**
+     * Assigns the application a path between its hosts, given its cheapest path if it was
+     * computed in a batch, and returns the hops along it.
+     */
+    private static List<PathHop> planFlows(Integer appId, Hosts hosts, QosRequirement qos, PathResult cheapest)
+            throws ApplicationSetupException {
+        NodeId sourceNode = hosts.getSourceNode();
+        NodeId destinationNode = hosts.getDestinationNode();
+        List<PathHop> hops = new ArrayList<>();
+        String hop = sourceNode.getValue();
+        if(!hosts.isLocal()) {
+            PathResult path = MultipathEngine.getInstance().assign(appId, sourceNode, destinationNode, qos, cheapest);
+            if(!path.isFeasible()) {
+                throw new ApplicationSetupException(ApplicationSetupException.RESOURCE_DENIED,
+                        "No path from " + sourceNode.getValue() + " to " + destinationNode.getValue()
+                                + " meets the requirements of application " + appId
+                                + ": " + path.getReason());
+            }
+            for(int i = 0; i < path.getLinks().size(); i++) {
+                hops.add(new PathHop(hop, path.getEgressTps().get(i)));
+                Link link = path.getLinks().get(i);
+                hop = link.getSource().getSourceNode().getValue().equals(hop)
+                        ? link.getDestination().getDestNode().getValue()
+                        : link.getSource().getSourceNode().getValue();
+            }
+        }
+        hops.add(new PathHop(hop, hosts.getDestinationConnector()));
+        return hops;
+    }
+
+    private static AttachmentPoint resolve(String ipAddress) throws ApplicationSetupException {
+        AttachmentPoint point = AddressIndex.getInstance().lookup(ipAddress);
+        if(point == null) {
+            throw new ApplicationSetupException(ApplicationSetupException.DATA_MISSING,
+                    "Host " + ipAddress + " is not attached to any known switch");
+        }
+        return point;
+    }
+
+    static <T> RpcResult<T> toFailedResult(String what, Throwable t) {
+        String tag = ApplicationSetupException.OPERATION_FAILED;
+        String message = t.getMessage();
+        if(t instanceof AdmissionRejectedException) {
+            // expected under overload, the caller retries
+            LOG.debug("Adding {} rejected: {}", what, message);
+            return RpcResultBuilder.<T>failed().withError(ErrorType.APPLICATION,
+                    ApplicationSetupException.RESOURCE_DENIED, message, AdmissionRejectedException.RETRY_AFTER,
+                    Long.toString(((AdmissionRejectedException) t).getRetryAfterMillis()), t).build();
+        } else if(t instanceof ApplicationSetupException) {
+            tag = ((ApplicationSetupException) t).getErrorTag();
+        } else if(t instanceof TransactionCommitFailedException) {
+            message = "Failed to write application registry: " + t.getMessage();
+        }
+        LOG.warn("Adding {} failed: {}", what, message);
+        return RpcResultBuilder.<T>failed().withError(ErrorType.APPLICATION, tag, message, null, null, t).build();
+    }
+
+    /**
+     * The resolved hosts of an application match.
+     */
+    private static final class Hosts {
+        private final ApplicationMatch match;
+        private final AttachmentPoint source;
+        private final AttachmentPoint destination;
+
+        private Hosts(ApplicationMatch match, AttachmentPoint source, AttachmentPoint destination) {
+            this.match = match;
+            this.source = source;
+            this.destination = destination;
+        }
+
+        private ApplicationMatch getMatch() {
+            return match;
+        }
+
+        private NodeId getSourceNode() {
+            return new NodeId(source.getNodeId().getValue());
+        }
+
+        private NodeId getDestinationNode() {
+            return new NodeId(destination.getNodeId().getValue());
+        }
+
+        private String getDestinationConnector() {
+            return destination.getNodeConnectorId().getValue();
+        }
+
+        /**
+         * Returns whether both hosts are attached to the same switch.
+         */
+        private boolean isLocal() {
+            return getSourceNode().equals(getDestinationNode());
+        }
+    }
 
-        ApplicationRegistryUtils.getInstance().writeToApplicationRegistry(input);
+    /**
+     * The entries of one addApplications call admitted while it is still submitting
+     * them. They keep their admission slots until the call {@link #close closes} the
+     * batch and sets them up together; entries admitted after that are set up on their
+     * own, so no admitted entry waits for another to be admitted.
+     */
+    private final class AdmittedBatch {
+        private final List<ApplicationRegistryEntry> entries = new ArrayList<>();
+        private final List<SettableFuture<ApplicationStatus>> statuses = new ArrayList<>();
+        // guarded by this
+        private boolean open = true;
 
-        SwitchConfigurator.getInstance().send("openflow:1", "openflow:1:2");
+        /**
+         * Returns the work of the admission of the entry.
+         */
+        Callable<ListenableFuture<ApplicationStatus>> admit(final ApplicationRegistryEntry entry) {
+            return new Callable<ListenableFuture<ApplicationStatus>>() {
+                @Override
+                public ListenableFuture<ApplicationStatus> call() {
+                    synchronized(AdmittedBatch.this) {
+                        if(open) {
+                            SettableFuture<ApplicationStatus> status = SettableFuture.create();
+                            entries.add(entry);
+                            statuses.add(status);
+                            return status;
+                        }
+                    }
+                    return Futures.transform(setUpAll(Collections.singletonList(entry)),
+                            new Function<List<ApplicationStatus>, ApplicationStatus>() {
+                                @Override
+                                public ApplicationStatus apply(List<ApplicationStatus> statusList) {
+                                    return statusList.get(0);
+                                }
+                            });
+                }
+            };
+        }
 
-        NodeMonitor monitor = new NodeMonitor(db);
-        monitor.getNodeFromIpAddress("10.0.0.1");
-        monitor.measureNodeStatistics("openflow:1", "openflow:1:2");
+        /**
+         * Sets up the entries admitted so far together.
+         */
+        void close() {
+            synchronized(this) {
+                open = false;
+            }
+            if(entries.isEmpty()) {
+                return;
+            }
+            ListenableFuture<List<ApplicationStatus>> setUp;
+            try {
+                setUp = setUpAll(entries);
+            } catch(RuntimeException e) {
+                setUp = Futures.immediateFailedFuture(e);
+            }
+            Futures.addCallback(setUp, new FutureCallback<List<ApplicationStatus>>() {
+                @Override
+                public void onSuccess(List<ApplicationStatus> statusList) {
+                    for(int i = 0; i < statuses.size(); i++) {
+                        statuses.get(i).set(statusList.get(i));
+                    }
+                }
 
-        return Futures.immediateFuture(RpcResultBuilder.<Void>success().build());
+                @Override
+                public void onFailure(Throwable t) {
+                    for(SettableFuture<ApplicationStatus> status : statuses) {
+                        status.setException(t);
+                    }
+                }
+            });
+        }
     }
 }
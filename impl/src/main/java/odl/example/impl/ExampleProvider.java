@@ -8,6 +8,7 @@
 package odl.example.impl;
 
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.common.api.clustering.EntityOwnershipService;
 import org.opendaylight.controller.sal.binding.api.BindingAwareBroker;
 import org.opendaylight.controller.sal.binding.api.BindingAwareBroker.ProviderContext;
 import org.opendaylight.controller.sal.binding.api.BindingAwareProvider;
@@ -16,16 +17,56 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexamp
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+
 public class ExampleProvider implements BindingAwareProvider, AutoCloseable {
 
     private static final Logger LOG = LoggerFactory.getLogger(ExampleProvider.class);
     private BindingAwareBroker.RpcRegistration<OdlexampleService> exampleService;
+    private final SwitchOwnership switchOwnership;
+    private final int memberId;
+    private ForkJoinPool pathBatchPool;
+
+    /**
+     * Creates a provider programming every switch, for a controller without clustering.
+     */
+    public ExampleProvider() {
+        this(new InMemorySwitchOwnership());
+    }
+
+    /**
+     * Creates a provider programming the switches the entity ownership service assigns
+     * to this member.
+     */
+    public ExampleProvider(EntityOwnershipService ownershipService) {
+        this(ownershipService, 0);
+    }
+
+    /**
+     * Creates a provider programming the switches the entity ownership service assigns
+     * to this member, whose id sets its flow ids apart from those of the other members.
+     */
+    public ExampleProvider(EntityOwnershipService ownershipService, int memberId) {
+        this(new EntityOwnershipSwitchOwnership(ownershipService), memberId);
+    }
+
+    public ExampleProvider(SwitchOwnership switchOwnership) {
+        this(switchOwnership, 0);
+    }
+
+    public ExampleProvider(SwitchOwnership switchOwnership, int memberId) {
+        this.switchOwnership = switchOwnership;
+        this.memberId = memberId;
+    }
 
     @Override
     public void onSessionInitiated(ProviderContext session) {
         LOG.info("ExampleProvider Session Initiated");
         DataBroker db = session.getSALService(DataBroker.class);
-        exampleService = session.addRpcImplementation(OdlexampleService.class, new ExampleImpl(db));
+        ExampleImpl example = new ExampleImpl(db);
+        exampleService = session.addRpcImplementation(OdlexampleService.class, example);
 
         ApplicationRegistryUtils.getInstance().setDb(db);
         ApplicationRegistryUtils.getInstance().initializeDataTree();
@@ -33,15 +74,53 @@ public class ExampleProvider implements BindingAwareProvider, AutoCloseable {
         SalFlowService salFlowService = session.getRpcService(SalFlowService.class);
         SwitchConfigurator.getInstance().setDb(db);
         SwitchConfigurator.getInstance().setSalFlowService(salFlowService);
+        SwitchConfigurator.getInstance().setSwitchOwnership(switchOwnership);
+        SwitchConfigurator.getInstance().setMemberId(memberId);
 
         NetworkGraphImpl.getInstance().setDb(db);
         NetworkGraphImpl.getInstance().init();
+        pathBatchPool = QosPathEngine.newBatchPool();
+        QosPathEngine.getInstance().setBatchPool(pathBatchPool);
+
+        AddressIndex.getInstance().init(db);
+        try {
+            PortHistoryStore.getInstance().open(Paths.get(PortHistoryStore.DEFAULT_DIRECTORY),
+                    PortHistoryStore.DEFAULT_RAW_RETENTION_SECONDS,
+                    PortHistoryStore.DEFAULT_DOWNSAMPLED_RETENTION_SECONDS);
+        } catch(IOException e) {
+            LOG.warn("Port history is not recorded, failed to open {}:", PortHistoryStore.DEFAULT_DIRECTORY, e);
+        }
+        PortStatisticsCollector.getInstance().start(db, switchOwnership,
+                PortStatisticsCollector.DEFAULT_INTERVAL_SECONDS);
+
+        DesiredFlowStore.getInstance().init(db, example);
+        FlowRefreshScheduler.getInstance().start();
+        FlowReconciler.getInstance().start(db, switchOwnership, FlowReconciler.DEFAULT_SETTLE_DELAY_SECONDS,
+                FlowReconciler.DEFAULT_INTERVAL_SECONDS);
+
+        MetricsRegistry.getInstance().register();
+        MetricsPublisher.getInstance().start(db, MetricsPublisher.DEFAULT_INTERVAL_SECONDS);
 
     }
 
     @Override
     public void close() throws Exception {
         LOG.info("ExampleProvider Closed");
+        NetworkGraphImpl.getInstance().close();
+        QosPathEngine.getInstance().setBatchPool(null);
+        if(pathBatchPool != null) {
+            pathBatchPool.shutdownNow();
+        }
+        AddressIndex.getInstance().close();
+        PortStatisticsCollector.getInstance().close();
+        PortHistoryStore.getInstance().close();
+        ApplicationRegistryUtils.getInstance().close();
+        FlowReconciler.getInstance().close();
+        FlowRefreshScheduler.getInstance().close();
+        DesiredFlowStore.getInstance().close();
+        switchOwnership.close();
+        MetricsPublisher.getInstance().close();
+        MetricsRegistry.getInstance().unregister();
     }
 
 }
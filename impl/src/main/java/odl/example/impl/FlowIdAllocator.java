@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.FlowCookie;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Hands out flow numbers, so no two flows installed by the controller share a flow id or
+ * cookie. Cookies carry {@link #COOKIE_PREFIX} in their top byte, which marks the flows as
+ * ours on the switches.
+ *
+ * The 56 bits below the prefix hold the cluster member id in their top byte, so members
+ * never hand out the same number, and below it a counter starting at the boot time of the
+ * allocator in seconds times 2^24. A later boot thus starts past every number an earlier
+ * one handed out unless that one averaged more than 2^24 flows per second of uptime.
+ * Boot times wrap after 2^24 seconds, about 194 days, so a flow would have to stay
+ * installed that long without being refreshed to share its number with a new one.
+ */
+public class FlowIdAllocator {
+
+    public static final long COOKIE_PREFIX = 0x2a00000000000000L;
+    public static final long COOKIE_PREFIX_MASK = 0xff00000000000000L;
+    public static final int MAX_MEMBER_ID = 0xff;
+    static final int MEMBER_SHIFT = 48;
+    static final int EPOCH_SHIFT = 24;
+    private static final long COUNTER_MASK = (1L << MEMBER_SHIFT) - 1;
+    private static final String FLOW_ID_PREFIX = "odlexample-";
+
+    private final long member;
+    private final AtomicLong next;
+
+    /**
+     * Creates the allocator of a controller without clustering, booting now.
+     */
+    public FlowIdAllocator() {
+        this(0, System.currentTimeMillis());
+    }
+
+    /**
+     * Creates the allocator of the cluster member, booting at the given time in
+     * milliseconds since the epoch.
+     */
+    public FlowIdAllocator(int memberId, long bootMillis) {
+        if(memberId < 0 || memberId > MAX_MEMBER_ID) {
+            throw new IllegalArgumentException("Member id " + memberId + " is not within 0.." + MAX_MEMBER_ID);
+        }
+        this.member = (long) memberId << MEMBER_SHIFT;
+        this.next = new AtomicLong((TimeUnit.MILLISECONDS.toSeconds(bootMillis) << EPOCH_SHIFT) & COUNTER_MASK);
+    }
+
+    /**
+     * Returns a flow number never returned before by this allocator, nor by the
+     * allocator of any other member.
+     */
+    public long allocate() {
+        return member | (next.getAndIncrement() & COUNTER_MASK);
+    }
+
+    /**
+     * Returns the id of the member that allocated the flow number.
+     */
+    static int memberOf(long flow) {
+        return (int) ((flow & ~COOKIE_PREFIX_MASK) >>> MEMBER_SHIFT);
+    }
+
+    public static FlowId toFlowId(long flow) {
+        return new FlowId(FLOW_ID_PREFIX + Long.toHexString(flow));
+    }
+
+    public static FlowCookie toCookie(long flow) {
+        return new FlowCookie(BigInteger.valueOf(COOKIE_PREFIX | (flow & ~COOKIE_PREFIX_MASK)));
+    }
+
+    /**
+     * Returns true if the cookie was allocated by a {@link FlowIdAllocator}.
+     */
+    public static boolean isOwnCookie(FlowCookie cookie) {
+        return cookie != null && (cookie.getValue().longValue() & COOKIE_PREFIX_MASK) == COOKIE_PREFIX;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowOutput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.SalFlowService;
+import org.opendaylight.yangtools.yang.common.RpcResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Installs flows through {@link SalFlowService} in per-switch batches.
+ *
+ * Flows queue up per switch. At most {@link #maxInFlightBatches} batches of up to
+ * {@link #maxBatchSize} flows are outstanding per switch, and flows arriving while the
+ * switch is busy form the next batch. The flow-mods of a batch are sent back to back
+ * and only the last one requests a barrier, so a batch costs one switch round trip.
+ *
+ * A batch is still one addFlow RPC per flow: the flow RPC of the plugin takes a single
+ * flow, and writing the flows to the config datastore would hand them to the forwarding
+ * rules manager, which programs them without the barrier and without per-flow results.
+ * What the batch saves is the round trip per flow, not the RPC calls.
+ *
+ * Completion is handled by callbacks on the RPC futures, no thread waits for a switch,
+ * so the flow service must return listenable futures, as the binding broker does. Each
+ * caller gets the RPC result of its own flow.
+ */
+public class FlowInstallPipeline {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FlowInstallPipeline.class);
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    public static final int DEFAULT_MAX_IN_FLIGHT_BATCHES = 2;
+
+    private final int maxBatchSize;
+    private final int maxInFlightBatches;
+    private final ConcurrentMap<String, SwitchQueue> queues = new ConcurrentHashMap<>();
+    private volatile SalFlowService salFlowService;
+
+    public FlowInstallPipeline(int maxBatchSize, int maxInFlightBatches) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxInFlightBatches = maxInFlightBatches;
+    }
+
+    public void setSalFlowService(SalFlowService salFlowService) {
+        this.salFlowService = salFlowService;
+    }
+
+    /**
+     * Queues the flow for the switch and returns the result of its installation.
+     */
+    public ListenableFuture<RpcResult<AddFlowOutput>> addFlow(String switchId, AddFlowInput flow) {
+        PendingFlow pending = new PendingFlow(flow);
+        getQueue(switchId).enqueue(pending);
+        return pending.result;
+    }
+
+    /**
+     * Queues the flows for the switch together, so they go out in as few batches as
+     * possible, and returns the results of their installation in the same order.
+     */
+    public List<ListenableFuture<RpcResult<AddFlowOutput>>> addFlows(String switchId, List<AddFlowInput> flows) {
+        List<PendingFlow> pendingFlows = new ArrayList<>(flows.size());
+        List<ListenableFuture<RpcResult<AddFlowOutput>>> results = new ArrayList<>(flows.size());
+        for(AddFlowInput flow : flows) {
+            PendingFlow pending = new PendingFlow(flow);
+            pendingFlows.add(pending);
+            results.add(pending.result);
+        }
+        getQueue(switchId).enqueueAll(pendingFlows);
+        return results;
+    }
+
+    private SwitchQueue getQueue(String switchId) {
+        SwitchQueue queue = queues.get(switchId);
+        if(queue == null) {
+            SwitchQueue created = new SwitchQueue(switchId);
+            queue = queues.putIfAbsent(switchId, created);
+            if(queue == null) {
+                queue = created;
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Returns the number of flows waiting for a batch slot on all switches.
+     */
+    public int getQueuedFlows() {
+        int queued = 0;
+        for(SwitchQueue queue : queues.values()) {
+            queued += queue.getQueued();
+        }
+        return queued;
+    }
+
+    /**
+     * Returns the RPC future as it is, or a failed future if it cannot take callbacks:
+     * adapting it would park a pool thread per outstanding flow.
+     */
+    static <T> ListenableFuture<T> toListenable(Future<T> future) {
+        if(future instanceof ListenableFuture) {
+            return (ListenableFuture<T>) future;
+        }
+        return Futures.immediateFailedFuture(new IllegalStateException(
+                "Flow service returned a future without callbacks: " + future.getClass().getName()));
+    }
+
+    private static final class PendingFlow {
+        private final AddFlowInput flow;
+        private final SettableFuture<RpcResult<AddFlowOutput>> result = SettableFuture.create();
+
+        private PendingFlow(AddFlowInput flow) {
+            this.flow = flow;
+        }
+    }
+
+    private final class SwitchQueue {
+        private final String switchId;
+        private final Deque<PendingFlow> pending = new ArrayDeque<>();
+        private int inFlightBatches;
+
+        private SwitchQueue(String switchId) {
+            this.switchId = switchId;
+        }
+
+        synchronized int getQueued() {
+            return pending.size();
+        }
+
+        void enqueue(PendingFlow flow) {
+            synchronized(this) {
+                pending.add(flow);
+            }
+            drain();
+        }
+
+        void enqueueAll(List<PendingFlow> flows) {
+            synchronized(this) {
+                pending.addAll(flows);
+            }
+            drain();
+        }
+
+        private void drain() {
+            while(true) {
+                List<PendingFlow> batch;
+                synchronized(this) {
+                    if(inFlightBatches >= maxInFlightBatches || pending.isEmpty()) {
+                        return;
+                    }
+                    batch = new ArrayList<>(Math.min(pending.size(), maxBatchSize));
+                    while(batch.size() < maxBatchSize && !pending.isEmpty()) {
+                        batch.add(pending.poll());
+                    }
+                    inFlightBatches++;
+                }
+                send(batch);
+            }
+        }
+
+        private void onBatchComplete() {
+            synchronized(this) {
+                inFlightBatches--;
+            }
+            drain();
+        }
+
+        private void send(List<PendingFlow> batch) {
+            LOG.debug("Sending batch of {} flows to {}", batch.size(), switchId);
+            final AtomicInteger remaining = new AtomicInteger(batch.size());
+            final OperationMetrics roundTrip = MetricsRegistry.getInstance().getFlowRoundTrip(switchId);
+            for(int i = 0; i < batch.size(); i++) {
+                final PendingFlow pending = batch.get(i);
+                AddFlowInput flow = new AddFlowInputBuilder(pending.flow).setBarrier(i == batch.size() - 1).build();
+                ListenableFuture<RpcResult<AddFlowOutput>> future;
+                final long start = roundTrip.start();
+                try {
+                    future = toListenable(salFlowService.addFlow(flow));
+                } catch(RuntimeException e) {
+                    future = Futures.immediateFailedFuture(e);
+                }
+                Futures.addCallback(future, new FutureCallback<RpcResult<AddFlowOutput>>() {
+                    @Override
+                    public void onSuccess(RpcResult<AddFlowOutput> result) {
+                        roundTrip.stop(start, result.isSuccessful());
+                        if(!result.isSuccessful()) {
+                            LOG.warn("Flow installation on {} failed: {}", switchId, result.getErrors());
+                        }
+                        pending.result.set(result);
+                        completed();
+                    }
+
+                    @Override
+                    public void onFailure(Throwable throwable) {
+                        roundTrip.stop(start, false);
+                        LOG.warn("Flow installation on {} failed:", switchId, throwable);
+                        pending.result.setException(throwable);
+                        completed();
+                    }
+
+                    private void completed() {
+                        if(remaining.decrementAndGet() == 0) {
+                            onBatchComplete();
+                        }
+                    }
+                });
+            }
+        }
+    }
+}
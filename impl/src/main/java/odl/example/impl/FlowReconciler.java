@@ -0,0 +1,387 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.DataObjectModification;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeListener;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeIdentifier;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeModification;
+import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.action.OutputActionCase;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.action.SetQueueActionCase;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.list.Action;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowCapableNode;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.Table;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.TableKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.Flow;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.RemoveFlowOutput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.instruction.instruction.ApplyActionsCase;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.instruction.list.Instruction;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.opendaylight.yangtools.yang.common.RpcResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Brings the application flows on the switches in line with the {@link DesiredFlowStore}.
+ *
+ * A switch is reconciled a settle delay after it connects, giving the statistics manager
+ * time to report its flow table, and all known switches are reconciled periodically.
+ * Reconciling reads table 0 of the switch from the operational inventory, compares the
+ * flows carrying our cookie prefix with the desired ones by match, and only pushes the
+ * difference: missing flows are added, flows with other actions or hard timeout are
+ * replaced and flows nobody wants are removed. The cost of a reconnect is thus
+ * proportional to the drift. Flows in sync are handed to the {@link FlowRefreshScheduler},
+ * which refreshes them before they time out unless it tracks them already. Until the
+ * {@link DesiredFlowStore} has loaded the flows written before a restart, unwanted flows
+ * are left on the switches rather than taken for stale.
+ *
+ * Every member is candidate for the ownership of every switch it sees in the inventory,
+ * and only reconciles the switches it owns. A member gaining a switch reconciles it right
+ * away, so flows the previous owner did not get to install are not left out until the
+ * next periodic run.
+ */
+public class FlowReconciler implements DataTreeChangeListener<FlowCapableNode>, SwitchOwnership.Listener,
+        Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FlowReconciler.class);
+    public static final long DEFAULT_SETTLE_DELAY_SECONDS = 10;
+    public static final long DEFAULT_INTERVAL_SECONDS = 60;
+    private static final FlowReconciler instance = new FlowReconciler();
+
+    private final Set<String> knownSwitches = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<String> reconciling = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // switches that connected less than a settle delay ago
+    private final Set<String> settling = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final AtomicLong addedFlows = new AtomicLong();
+    private final AtomicLong modifiedFlows = new AtomicLong();
+    private final AtomicLong removedFlows = new AtomicLong();
+    private ScheduledExecutorService executor;
+    private ListenerRegistration<FlowReconciler> registration;
+    private DataBroker db;
+    private volatile SwitchOwnership switchOwnership;
+    private long settleDelaySeconds;
+
+    protected FlowReconciler() {
+
+    }
+
+    public static FlowReconciler getInstance() {
+        return instance;
+    }
+
+    public synchronized void start(DataBroker db, SwitchOwnership switchOwnership, long settleDelaySeconds,
+                                   long intervalSeconds) {
+        if(executor != null) {
+            return;
+        }
+        this.db = db;
+        this.switchOwnership = switchOwnership;
+        this.settleDelaySeconds = settleDelaySeconds;
+        switchOwnership.addListener(this);
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("odlexample-flow-reconciler-%d").setDaemon(true).build());
+        executor.scheduleWithFixedDelay(this, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        InstanceIdentifier<FlowCapableNode> nodesIid = InstanceIdentifier.create(Nodes.class)
+                .child(Node.class)
+                .augmentation(FlowCapableNode.class);
+        registration = db.registerDataTreeChangeListener(
+                new DataTreeIdentifier<>(LogicalDatastoreType.OPERATIONAL, nodesIid), this);
+    }
+
+    public synchronized void close() {
+        if(registration != null) {
+            registration.close();
+            registration = null;
+        }
+        if(executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        if(switchOwnership != null) {
+            for(String switchId : knownSwitches) {
+                switchOwnership.unregisterCandidate(switchId);
+            }
+        }
+        knownSwitches.clear();
+        settling.clear();
+    }
+
+    @Override
+    public void onDataTreeChanged(Collection<DataTreeModification<FlowCapableNode>> changes) {
+        for(DataTreeModification<FlowCapableNode> change : changes) {
+            NodeKey key = change.getRootPath().getRootIdentifier().firstKeyOf(Node.class);
+            if(key == null) {
+                continue;
+            }
+            final String switchId = key.getId().getValue();
+            DataObjectModification<FlowCapableNode> root = change.getRootNode();
+            if(root.getModificationType() == DataObjectModification.ModificationType.DELETE) {
+                if(knownSwitches.remove(switchId)) {
+                    switchOwnership.unregisterCandidate(switchId);
+                }
+            } else if(root.getDataBefore() == null && knownSwitches.add(switchId)) {
+                LOG.debug("Switch {} connected, reconciling in {} s", switchId, settleDelaySeconds);
+                settling.add(switchId);
+                switchOwnership.registerCandidate(switchId);
+                schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        settling.remove(switchId);
+                        reconcile(switchId);
+                    }
+                }, settleDelaySeconds);
+            }
+        }
+    }
+
+    /**
+     * Reconciles the switch this member gained, unless it just connected and is
+     * reconciled once it settled anyway.
+     */
+    @Override
+    public void ownershipChanged(String switchId, boolean isOwner) {
+        if(isOwner && !settling.contains(switchId)) {
+            LOG.debug("Gained switch {}, reconciling", switchId);
+            requestReconcile(switchId);
+        }
+    }
+
+    /**
+     * Reconciles the switch on the reconciler thread soon, if this member owns it.
+     */
+    public void requestReconcile(final String switchId) {
+        if(switchOwnership == null || !switchOwnership.isOwner(switchId)) {
+            return;
+        }
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                reconcile(switchId);
+            }
+        }, 0);
+    }
+
+    private synchronized void schedule(Runnable task, long delaySeconds) {
+        if(executor != null) {
+            executor.schedule(task, delaySeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            DesiredFlowStore.getInstance().load();
+            reconcileAll();
+        } catch(Exception e) {
+            LOG.warn("Flow reconciliation failed:", e);
+        }
+    }
+
+    /**
+     * Reconciles every connected switch and every switch that should have flows, of those
+     * this member owns.
+     */
+    public void reconcileAll() {
+        Set<String> switches = new HashSet<>(knownSwitches);
+        switches.addAll(DesiredFlowStore.getInstance().getSwitches());
+        for(String switchId : switches) {
+            reconcile(switchId);
+        }
+    }
+
+    /**
+     * Reconciles every switch on the reconciler thread soon.
+     */
+    public void requestReconcileAll() {
+        schedule(this, 0);
+    }
+
+    /**
+     * Reads the flow table of the switch and pushes the difference to its desired flows.
+     * Does nothing if the switch is already being reconciled or owned by another member.
+     */
+    public void reconcile(final String switchId) {
+        if(!switchOwnership.isOwner(switchId) || !reconciling.add(switchId)) {
+            return;
+        }
+        InstanceIdentifier<Table> tableIid = InstanceIdentifier.create(Nodes.class)
+                .child(Node.class, new NodeKey(new NodeId(switchId)))
+                .augmentation(FlowCapableNode.class)
+                .child(Table.class, new TableKey(FlowTemplateCompiler.TABLE_ID));
+        final ReadOnlyTransaction transaction = db.newReadOnlyTransaction();
+        Futures.addCallback(transaction.read(LogicalDatastoreType.OPERATIONAL, tableIid),
+                new FutureCallback<Optional<Table>>() {
+                    @Override
+                    public void onSuccess(Optional<Table> table) {
+                        transaction.close();
+                        try {
+                            List<Flow> current = table.isPresent() && table.get().getFlow() != null
+                                    ? table.get().getFlow() : Collections.<Flow>emptyList();
+                            DesiredFlowStore store = DesiredFlowStore.getInstance();
+                            push(switchId, diff(store.getFlows(switchId), current, store.isLoaded()));
+                        } finally {
+                            reconciling.remove(switchId);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        transaction.close();
+                        reconciling.remove(switchId);
+                        LOG.warn("Reading the flow table of {} failed:", switchId, t);
+                    }
+                });
+    }
+
+    private void push(String switchId, Delta delta) {
+        SwitchConfigurator configurator = SwitchConfigurator.getInstance();
+        for(DesiredFlow flow : delta.kept) {
+            FlowRefreshScheduler.getInstance().adopt(switchId, flow);
+        }
+        if(delta.isEmpty()) {
+            LOG.debug("Switch {} is in sync", switchId);
+            return;
+        }
+        LOG.info("Reconciling {}: {} flows to add, {} to modify, {} to remove", switchId,
+                delta.adds.size(), delta.modifies.size(), delta.removes.size());
+        List<DesiredFlow> flows = new ArrayList<>(delta.adds.size() + delta.modifies.size());
+        flows.addAll(delta.adds);
+        // adding a flow with the match and priority of an existing one replaces it
+        flows.addAll(delta.modifies);
+        if(!flows.isEmpty()) {
+            configurator.sendFlows(switchId, flows);
+        }
+        for(Flow flow : delta.removes) {
+            Futures.addCallback(configurator.remove(switchId, flow),
+                    new LoggingFuturesCallBack<RpcResult<RemoveFlowOutput>>("Failed to remove flow from " + switchId, LOG));
+        }
+        addedFlows.addAndGet(delta.adds.size());
+        modifiedFlows.addAndGet(delta.modifies.size());
+        removedFlows.addAndGet(delta.removes.size());
+    }
+
+    static Delta diff(Map<String, DesiredFlow> desired, List<Flow> current) {
+        return diff(desired, current, true);
+    }
+
+    /**
+     * Compares the flows of a switch table with the desired flows by match key. Flows
+     * without our cookie prefix are left alone, and so are unwanted ones unless they are
+     * to be removed.
+     */
+    static Delta diff(Map<String, DesiredFlow> desired, List<Flow> current, boolean removeUnwanted) {
+        Map<String, DesiredFlow> missing = new HashMap<>(desired);
+        Delta delta = new Delta();
+        for(Flow flow : current) {
+            if(!FlowIdAllocator.isOwnCookie(flow.getCookie())) {
+                continue;
+            }
+            String key = ApplicationMatch.keyOf(flow.getMatch());
+            DesiredFlow wanted = key == null || flow.getPriority() == null
+                    || flow.getPriority() != FlowTemplateCompiler.PRIORITY ? null : missing.remove(key);
+            if(wanted == null) {
+                // not wanted, or a duplicate of an entry already matched
+                if(removeUnwanted) {
+                    delta.removes.add(flow);
+                }
+            } else if(!hasActionsOf(flow, wanted) || !hasHardTimeoutOf(flow, wanted)) {
+                delta.modifies.add(wanted);
+            } else {
+                delta.kept.add(wanted);
+            }
+        }
+        delta.adds.addAll(missing.values());
+        return delta;
+    }
+
+    private static boolean hasHardTimeoutOf(Flow flow, DesiredFlow wanted) {
+        int hardTimeout = flow.getHardTimeout() == null ? 0 : flow.getHardTimeout();
+        return hardTimeout == wanted.getHardTimeout();
+    }
+
+    private static boolean hasActionsOf(Flow flow, DesiredFlow wanted) {
+        if(flow.getInstructions() == null || flow.getInstructions().getInstruction() == null) {
+            return false;
+        }
+        Long queueId = null;
+        String port = null;
+        for(Instruction instruction : flow.getInstructions().getInstruction()) {
+            if(!(instruction.getInstruction() instanceof ApplyActionsCase)) {
+                continue;
+            }
+            ApplyActionsCase applyActions = (ApplyActionsCase) instruction.getInstruction();
+            if(applyActions.getApplyActions() == null || applyActions.getApplyActions().getAction() == null) {
+                continue;
+            }
+            for(Action action : applyActions.getApplyActions().getAction()) {
+                if(action.getAction() instanceof SetQueueActionCase) {
+                    queueId = ((SetQueueActionCase) action.getAction()).getSetQueueAction().getQueueId();
+                } else if(action.getAction() instanceof OutputActionCase) {
+                    port = FlowTemplateCompiler.portOf(((OutputActionCase) action.getAction()).getOutputAction()
+                            .getOutputNodeConnector().getValue());
+                }
+            }
+        }
+        return queueId != null && queueId == wanted.getQueueId() && wanted.getEgressPort().equals(port);
+    }
+
+    public long getAddedFlows() {
+        return addedFlows.get();
+    }
+
+    public long getModifiedFlows() {
+        return modifiedFlows.get();
+    }
+
+    public long getRemovedFlows() {
+        return removedFlows.get();
+    }
+
+    /**
+     * Flow-mods needed to bring a switch in line with its desired flows.
+     */
+    static final class Delta {
+        final List<DesiredFlow> adds = new ArrayList<>();
+        final List<DesiredFlow> modifies = new ArrayList<>();
+        final List<Flow> removes = new ArrayList<>();
+        // in sync, to be refreshed before they time out
+        final List<DesiredFlow> kept = new ArrayList<>();
+
+        boolean isEmpty() {
+            return adds.isEmpty() && modifies.isEmpty() && removes.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowOutput;
+import org.opendaylight.yangtools.yang.common.RpcResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Installs application flows again shortly before the switches remove them for their
+ * hard timeout. Adding a flow with the match and priority of an existing one replaces
+ * it and restarts its timeouts.
+ *
+ * Every flow installed through the {@link SwitchConfigurator} is tracked per switch and
+ * match key on a {@link TimerWheel} with one-second ticks. A flow is refreshed a lead
+ * time before it expires, a tenth of its timeout and at least {@link #MIN_LEAD_SECONDS},
+ * plus a random part of another lead time, so flows installed in one burst are refreshed
+ * spread over a window rather than in the same tick. At most a fixed number of flows is
+ * refreshed per tick, the rest waits for the next ones. Due flows are grouped per switch
+ * and handed to the flow pipeline in one batch per switch.
+ *
+ * A flow is refreshed as the {@link DesiredFlowStore} has it at that time. Flows no longer
+ * wanted, and flows of switches this member no longer owns, are dropped when they are due.
+ */
+public class FlowRefreshScheduler implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FlowRefreshScheduler.class);
+    public static final int DEFAULT_MAX_REFRESHES_PER_TICK = 10000;
+    static final int MIN_LEAD_SECONDS = 5;
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final FlowRefreshScheduler instance = new FlowRefreshScheduler(DEFAULT_MAX_REFRESHES_PER_TICK);
+
+    private final int maxRefreshesPerTick;
+    // guarded by this
+    private final Map<FlowKey, Integer> handles = new HashMap<>();
+    private TimerWheel<FlowKey> wheel;
+    private long startNanos;
+    private ScheduledExecutorService executor;
+    private final AtomicLong refreshedFlows = new AtomicLong();
+    private final AtomicLong droppedFlows = new AtomicLong();
+
+    protected FlowRefreshScheduler(int maxRefreshesPerTick) {
+        this.maxRefreshesPerTick = maxRefreshesPerTick;
+    }
+
+    public static FlowRefreshScheduler getInstance() {
+        return instance;
+    }
+
+    public synchronized void start() {
+        if(executor != null) {
+            return;
+        }
+        startNanos = System.nanoTime();
+        wheel = new TimerWheel<>(0, 1024);
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("odlexample-flow-refresh-%d").setDaemon(true).build());
+        executor.scheduleAtFixedRate(this, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public synchronized void close() {
+        if(executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        wheel = null;
+        handles.clear();
+    }
+
+    /**
+     * Schedules the refresh of a flow just installed on the switch, replacing any refresh
+     * scheduled for its flow entry. Flows without hard timeout are not tracked, and nothing
+     * is tracked while the scheduler is stopped.
+     */
+    public void track(String switchId, DesiredFlow flow) {
+        if(flow.getHardTimeout() > 0) {
+            schedule(switchId, flow, refreshDelay(flow.getHardTimeout(), ThreadLocalRandom.current()), true);
+        }
+    }
+
+    /**
+     * Tracks a flow found on the switch that was installed before this member tracked it,
+     * by a previous owner of the switch or before a restart. Its remaining time is not
+     * known, so it is refreshed within a lead time. Flows tracked already keep their refresh.
+     */
+    public void adopt(String switchId, DesiredFlow flow) {
+        if(flow.getHardTimeout() > 0) {
+            schedule(switchId, flow, ThreadLocalRandom.current().nextInt(leadTime(flow.getHardTimeout())), false);
+        }
+    }
+
+    private synchronized void schedule(String switchId, DesiredFlow flow, int delay, boolean replace) {
+        if(wheel == null) {
+            return;
+        }
+        FlowKey key = new FlowKey(switchId, flow.getMatchKey());
+        long due = currentTick() + delay;
+        Integer handle = handles.get(key);
+        if(handle == null) {
+            handles.put(key, wheel.schedule(key, due));
+        } else if(replace) {
+            wheel.reschedule(handle, due);
+        }
+    }
+
+    /**
+     * Returns the seconds from installing a flow with the hard timeout until its refresh.
+     */
+    static int refreshDelay(int hardTimeout, Random random) {
+        int lead = leadTime(hardTimeout);
+        return Math.max(hardTimeout - lead - random.nextInt(lead), 1);
+    }
+
+    private static int leadTime(int hardTimeout) {
+        return Math.max(hardTimeout / 10, MIN_LEAD_SECONDS);
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - startNanos) / TICK_NANOS;
+    }
+
+    public synchronized int getTrackedCount() {
+        return handles.size();
+    }
+
+    public long getRefreshedFlows() {
+        return refreshedFlows.get();
+    }
+
+    public long getDroppedFlows() {
+        return droppedFlows.get();
+    }
+
+    @Override
+    public void run() {
+        try {
+            refresh();
+        } catch(Exception e) {
+            LOG.warn("Refreshing flows failed:", e);
+        }
+    }
+
+    void refresh() {
+        List<FlowKey> due = new ArrayList<>();
+        int backlog;
+        synchronized(this) {
+            if(wheel == null) {
+                return;
+            }
+            wheel.advance(currentTick());
+            wheel.poll(maxRefreshesPerTick, due);
+            for(FlowKey key : due) {
+                handles.remove(key);
+            }
+            backlog = wheel.readySize();
+        }
+        if(due.isEmpty()) {
+            return;
+        }
+
+        SwitchConfigurator configurator = SwitchConfigurator.getInstance();
+        DesiredFlowStore store = DesiredFlowStore.getInstance();
+        Map<String, List<DesiredFlow>> flowsBySwitch = new LinkedHashMap<>();
+        int dropped = 0;
+        for(FlowKey key : due) {
+            DesiredFlow flow = configurator.isOwner(key.switchId) ? store.getFlow(key.switchId, key.matchKey) : null;
+            if(flow == null) {
+                // withdrawn, or left to the new owner of the switch
+                dropped++;
+                continue;
+            }
+            List<DesiredFlow> flows = flowsBySwitch.get(key.switchId);
+            if(flows == null) {
+                flows = new ArrayList<>();
+                flowsBySwitch.put(key.switchId, flows);
+            }
+            flows.add(flow);
+        }
+        for(Map.Entry<String, List<DesiredFlow>> switchFlows : flowsBySwitch.entrySet()) {
+            List<ListenableFuture<RpcResult<AddFlowOutput>>> results =
+                    configurator.sendFlows(switchFlows.getKey(), switchFlows.getValue());
+            Futures.addCallback(Futures.allAsList(results),
+                    new LoggingFuturesCallBack<List<RpcResult<AddFlowOutput>>>(
+                            "Failed to refresh flows on " + switchFlows.getKey(), LOG));
+        }
+        refreshedFlows.addAndGet(due.size() - dropped);
+        droppedFlows.addAndGet(dropped);
+        LOG.debug("Refreshed {} flows on {} switches, dropped {}, {} waiting", due.size() - dropped,
+                flowsBySwitch.size(), dropped, backlog);
+    }
+
+    private static final class FlowKey {
+        private final String switchId;
+        private final String matchKey;
+
+        private FlowKey(String switchId, String matchKey) {
+            this.switchId = switchId;
+            this.matchKey = matchKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) {
+                return true;
+            }
+            if(!(o instanceof FlowKey)) {
+                return false;
+            }
+            FlowKey that = (FlowKey) o;
+            return switchId.equals(that.switchId) && matchKey.equals(that.matchKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * switchId.hashCode() + matchKey.hashCode();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.opendaylight.openflowplugin.api.OFConstants;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Prefix;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.PortNumber;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Uri;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.action.OutputActionCaseBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.action.SetQueueActionCaseBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.action.output.action._case.OutputActionBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.action.set.queue.action._case.SetQueueActionBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.list.Action;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.list.ActionBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowCapableNode;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.Table;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.TableKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.FlowTableRef;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.FlowModFlags;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.Instructions;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.InstructionsBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.Match;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.MatchBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.instruction.instruction.ApplyActionsCaseBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.instruction.instruction.apply.actions._case.ApplyActionsBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.instruction.list.Instruction;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.instruction.list.InstructionBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeRef;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.l2.types.rev130827.EtherType;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.ethernet.match.fields.EthernetTypeBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.EthernetMatch;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.EthernetMatchBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.IpMatchBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.layer._3.match.Ipv4MatchBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.layer._4.match.TcpMatchBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.layer._4.match.UdpMatchBuilder;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Compiles the immutable parts of application flows once and reuses them.
+ *
+ * A {@link FlowTemplate} holds the instructions for one queue and output connector,
+ * so installing a flow only builds its match and fills in the flow number. Templates
+ * and the node and table references of each switch are interned, the connector id is
+ * only parsed when its template is compiled.
+ */
+public class FlowTemplateCompiler {
+
+    public static final short TABLE_ID = 0;
+    public static final int PRIORITY = 1000;
+    /** Hard timeout in seconds of flows whose application sets none. */
+    public static final int HARD_TIMEOUT = 300;
+    private static final String FLOW_NAME = "odlexample";
+    private static final EthernetMatch IPV4_ETHERNET_MATCH = new EthernetMatchBuilder()
+            .setEthernetType(new EthernetTypeBuilder()
+                    .setType(new EtherType(0x0800L))
+                    .build())
+            .build();
+    private static final FlowModFlags NO_FLAGS = new FlowModFlags(false, false, false, false, false);
+
+    private final ConcurrentMap<TemplateKey, FlowTemplate> templates = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, SwitchTarget> targets = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the template sending matched traffic to the queue and out of the connector.
+     */
+    public FlowTemplate getTemplate(long queueId, String nodeConnectorId) {
+        TemplateKey key = new TemplateKey(queueId, nodeConnectorId);
+        FlowTemplate template = templates.get(key);
+        if(template == null) {
+            template = compile(queueId, nodeConnectorId);
+            FlowTemplate existing = templates.putIfAbsent(key, template);
+            if(existing != null) {
+                template = existing;
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Returns the node and flow table references of the switch.
+     */
+    public SwitchTarget getTarget(String switchId) {
+        SwitchTarget target = targets.get(switchId);
+        if(target == null) {
+            target = new SwitchTarget(switchId);
+            SwitchTarget existing = targets.putIfAbsent(switchId, target);
+            if(existing != null) {
+                target = existing;
+            }
+        }
+        return target;
+    }
+
+    public int getTemplateCount() {
+        return templates.size();
+    }
+
+    /**
+     * Returns the match on IPv4 traffic from the source to the destination host.
+     */
+    public static Match ipv4Match(String srcAddress, String dstAddress) {
+        return match(new ApplicationMatch(srcAddress, dstAddress));
+    }
+
+    /**
+     * Returns the match on the traffic of an application.
+     */
+    public static Match match(ApplicationMatch applicationMatch) {
+        MatchBuilder match = new MatchBuilder()
+                .setLayer3Match(new Ipv4MatchBuilder()
+                        .setIpv4Source(new Ipv4Prefix(applicationMatch.getSrcAddress() + "/32"))
+                        .setIpv4Destination(new Ipv4Prefix(applicationMatch.getDstAddress() + "/32"))
+                        .build())
+                .setEthernetMatch(IPV4_ETHERNET_MATCH);
+        Short ipProtocol = applicationMatch.getIpProtocol();
+        if(ipProtocol != null) {
+            match.setIpMatch(new IpMatchBuilder().setIpProtocol(ipProtocol).build());
+        }
+        Integer dstPort = applicationMatch.getDstPort();
+        if(dstPort != null && ipProtocol != null && ipProtocol == ApplicationMatch.TCP) {
+            match.setLayer4Match(new TcpMatchBuilder().setTcpDestinationPort(new PortNumber(dstPort)).build());
+        } else if(dstPort != null && ipProtocol != null && ipProtocol == ApplicationMatch.UDP) {
+            match.setLayer4Match(new UdpMatchBuilder().setUdpDestinationPort(new PortNumber(dstPort)).build());
+        }
+        return match.build();
+    }
+
+    /**
+     * Returns the port number part of a connector id like "openflow:1:2".
+     */
+    static String portOf(String nodeConnectorId) {
+        return nodeConnectorId.substring(nodeConnectorId.lastIndexOf(':') + 1);
+    }
+
+    private static FlowTemplate compile(long queueId, String nodeConnectorId) {
+        ActionBuilder actionBuilder = new ActionBuilder();
+        Action queueAction = actionBuilder
+                .setOrder(0).setAction(new SetQueueActionCaseBuilder()
+                        .setSetQueueAction(new SetQueueActionBuilder()
+                                .setQueueId(queueId)
+                                .build())
+                        .build())
+                .build();
+        Action outputAction = actionBuilder
+                .setOrder(1).setAction(new OutputActionCaseBuilder()
+                        .setOutputAction(new OutputActionBuilder()
+                                .setOutputNodeConnector(new Uri(portOf(nodeConnectorId)))
+                                .build())
+                        .build())
+                .build();
+
+        Instruction applyActionsInstruction = new InstructionBuilder()
+                .setOrder(0).setInstruction(new ApplyActionsCaseBuilder()
+                        .setApplyActions(new ApplyActionsBuilder()
+                                .setAction(ImmutableList.of(queueAction, outputAction))
+                                .build())
+                        .build())
+                .build();
+
+        return new FlowTemplate(new InstructionsBuilder()
+                .setInstruction(ImmutableList.of(applyActionsInstruction))
+                .build());
+    }
+
+    /**
+     * Prebuilt instructions and constant fields of a flow.
+     */
+    public static final class FlowTemplate {
+        private final Instructions instructions;
+
+        private FlowTemplate(Instructions instructions) {
+            this.instructions = instructions;
+        }
+
+        public Instructions getInstructions() {
+            return instructions;
+        }
+
+        /**
+         * Returns the input adding a flow with the match to the switch, identified by
+         * a number from {@link FlowIdAllocator}.
+         */
+        public AddFlowInput instantiate(SwitchTarget target, Match match, long flow) {
+            return instantiate(target, match, flow, HARD_TIMEOUT);
+        }
+
+        /**
+         * Returns the input adding a flow the switch removes after the hard timeout in
+         * seconds, or never if it is 0.
+         */
+        public AddFlowInput instantiate(SwitchTarget target, Match match, long flow, int hardTimeout) {
+            FlowId flowId = FlowIdAllocator.toFlowId(flow);
+            return new AddFlowInputBuilder()
+                    .setNode(target.getNodeRef())
+                    .setFlowTable(target.getFlowTableRef())
+                    .setTransactionUri(new Uri(flowId.getValue()))
+                    .setTableId(TABLE_ID)
+                    .setFlowName(FLOW_NAME)
+                    .setMatch(match)
+                    .setBufferId(OFConstants.OFP_NO_BUFFER)
+                    .setInstructions(instructions)
+                    .setPriority(PRIORITY)
+                    .setHardTimeout(hardTimeout)
+                    .setIdleTimeout(0)
+                    .setCookie(FlowIdAllocator.toCookie(flow))
+                    .setFlags(NO_FLAGS)
+                    .build();
+        }
+    }
+
+    /**
+     * Node and flow table references of a switch.
+     */
+    public static final class SwitchTarget {
+        private final NodeRef nodeRef;
+        private final FlowTableRef flowTableRef;
+
+        private SwitchTarget(String switchId) {
+            InstanceIdentifier<Node> nodePath = InstanceIdentifier.builder(Nodes.class)
+                    .child(Node.class, new NodeKey(new NodeId(switchId))).build();
+            InstanceIdentifier<Table> tablePath = nodePath.augmentation(FlowCapableNode.class)
+                    .child(Table.class, new TableKey(TABLE_ID));
+            this.nodeRef = new NodeRef(nodePath);
+            this.flowTableRef = new FlowTableRef(tablePath);
+        }
+
+        public NodeRef getNodeRef() {
+            return nodeRef;
+        }
+
+        public FlowTableRef getFlowTableRef() {
+            return flowTableRef;
+        }
+    }
+
+    private static final class TemplateKey {
+        private final long queueId;
+        private final String nodeConnectorId;
+
+        private TemplateKey(long queueId, String nodeConnectorId) {
+            this.queueId = queueId;
+            this.nodeConnectorId = nodeConnectorId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) {
+                return true;
+            }
+            if(!(o instanceof TemplateKey)) {
+                return false;
+            }
+            TemplateKey that = (TemplateKey) o;
+            return queueId == that.queueId && nodeConnectorId.equals(that.nodeConnectorId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(queueId) + nodeConnectorId.hashCode();
+        }
+    }
+}
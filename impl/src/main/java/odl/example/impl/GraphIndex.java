@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+
+/**
+ * Immutable int-indexed view of the topology graph for path computation, taken from a
+ * {@link CompactGraph}. Each undirected edge becomes two arcs, stored per source vertex
+ * in compressed sparse row layout: the arcs of vertex v are the indices offsets[v] to
+ * offsets[v + 1] - 1.
+ *
+ * A snapshot is never modified once built, so it can be read by any number of threads
+ * without locking. Snapshots taken later have a higher epoch.
+ */
+public final class GraphIndex {
+
+    public static final GraphIndex EMPTY = build(Collections.<Link>emptyList());
+
+    private final long epoch;
+    private final NodeId[] vertices;
+    private final Map<NodeId, Integer> vertexIndex;
+    private final int[] offsets;
+    private final int[] arcSource;
+    private final int[] arcTarget;
+    private final int[] arcEdge;
+    private final int[] arcTp;
+    private final String[] tpNames;
+    private final Link[] arcLink;
+
+    GraphIndex(long epoch, NodeId[] vertices, Map<NodeId, Integer> vertexIndex, int[] offsets,
+               int[] arcSource, int[] arcTarget, int[] arcEdge, int[] arcTp, String[] tpNames, Link[] arcLink) {
+        this.epoch = epoch;
+        this.vertices = vertices;
+        this.vertexIndex = vertexIndex;
+        this.offsets = offsets;
+        this.arcSource = arcSource;
+        this.arcTarget = arcTarget;
+        this.arcEdge = arcEdge;
+        this.arcTp = arcTp;
+        this.tpNames = tpNames;
+        this.arcLink = arcLink;
+    }
+
+    public static GraphIndex build(Collection<Link> links) {
+        CompactGraph graph = new CompactGraph();
+        for(Link link : links) {
+            graph.addLink(link);
+        }
+        return graph.snapshot();
+    }
+
+    /**
+     * Returns the epoch of the graph the snapshot was taken from.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public int getVertexCount() {
+        return vertices.length;
+    }
+
+    public int getArcCount() {
+        return arcTarget.length;
+    }
+
+    /**
+     * Returns the index of the node, or -1 if it is not part of the graph.
+     */
+    public int indexOf(NodeId nodeId) {
+        Integer index = vertexIndex.get(nodeId);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the unmodifiable index of the vertices by node.
+     */
+    Map<NodeId, Integer> getVertexIndex() {
+        return vertexIndex;
+    }
+
+    public NodeId getVertex(int vertex) {
+        return vertices[vertex];
+    }
+
+    public int firstArc(int vertex) {
+        return offsets[vertex];
+    }
+
+    public int endArc(int vertex) {
+        return offsets[vertex + 1];
+    }
+
+    public int getArcSource(int arc) {
+        return arcSource[arc];
+    }
+
+    public int getArcTarget(int arc) {
+        return arcTarget[arc];
+    }
+
+    /**
+     * Returns the id of the undirected edge of the arc, which is stable while the edge exists.
+     */
+    public int getArcEdge(int arc) {
+        return arcEdge[arc];
+    }
+
+    public Link getArcLink(int arc) {
+        return arcLink[arc];
+    }
+
+    /**
+     * Copies the arcs from the first to before the last into the arrays of a snapshot
+     * being built, starting at the given arc.
+     */
+    void copyArcs(int from, int to, int[] sources, int[] targets, int[] edges, int[] tps, Link[] links, int at) {
+        int count = to - from;
+        System.arraycopy(arcSource, from, sources, at, count);
+        System.arraycopy(arcTarget, from, targets, at, count);
+        System.arraycopy(arcEdge, from, edges, at, count);
+        System.arraycopy(arcTp, from, tps, at, count);
+        System.arraycopy(arcLink, from, links, at, count);
+    }
+
+    /**
+     * Returns the egress termination point of the arc.
+     */
+    public String getArcTp(int arc) {
+        return tpNames[arcTp[arc]];
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+
+/**
+ * Memory-mapped file of fixed-width port samples, appended in time order.
+ *
+ * The file is a 64 byte header followed by room for a fixed number of 64 byte records.
+ * The record count in the header is updated after each record is written, so a record
+ * torn by a crash is not seen after a restart. Readers see the records up to the count
+ * they read, appending does not move them.
+ *
+ * Every record holds the index of the previous record of its port, and the last record
+ * of every port is kept in memory, so the records of one port are read without reading
+ * those of the others.
+ *
+ * <pre>
+ * header: int magic, int version, long start, int count
+ * record: long time, int port, int previous, long txPackets, long rxPackets,
+ *         long txBytes, long rxBytes, float txBitRate, float rxBitRate,
+ *         float txPacketRate, float loss
+ * </pre>
+ */
+final class HistorySegment {
+
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 64;
+    private static final int MAGIC = 0x4f504853;
+    private static final int VERSION = 2;
+    private static final int START_OFFSET = 8;
+    private static final int COUNT_OFFSET = 16;
+
+    private static final int TIME = 0;
+    private static final int PORT = 8;
+    private static final int PREVIOUS = 12;
+    private static final int TX_PACKETS = 16;
+    private static final int RX_PACKETS = 24;
+    private static final int TX_BYTES = 32;
+    private static final int RX_BYTES = 40;
+    private static final int TX_BIT_RATE = 48;
+    private static final int RX_BIT_RATE = 52;
+    private static final int TX_PACKET_RATE = 56;
+    private static final int LOSS = 60;
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final long start;
+    private final int capacity;
+    private volatile int count;
+    // index of the last record of every port, -1 if none; replaced as a whole when grown
+    private volatile AtomicIntegerArray lastOfPort = new AtomicIntegerArray(0);
+
+    private HistorySegment(Path file, MappedByteBuffer buffer, long start, int capacity, int count) {
+        this.file = file;
+        this.buffer = buffer;
+        this.start = start;
+        this.capacity = capacity;
+        this.count = count;
+        for(int i = 0; i < count; i++) {
+            setLastOfPort(getPort(i), i);
+        }
+    }
+
+    /**
+     * Creates the file of a segment starting at the time in milliseconds. Space is only
+     * taken on disk as records are written.
+     */
+    static HistorySegment create(Path file, long start, int capacity) throws IOException {
+        MappedByteBuffer buffer = map(file, (long) HEADER_SIZE + (long) capacity * RECORD_SIZE,
+                StandardOpenOption.CREATE_NEW);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(START_OFFSET, start);
+        buffer.putInt(COUNT_OFFSET, 0);
+        return new HistorySegment(file, buffer, start, capacity, 0);
+    }
+
+    /**
+     * Maps the file of an existing segment.
+     */
+    static HistorySegment open(Path file) throws IOException {
+        long size = file.toFile().length();
+        if(size < HEADER_SIZE) {
+            throw new IOException("Segment " + file + " is truncated");
+        }
+        MappedByteBuffer buffer = map(file, size);
+        if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Segment " + file + " has no valid header");
+        }
+        int capacity = (int) ((size - HEADER_SIZE) / RECORD_SIZE);
+        int count = buffer.getInt(COUNT_OFFSET);
+        if(count < 0 || count > capacity) {
+            throw new IOException("Segment " + file + " has an invalid count " + count);
+        }
+        return new HistorySegment(file, buffer, buffer.getLong(START_OFFSET), capacity, count);
+    }
+
+    private static MappedByteBuffer map(Path file, long size, StandardOpenOption... options) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, withReadWrite(options))) {
+            // the mapping stays valid once the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static StandardOpenOption[] withReadWrite(StandardOpenOption[] options) {
+        StandardOpenOption[] all = new StandardOpenOption[options.length + 2];
+        all[0] = StandardOpenOption.READ;
+        all[1] = StandardOpenOption.WRITE;
+        System.arraycopy(options, 0, all, 2, options.length);
+        return all;
+    }
+
+    /**
+     * Appends a record. The caller serializes appends and checks that the segment is not
+     * full.
+     */
+    void append(long time, int port, long txPackets, long rxPackets, long txBytes, long rxBytes,
+                float txBitRate, float rxBitRate, float txPacketRate, float loss) {
+        int index = count;
+        int offset = offset(index);
+        AtomicIntegerArray last = lastOfPort;
+        buffer.putLong(offset + TIME, time);
+        buffer.putInt(offset + PORT, port);
+        buffer.putInt(offset + PREVIOUS, port < last.length() ? last.get(port) : -1);
+        buffer.putLong(offset + TX_PACKETS, txPackets);
+        buffer.putLong(offset + RX_PACKETS, rxPackets);
+        buffer.putLong(offset + TX_BYTES, txBytes);
+        buffer.putLong(offset + RX_BYTES, rxBytes);
+        buffer.putFloat(offset + TX_BIT_RATE, txBitRate);
+        buffer.putFloat(offset + RX_BIT_RATE, rxBitRate);
+        buffer.putFloat(offset + TX_PACKET_RATE, txPacketRate);
+        buffer.putFloat(offset + LOSS, loss);
+        buffer.putInt(COUNT_OFFSET, index + 1);
+        setLastOfPort(port, index);
+        count = index + 1;
+    }
+
+    /**
+     * Records the index as the last record of the port, after the record is written, so
+     * readers seeing the index see the record.
+     */
+    private void setLastOfPort(int port, int index) {
+        AtomicIntegerArray last = lastOfPort;
+        if(port >= last.length()) {
+            AtomicIntegerArray grown = new AtomicIntegerArray(Math.max(port + 1, last.length() * 2));
+            for(int p = 0; p < grown.length(); p++) {
+                grown.set(p, p < last.length() ? last.get(p) : -1);
+            }
+            lastOfPort = grown;
+            last = grown;
+        }
+        last.set(port, index);
+    }
+
+    /**
+     * Returns the index of the last record of the port at or before the time among the
+     * first count records, or -1 if there is none.
+     */
+    int lastOfPortAtOrBefore(int port, long time, int count) {
+        AtomicIntegerArray last = lastOfPort;
+        if(port >= last.length()) {
+            return -1;
+        }
+        int bound = firstAtOrAfter(time + 1, count);
+        int index = last.get(port);
+        while(index >= bound) {
+            index = getPrevious(index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index of the first record at or after the time, or the count if there is
+     * none.
+     */
+    int firstAtOrAfter(long time, int count) {
+        int low = 0;
+        int high = count;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(getTime(middle) < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Writes the records to disk.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    long getStart() {
+        return start;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns whether no more records can be appended.
+     */
+    boolean isFull() {
+        return count == capacity;
+    }
+
+    private static int offset(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+
+    long getTime(int index) {
+        return buffer.getLong(offset(index) + TIME);
+    }
+
+    int getPort(int index) {
+        return buffer.getInt(offset(index) + PORT);
+    }
+
+    /**
+     * Returns the index of the previous record of the same port, or -1 if it is the first.
+     */
+    int getPrevious(int index) {
+        return buffer.getInt(offset(index) + PREVIOUS);
+    }
+
+    float getTxBitRate(int index) {
+        return buffer.getFloat(offset(index) + TX_BIT_RATE);
+    }
+
+    float getRxBitRate(int index) {
+        return buffer.getFloat(offset(index) + RX_BIT_RATE);
+    }
+
+    float getTxPacketRate(int index) {
+        return buffer.getFloat(offset(index) + TX_PACKET_RATE);
+    }
+
+    float getLoss(int index) {
+        return buffer.getFloat(offset(index) + LOSS);
+    }
+}
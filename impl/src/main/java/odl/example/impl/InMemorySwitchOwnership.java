@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+
+/**
+ * Switch ownership decided in memory, for a controller without entity ownership service
+ * and for testing several members in one process.
+ *
+ * Members of the same {@link Cluster} share candidates. As with the entity ownership
+ * service, a switch goes to its first candidate and stays there; when its owner withdraws
+ * or closes, it goes to the remaining candidate owning the fewest switches. A member
+ * alone in its cluster owns every switch, registered or not.
+ */
+public class InMemorySwitchOwnership implements SwitchOwnership {
+
+    private final Cluster cluster;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates the only member of a new cluster.
+     */
+    public InMemorySwitchOwnership() {
+        this(new Cluster());
+    }
+
+    public InMemorySwitchOwnership(Cluster cluster) {
+        this.cluster = cluster;
+        cluster.join(this);
+    }
+
+    @Override
+    public void registerCandidate(String switchId) {
+        cluster.fire(cluster.register(this, switchId));
+    }
+
+    @Override
+    public void unregisterCandidate(String switchId) {
+        cluster.fire(cluster.unregister(this, switchId));
+    }
+
+    @Override
+    public boolean isOwner(String switchId) {
+        return cluster.isOwner(this, switchId);
+    }
+
+    @Override
+    public boolean isClustered() {
+        return cluster.getMemberCount() > 1;
+    }
+
+    @Override
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Leaves the cluster, handing the switches of the member over to other candidates.
+     */
+    @Override
+    public void close() {
+        cluster.fire(cluster.leave(this));
+    }
+
+    private void notifyListeners(String switchId, boolean isOwner) {
+        for(Listener listener : listeners) {
+            listener.ownershipChanged(switchId, isOwner);
+        }
+    }
+
+    /**
+     * The members sharing the switches.
+     */
+    public static final class Cluster {
+        private final Set<InMemorySwitchOwnership> members = new LinkedHashSet<>();
+        private final Map<String, Set<InMemorySwitchOwnership>> candidates = new HashMap<>();
+        private final Map<String, InMemorySwitchOwnership> owners = new HashMap<>();
+        private final Map<InMemorySwitchOwnership, Integer> ownedCounts = new HashMap<>();
+
+        private synchronized void join(InMemorySwitchOwnership member) {
+            members.add(member);
+            ownedCounts.put(member, 0);
+        }
+
+        private synchronized int getMemberCount() {
+            return members.size();
+        }
+
+        private synchronized boolean isOwner(InMemorySwitchOwnership member, String switchId) {
+            InMemorySwitchOwnership owner = owners.get(switchId);
+            return owner == null ? members.size() == 1 && members.contains(member) : owner == member;
+        }
+
+        private synchronized List<Change> register(InMemorySwitchOwnership member, String switchId) {
+            Set<InMemorySwitchOwnership> switchCandidates = candidates.get(switchId);
+            if(switchCandidates == null) {
+                switchCandidates = new LinkedHashSet<>();
+                candidates.put(switchId, switchCandidates);
+            }
+            List<Change> changes = new ArrayList<>();
+            if(members.contains(member) && switchCandidates.add(member) && !owners.containsKey(switchId)) {
+                elect(switchId, changes);
+            }
+            return changes;
+        }
+
+        private synchronized List<Change> unregister(InMemorySwitchOwnership member, String switchId) {
+            List<Change> changes = new ArrayList<>();
+            Set<InMemorySwitchOwnership> switchCandidates = candidates.get(switchId);
+            if(switchCandidates == null || !switchCandidates.remove(member)) {
+                return changes;
+            }
+            if(switchCandidates.isEmpty()) {
+                candidates.remove(switchId);
+            }
+            if(owners.get(switchId) == member) {
+                owners.remove(switchId);
+                ownedCounts.put(member, ownedCounts.get(member) - 1);
+                changes.add(new Change(member, switchId, false));
+                elect(switchId, changes);
+            }
+            return changes;
+        }
+
+        private synchronized List<Change> leave(InMemorySwitchOwnership member) {
+            List<Change> changes = new ArrayList<>();
+            for(String switchId : new ArrayList<>(candidates.keySet())) {
+                changes.addAll(unregister(member, switchId));
+            }
+            members.remove(member);
+            ownedCounts.remove(member);
+            return changes;
+        }
+
+        private void elect(String switchId, List<Change> changes) {
+            Set<InMemorySwitchOwnership> switchCandidates = candidates.get(switchId);
+            if(switchCandidates == null) {
+                return;
+            }
+            InMemorySwitchOwnership owner = null;
+            for(InMemorySwitchOwnership candidate : switchCandidates) {
+                if(owner == null || ownedCounts.get(candidate) < ownedCounts.get(owner)) {
+                    owner = candidate;
+                }
+            }
+            owners.put(switchId, owner);
+            ownedCounts.put(owner, ownedCounts.get(owner) + 1);
+            changes.add(new Change(owner, switchId, true));
+        }
+
+        /**
+         * Notifies the members outside of the cluster lock, in the order of the changes.
+         */
+        private void fire(List<Change> changes) {
+            for(Change change : changes) {
+                change.member.notifyListeners(change.switchId, change.isOwner);
+            }
+        }
+    }
+
+    private static final class Change {
+        private final InMemorySwitchOwnership member;
+        private final String switchId;
+        private final boolean isOwner;
+
+        private Change(InMemorySwitchOwnership member, String switchId, boolean isOwner) {
+            this.member = member;
+            this.switchId = switchId;
+            this.isOwner = isOwner;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.SparseMultigraph;
+import edu.uci.ics.jung.graph.util.EdgeType;
+import edu.uci.ics.jung.graph.util.Graphs;
+
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+
+
+/**
+ * JUNG view of one {@link GraphIndex} snapshot, kept for code that works on a JUNG
+ * {@link Graph}. It is only materialised on request, and like the snapshot it is never
+ * modified afterwards, so it can be shared between threads.
+ */
+class JungGraphAdapter {
+
+    private final long epoch;
+    private final Graph<NodeId, Link> networkGraph;
+
+    JungGraphAdapter(GraphIndex index) {
+        Graph<NodeId, Link> graph = new SparseMultigraph<>();
+        for(int v = 0; v < index.getVertexCount(); v++) {
+            graph.addVertex(index.getVertex(v));
+        }
+        for(int arc = 0; arc < index.getArcCount(); arc++) {
+            // one of the two arcs of every edge
+            if(index.getArcSource(arc) < index.getArcTarget(arc)) {
+                Link edge = index.getArcLink(arc);
+                graph.addEdge(edge, edge.getSource().getSourceNode(), edge.getDestination().getDestNode(),
+                        EdgeType.UNDIRECTED);
+            }
+        }
+        this.epoch = index.getEpoch();
+        this.networkGraph = Graphs.unmodifiableGraph(graph);
+    }
+
+    long getEpoch() {
+        return epoch;
+    }
+
+    Graph<NodeId, Link> getGraph() {
+        return networkGraph;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Lock-free histogram of latencies in nanoseconds with log-linear buckets, in the manner
+ * of HdrHistogram: values below 2^subBucketBits have a bucket each, and every following
+ * power of two is split into 2^(subBucketBits - 1) buckets. The relative error of a
+ * reported value is thus below 2^(1 - subBucketBits).
+ *
+ * Recording is a bucket increment, a sum update and, for a new maximum, a
+ * compare-and-set. Readers see the buckets as they are while recording goes on, so a
+ * snapshot may be off by the values recorded meanwhile.
+ */
+public final class LatencyHistogram {
+
+    // values of 2^40 ns (about 18 minutes) and more are counted as that
+    private static final int MAX_VALUE_BITS = 40;
+
+    private final int subBucketBits;
+    private final int subBucketCount;
+    private final int halfCount;
+    private final AtomicLongArray buckets;
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram(int subBucketBits) {
+        this.subBucketBits = subBucketBits;
+        this.subBucketCount = 1 << subBucketBits;
+        this.halfCount = subBucketCount / 2;
+        this.buckets = new AtomicLongArray(subBucketCount + (MAX_VALUE_BITS - subBucketBits) * halfCount);
+    }
+
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), (1L << MAX_VALUE_BITS) - 1);
+        buckets.incrementAndGet(indexOf(value));
+        sum.add(value);
+        long currentMax = max.get();
+        while(value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    private int indexOf(long value) {
+        if(value < subBucketCount) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - subBucketBits;
+        return subBucketCount + (shift - 1) * halfCount + (int) (value >>> shift) - halfCount;
+    }
+
+    /**
+     * Returns the highest value counted in the bucket.
+     */
+    private long highestValueOf(int index) {
+        if(index < subBucketCount) {
+            return index;
+        }
+        int shift = (index - subBucketCount) / halfCount + 1;
+        long subBucket = (index - subBucketCount) % halfCount + halfCount;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for(int i = 0; i < buckets.length(); i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the value at the quantile, between 0 and 1, or 0 if nothing was recorded.
+     */
+    public long getValueAtQuantile(double quantile) {
+        return getValueAtQuantile(quantile, getCount());
+    }
+
+    private long getValueAtQuantile(double quantile, long count) {
+        if(count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for(int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if(seen >= rank) {
+                return Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public LatencySnapshot getSnapshot() {
+        long count = getCount();
+        return new LatencySnapshot(count, count == 0 ? 0 : sum.sum() / count,
+                getValueAtQuantile(0.5, count), getValueAtQuantile(0.99, count),
+                getValueAtQuantile(0.999, count), max.get());
+    }
+
+    public void reset() {
+        for(int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        sum.reset();
+        max.set(0);
+    }
+}
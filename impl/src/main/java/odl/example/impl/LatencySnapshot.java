@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import java.beans.ConstructorProperties;
+
+
+/**
+ * Latencies recorded by a {@link LatencyHistogram}, in nanoseconds.
+ */
+public final class LatencySnapshot {
+
+    private final long count;
+    private final long mean;
+    private final long p50;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    @ConstructorProperties({"count", "mean", "p50", "p99", "p999", "max"})
+    public LatencySnapshot(long count, long mean, long p50, long p99, long p999, long max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMean() {
+        return mean;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getP999() {
+        return p999;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencySnapshot{count=" + count + ", mean=" + mean + ", p50=" + p50 + ", p99=" + p99
+                + ", p999=" + p999 + ", max=" + max + '}';
+    }
+}
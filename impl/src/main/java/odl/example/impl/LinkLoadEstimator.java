@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Turns the rates of every port over the latest statistics interval into the link
+ * quality used for path selection, damped so that routes do not flap with the traffic.
+ *
+ * Utilization and loss are smoothed with an exponentially weighted moving average. The
+ * smoothed values are only published to the {@link LinkQualityTable} when they moved
+ * materially away from the published ones (hysteresis), and at most once per hold-down
+ * period per port (damping). A change of capacity is published at once. Delay is not
+ * measured from port statistics, so the published delay is kept.
+ *
+ * Used by the statistics collector thread only.
+ */
+public class LinkLoadEstimator {
+
+    public static final double DEFAULT_ALPHA = 0.3;
+    public static final long DEFAULT_HOLD_DOWN_SECONDS = 15;
+
+    private final LinkQualityTable table;
+    private final double alpha;
+    private final long holdDownNanos;
+    private final Map<String, Estimate> estimates = new HashMap<>();
+
+    public LinkLoadEstimator(LinkQualityTable table, double alpha, long holdDownSeconds) {
+        this.table = table;
+        this.alpha = alpha;
+        this.holdDownNanos = TimeUnit.SECONDS.toNanos(holdDownSeconds);
+    }
+
+    /**
+     * Folds the latest rates of the port into its estimate. Returns true if the link
+     * quality table was updated.
+     */
+    public boolean observe(String tpId, long now, PortRates rates) {
+        double utilization = Math.min(rates.getUtilization(), 1);
+        double loss = rates.getLoss();
+        Estimate estimate = estimates.get(tpId);
+        if(estimate == null) {
+            estimate = new Estimate(utilization, loss);
+            estimates.put(tpId, estimate);
+            return publish(tpId, now, rates.getCapacity(), estimate);
+        }
+        estimate.utilization += alpha * (utilization - estimate.utilization);
+        estimate.loss += alpha * (loss - estimate.loss);
+
+        LinkQuality published = table.get(tpId);
+        if(published.getCapacity() != rates.getCapacity()) {
+            return publish(tpId, now, rates.getCapacity(), estimate);
+        }
+        if(now - estimate.publishedAt < holdDownNanos
+                || !published.isMaterialChange(rates.getCapacity(), published.getDelay(), estimate.loss,
+                        estimate.utilization)) {
+            return false;
+        }
+        return publish(tpId, now, rates.getCapacity(), estimate);
+    }
+
+    private boolean publish(String tpId, long now, double capacity, Estimate estimate) {
+        table.update(tpId, new LinkQuality(capacity, table.get(tpId).getDelay(), estimate.loss, estimate.utilization));
+        estimate.publishedAt = now;
+        return true;
+    }
+
+    public void remove(String tpId) {
+        estimates.remove(tpId);
+    }
+
+    public int size() {
+        return estimates.size();
+    }
+
+    private static final class Estimate {
+        private double utilization;
+        private double loss;
+        private long publishedAt;
+
+        private Estimate(double utilization, double loss) {
+            this.utilization = utilization;
+            this.loss = loss;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+
+/**
+ * Measured quality of a link in the direction of its egress port: capacity in kbit/s,
+ * delay in milliseconds, packet loss ratio and transmit utilization of the capacity.
+ * A zero capacity means unknown.
+ */
+public final class LinkQuality {
+
+    public static final LinkQuality UNKNOWN = new LinkQuality(0, 0, 0);
+    static final double MATERIAL_UTILIZATION_CHANGE = 0.1;
+
+    private final double capacity;
+    private final double delay;
+    private final double loss;
+    private final double utilization;
+
+    public LinkQuality(double capacity, double delay, double loss) {
+        this(capacity, delay, loss, 0);
+    }
+
+    public LinkQuality(double capacity, double delay, double loss, double utilization) {
+        this.capacity = capacity;
+        this.delay = delay;
+        this.loss = loss;
+        this.utilization = utilization;
+    }
+
+    public double getCapacity() {
+        return capacity;
+    }
+
+    public double getDelay() {
+        return delay;
+    }
+
+    public double getLoss() {
+        return loss;
+    }
+
+    public double getUtilization() {
+        return utilization;
+    }
+
+    /**
+     * A change of capacity, of delay or loss by more than a tenth, or of utilization by
+     * more than {@link #MATERIAL_UTILIZATION_CHANGE} is material for path selection.
+     * Smaller changes are measurement noise.
+     */
+    public boolean isMaterialChange(LinkQuality other) {
+        return isMaterialChange(other.capacity, other.delay, other.loss, other.utilization);
+    }
+
+    public boolean isMaterialChange(double otherCapacity, double otherDelay, double otherLoss,
+                                    double otherUtilization) {
+        return capacity != otherCapacity
+                || Math.abs(delay - otherDelay) > 0.1 * Math.max(delay, otherDelay)
+                || Math.abs(loss - otherLoss) > 0.1 * Math.max(loss, otherLoss)
+                || Math.abs(utilization - otherUtilization) > MATERIAL_UTILIZATION_CHANGE;
+    }
+
+    @Override
+    public String toString() {
+        return "LinkQuality [capacity=" + capacity + ", delay=" + delay + ", loss=" + loss
+                + ", utilization=" + utilization + "]";
+    }
+}
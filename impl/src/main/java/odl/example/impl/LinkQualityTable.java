@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Latest link quality per egress termination point, e.g. "openflow:1:2". The version
+ * changes on every update so that derived per-arc arrays know when to refresh, while
+ * cached paths through the port are only evicted on a material change.
+ */
+public class LinkQualityTable {
+
+    private static final LinkQualityTable instance = new LinkQualityTable();
+    private final ConcurrentMap<String, LinkQuality> qualities = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+
+    protected LinkQualityTable() {
+
+    }
+
+    public static LinkQualityTable getInstance() {
+        return instance;
+    }
+
+    public LinkQuality get(String tpId) {
+        LinkQuality quality = qualities.get(tpId);
+        return quality == null ? LinkQuality.UNKNOWN : quality;
+    }
+
+    public void update(String tpId, LinkQuality quality) {
+        LinkQuality previous = qualities.put(tpId, quality);
+        version.incrementAndGet();
+        if(previous == null || previous.isMaterialChange(quality)) {
+            PathCache.getInstance().invalidateTp(tpId);
+            CandidatePathCache.getInstance().invalidateTp(tpId);
+            if(previous == null || previous.getCapacity() != quality.getCapacity()) {
+                PathCache.getInstance().invalidateInfeasible();
+            }
+        }
+    }
+
+    /**
+     * Updates the quality only if it changed materially, so that periodic measurements
+     * neither allocate nor disturb cached paths when the link is stable.
+     */
+    public void update(String tpId, double capacity, double delay, double loss, double utilization) {
+        LinkQuality previous = qualities.get(tpId);
+        if(previous != null && !previous.isMaterialChange(capacity, delay, loss, utilization)) {
+            return;
+        }
+        update(tpId, new LinkQuality(capacity, delay, loss, utilization));
+    }
+
+    /**
+     * Sets the capacity of the port, keeping its delay, loss and utilization, for ports
+     * whose load another member measures.
+     */
+    public void updateCapacity(String tpId, double capacity) {
+        LinkQuality previous = get(tpId);
+        if(previous.getCapacity() == capacity) {
+            return;
+        }
+        update(tpId, new LinkQuality(capacity, previous.getDelay(), previous.getLoss(), previous.getUtilization()));
+    }
+
+    public void remove(String tpId) {
+        if(qualities.remove(tpId) != null) {
+            version.incrementAndGet();
+            PathCache.getInstance().invalidateTp(tpId);
+            CandidatePathCache.getInstance().invalidateTp(tpId);
+        }
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import java.util.Arrays;
+
+
+/**
+ * Open addressing map from long keys to int values without boxing. Collisions are
+ * resolved by linear probing and removals shift entries back, so there are no
+ * tombstones. The key -1 marks free slots and is held apart from the table.
+ * Not thread-safe, but a lookup racing with a change terminates, so it may be
+ * tried optimistically and validated afterwards.
+ */
+final class LongIntHashMap {
+
+    private static final long EMPTY = -1L;
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private boolean hasEmptyKey;
+    private int emptyKeyValue;
+
+    LongIntHashMap() {
+        this(16);
+    }
+
+    LongIntHashMap(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1);
+    }
+
+    private void allocate(int capacity) {
+        long[] free = new long[capacity];
+        Arrays.fill(free, EMPTY);
+        keys = free;
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    public int size() {
+        return hasEmptyKey ? size + 1 : size;
+    }
+
+    public int get(long key, int missing) {
+        if(key == EMPTY) {
+            return hasEmptyKey ? emptyKeyValue : missing;
+        }
+        long[] keys = this.keys;
+        int mask = keys.length - 1;
+        int i = slot(key) & mask;
+        // bounded, so that a lookup racing with a change cannot probe forever
+        for(int probes = 0; probes <= mask; probes++, i = (i + 1) & mask) {
+            long k = keys[i];
+            if(k == key) {
+                return values[i];
+            }
+            if(k == EMPTY) {
+                return missing;
+            }
+        }
+        return missing;
+    }
+
+    public void put(long key, int value) {
+        if(key == EMPTY) {
+            hasEmptyKey = true;
+            emptyKeyValue = value;
+            return;
+        }
+        if((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        int i = slot(key);
+        while(keys[i] != EMPTY) {
+            if(keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    public int remove(long key, int missing) {
+        if(key == EMPTY) {
+            if(!hasEmptyKey) {
+                return missing;
+            }
+            hasEmptyKey = false;
+            return emptyKeyValue;
+        }
+        int i = slot(key);
+        while(keys[i] != key) {
+            if(keys[i] == EMPTY) {
+                return missing;
+            }
+            i = (i + 1) & mask;
+        }
+        int value = values[i];
+        int hole = i;
+        for(int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if(((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = EMPTY;
+        size--;
+        return value;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        hasEmptyKey = false;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for(int i = 0; i < oldKeys.length; i++) {
+            if(oldKeys[i] != EMPTY) {
+                int j = slot(oldKeys[i]);
+                while(keys[j] != EMPTY) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.Metrics;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.MetricsBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.metrics.Operation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.metrics.OperationBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.metrics.OperationKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.metrics.SwitchFlowRoundTrip;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.metrics.SwitchFlowRoundTripBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.metrics.SwitchFlowRoundTripKey;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Periodically writes the {@link MetricsRegistry} to the operational metrics container,
+ * so the latencies can be read over RESTCONF.
+ */
+public class MetricsPublisher implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsPublisher.class);
+    public static final long DEFAULT_INTERVAL_SECONDS = 10;
+    private static final MetricsPublisher instance = new MetricsPublisher(MetricsRegistry.getInstance());
+
+    private final MetricsRegistry registry;
+    private ScheduledExecutorService executor;
+    private DataBroker db;
+
+    protected MetricsPublisher(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public static MetricsPublisher getInstance() {
+        return instance;
+    }
+
+    public synchronized void start(DataBroker db, long intervalSeconds) {
+        if(executor != null) {
+            return;
+        }
+        this.db = db;
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("odlexample-metrics-publisher-%d").setDaemon(true).build());
+        executor.scheduleWithFixedDelay(this, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void close() {
+        if(executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            publish();
+        } catch(Exception e) {
+            LOG.warn("Publishing metrics failed:", e);
+        }
+    }
+
+    void publish() {
+        WriteTransaction transaction = db.newWriteOnlyTransaction();
+        transaction.put(LogicalDatastoreType.OPERATIONAL, InstanceIdentifier.create(Metrics.class), build());
+        Futures.addCallback(transaction.submit(), new LoggingFuturesCallBack<Void>("Failed to publish metrics", LOG));
+    }
+
+    Metrics build() {
+        List<Operation> operations = new ArrayList<>();
+        for(OperationMetrics operation : registry.getOperations()) {
+            LatencySnapshot latency = operation.getLatency();
+            operations.add(new OperationBuilder()
+                    .setKey(new OperationKey(operation.getName()))
+                    .setName(operation.getName())
+                    .setCount(toUint64(latency.getCount()))
+                    .setFailures(toUint64(operation.getFailures()))
+                    .setInFlight(toUint64(operation.getInFlight()))
+                    .setMeanNs(toUint64(latency.getMean()))
+                    .setP50Ns(toUint64(latency.getP50()))
+                    .setP99Ns(toUint64(latency.getP99()))
+                    .setP999Ns(toUint64(latency.getP999()))
+                    .setMaxNs(toUint64(latency.getMax()))
+                    .build());
+        }
+        List<SwitchFlowRoundTrip> roundTrips = new ArrayList<>();
+        for(OperationMetrics roundTrip : registry.getFlowRoundTrips()) {
+            LatencySnapshot latency = roundTrip.getLatency();
+            roundTrips.add(new SwitchFlowRoundTripBuilder()
+                    .setKey(new SwitchFlowRoundTripKey(roundTrip.getName()))
+                    .setSwitchId(roundTrip.getName())
+                    .setCount(toUint64(latency.getCount()))
+                    .setFailures(toUint64(roundTrip.getFailures()))
+                    .setInFlight(toUint64(roundTrip.getInFlight()))
+                    .setMeanNs(toUint64(latency.getMean()))
+                    .setP50Ns(toUint64(latency.getP50()))
+                    .setP99Ns(toUint64(latency.getP99()))
+                    .setP999Ns(toUint64(latency.getP999()))
+                    .setMaxNs(toUint64(latency.getMax()))
+                    .build());
+        }
+        return new MetricsBuilder()
+                .setOperation(operations)
+                .setSwitchFlowRoundTrip(roundTrips)
+                .build();
+    }
+
+    private static BigInteger toUint64(long value) {
+        return BigInteger.valueOf(Math.max(value, 0));
+    }
+}
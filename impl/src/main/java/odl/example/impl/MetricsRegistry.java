@@ -0,0 +1,207 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Latency histograms and counters of the RPC, datastore and flow programming paths,
+ * exposed over JMX and published to the operational datastore by the
+ * {@link MetricsPublisher}.
+ *
+ * Switches get coarser histograms than the module wide operations, as there are many
+ * of them.
+ */
+public class MetricsRegistry implements MetricsRegistryMXBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsRegistry.class);
+    public static final String OBJECT_NAME = "odl.example:type=Metrics";
+    // relative errors below 1.6% and 12.5%
+    private static final int OPERATION_SUB_BUCKET_BITS = 7;
+    private static final int SWITCH_SUB_BUCKET_BITS = 4;
+    private static final MetricsRegistry instance = new MetricsRegistry();
+
+    private final OperationMetrics addApplication = new OperationMetrics("add-application", OPERATION_SUB_BUCKET_BITS);
+    private final OperationMetrics registryRead = new OperationMetrics("registry-read", OPERATION_SUB_BUCKET_BITS);
+    private final OperationMetrics registryWrite = new OperationMetrics("registry-write", OPERATION_SUB_BUCKET_BITS);
+    private final OperationMetrics topologyRead = new OperationMetrics("topology-read", OPERATION_SUB_BUCKET_BITS);
+    private final OperationMetrics pathComputation =
+            new OperationMetrics("path-computation", OPERATION_SUB_BUCKET_BITS);
+    private final OperationMetrics pathBatch = new OperationMetrics("path-batch", OPERATION_SUB_BUCKET_BITS);
+    // in flight are the applications waiting, failures the ones turned away
+    private final OperationMetrics admissionWait = new OperationMetrics("admission-wait", OPERATION_SUB_BUCKET_BITS);
+    private final List<OperationMetrics> operations = Collections.unmodifiableList(Arrays.asList(
+            addApplication, registryRead, registryWrite, topologyRead, pathComputation, pathBatch,
+            admissionWait));
+    private final ConcurrentMap<String, OperationMetrics> flowRoundTrips = new ConcurrentHashMap<>();
+    private ObjectName registeredName;
+
+    protected MetricsRegistry() {
+
+    }
+
+    public static MetricsRegistry getInstance() {
+        return instance;
+    }
+
+    public OperationMetrics getAddApplication() {
+        return addApplication;
+    }
+
+    public OperationMetrics getRegistryRead() {
+        return registryRead;
+    }
+
+    public OperationMetrics getRegistryWrite() {
+        return registryWrite;
+    }
+
+    public OperationMetrics getTopologyRead() {
+        return topologyRead;
+    }
+
+    public OperationMetrics getPathComputation() {
+        return pathComputation;
+    }
+
+    /**
+     * Returns the metrics of whole batches of {@link QosPathEngine#computePaths}, kept
+     * apart from the single path computations.
+     */
+    public OperationMetrics getPathBatch() {
+        return pathBatch;
+    }
+
+    /**
+     * Returns the metrics of the time applications wait in the {@link AdmissionQueue}.
+     */
+    public OperationMetrics getAdmissionWait() {
+        return admissionWait;
+    }
+
+    public List<OperationMetrics> getOperations() {
+        return operations;
+    }
+
+    /**
+     * Returns the metrics of addFlow round trips to the switch.
+     */
+    public OperationMetrics getFlowRoundTrip(String switchId) {
+        OperationMetrics metrics = flowRoundTrips.get(switchId);
+        if(metrics == null) {
+            OperationMetrics created = new OperationMetrics(switchId, SWITCH_SUB_BUCKET_BITS);
+            metrics = flowRoundTrips.putIfAbsent(switchId, created);
+            if(metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    public Collection<OperationMetrics> getFlowRoundTrips() {
+        return flowRoundTrips.values();
+    }
+
+    public synchronized void register() {
+        if(registeredName != null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if(!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                registeredName = name;
+            }
+        } catch(JMException e) {
+            LOG.warn("Failed to register metrics MXBean:", e);
+        }
+    }
+
+    public synchronized void unregister() {
+        if(registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch(JMException e) {
+            LOG.debug("Failed to unregister metrics MXBean:", e);
+        }
+        registeredName = null;
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getLatencies() {
+        Map<String, LatencySnapshot> latencies = new TreeMap<>();
+        for(OperationMetrics operation : operations) {
+            latencies.put(operation.getName(), operation.getLatency());
+        }
+        return latencies;
+    }
+
+    @Override
+    public Map<String, Long> getFailures() {
+        Map<String, Long> failures = new TreeMap<>();
+        for(OperationMetrics operation : operations) {
+            failures.put(operation.getName(), operation.getFailures());
+        }
+        for(OperationMetrics roundTrip : flowRoundTrips.values()) {
+            failures.put(roundTrip.getName(), roundTrip.getFailures());
+        }
+        return failures;
+    }
+
+    @Override
+    public Map<String, Long> getInFlight() {
+        Map<String, Long> inFlight = new TreeMap<>();
+        for(OperationMetrics operation : operations) {
+            inFlight.put(operation.getName(), operation.getInFlight());
+        }
+        for(OperationMetrics roundTrip : flowRoundTrips.values()) {
+            inFlight.put(roundTrip.getName(), roundTrip.getInFlight());
+        }
+        return inFlight;
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getFlowRoundTripLatencies() {
+        Map<String, LatencySnapshot> latencies = new TreeMap<>();
+        for(OperationMetrics roundTrip : flowRoundTrips.values()) {
+            latencies.put(roundTrip.getName(), roundTrip.getLatency());
+        }
+        return latencies;
+    }
+
+    /**
+     * Clears the histograms and failure counts. Calls in flight are still counted.
+     */
+    @Override
+    public void reset() {
+        for(OperationMetrics operation : operations) {
+            operation.reset();
+        }
+        for(OperationMetrics roundTrip : flowRoundTrips.values()) {
+            roundTrip.reset();
+        }
+    }
+}
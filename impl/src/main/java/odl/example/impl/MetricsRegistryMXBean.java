@@ -0,0 +1,28 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import java.util.Map;
+
+
+/**
+ * JMX view of the {@link MetricsRegistry}. Latencies are in nanoseconds and maps are
+ * keyed by operation name or switch id.
+ */
+public interface MetricsRegistryMXBean {
+
+    Map<String, LatencySnapshot> getLatencies();
+
+    Map<String, Long> getFailures();
+
+    Map<String, Long> getInFlight();
+
+    Map<String, LatencySnapshot> getFlowRoundTripLatencies();
+
+    void reset();
+}
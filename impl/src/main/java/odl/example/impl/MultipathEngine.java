@@ -0,0 +1,302 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Spreads applications over the k cheapest paths between their switches.
+ *
+ * Candidate paths come from {@link QosPathEngine#computeCandidates} and are cached per
+ * switch pair in the {@link CandidatePathCache}. Candidates are ranked by the residual
+ * capacity at their bottleneck port, where the load of a port is the larger of its
+ * measured transmit rate and the bandwidth reserved on it. Ties go to the candidate with
+ * fewer applications at its bottleneck, then to the cheaper one, so parallel links are
+ * used even by best-effort applications. The application is admitted on the first
+ * candidate whose bandwidth the {@link BandwidthLedger} can reserve.
+ *
+ * Assignments take no lock: the ledger settles concurrent admissions, and the
+ * application counts used for tie-breaking are only a hint.
+ */
+public class MultipathEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MultipathEngine.class);
+    public static final int DEFAULT_K = 4;
+    private static final MultipathEngine instance = new MultipathEngine(DEFAULT_K, BandwidthLedger.getInstance());
+
+    private final int k;
+    private final BandwidthLedger ledger;
+    private final ConcurrentMap<Integer, Assignment> assignments = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> applications = new ConcurrentHashMap<>();
+
+    protected MultipathEngine(int k, BandwidthLedger ledger) {
+        this.k = k;
+        this.ledger = ledger;
+    }
+
+    public static MultipathEngine getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the candidate paths, cheapest first, computing and caching them on a miss.
+     * A single infeasible result tells why there is no path.
+     */
+    public List<PathResult> getCandidates(NodeId source, NodeId destination, QosRequirement qos) {
+        CandidatePathCache cache = CandidatePathCache.getInstance();
+        List<PathResult> candidates = cache.get(source, destination, qos);
+        if(candidates != null) {
+            return candidates;
+        }
+        long generation = cache.getGeneration();
+        QosPathEngine engine = QosPathEngine.getInstance();
+        GraphIndex index = NetworkGraphImpl.getInstance().getGraphIndex();
+        OperationMetrics metrics = MetricsRegistry.getInstance().getPathComputation();
+        long start = metrics.start();
+        candidates = engine.computeCandidates(index, engine.getArcMetrics(index), source, destination, qos, k);
+        metrics.stop(start, true);
+        cache.put(source, destination, qos, candidates, generation);
+        return candidates;
+    }
+
+    /**
+     * Assigns the application to the least loaded candidate path that has its bandwidth
+     * left and reserves it there, replacing any earlier assignment of the application.
+     * Returns a result without path for reason {@link PathResult.Reason#BANDWIDTH} if no
+     * candidate can take the application. An earlier assignment is only released once the
+     * new path is reserved, so an application that cannot be moved keeps its path.
+     *
+     * The new path is pending until it is {@link #commit committed}, and the earlier
+     * assignment stays reserved until then, so a setup failing later can
+     * {@link #rollback roll back} to it.
+     */
+    public PathResult assign(int appId, NodeId source, NodeId destination, QosRequirement qos) {
+        return assign(appId, source, destination, qos, null);
+    }
+
+    /**
+     * Assigns the application like {@link #assign(int, NodeId, NodeId, QosRequirement)},
+     * given its cheapest path, e.g. from a batch of {@link QosPathEngine#computePaths}, or
+     * null. If that path is infeasible the application has no candidates and is turned
+     * away without searching for them.
+     */
+    public PathResult assign(int appId, NodeId source, NodeId destination, QosRequirement qos,
+                             PathResult cheapest) {
+        if(cheapest != null && !cheapest.isFeasible()) {
+            return cheapest;
+        }
+        List<PathResult> candidates = getCandidates(source, destination, qos);
+        if(!candidates.get(0).isFeasible()) {
+            return candidates.get(0);
+        }
+        for(PathResult candidate : rank(candidates)) {
+            if(ledger.reserve(candidate.getEgressTps(), qos.getBandwidth())) {
+                for(String tp : candidate.getEgressTps()) {
+                    getApplications(tp).incrementAndGet();
+                }
+                Assignment current = assignments.get(appId);
+                // a pending assignment replaced again still replaces the committed one
+                Assignment committed = current != null && current.pending ? current.replaced : current;
+                assignments.put(appId, new Assignment(candidate.getEgressTps(), qos.getBandwidth(), committed, true));
+                if(current != null && current.pending) {
+                    release(current);
+                }
+                LOG.debug("Assigned application {} to {} of {} candidates", appId, candidate.getEgressTps(),
+                        candidates.size());
+                return candidate;
+            }
+        }
+        LOG.debug("No candidate path has {} kbit/s left for application {}", qos.getBandwidth(), appId);
+        return PathResult.noPath(PathResult.Reason.BANDWIDTH);
+    }
+
+    /**
+     * Orders the candidates by residual capacity at their bottleneck, most first.
+     */
+    private List<PathResult> rank(List<PathResult> candidates) {
+        if(candidates.size() == 1) {
+            return candidates;
+        }
+        PortRates rates = new PortRates();
+        final double[] residuals = new double[candidates.size()];
+        final int[] counts = new int[candidates.size()];
+        List<Integer> order = new ArrayList<>(candidates.size());
+        for(int i = 0; i < candidates.size(); i++) {
+            residuals[i] = Double.POSITIVE_INFINITY;
+            for(String tp : candidates.get(i).getEgressTps()) {
+                double residual = residual(tp, rates);
+                if(residual < residuals[i]) {
+                    residuals[i] = residual;
+                    AtomicInteger count = applications.get(tp);
+                    counts[i] = count == null ? 0 : count.get();
+                }
+            }
+            order.add(i);
+        }
+        // stable, so equally loaded candidates stay cheapest first
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byResidual = Double.compare(residuals[b], residuals[a]);
+                return byResidual != 0 ? byResidual : Integer.compare(counts[a], counts[b]);
+            }
+        });
+        List<PathResult> ranked = new ArrayList<>(candidates.size());
+        for(int i : order) {
+            ranked.add(candidates.get(i));
+        }
+        return ranked;
+    }
+
+    /**
+     * Makes the pending assignment of the application its assignment and releases the
+     * one it replaces. Does nothing if none is pending.
+     */
+    public void commit(int appId) {
+        Assignment assignment = assignments.get(appId);
+        if(assignment == null || !assignment.pending) {
+            return;
+        }
+        if(assignments.replace(appId, assignment,
+                new Assignment(assignment.egressTps, assignment.bandwidth, null, false))
+                && assignment.replaced != null) {
+            release(assignment.replaced);
+        }
+    }
+
+    /**
+     * Releases the pending assignment of the application and gives it back the one it
+     * replaced, if any. Does nothing if none is pending.
+     */
+    public void rollback(int appId) {
+        Assignment assignment = assignments.get(appId);
+        if(assignment == null || !assignment.pending) {
+            return;
+        }
+        boolean rolledBack = assignment.replaced == null ? assignments.remove(appId, assignment)
+                : assignments.replace(appId, assignment, assignment.replaced);
+        if(rolledBack) {
+            release(assignment);
+        }
+    }
+
+    /**
+     * Releases the path and bandwidth assigned to the application, pending or not.
+     */
+    public void release(int appId) {
+        Assignment assignment = assignments.remove(appId);
+        if(assignment != null) {
+            discard(assignment);
+        }
+    }
+
+    /**
+     * Reserves the bandwidth of the application again on the egress termination points of
+     * the path it had before a restart, replacing any assignment of it. Returns false and
+     * keeps any assignment if a port no longer has the capacity.
+     */
+    public boolean restore(int appId, List<String> egressTps, double bandwidth) {
+        if(!ledger.reserve(egressTps, bandwidth)) {
+            return false;
+        }
+        for(String tp : egressTps) {
+            getApplications(tp).incrementAndGet();
+        }
+        Assignment previous = assignments.put(appId,
+                new Assignment(new ArrayList<>(egressTps), bandwidth, null, false));
+        if(previous != null) {
+            discard(previous);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the egress termination points the bandwidth of the application is reserved
+     * on, pending or not, or null if it has no path assigned.
+     */
+    public List<String> getEgressTps(int appId) {
+        Assignment assignment = assignments.get(appId);
+        return assignment == null ? null : Collections.unmodifiableList(assignment.egressTps);
+    }
+
+    /**
+     * Returns the bandwidth reserved for the application, pending or not, or 0 if it has no
+     * path assigned.
+     */
+    public double getBandwidth(int appId) {
+        Assignment assignment = assignments.get(appId);
+        return assignment == null ? 0 : assignment.bandwidth;
+    }
+
+    private void release(Assignment assignment) {
+        ledger.release(assignment.egressTps, assignment.bandwidth);
+        for(String tp : assignment.egressTps) {
+            getApplications(tp).decrementAndGet();
+        }
+    }
+
+    /**
+     * Releases the assignment and, if it is pending, the one it replaces.
+     */
+    private void discard(Assignment assignment) {
+        release(assignment);
+        if(assignment.pending && assignment.replaced != null) {
+            release(assignment.replaced);
+        }
+    }
+
+    private AtomicInteger getApplications(String tp) {
+        AtomicInteger count = applications.get(tp);
+        if(count == null) {
+            AtomicInteger created = new AtomicInteger();
+            count = applications.putIfAbsent(tp, created);
+            if(count == null) {
+                count = created;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the capacity of the port left over its load in kbit/s. For ports of unknown
+     * capacity it is the negated load, which still ranks ports by load.
+     */
+    private double residual(String tp, PortRates rates) {
+        double measured = PortStatisticsCollector.getInstance().getLatest(tp, rates)
+                ? rates.getTxBitRate() / 1000 : 0;
+        double used = Math.max(ledger.getReserved(tp), measured);
+        double capacity = LinkQualityTable.getInstance().get(tp).getCapacity();
+        return capacity > 0 ? capacity - used : -used;
+    }
+
+    private static final class Assignment {
+        private final List<String> egressTps;
+        private final double bandwidth;
+        // the committed assignment a pending one replaces, still reserved
+        private final Assignment replaced;
+        private final boolean pending;
+
+        private Assignment(List<String> egressTps, double bandwidth, Assignment replaced, boolean pending) {
+            this.egressTps = egressTps;
+            this.bandwidth = bandwidth;
+            this.replaced = replaced;
+            this.pending = pending;
+        }
+    }
+}
@@ -11,48 +11,51 @@ import com.google.common.base.Optional;
 
 import edu.uci.ics.jung.algorithms.shortestpath.DijkstraShortestPath;
 import edu.uci.ics.jung.graph.Graph;
-import edu.uci.ics.jung.graph.SparseMultigraph;
-import edu.uci.ics.jung.graph.util.EdgeType;
 
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeIdentifier;
 import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
 import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NetworkTopology;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.TopologyId;
-import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.link.attributes.DestinationBuilder;
-import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.link.attributes.SourceBuilder;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.Topology;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.TopologyKey;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
-import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.LinkBuilder;
+import org.opendaylight.yangtools.concepts.ListenerRegistration;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 
 
+/**
+ * Topology graph of the switches, published as immutable {@link GraphIndex} snapshots.
+ *
+ * Writers are serialized, apply their batch of link changes to the mutable
+ * {@link CompactGraph} and swap in a snapshot of the next epoch before they return.
+ * Readers only read the current snapshot, so path queries never take a lock and never
+ * see a half-applied batch.
+ */
 public class NetworkGraphImpl {
 
     private static final Logger LOG = LoggerFactory.getLogger(NetworkGraphImpl.class);
-    private Graph<NodeId, Link> networkGraph = null;
-    private Set<String> linkAdded = new HashSet<>();
-    private DijkstraShortestPath<NodeId, Link> shortestPath = null;
-    private static NetworkGraphImpl instance = null;
+    private static final NetworkGraphImpl instance = new NetworkGraphImpl();
+    // guarded by this
+    private final CompactGraph networkGraph = new CompactGraph();
+    private volatile GraphIndex graphIndex = GraphIndex.EMPTY;
+    private volatile JungGraphAdapter jungAdapter;
     private DataBroker db;
-    
+    private ListenerRegistration<TopologyListener> topologyListenerRegistration;
+
     protected NetworkGraphImpl() {
 
     }
 
     public static NetworkGraphImpl getInstance() {
-        if(instance == null) {
-            instance = new NetworkGraphImpl();
-        }
         return instance;
     }
 
@@ -60,36 +63,77 @@ public class NetworkGraphImpl {
         this.db = db;
     }
 
-	public DijkstraShortestPath<NodeId, Link> getShortestPath() {
-		return shortestPath;
-	}
+    /**
+     * Returns the unmodifiable JUNG view of the current snapshot, materialising it on
+     * first use in an epoch.
+     */
+    public Graph<NodeId, Link> getJungGraph() {
+        GraphIndex index = graphIndex;
+        JungGraphAdapter adapter = jungAdapter;
+        if(adapter == null || adapter.getEpoch() != index.getEpoch()) {
+            // racing readers may build the same view twice, either one is correct
+            adapter = new JungGraphAdapter(index);
+            jungAdapter = adapter;
+        }
+        return adapter.getGraph();
+    }
 
-	public void setShortestPath(DijkstraShortestPath<NodeId, Link> shortestPath) {
-		this.shortestPath = shortestPath;
-	}
+    /**
+     * Returns a Dijkstra search over the current snapshot. It caches its trees without
+     * synchronization, so every call gets its own instance.
+     */
+    public DijkstraShortestPath<NodeId, Link> getShortestPath() {
+        return new DijkstraShortestPath<>(getJungGraph());
+    }
 
 	public void init () {
         LOG.info("Initializing network graph!");
         clearGraph();
         List<Link> links = getLinksFromTopology();
-        if(links == null || links.isEmpty()) {
-            return;
+        if(links != null && !links.isEmpty()) {
+            addLinks(links);
+        }
+        if(topologyListenerRegistration == null) {
+            DataTreeIdentifier<Topology> treeId =
+                    new DataTreeIdentifier<>(LogicalDatastoreType.OPERATIONAL, getTopologyInstanceIdentifier());
+            topologyListenerRegistration = db.registerDataTreeChangeListener(treeId, new TopologyListener(this));
         }
-        addLinks(links);
     }
 
-    private List<Link> getLinksFromTopology() {
-        InstanceIdentifier<Topology> topologyInstanceIdentifier = InstanceIdentifier.builder(NetworkTopology.class)
+    public void close() {
+        if(topologyListenerRegistration != null) {
+            topologyListenerRegistration.close();
+            topologyListenerRegistration = null;
+        }
+    }
+
+    static InstanceIdentifier<Topology> getTopologyInstanceIdentifier() {
+        return InstanceIdentifier.builder(NetworkTopology.class)
                 .child(Topology.class, new TopologyKey(new TopologyId("flow:1")))
                 .build();
+    }
+
+    /**
+     * Links towards hosts are not part of the switch graph.
+     */
+    static boolean isInternalLink(Link link) {
+        return !link.getLinkId().getValue().contains("host");
+    }
+
+    private List<Link> getLinksFromTopology() {
+        InstanceIdentifier<Topology> topologyInstanceIdentifier = getTopologyInstanceIdentifier();
         Topology topology = null;
+        OperationMetrics metrics = MetricsRegistry.getInstance().getTopologyRead();
+        long start = metrics.start();
         ReadOnlyTransaction readOnlyTransaction = db.newReadOnlyTransaction();
         try {
             Optional<Topology> topologyOptional = readOnlyTransaction.read(LogicalDatastoreType.OPERATIONAL, topologyInstanceIdentifier).get();
             if(topologyOptional.isPresent()) {
                 topology = topologyOptional.get();
             }
+            metrics.stop(start, true);
         } catch(Exception e) {
+            metrics.stop(start, false);
             LOG.error("Error reading topology {}", topologyInstanceIdentifier);
             readOnlyTransaction.close();
             throw new RuntimeException("Error reading from operational store, topology : " + topologyInstanceIdentifier, e);
@@ -104,7 +148,7 @@ public class NetworkGraphImpl {
         }
         List<Link> internalLinks = new ArrayList<>();
         for(Link link : links) {
-            if(!(link.getLinkId().getValue().contains("host"))) {
+            if(isInternalLink(link)) {
                 internalLinks.add(link);
             }
         }
@@ -112,54 +156,89 @@ public class NetworkGraphImpl {
         return internalLinks;
     }
 
-    public synchronized void addLinks(List<Link> links) {
-        if(links == null || links.isEmpty()) {
-            LOG.debug("In addLinks: No link added as links is null or empty.");
-            return;
-        }
+    public void addLinks(List<Link> links) {
+        applyChanges(Collections.<Link>emptyList(), links);
+    }
 
-        if(networkGraph == null) {
-            networkGraph = new SparseMultigraph<>();
-        }
+    /**
+     * Removes the given links from the graph. Either direction of a link removes
+     * the undirected edge, so that no path is computed over a half-broken link.
+     */
+    public void removeLinks(List<Link> links) {
+        applyChanges(links, Collections.<Link>emptyList());
+    }
 
-        for(Link link : links) {
-            if(linkAlreadyAdded(link)) {
-                continue;
+    /**
+     * Removes and then adds the given links as one change of the topology. Only the
+     * result is published, so a modified link, given as both removed and added, never
+     * disappears from the snapshot readers see.
+     */
+    public synchronized void applyChanges(List<Link> removedLinks, List<Link> addedLinks) {
+        List<Link> removedEdges = new ArrayList<>();
+        if(removedLinks != null) {
+            for(Link link : removedLinks) {
+                Link edge = networkGraph.removeLink(link);
+                if(edge != null) {
+                    removedEdges.add(edge);
+                }
+            }
+        }
+        long epoch = networkGraph.getEpoch();
+        if(addedLinks != null) {
+            for(Link link : addedLinks) {
+                if(isInternalLink(link)) {
+                    networkGraph.addLink(link);
+                }
             }
-            NodeId sourceNodeId = link.getSource().getSourceNode();
-            NodeId destinationNodeId = link.getDestination().getDestNode();
-            networkGraph.addVertex(sourceNodeId);
-            networkGraph.addVertex(destinationNodeId);
-            networkGraph.addEdge(link, sourceNodeId, destinationNodeId, EdgeType.UNDIRECTED);
+        }
+        boolean added = networkGraph.getEpoch() != epoch;
+        if(removedEdges.isEmpty() && !added) {
+            LOG.debug("In applyChanges: the graph is unchanged.");
+            return;
+        }
+        publish();
+        for(Link edge : removedEdges) {
+            PathCache.getInstance().invalidateLink(edge);
+            CandidatePathCache.getInstance().invalidateLink(edge);
+        }
+        if(added) {
+            PathCache.getInstance().invalidateInfeasible();
+            CandidatePathCache.getInstance().clear();
         }
 
-        LOG.info("Created topology graph {} ", networkGraph);
+        LOG.info("Topology graph changed: {} links removed, now {} nodes and {} links", removedEdges.size(),
+                networkGraph.getNodeCount(), networkGraph.getEdgeCount());
+    }
 
-        if(shortestPath == null) {
-            shortestPath = new DijkstraShortestPath<>(networkGraph);
-        } else {
-            shortestPath.reset();
-        }
-        LOG.info("Shortest paths {} ", shortestPath);
+    /**
+     * Returns the shortest path between two nodes, or null if there is none.
+     */
+    public List<Link> getPath(NodeId source, NodeId destination) {
+        PathResult result = QosPathEngine.getInstance().computePath(source, destination, QosRequirement.BEST_EFFORT);
+        return result.isFeasible() ? result.getLinks() : null;
     }
 
-    private boolean linkAlreadyAdded(Link link) {
-        String linkAddedKey = null;
-        if(link.getDestination().getDestTp().hashCode() > link.getSource().getSourceTp().hashCode()) {
-            linkAddedKey = link.getSource().getSourceTp().getValue() + link.getDestination().getDestTp().getValue();
-        } else {
-            linkAddedKey = link.getDestination().getDestTp().getValue() + link.getSource().getSourceTp().getValue();
-        }
-        if(linkAdded.contains(linkAddedKey)) {
-            return true;
-        } else {
-            linkAdded.add(linkAddedKey);
-            return false;
-        }
+    /**
+     * Returns the snapshot of the current epoch for path computation. Queries that read
+     * it once see a consistent graph however the topology changes meanwhile.
+     */
+    public GraphIndex getGraphIndex() {
+        return graphIndex;
+    }
+
+    /**
+     * Swaps in the snapshot of the current epoch. Caches must be invalidated after this,
+     * so that a result computed on the previous snapshot is not cached afterwards.
+     */
+    private void publish() {
+        graphIndex = networkGraph.snapshot();
     }
-    
-    public void clearGraph() {
-    	networkGraph = new SparseMultigraph<>();
+
+    public synchronized void clearGraph() {
+        networkGraph.clear();
+        publish();
+        PathCache.getInstance().clear();
+        CandidatePathCache.getInstance().clear();
     }
 
 }
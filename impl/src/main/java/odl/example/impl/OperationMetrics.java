@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Latency, failures and calls in flight of one kind of operation.
+ *
+ * A call is timed with
+ * <pre>
+ * long start = metrics.start();
+ * ...
+ * metrics.stop(start, success);
+ * </pre>
+ * which costs two reads of the clock and a few uncontended atomic updates.
+ */
+public final class OperationMetrics {
+
+    private final String name;
+    private final LatencyHistogram histogram;
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public OperationMetrics(String name, int subBucketBits) {
+        this.name = name;
+        this.histogram = new LatencyHistogram(subBucketBits);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long start() {
+        inFlight.increment();
+        return System.nanoTime();
+    }
+
+    public void stop(long start, boolean success) {
+        histogram.record(System.nanoTime() - start);
+        inFlight.decrement();
+        if(!success) {
+            failures.increment();
+        }
+    }
+
+    /**
+     * Counts a failure of a call that was never started.
+     */
+    public void fail() {
+        failures.increment();
+    }
+
+    public LatencySnapshot getLatency() {
+        return histogram.getSnapshot();
+    }
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    void reset() {
+        histogram.reset();
+        failures.reset();
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Bounded LRU cache of path results keyed by source, destination and QoS requirement.
+ *
+ * A reverse index from egress termination point to the cached paths using it lets a link
+ * change evict only the paths crossing that link. Results without a path are kept apart
+ * and dropped whenever a link is added or link capacity changes, as either may make
+ * them feasible.
+ *
+ * Path computations look up the cache concurrently, so it is split into segments by key
+ * hash, each with its own lock, LRU order and reverse index, and lookups of different
+ * segments do not contend. Invalidations go through all segments.
+ *
+ * A result computed while an invalidation happened is not cached, see {@link #getGeneration()}.
+ */
+public class PathCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PathCache.class);
+    public static final int DEFAULT_MAX_ENTRIES = 65536;
+    static final int SEGMENTS = 16;
+    // below this size the cache is a single segment, with exact LRU order
+    private static final int MIN_SEGMENTED_ENTRIES = 1024;
+    private static final PathCache instance = new PathCache(DEFAULT_MAX_ENTRIES);
+
+    private final Segment[] segments;
+    // incremented before the segments are invalidated
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public PathCache(int maxEntries) {
+        int count = maxEntries < MIN_SEGMENTED_ENTRIES ? 1 : SEGMENTS;
+        segments = new Segment[count];
+        for(int i = 0; i < count; i++) {
+            segments[i] = new Segment((maxEntries + count - 1) / count);
+        }
+    }
+
+    public static PathCache getInstance() {
+        return instance;
+    }
+
+    private Segment segmentFor(Key key) {
+        int hash = key.hash ^ (key.hash >>> 16);
+        return segments[hash & (segments.length - 1)];
+    }
+
+    /**
+     * Returns the cached result, or null on a miss.
+     */
+    public PathResult get(NodeId source, NodeId destination, QosRequirement qos) {
+        Key key = new Key(source, destination, qos);
+        PathResult result = segmentFor(key).get(key);
+        if(result == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Returns a counter that changes on every invalidation. Callers read it before
+     * computing a path and pass it to {@link #put}.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Caches the result unless an invalidation happened since the given generation,
+     * in which case the result may already be stale.
+     */
+    public void put(NodeId source, NodeId destination, QosRequirement qos, PathResult result, long computedAt) {
+        Key key = new Key(source, destination, qos);
+        segmentFor(key).put(key, result, computedAt);
+    }
+
+    /**
+     * Evicts the paths crossing the link in either direction.
+     */
+    public void invalidateLink(Link link) {
+        generation.incrementAndGet();
+        String source = link.getSource().getSourceTp().getValue();
+        String destination = link.getDestination().getDestTp().getValue();
+        int count = 0;
+        for(Segment segment : segments) {
+            count += segment.invalidateTp(source) + segment.invalidateTp(destination);
+        }
+        LOG.debug("Invalidated {} cached paths through {} and {}", count, source, destination);
+    }
+
+    /**
+     * Evicts the paths leaving through the termination point.
+     */
+    public void invalidateTp(String tp) {
+        generation.incrementAndGet();
+        int count = 0;
+        for(Segment segment : segments) {
+            count += segment.invalidateTp(tp);
+        }
+        LOG.debug("Invalidated {} cached paths through {}", count, tp);
+    }
+
+    /**
+     * Evicts the cached results without a path.
+     */
+    public void invalidateInfeasible() {
+        generation.incrementAndGet();
+        for(Segment segment : segments) {
+            segment.invalidateInfeasible();
+        }
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        for(Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for(Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * LRU map of one share of the keys with its reverse index.
+     */
+    private final class Segment {
+        private final int maxEntries;
+        private final Map<Key, PathResult> entries;
+        private final Map<String, Set<Key>> keysByTp = new HashMap<>();
+        private final Set<Key> infeasibleKeys = new HashSet<>();
+
+        private Segment(int maxEntries) {
+            this.maxEntries = maxEntries;
+            this.entries = new LinkedHashMap<Key, PathResult>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, PathResult> eldest) {
+                    if(size() <= Segment.this.maxEntries) {
+                        return false;
+                    }
+                    unindex(eldest.getKey(), eldest.getValue());
+                    evictions.incrementAndGet();
+                    return true;
+                }
+            };
+        }
+
+        synchronized PathResult get(Key key) {
+            return entries.get(key);
+        }
+
+        /**
+         * Checks the generation under the segment lock: an invalidation either moved it
+         * before, or reaches this segment after the result is indexed.
+         */
+        synchronized void put(Key key, PathResult result, long computedAt) {
+            if(computedAt != generation.get()) {
+                return;
+            }
+            PathResult previous = entries.put(key, result);
+            if(previous != null) {
+                unindex(key, previous);
+            }
+            if(!result.isFeasible()) {
+                infeasibleKeys.add(key);
+                return;
+            }
+            for(String tp : result.getEgressTps()) {
+                Set<Key> keys = keysByTp.get(tp);
+                if(keys == null) {
+                    keys = new HashSet<>();
+                    keysByTp.put(tp, keys);
+                }
+                keys.add(key);
+            }
+        }
+
+        private void unindex(Key key, PathResult result) {
+            if(!result.isFeasible()) {
+                infeasibleKeys.remove(key);
+                return;
+            }
+            for(String tp : result.getEgressTps()) {
+                Set<Key> keys = keysByTp.get(tp);
+                if(keys != null) {
+                    keys.remove(key);
+                    if(keys.isEmpty()) {
+                        keysByTp.remove(tp);
+                    }
+                }
+            }
+        }
+
+        synchronized int invalidateTp(String tp) {
+            Set<Key> keys = keysByTp.remove(tp);
+            if(keys == null) {
+                return 0;
+            }
+            for(Key key : keys) {
+                PathResult result = entries.remove(key);
+                if(result != null) {
+                    invalidations.incrementAndGet();
+                    for(String other : result.getEgressTps()) {
+                        if(!other.equals(tp)) {
+                            Set<Key> otherKeys = keysByTp.get(other);
+                            if(otherKeys != null) {
+                                otherKeys.remove(key);
+                                if(otherKeys.isEmpty()) {
+                                    keysByTp.remove(other);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            return keys.size();
+        }
+
+        synchronized void invalidateInfeasible() {
+            Iterator<Key> iterator = infeasibleKeys.iterator();
+            while(iterator.hasNext()) {
+                entries.remove(iterator.next());
+                iterator.remove();
+                invalidations.incrementAndGet();
+            }
+        }
+
+        synchronized void clear() {
+            invalidations.addAndGet(entries.size());
+            entries.clear();
+            keysByTp.clear();
+            infeasibleKeys.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    static final class Key {
+        private final NodeId source;
+        private final NodeId destination;
+        private final QosRequirement qos;
+        private final int hash;
+
+        Key(NodeId source, NodeId destination, QosRequirement qos) {
+            this.source = source;
+            this.destination = destination;
+            this.qos = qos;
+            this.hash = 31 * (31 * source.hashCode() + destination.hashCode()) + qos.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) {
+                return true;
+            }
+            if(!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return hash == that.hash && source.equals(that.source) && destination.equals(that.destination)
+                    && qos.equals(that.qos);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
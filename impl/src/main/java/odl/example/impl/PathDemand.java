@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+
+
+/**
+ * A path to compute in a batch of {@link QosPathEngine#computePaths}.
+ */
+public final class PathDemand {
+
+    private final NodeId source;
+    private final NodeId destination;
+    private final QosRequirement qos;
+
+    public PathDemand(NodeId source, NodeId destination, QosRequirement qos) {
+        this.source = source;
+        this.destination = destination;
+        this.qos = qos;
+    }
+
+    public NodeId getSource() {
+        return source;
+    }
+
+    public NodeId getDestination() {
+        return destination;
+    }
+
+    public QosRequirement getQos() {
+        return qos;
+    }
+
+    @Override
+    public String toString() {
+        return "PathDemand{source=" + source.getValue() + ", destination=" + destination.getValue()
+                + ", qos=" + qos + '}';
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+
+/**
+ * A switch on the path of an application and the connector its traffic leaves from.
+ */
+public final class PathHop {
+
+    private final String switchId;
+    private final String egressConnector;
+
+    public PathHop(String switchId, String egressConnector) {
+        this.switchId = switchId;
+        this.egressConnector = egressConnector;
+    }
+
+    public String getSwitchId() {
+        return switchId;
+    }
+
+    public String getEgressConnector() {
+        return egressConnector;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof PathHop)) {
+            return false;
+        }
+        PathHop that = (PathHop) o;
+        return switchId.equals(that.switchId) && egressConnector.equals(that.egressConnector);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * switchId.hashCode() + egressConnector.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "PathHop [switch=" + switchId + ", egress=" + egressConnector + "]";
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Outcome of a path computation: either a feasible path with its end-to-end metrics,
+ * or the reason why no path meets the requirement.
+ */
+public final class PathResult {
+
+    public enum Reason {
+        UNKNOWN_NODE,
+        UNREACHABLE,
+        BANDWIDTH,
+        DELAY,
+        LOSS
+    }
+
+    private final List<Link> links;
+    private final List<String> egressTps;
+    private final double cost;
+    private final double delay;
+    private final double loss;
+    private final Reason reason;
+
+    private PathResult(List<Link> links, List<String> egressTps, double cost, double delay, double loss,
+                       Reason reason) {
+        this.links = links;
+        this.egressTps = egressTps;
+        this.cost = cost;
+        this.delay = delay;
+        this.loss = loss;
+        this.reason = reason;
+    }
+
+    public static PathResult found(List<Link> links, List<String> egressTps, double cost, double delay,
+                                   double loss) {
+        return new PathResult(Collections.unmodifiableList(links), Collections.unmodifiableList(egressTps),
+                cost, delay, loss, null);
+    }
+
+    public static PathResult noPath(Reason reason) {
+        return new PathResult(Collections.<Link>emptyList(), Collections.<String>emptyList(), Double.POSITIVE_INFINITY,
+                Double.POSITIVE_INFINITY, 1, reason);
+    }
+
+    public boolean isFeasible() {
+        return reason == null;
+    }
+
+    public List<Link> getLinks() {
+        return links;
+    }
+
+    /**
+     * Returns the egress termination point used at each hop, in path order.
+     */
+    public List<String> getEgressTps() {
+        return egressTps;
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    public double getDelay() {
+        return delay;
+    }
+
+    public double getLoss() {
+        return loss;
+    }
+
+    /**
+     * Returns why no path was found, or null for a feasible path.
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        if(!isFeasible()) {
+            return "PathResult [no path, reason=" + reason + "]";
+        }
+        return "PathResult [hops=" + links.size() + ", cost=" + cost + ", delay=" + delay + ", loss=" + loss + "]";
+    }
+}
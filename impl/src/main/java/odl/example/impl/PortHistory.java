@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import java.util.Arrays;
+
+
+/**
+ * Samples of one port over a time range, as read from the {@link PortHistoryStore}, oldest
+ * first. Rates are per second and the loss is the share of transmitted packets lost.
+ */
+public final class PortHistory {
+
+    public enum Field {
+        TX_BIT_RATE, RX_BIT_RATE, TX_PACKET_RATE, LOSS
+    }
+
+    private final int resolution;
+    private int size;
+    private long[] times = new long[16];
+    private final float[][] values = new float[Field.values().length][16];
+
+    PortHistory(int resolution) {
+        this.resolution = resolution;
+    }
+
+    void add(long time, float txBitRate, float rxBitRate, float txPacketRate, float loss) {
+        if(size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            for(int f = 0; f < values.length; f++) {
+                values[f] = Arrays.copyOf(values[f], size * 2);
+            }
+        }
+        times[size] = time;
+        values[Field.TX_BIT_RATE.ordinal()][size] = txBitRate;
+        values[Field.RX_BIT_RATE.ordinal()][size] = rxBitRate;
+        values[Field.TX_PACKET_RATE.ordinal()][size] = txPacketRate;
+        values[Field.LOSS.ordinal()][size] = loss;
+        size++;
+    }
+
+    /**
+     * Returns the seconds every sample covers, or 0 for samples as collected.
+     */
+    public int getResolution() {
+        return resolution;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the time of the sample in milliseconds since the epoch.
+     */
+    public long getTime(int index) {
+        return times[index];
+    }
+
+    public float get(Field field, int index) {
+        return values[field.ordinal()][index];
+    }
+
+    /**
+     * Returns the value of the field at the quantile, between 0 and 1, of all samples, or
+     * 0 if there are none.
+     */
+    public double getPercentile(Field field, double quantile) {
+        if(size == 0) {
+            return 0;
+        }
+        float[] sorted = Arrays.copyOf(values[field.ordinal()], size);
+        Arrays.sort(sorted);
+        int rank = (int) Math.max(1, Math.ceil(quantile * size));
+        return sorted[rank - 1];
+    }
+}
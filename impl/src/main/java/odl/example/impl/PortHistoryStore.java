@@ -0,0 +1,384 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Append-only history of the port samples taken by the {@link PortStatisticsCollector},
+ * kept on disk so that it survives restarts.
+ *
+ * Samples are kept twice: as collected in the raw tier, and averaged per port over
+ * {@link #DOWNSAMPLE_SECONDS} in the downsampled tier, which is kept longer. Each tier is
+ * a sequence of memory-mapped {@link HistorySegment}s of 64 byte records in time order, a
+ * new one started when the last is full or spans its period. Segments whose records are
+ * all older than the retention of their tier are deleted when a new one starts.
+ * Ports are stored by number, the numbers are assigned in the order of the port names
+ * in the ports file.
+ *
+ * Appending writes to the mapped file and to preallocated per-port accumulators, so it
+ * neither blocks on disk nor allocates. Queries read the segments without taking the
+ * lock of the appender, and follow the per-port chain of records of a segment back from
+ * the end of the range, so they read the records of the port only.
+ */
+public class PortHistoryStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PortHistoryStore.class);
+    public static final String DEFAULT_DIRECTORY = "data/odlexample/port-history";
+    public static final long DEFAULT_RAW_RETENTION_SECONDS = TimeUnit.DAYS.toSeconds(1);
+    public static final long DEFAULT_DOWNSAMPLED_RETENTION_SECONDS = TimeUnit.DAYS.toSeconds(30);
+    public static final int DOWNSAMPLE_SECONDS = 60;
+    private static final long BUCKET_MILLIS = TimeUnit.SECONDS.toMillis(DOWNSAMPLE_SECONDS);
+    // 64 MiB per segment, sparse until written
+    static final int DEFAULT_SEGMENT_RECORDS = 1 << 20;
+    private static final long RAW_SEGMENT_PERIOD = TimeUnit.HOURS.toMillis(1);
+    private static final long DOWNSAMPLED_SEGMENT_PERIOD = TimeUnit.DAYS.toMillis(1);
+    private static final String PORTS_FILE = "ports";
+    private static final long RETRY_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final PortHistoryStore instance = new PortHistoryStore(DEFAULT_SEGMENT_RECORDS);
+
+    private final int segmentRecords;
+    // guarded by this
+    private final Map<String, Integer> ports = new HashMap<>();
+    private Path directory;
+    private Tier raw;
+    private Tier downsampled;
+    private long bucket = Long.MIN_VALUE;
+    // accumulated samples of every port in the current bucket, by port number
+    private int[] bucketCounts = new int[0];
+    private double[] bucketSums = new double[0];
+    private long[] bucketCounters = new long[0];
+
+    protected PortHistoryStore(int segmentRecords) {
+        this.segmentRecords = segmentRecords;
+    }
+
+    public static PortHistoryStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * Opens the store in the directory, creating it if needed, and continues the history
+     * found there.
+     */
+    public synchronized void open(Path directory, long rawRetentionSeconds, long downsampledRetentionSeconds)
+            throws IOException {
+        if(this.directory != null) {
+            return;
+        }
+        Files.createDirectories(directory);
+        Path portsFile = directory.resolve(PORTS_FILE);
+        if(Files.exists(portsFile)) {
+            for(String port : Files.readAllLines(portsFile, StandardCharsets.UTF_8)) {
+                if(!port.isEmpty()) {
+                    addPort(port);
+                }
+            }
+        }
+        raw = new Tier(directory.resolve("raw"), 0, RAW_SEGMENT_PERIOD,
+                TimeUnit.SECONDS.toMillis(rawRetentionSeconds));
+        downsampled = new Tier(directory.resolve("downsampled"), DOWNSAMPLE_SECONDS, DOWNSAMPLED_SEGMENT_PERIOD,
+                TimeUnit.SECONDS.toMillis(downsampledRetentionSeconds));
+        this.directory = directory;
+        LOG.info("Opened port history in {} with {} ports", directory, ports.size());
+    }
+
+    /**
+     * Writes the partial downsampling bucket and flushes the segments to disk.
+     */
+    public synchronized void close() {
+        if(directory == null) {
+            return;
+        }
+        flushBucket();
+        raw.close();
+        downsampled.close();
+        directory = null;
+        ports.clear();
+        bucket = Long.MIN_VALUE;
+        Arrays.fill(bucketCounts, 0);
+    }
+
+    public synchronized boolean isOpen() {
+        return directory != null;
+    }
+
+    /**
+     * Appends a sample of the port taken at the time in milliseconds since the epoch, with
+     * its cumulative counters and its rates over the latest interval. Does nothing if the
+     * store is not open.
+     */
+    public synchronized void append(String nodeConnectorId, long time, long txPackets, long rxPackets,
+                                    long txBytes, long rxBytes, PortRates rates) {
+        if(directory == null) {
+            return;
+        }
+        Integer port = ports.get(nodeConnectorId);
+        if(port == null) {
+            port = registerPort(nodeConnectorId);
+            if(port == null) {
+                return;
+            }
+        }
+        raw.append(time, port, txPackets, rxPackets, txBytes, rxBytes, (float) rates.getTxBitRate(),
+                (float) rates.getRxBitRate(), (float) rates.getTxPacketRate(), (float) rates.getLoss());
+
+        long sampleBucket = time - Math.floorMod(time, BUCKET_MILLIS);
+        if(sampleBucket > bucket) {
+            flushBucket();
+            bucket = sampleBucket;
+        }
+        bucketCounts[port]++;
+        bucketSums[port * 4] += rates.getTxBitRate();
+        bucketSums[port * 4 + 1] += rates.getRxBitRate();
+        bucketSums[port * 4 + 2] += rates.getTxPacketRate();
+        bucketSums[port * 4 + 3] += rates.getLoss();
+        bucketCounters[port * 4] = txPackets;
+        bucketCounters[port * 4 + 1] = rxPackets;
+        bucketCounters[port * 4 + 2] = txBytes;
+        bucketCounters[port * 4 + 3] = rxBytes;
+    }
+
+    /**
+     * Writes the mean of every port sampled in the current bucket to the downsampled tier,
+     * stamped with the start of the bucket, so its records stay in time order.
+     */
+    private void flushBucket() {
+        for(int port = 0; port < bucketCounts.length; port++) {
+            int count = bucketCounts[port];
+            if(count == 0) {
+                continue;
+            }
+            downsampled.append(bucket, port, bucketCounters[port * 4], bucketCounters[port * 4 + 1],
+                    bucketCounters[port * 4 + 2], bucketCounters[port * 4 + 3],
+                    (float) (bucketSums[port * 4] / count), (float) (bucketSums[port * 4 + 1] / count),
+                    (float) (bucketSums[port * 4 + 2] / count), (float) (bucketSums[port * 4 + 3] / count));
+            bucketCounts[port] = 0;
+            Arrays.fill(bucketSums, port * 4, port * 4 + 4, 0);
+        }
+    }
+
+    private Integer registerPort(String nodeConnectorId) {
+        try {
+            Files.write(directory.resolve(PORTS_FILE),
+                    (nodeConnectorId + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch(IOException e) {
+            LOG.warn("Failed to add port {} to the port history:", nodeConnectorId, e);
+            return null;
+        }
+        return addPort(nodeConnectorId);
+    }
+
+    private Integer addPort(String nodeConnectorId) {
+        Integer port = ports.size();
+        ports.put(nodeConnectorId, port);
+        if(port == bucketCounts.length) {
+            int capacity = Math.max(64, bucketCounts.length * 2);
+            bucketCounts = Arrays.copyOf(bucketCounts, capacity);
+            bucketSums = Arrays.copyOf(bucketSums, capacity * 4);
+            bucketCounters = Arrays.copyOf(bucketCounters, capacity * 4);
+        }
+        return port;
+    }
+
+    /**
+     * Returns the samples of the port between the two times in milliseconds, both
+     * included. They come from the raw tier unless it no longer reaches back to the
+     * start of the range while the downsampled tier does.
+     */
+    public PortHistory query(String nodeConnectorId, long from, long to) {
+        Integer port;
+        Tier tier;
+        synchronized(this) {
+            if(directory == null) {
+                return new PortHistory(0);
+            }
+            port = ports.get(nodeConnectorId);
+            // the first bucket starts up to a bucket before the oldest raw sample
+            boolean olderDownsampled = downsampled.getOldest() < raw.getOldest() - BUCKET_MILLIS;
+            tier = raw.getOldest() > from && olderDownsampled ? downsampled : raw;
+        }
+        PortHistory history = new PortHistory(tier.resolution);
+        if(port == null) {
+            return history;
+        }
+        List<HistorySegment> segments = tier.segments;
+        int[] matches = new int[16];
+        for(int s = 0; s < segments.size(); s++) {
+            HistorySegment segment = segments.get(s);
+            if(segment.getStart() > to) {
+                break;
+            }
+            if(s + 1 < segments.size() && segments.get(s + 1).getStart() < from) {
+                continue;
+            }
+            int count = segment.getCount();
+            int found = 0;
+            for(int i = segment.lastOfPortAtOrBefore(port, to, count); i >= 0 && segment.getTime(i) >= from;
+                    i = segment.getPrevious(i)) {
+                if(found == matches.length) {
+                    matches = Arrays.copyOf(matches, found * 2);
+                }
+                matches[found++] = i;
+            }
+            while(found > 0) {
+                int i = matches[--found];
+                history.add(segment.getTime(i), segment.getTxBitRate(i), segment.getRxBitRate(i),
+                        segment.getTxPacketRate(i), segment.getLoss(i));
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Segments of one resolution, oldest first.
+     */
+    private final class Tier {
+        private final Path directory;
+        private final int resolution;
+        private final long period;
+        private final long retention;
+        // replaced as a whole, so queries can read it without the lock
+        private volatile List<HistorySegment> segments;
+        private long lastTime = Long.MIN_VALUE;
+        private long nextSequence;
+        private long failedAt = Long.MIN_VALUE;
+
+        private Tier(Path directory, int resolution, long period, long retention) throws IOException {
+            this.directory = directory;
+            this.resolution = resolution;
+            this.period = period;
+            this.retention = retention;
+            Files.createDirectories(directory);
+            List<Path> files = new ArrayList<>();
+            try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.seg")) {
+                for(Path file : stream) {
+                    files.add(file);
+                }
+            }
+            // names are zero-padded sequence numbers
+            Collections.sort(files);
+            if(!files.isEmpty()) {
+                String last = files.get(files.size() - 1).getFileName().toString();
+                nextSequence = Long.parseLong(last.substring(0, last.length() - ".seg".length())) + 1;
+            }
+            List<HistorySegment> opened = new ArrayList<>(files.size());
+            for(Path file : files) {
+                try {
+                    HistorySegment segment = HistorySegment.open(file);
+                    opened.add(segment);
+                    if(segment.getCount() > 0) {
+                        lastTime = segment.getTime(segment.getCount() - 1);
+                    }
+                } catch(IOException e) {
+                    LOG.warn("Skipping port history segment {}: {}", file, e.getMessage());
+                }
+            }
+            segments = Collections.unmodifiableList(opened);
+            expire(System.currentTimeMillis());
+        }
+
+        private long getOldest() {
+            List<HistorySegment> current = segments;
+            return current.isEmpty() ? Long.MAX_VALUE : current.get(0).getStart();
+        }
+
+        private void append(long time, int port, long txPackets, long rxPackets, long txBytes, long rxBytes,
+                            float txBitRate, float rxBitRate, float txPacketRate, float loss) {
+            // records stay in time order if the clock steps back
+            long recordTime = Math.max(time, lastTime);
+            List<HistorySegment> current = segments;
+            HistorySegment last = current.isEmpty() ? null : current.get(current.size() - 1);
+            if(last == null || last.isFull() || recordTime >= last.getStart() + period) {
+                if(recordTime >= failedAt && recordTime < failedAt + RETRY_MILLIS) {
+                    // the sample is dropped
+                    return;
+                }
+                last = startSegment(recordTime);
+                if(last == null) {
+                    failedAt = recordTime;
+                    return;
+                }
+            }
+            last.append(recordTime, port, txPackets, rxPackets, txBytes, rxBytes, txBitRate, rxBitRate,
+                    txPacketRate, loss);
+            lastTime = recordTime;
+        }
+
+        private HistorySegment startSegment(long time) {
+            List<HistorySegment> current = segments;
+            HistorySegment segment;
+            try {
+                if(!current.isEmpty()) {
+                    current.get(current.size() - 1).force();
+                }
+                segment = HistorySegment.create(directory.resolve(String.format("%020d.seg", nextSequence)), time,
+                        segmentRecords);
+                nextSequence++;
+            } catch(IOException e) {
+                LOG.warn("Failed to start a port history segment in {}:", directory, e);
+                return null;
+            }
+            List<HistorySegment> next = new ArrayList<>(current);
+            next.add(segment);
+            segments = Collections.unmodifiableList(next);
+            expire(time);
+            return segment;
+        }
+
+        /**
+         * Deletes the segments followed by one starting before the retention. The last
+         * segment is always kept.
+         */
+        private void expire(long now) {
+            List<HistorySegment> current = segments;
+            int expired = 0;
+            while(expired + 1 < current.size() && current.get(expired + 1).getStart() <= now - retention) {
+                expired++;
+            }
+            if(expired == 0) {
+                return;
+            }
+            segments = Collections.unmodifiableList(new ArrayList<>(current.subList(expired, current.size())));
+            for(HistorySegment segment : current.subList(0, expired)) {
+                try {
+                    // a query still reading the segment keeps its mapping
+                    Files.deleteIfExists(segment.getFile());
+                } catch(IOException e) {
+                    LOG.warn("Failed to delete port history segment {}:", segment.getFile(), e);
+                }
+            }
+            LOG.debug("Deleted {} port history segments from {}", expired, directory);
+        }
+
+        private void close() {
+            List<HistorySegment> current = segments;
+            if(!current.isEmpty()) {
+                current.get(current.size() - 1).force();
+            }
+            segments = Collections.<HistorySegment>emptyList();
+        }
+    }
+}
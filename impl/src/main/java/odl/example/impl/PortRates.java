@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+
+/**
+ * Mutable holder for the rates of a port over an interval, filled in by
+ * {@link PortStatisticsCollector} so that callers can reuse it without allocating.
+ * Packet and bit rates are per second, the capacity is in kbit/s.
+ */
+public final class PortRates {
+
+    double interval;
+    double txPacketRate;
+    double rxPacketRate;
+    double txBitRate;
+    double rxBitRate;
+    double errorRate;
+    double loss;
+    double capacity;
+
+    /**
+     * Returns the length of the measured interval in seconds.
+     */
+    public double getInterval() {
+        return interval;
+    }
+
+    public double getTxPacketRate() {
+        return txPacketRate;
+    }
+
+    public double getRxPacketRate() {
+        return rxPacketRate;
+    }
+
+    public double getTxBitRate() {
+        return txBitRate;
+    }
+
+    public double getRxBitRate() {
+        return rxBitRate;
+    }
+
+    /**
+     * Returns the dropped and errored packets per second in both directions.
+     */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * Returns the share of transmitted packets that were dropped or errored.
+     */
+    public double getLoss() {
+        return loss;
+    }
+
+    public double getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the transmit utilization of the port capacity, or zero when the capacity is unknown.
+     */
+    public double getUtilization() {
+        return capacity > 0 ? txBitRate / (capacity * 1000) : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "PortRates [interval=" + interval + ", txPacketRate=" + txPacketRate + ", rxPacketRate=" + rxPacketRate
+                + ", txBitRate=" + txBitRate + ", rxBitRate=" + rxBitRate + ", errorRate=" + errorRate
+                + ", loss=" + loss + ", capacity=" + capacity + "]";
+    }
+}
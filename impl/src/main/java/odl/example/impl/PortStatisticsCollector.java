@@ -0,0 +1,302 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowCapableNodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.port.statistics.rev131214.FlowCapableNodeConnectorStatisticsData;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.port.statistics.rev131214.flow.capable.node.connector.statistics.FlowCapableNodeConnectorStatistics;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+
+/**
+ * Periodically reads the statistics of all node connectors in a single read of the
+ * operational inventory and keeps the recent cumulative counters of every port in
+ * preallocated primitive ring buffers.
+ *
+ * Rates are computed on query, either over the latest interval or over the whole
+ * window. Recording a sample does not allocate, and readers use optimistic reads,
+ * so queries do not block the collector. Every interval the rates of each port are
+ * fed to a {@link LinkLoadEstimator}, which refreshes the link quality table, and
+ * appended with the counters to the {@link PortHistoryStore}.
+ *
+ * Only the ports of switches this member owns are sampled. The series of a switch are
+ * dropped when another member takes it over, so they restart cleanly if it comes back.
+ * The capacity of every port is still taken from the inventory, as bandwidth admission
+ * and path pruning treat a port of unknown capacity as unlimited.
+ */
+public class PortStatisticsCollector implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PortStatisticsCollector.class);
+    public static final long DEFAULT_INTERVAL_SECONDS = 5;
+    public static final int DEFAULT_WINDOW = 12;
+    private static final PortStatisticsCollector instance = new PortStatisticsCollector(DEFAULT_WINDOW);
+
+    private final int window;
+    private final ConcurrentMap<String, PortSeries> ports = new ConcurrentHashMap<>();
+    private final PortRates scratch = new PortRates();
+    private final LinkLoadEstimator estimator = new LinkLoadEstimator(LinkQualityTable.getInstance(),
+            LinkLoadEstimator.DEFAULT_ALPHA, LinkLoadEstimator.DEFAULT_HOLD_DOWN_SECONDS);
+    private ScheduledExecutorService executor;
+    private DataBroker db;
+    private SwitchOwnership switchOwnership;
+
+    protected PortStatisticsCollector(int window) {
+        this.window = window;
+    }
+
+    public static PortStatisticsCollector getInstance() {
+        return instance;
+    }
+
+    public synchronized void start(DataBroker db, SwitchOwnership switchOwnership, long intervalSeconds) {
+        if(executor != null) {
+            return;
+        }
+        this.db = db;
+        this.switchOwnership = switchOwnership;
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("odlexample-port-statistics-%d").setDaemon(true).build());
+        executor.scheduleWithFixedDelay(this, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void close() {
+        if(executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            collect();
+        } catch(Exception e) {
+            LOG.warn("Port statistics collection failed:", e);
+        }
+    }
+
+    void collect() throws Exception {
+        ReadOnlyTransaction transaction = db.newReadOnlyTransaction();
+        Optional<Nodes> nodesOptional;
+        try {
+            nodesOptional = transaction.read(LogicalDatastoreType.OPERATIONAL,
+                    InstanceIdentifier.create(Nodes.class)).checkedGet();
+        } finally {
+            transaction.close();
+        }
+        if(!nodesOptional.isPresent() || nodesOptional.get().getNode() == null) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        long wallTime = System.currentTimeMillis();
+        int sampled = 0;
+        for(Node node : nodesOptional.get().getNode()) {
+            List<NodeConnector> connectors = node.getNodeConnector();
+            if(connectors == null) {
+                continue;
+            }
+            if(!switchOwnership.isOwner(node.getId().getValue())) {
+                for(NodeConnector connector : connectors) {
+                    ports.remove(connector.getId().getValue());
+                    long capacity = getCapacity(connector);
+                    if(capacity > 0) {
+                        LinkQualityTable.getInstance().updateCapacity(connector.getId().getValue(), capacity);
+                    }
+                }
+                continue;
+            }
+            for(NodeConnector connector : connectors) {
+                if(record(now, wallTime, connector)) {
+                    sampled++;
+                }
+            }
+        }
+        LOG.debug("Collected statistics of {} ports", sampled);
+    }
+
+    private boolean record(long now, long wallTime, NodeConnector connector) {
+        FlowCapableNodeConnectorStatisticsData statisticsData =
+                connector.getAugmentation(FlowCapableNodeConnectorStatisticsData.class);
+        if(statisticsData == null || statisticsData.getFlowCapableNodeConnectorStatistics() == null) {
+            return false;
+        }
+        FlowCapableNodeConnectorStatistics statistics = statisticsData.getFlowCapableNodeConnectorStatistics();
+        String connectorId = connector.getId().getValue();
+        PortSeries series = ports.get(connectorId);
+        if(series == null) {
+            series = new PortSeries(window + 1);
+            ports.put(connectorId, series);
+        }
+
+        long capacity = getCapacity(connector);
+        long txPackets = toLong(statistics.getPackets() == null ? null : statistics.getPackets().getTransmitted());
+        long rxPackets = toLong(statistics.getPackets() == null ? null : statistics.getPackets().getReceived());
+        long txBytes = toLong(statistics.getBytes() == null ? null : statistics.getBytes().getTransmitted());
+        long rxBytes = toLong(statistics.getBytes() == null ? null : statistics.getBytes().getReceived());
+        series.record(now, txPackets, rxPackets, txBytes, rxBytes,
+                toLong(statistics.getTransmitErrors()) + toLong(statistics.getTransmitDrops()),
+                toLong(statistics.getReceiveErrors()) + toLong(statistics.getReceiveDrops()),
+                capacity);
+
+        if(series.read(scratch, false)) {
+            estimator.observe(connectorId, now, scratch);
+            PortHistoryStore.getInstance().append(connectorId, wallTime, txPackets, rxPackets, txBytes, rxBytes,
+                    scratch);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the current speed of the port in kbit/s, or 0 if the inventory has none.
+     */
+    private static long getCapacity(NodeConnector connector) {
+        FlowCapableNodeConnector flowCapable = connector.getAugmentation(FlowCapableNodeConnector.class);
+        return flowCapable != null && flowCapable.getCurrentSpeed() != null ? flowCapable.getCurrentSpeed() : 0;
+    }
+
+    private static long toLong(BigInteger value) {
+        return value == null ? 0 : value.longValue();
+    }
+
+    /**
+     * Fills in the rates of the port over the latest interval. Returns false if fewer
+     * than two samples of the port are known.
+     */
+    public boolean getLatest(String nodeConnectorId, PortRates rates) {
+        PortSeries series = ports.get(nodeConnectorId);
+        return series != null && series.read(rates, false);
+    }
+
+    /**
+     * Fills in the rates of the port over the whole window of retained samples.
+     * Returns false if fewer than two samples of the port are known.
+     */
+    public boolean getWindowed(String nodeConnectorId, PortRates rates) {
+        PortSeries series = ports.get(nodeConnectorId);
+        return series != null && series.read(rates, true);
+    }
+
+    public int getPortCount() {
+        return ports.size();
+    }
+
+    /**
+     * Ring buffer of the cumulative counters of one port, written by the collector thread only.
+     */
+    private static final class PortSeries {
+        private final StampedLock lock = new StampedLock();
+        private final int size;
+        private final long[] time;
+        private final long[] txPackets;
+        private final long[] rxPackets;
+        private final long[] txBytes;
+        private final long[] rxBytes;
+        private final long[] txLost;
+        private final long[] rxLost;
+        private long capacity;
+        private int head;
+        private int count;
+
+        private PortSeries(int size) {
+            this.size = size;
+            time = new long[size];
+            txPackets = new long[size];
+            rxPackets = new long[size];
+            txBytes = new long[size];
+            rxBytes = new long[size];
+            txLost = new long[size];
+            rxLost = new long[size];
+            head = size - 1;
+        }
+
+        void record(long now, long txPacketCount, long rxPacketCount, long txByteCount, long rxByteCount,
+                    long txLostCount, long rxLostCount, long currentSpeed) {
+            long stamp = lock.writeLock();
+            try {
+                if(count > 0 && (txPacketCount < txPackets[head] || rxPacketCount < rxPackets[head])) {
+                    // counters were reset, e.g. the switch restarted
+                    count = 0;
+                }
+                head = (head + 1) % size;
+                time[head] = now;
+                txPackets[head] = txPacketCount;
+                rxPackets[head] = rxPacketCount;
+                txBytes[head] = txByteCount;
+                rxBytes[head] = rxByteCount;
+                txLost[head] = txLostCount;
+                rxLost[head] = rxLostCount;
+                capacity = currentSpeed;
+                if(count < size) {
+                    count++;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean read(PortRates rates, boolean windowed) {
+            long stamp = lock.tryOptimisticRead();
+            boolean valid = fill(rates, windowed);
+            if(!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    valid = fill(rates, windowed);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return valid;
+        }
+
+        private boolean fill(PortRates rates, boolean windowed) {
+            int samples = count;
+            if(samples < 2) {
+                return false;
+            }
+            int newest = head;
+            int oldest = (newest - (windowed ? samples - 1 : 1) + size) % size;
+            double interval = (time[newest] - time[oldest]) / 1e9;
+            if(interval <= 0) {
+                return false;
+            }
+            long transmitted = txPackets[newest] - txPackets[oldest];
+            long transmitLost = txLost[newest] - txLost[oldest];
+            long lost = transmitLost + rxLost[newest] - rxLost[oldest];
+            rates.interval = interval;
+            rates.txPacketRate = transmitted / interval;
+            rates.rxPacketRate = (rxPackets[newest] - rxPackets[oldest]) / interval;
+            rates.txBitRate = (txBytes[newest] - txBytes[oldest]) * 8 / interval;
+            rates.rxBitRate = (rxBytes[newest] - rxBytes[oldest]) * 8 / interval;
+            rates.errorRate = lost / interval;
+            rates.loss = transmitted + transmitLost > 0 ? (double) transmitLost / (transmitted + transmitLost) : 0;
+            rates.capacity = capacity;
+            return true;
+        }
+    }
+}
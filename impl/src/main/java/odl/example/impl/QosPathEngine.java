@@ -0,0 +1,778 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Constrained shortest path computation for applications of the registry.
+ *
+ * Links that cannot carry the requested bandwidth, or whose own delay or loss already
+ * exceeds the bounds, are pruned. Over the remaining links the path minimising the cost
+ * (hops, loss and bandwidth share of the link capacity) subject to the delay bound is
+ * found with Lagrangian relaxation (LARAC), which needs at most
+ * {@link #MAX_RELAXATION_ROUNDS} + 2 Dijkstra searches per query. The end-to-end loss
+ * of the chosen path is checked last.
+ *
+ * Searches run on the immutable {@link GraphIndex} with per-thread scratch arrays, so
+ * concurrent queries do not lock or allocate per visited vertex. Unconstrained queries
+ * are answered from {@link ShortestPathTrees}, which are repaired rather than recomputed
+ * when link weights move with the measured utilization. Every thread keeps its own trees
+ * of the snapshot it last searched, so these queries do not lock either.
+ *
+ * Batches of demands, e.g. the applications of one addApplications call, are grouped by
+ * source and requirement and computed in parallel on the fork/join pool the provider
+ * sets: every group takes one full Dijkstra search from its source, and only the
+ * destinations whose cheapest path breaks the delay bound need a search of their own.
+ */
+public class QosPathEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QosPathEngine.class);
+    static final int MAX_RELAXATION_ROUNDS = 8;
+    private static final double HOP_COST = 1.0;
+    private static final double LOSS_COST_WEIGHT = 1000.0;
+    private static final double UTILIZATION_COST_WEIGHT = 1.0;
+    private static final double LOAD_COST_WEIGHT = 1.0;
+    private static final double MAX_UTILIZATION = 0.95;
+    private static final double EPSILON = 1e-9;
+    private static final QosPathEngine instance = new QosPathEngine();
+
+    private final ThreadLocal<SearchState> searchStates = new ThreadLocal<SearchState>() {
+        @Override
+        protected SearchState initialValue() {
+            return new SearchState();
+        }
+    };
+    private volatile ArcMetrics arcMetrics;
+    private volatile ForkJoinPool batchPool;
+
+    protected QosPathEngine() {
+
+    }
+
+    public static QosPathEngine getInstance() {
+        return instance;
+    }
+
+    /**
+     * Creates a pool for batches with a worker per processor. Workers are started on
+     * demand; the creator shuts the pool down.
+     */
+    public static ForkJoinPool newBatchPool() {
+        return new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                    @Override
+                    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                        thread.setName("odlexample-path-batch-" + thread.getPoolIndex());
+                        return thread;
+                    }
+                }, null, false);
+    }
+
+    /**
+     * Sets the pool batches are computed on, or null to compute them on the common pool.
+     */
+    public void setBatchPool(ForkJoinPool batchPool) {
+        this.batchPool = batchPool;
+    }
+
+    /**
+     * Returns the path from the {@link PathCache}, computing and caching it on a miss.
+     * Only computations are timed in the path computation metrics.
+     */
+    public PathResult computePath(NodeId source, NodeId destination, QosRequirement qos) {
+        PathCache cache = PathCache.getInstance();
+        PathResult result = cache.get(source, destination, qos);
+        if(result != null) {
+            return result;
+        }
+        long generation = cache.getGeneration();
+        GraphIndex index = NetworkGraphImpl.getInstance().getGraphIndex();
+        OperationMetrics metrics = MetricsRegistry.getInstance().getPathComputation();
+        long start = metrics.start();
+        result = computePath(index, getArcMetrics(index), source, destination, qos);
+        metrics.stop(start, true);
+        cache.put(source, destination, qos, result, generation);
+        return result;
+    }
+
+    /**
+     * Computes the paths of all demands on one snapshot of the graph, in parallel, and
+     * caches them like {@link #computePath}. The results are in the order of the demands.
+     * The whole batch is timed in the path batch metrics, not per demand.
+     */
+    public List<PathResult> computePaths(List<PathDemand> demands) {
+        PathCache cache = PathCache.getInstance();
+        long generation = cache.getGeneration();
+        GraphIndex index = NetworkGraphImpl.getInstance().getGraphIndex();
+        ForkJoinPool pool = batchPool;
+        OperationMetrics metrics = MetricsRegistry.getInstance().getPathBatch();
+        long start = metrics.start();
+        List<PathResult> results = computePaths(index, getArcMetrics(index), demands,
+                pool == null ? ForkJoinPool.commonPool() : pool);
+        metrics.stop(start, true);
+        for(int i = 0; i < demands.size(); i++) {
+            PathDemand demand = demands.get(i);
+            cache.put(demand.getSource(), demand.getDestination(), demand.getQos(), results.get(i), generation);
+        }
+        return results;
+    }
+
+    List<PathResult> computePaths(GraphIndex index, ArcMetrics metrics, List<PathDemand> demands,
+                                  ForkJoinPool pool) {
+        Map<DemandGroup, List<Integer>> grouped = new LinkedHashMap<>();
+        for(int i = 0; i < demands.size(); i++) {
+            DemandGroup key = new DemandGroup(demands.get(i).getSource(), demands.get(i).getQos());
+            List<Integer> group = grouped.get(key);
+            if(group == null) {
+                group = new ArrayList<>();
+                grouped.put(key, group);
+            }
+            group.add(i);
+        }
+        PathResult[] results = new PathResult[demands.size()];
+        pool.invoke(new GroupTask(index, metrics, demands, new ArrayList<>(grouped.values()), results));
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Computes the demands of one source and requirement. The cheapest paths to all
+     * destinations come from one search that is not stopped at a destination; they are
+     * the paths {@link #computePath} finds as long as they meet the delay bound.
+     */
+    private void computeGroup(GraphIndex index, ArcMetrics metrics, List<PathDemand> demands, List<Integer> group,
+                              PathResult[] results) {
+        PathDemand first = demands.get(group.get(0));
+        QosRequirement qos = first.getQos();
+        int src = index.indexOf(first.getSource());
+        List<Integer> remaining = group;
+        if(src >= 0 && group.size() > 1) {
+            SearchState state = searchStates.get();
+            state.ensureCapacity(index.getVertexCount());
+            state.ensureArcCapacity(index.getArcCount());
+            state.clearBans();
+            search(index, metrics, qos, state, src, -1, 1, 0);
+            remaining = new ArrayList<>();
+            for(int i : group) {
+                int dst = index.indexOf(demands.get(i).getDestination());
+                if(dst >= 0 && dst != src && state.isSettled(dst)) {
+                    Candidate cheapest = state.extract(dst);
+                    if(cheapest.delay <= qos.getMaxDelay()) {
+                        results[i] = toResult(index, cheapest, qos);
+                        continue;
+                    }
+                }
+                remaining.add(i);
+            }
+        }
+        // searched one by one after the shared search, which they would overwrite
+        for(int i : remaining) {
+            PathDemand demand = demands.get(i);
+            results[i] = computePath(index, metrics, demand.getSource(), demand.getDestination(), qos);
+        }
+    }
+
+    ArcMetrics getArcMetrics(GraphIndex index) {
+        LinkQualityTable table = LinkQualityTable.getInstance();
+        ArcMetrics metrics = arcMetrics;
+        if(metrics == null || !metrics.isCurrent(index, table)) {
+            metrics = ArcMetrics.build(index, table);
+            arcMetrics = metrics;
+        }
+        return metrics;
+    }
+
+    PathResult computePath(GraphIndex index, ArcMetrics metrics, NodeId source, NodeId destination,
+                           QosRequirement qos) {
+        int src = index.indexOf(source);
+        int dst = index.indexOf(destination);
+        if(src < 0 || dst < 0) {
+            return PathResult.noPath(PathResult.Reason.UNKNOWN_NODE);
+        }
+        if(src == dst) {
+            return PathResult.found(Collections.<Link>emptyList(), Collections.<String>emptyList(), 0, 0, 0);
+        }
+        if(isUnconstrained(qos)) {
+            int[] arcs = getTreePath(index, metrics, src, dst);
+            return arcs == null ? PathResult.noPath(PathResult.Reason.UNREACHABLE)
+                    : toResult(index, measure(metrics, qos, arcs), qos);
+        }
+        SearchState state = searchStates.get();
+        state.ensureCapacity(index.getVertexCount());
+        state.ensureArcCapacity(index.getArcCount());
+        state.clearBans();
+
+        Candidate cheapest = search(index, metrics, qos, state, src, dst, 1, 0);
+        if(cheapest == null) {
+            return PathResult.noPath(pruningReason(index, metrics, qos, state, src, dst));
+        }
+        if(cheapest.delay <= qos.getMaxDelay()) {
+            return toResult(index, cheapest, qos);
+        }
+
+        Candidate fastest = search(index, metrics, qos, state, src, dst, 0, 1);
+        if(fastest == null || fastest.delay > qos.getMaxDelay()) {
+            LOG.debug("No path from {} to {} within delay {}", source, destination, qos.getMaxDelay());
+            return PathResult.noPath(PathResult.Reason.DELAY);
+        }
+        for(int round = 0; round < MAX_RELAXATION_ROUNDS; round++) {
+            double lambda = (cheapest.cost - fastest.cost) / (fastest.delay - cheapest.delay);
+            Candidate candidate = search(index, metrics, qos, state, src, dst, 1, lambda);
+            double candidateWeight = candidate.cost + lambda * candidate.delay;
+            double cheapestWeight = cheapest.cost + lambda * cheapest.delay;
+            if(Math.abs(candidateWeight - cheapestWeight) < EPSILON) {
+                break;
+            }
+            if(candidate.delay <= qos.getMaxDelay()) {
+                fastest = candidate;
+            } else {
+                cheapest = candidate;
+            }
+        }
+        return toResult(index, fastest, qos);
+    }
+
+    /**
+     * Returns up to k loopless paths meeting the requirement, cheapest first, found with
+     * Yen's algorithm over the links not pruned for the requirement. Equal-cost paths come
+     * out next to each other. Candidates exceeding the delay or loss bound are dropped; if
+     * none is left, the result of {@link #computePath} is returned alone, which is either
+     * a delay-constrained path or the reason there is none.
+     */
+    List<PathResult> computeCandidates(GraphIndex index, ArcMetrics metrics, NodeId source, NodeId destination,
+                                       QosRequirement qos, int k) {
+        int src = index.indexOf(source);
+        int dst = index.indexOf(destination);
+        if(src < 0 || dst < 0 || src == dst || k <= 1) {
+            return Collections.singletonList(computePath(index, metrics, source, destination, qos));
+        }
+        SearchState state = searchStates.get();
+        state.ensureCapacity(index.getVertexCount());
+        state.ensureArcCapacity(index.getArcCount());
+        state.clearBans();
+
+        Candidate first = search(index, metrics, qos, state, src, dst, 1, 0);
+        if(first == null) {
+            return Collections.singletonList(PathResult.noPath(pruningReason(index, metrics, qos, state, src, dst)));
+        }
+        List<Candidate> shortest = new ArrayList<>(k);
+        shortest.add(first);
+        PriorityQueue<Candidate> spurs = new PriorityQueue<>(11, new Comparator<Candidate>() {
+            @Override
+            public int compare(Candidate a, Candidate b) {
+                return Double.compare(a.cost, b.cost);
+            }
+        });
+        Set<ArcSequence> seen = new HashSet<>();
+        seen.add(new ArcSequence(first.arcs));
+
+        while(shortest.size() < k) {
+            int[] previous = shortest.get(shortest.size() - 1).arcs;
+            int spurNode = src;
+            for(int i = 0; i < previous.length; i++) {
+                state.clearBans();
+                for(Candidate path : shortest) {
+                    if(path.arcs.length > i && hasPrefix(path.arcs, previous, i)) {
+                        state.banArc(path.arcs[i]);
+                    }
+                }
+                // the root path up to the spur node may not be revisited
+                state.banVertex(src);
+                for(int j = 0; j < i - 1; j++) {
+                    state.banVertex(index.getArcTarget(previous[j]));
+                }
+                Candidate spur = search(index, metrics, qos, state, spurNode, dst, 1, 0);
+                if(spur != null) {
+                    Candidate total = concat(index, metrics, qos, previous, i, spur);
+                    if(seen.add(new ArcSequence(total.arcs))) {
+                        spurs.add(total);
+                    }
+                }
+                spurNode = index.getArcTarget(previous[i]);
+            }
+            state.clearBans();
+            if(spurs.isEmpty()) {
+                break;
+            }
+            shortest.add(spurs.poll());
+        }
+
+        List<PathResult> candidates = new ArrayList<>(shortest.size());
+        for(Candidate candidate : shortest) {
+            if(candidate.delay <= qos.getMaxDelay()) {
+                PathResult result = toResult(index, candidate, qos);
+                if(result.isFeasible()) {
+                    candidates.add(result);
+                }
+            }
+        }
+        if(candidates.isEmpty()) {
+            return Collections.singletonList(computePath(index, metrics, source, destination, qos));
+        }
+        return candidates;
+    }
+
+    /**
+     * Without bandwidth, delay or loss bound no link is pruned and the cheapest path is the answer.
+     */
+    private static boolean isUnconstrained(QosRequirement qos) {
+        return qos.getBandwidth() <= 0 && !qos.isDelayConstrained() && qos.getMaxLoss() >= 1;
+    }
+
+    /**
+     * Returns the cheapest path from the tree of the source, first bringing the trees of
+     * the thread up to date with the snapshot and the arc metrics.
+     */
+    private int[] getTreePath(GraphIndex index, ArcMetrics metrics, int src, int dst) {
+        SearchState state = searchStates.get();
+        if(state.trees == null || state.trees.getIndex() != index) {
+            state.trees = new ShortestPathTrees(index, unconstrainedWeights(index, metrics),
+                    ShortestPathTrees.DEFAULT_MAX_TREES);
+        } else if(state.treesMetrics != metrics) {
+            state.trees.updateWeights(unconstrainedWeights(index, metrics));
+        }
+        state.treesMetrics = metrics;
+        return state.trees.getPath(src, dst);
+    }
+
+    private static double[] unconstrainedWeights(GraphIndex index, ArcMetrics metrics) {
+        double[] weights = new double[index.getArcCount()];
+        for(int arc = 0; arc < weights.length; arc++) {
+            weights[arc] = arcCost(metrics, QosRequirement.BEST_EFFORT, arc);
+        }
+        return weights;
+    }
+
+    private static Candidate measure(ArcMetrics metrics, QosRequirement qos, int[] arcs) {
+        double cost = 0;
+        double delay = 0;
+        double lossCost = 0;
+        for(int arc : arcs) {
+            cost += arcCost(metrics, qos, arc);
+            delay += metrics.getDelay(arc);
+            lossCost += metrics.getLossCost(arc);
+        }
+        return new Candidate(arcs, cost, delay, lossCost);
+    }
+
+    private static boolean hasPrefix(int[] arcs, int[] prefix, int length) {
+        for(int i = 0; i < length; i++) {
+            if(arcs[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Joins the first rootLength arcs of the root path and the spur path.
+     */
+    private static Candidate concat(GraphIndex index, ArcMetrics metrics, QosRequirement qos, int[] root,
+                                    int rootLength, Candidate spur) {
+        int[] arcs = new int[rootLength + spur.arcs.length];
+        System.arraycopy(root, 0, arcs, 0, rootLength);
+        System.arraycopy(spur.arcs, 0, arcs, rootLength, spur.arcs.length);
+        double cost = spur.cost;
+        double delay = spur.delay;
+        double lossCost = spur.lossCost;
+        for(int i = 0; i < rootLength; i++) {
+            cost += arcCost(metrics, qos, root[i]);
+            delay += metrics.getDelay(root[i]);
+            lossCost += metrics.getLossCost(root[i]);
+        }
+        return new Candidate(arcs, cost, delay, lossCost);
+    }
+
+    private PathResult.Reason pruningReason(GraphIndex index, ArcMetrics metrics, QosRequirement qos,
+                                            SearchState state, int src, int dst) {
+        if(search(index, metrics, QosRequirement.BEST_EFFORT, state, src, dst, 1, 0) == null) {
+            return PathResult.Reason.UNREACHABLE;
+        }
+        QosRequirement bandwidthOnly = new QosRequirement(qos.getBandwidth(), Double.POSITIVE_INFINITY,
+                Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+        if(search(index, metrics, bandwidthOnly, state, src, dst, 1, 0) == null) {
+            return PathResult.Reason.BANDWIDTH;
+        }
+        QosRequirement withoutLoss = new QosRequirement(qos.getBandwidth(), qos.getMaxDelay(),
+                Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+        if(search(index, metrics, withoutLoss, state, src, dst, 1, 0) == null) {
+            return PathResult.Reason.DELAY;
+        }
+        return PathResult.Reason.LOSS;
+    }
+
+    private PathResult toResult(GraphIndex index, Candidate candidate, QosRequirement qos) {
+        double loss = -Math.expm1(-candidate.lossCost);
+        if(loss > qos.getMaxLoss()) {
+            return PathResult.noPath(PathResult.Reason.LOSS);
+        }
+        List<Link> links = new ArrayList<>(candidate.arcs.length);
+        List<String> egressTps = new ArrayList<>(candidate.arcs.length);
+        for(int arc : candidate.arcs) {
+            links.add(index.getArcLink(arc));
+            egressTps.add(index.getArcTp(arc));
+        }
+        return PathResult.found(links, egressTps, candidate.cost, candidate.delay, loss);
+    }
+
+    private static boolean isPruned(ArcMetrics metrics, QosRequirement qos, int arc) {
+        double capacity = metrics.getCapacity(arc);
+        return (capacity > 0 && capacity < qos.getBandwidth())
+                || metrics.getDelay(arc) > qos.getMaxDelay()
+                || metrics.getLoss(arc) > qos.getMaxLoss();
+    }
+
+    /**
+     * Cost of an arc: a hop, its loss, the share of its capacity the application takes and
+     * its load, which grows like the queueing delay of an M/M/1 queue as it fills up.
+     */
+    private static double arcCost(ArcMetrics metrics, QosRequirement qos, int arc) {
+        double utilization = Math.min(metrics.getUtilization(arc), MAX_UTILIZATION);
+        double cost = HOP_COST + LOSS_COST_WEIGHT * metrics.getLossCost(arc)
+                + LOAD_COST_WEIGHT * utilization / (1 - utilization);
+        double capacity = metrics.getCapacity(arc);
+        if(capacity > 0) {
+            cost += UTILIZATION_COST_WEIGHT * qos.getBandwidth() / capacity;
+        }
+        return cost;
+    }
+
+    /**
+     * Dijkstra search minimising costWeight * cost + delayWeight * delay over the links
+     * that are not pruned. Returns null if the destination cannot be reached. A negative
+     * destination settles every reachable vertex.
+     */
+    private static Candidate search(GraphIndex index, ArcMetrics metrics, QosRequirement qos, SearchState state,
+                                    int src, int dst, double costWeight, double delayWeight) {
+        state.reset();
+        state.reach(src, 0, 0, 0, 0, -1, -1);
+        state.push(src);
+        while(!state.isEmpty()) {
+            int u = state.poll();
+            if(u == dst) {
+                return state.extract(dst);
+            }
+            state.settle(u);
+            for(int arc = index.firstArc(u); arc < index.endArc(u); arc++) {
+                int v = index.getArcTarget(arc);
+                if(state.isSettled(v) || state.isBanned(v, arc) || isPruned(metrics, qos, arc)) {
+                    continue;
+                }
+                double cost = arcCost(metrics, qos, arc);
+                double delay = metrics.getDelay(arc);
+                double weight = state.weight[u] + costWeight * cost + delayWeight * delay;
+                if(!state.isReached(v)) {
+                    state.reach(v, weight, state.cost[u] + cost, state.delay[u] + delay,
+                            state.lossCost[u] + metrics.getLossCost(arc), arc, u);
+                    state.push(v);
+                } else if(weight < state.weight[v]) {
+                    state.reach(v, weight, state.cost[u] + cost, state.delay[u] + delay,
+                            state.lossCost[u] + metrics.getLossCost(arc), arc, u);
+                    state.decrease(v);
+                }
+            }
+        }
+        return null;
+    }
+
+    private final class GroupTask extends RecursiveAction {
+        private final GraphIndex index;
+        private final ArcMetrics metrics;
+        private final List<PathDemand> demands;
+        private final List<List<Integer>> groups;
+        private final PathResult[] results;
+        private final int from;
+        private final int to;
+
+        private GroupTask(GraphIndex index, ArcMetrics metrics, List<PathDemand> demands, List<List<Integer>> groups,
+                          PathResult[] results) {
+            this(index, metrics, demands, groups, results, 0, groups.size());
+        }
+
+        private GroupTask(GraphIndex index, ArcMetrics metrics, List<PathDemand> demands, List<List<Integer>> groups,
+                          PathResult[] results, int from, int to) {
+            this.index = index;
+            this.metrics = metrics;
+            this.demands = demands;
+            this.groups = groups;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= 1) {
+                for(int g = from; g < to; g++) {
+                    computeGroup(index, metrics, demands, groups.get(g), results);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new GroupTask(index, metrics, demands, groups, results, from, middle),
+                    new GroupTask(index, metrics, demands, groups, results, middle, to));
+        }
+    }
+
+    private static final class DemandGroup {
+        private final NodeId source;
+        private final QosRequirement qos;
+
+        private DemandGroup(NodeId source, QosRequirement qos) {
+            this.source = source;
+            this.qos = qos;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof DemandGroup)) {
+                return false;
+            }
+            DemandGroup that = (DemandGroup) o;
+            return source.equals(that.source) && qos.equals(that.qos);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * source.hashCode() + qos.hashCode();
+        }
+    }
+
+    private static final class ArcSequence {
+        private final int[] arcs;
+        private final int hash;
+
+        private ArcSequence(int[] arcs) {
+            this.arcs = arcs;
+            this.hash = Arrays.hashCode(arcs);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ArcSequence && Arrays.equals(arcs, ((ArcSequence) o).arcs);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Candidate {
+        private final int[] arcs;
+        private final double cost;
+        private final double delay;
+        private final double lossCost;
+
+        private Candidate(int[] arcs, double cost, double delay, double lossCost) {
+            this.arcs = arcs;
+            this.cost = cost;
+            this.delay = delay;
+            this.lossCost = lossCost;
+        }
+    }
+
+    /**
+     * Per-thread scratch space of a search. Reached and settled marks are stamped with a
+     * search generation, so nothing has to be cleared between searches.
+     */
+    private static final class SearchState {
+        private int stamp;
+        private int[] reachedStamp = new int[0];
+        private int[] settledStamp = new int[0];
+        private double[] weight = new double[0];
+        private double[] cost = new double[0];
+        private double[] delay = new double[0];
+        private double[] lossCost = new double[0];
+        private int[] prevArc = new int[0];
+        private int[] prevVertex = new int[0];
+        private int[] heap = new int[0];
+        private int[] heapPosition = new int[0];
+        private int heapSize;
+        private int banStamp = 1;
+        private int[] bannedVertexStamp = new int[0];
+        private int[] bannedArcStamp = new int[0];
+        // unconstrained shortest path trees of the last snapshot searched
+        private ShortestPathTrees trees;
+        private ArcMetrics treesMetrics;
+
+        void ensureCapacity(int vertexCount) {
+            if(weight.length >= vertexCount) {
+                return;
+            }
+            int capacity = Math.max(vertexCount, weight.length * 2);
+            reachedStamp = new int[capacity];
+            settledStamp = new int[capacity];
+            weight = new double[capacity];
+            cost = new double[capacity];
+            delay = new double[capacity];
+            lossCost = new double[capacity];
+            prevArc = new int[capacity];
+            prevVertex = new int[capacity];
+            heap = new int[capacity];
+            heapPosition = new int[capacity];
+            bannedVertexStamp = new int[capacity];
+            stamp = 0;
+        }
+
+        void ensureArcCapacity(int arcCount) {
+            if(bannedArcStamp.length < arcCount) {
+                bannedArcStamp = new int[Math.max(arcCount, bannedArcStamp.length * 2)];
+            }
+        }
+
+        /**
+         * Lifts all bans. Bans outlive {@link #reset()}, so one set of bans can serve a search.
+         */
+        void clearBans() {
+            if(++banStamp == Integer.MAX_VALUE) {
+                Arrays.fill(bannedVertexStamp, 0);
+                Arrays.fill(bannedArcStamp, 0);
+                banStamp = 1;
+            }
+        }
+
+        void banVertex(int v) {
+            bannedVertexStamp[v] = banStamp;
+        }
+
+        void banArc(int arc) {
+            bannedArcStamp[arc] = banStamp;
+        }
+
+        boolean isBanned(int v, int arc) {
+            return bannedVertexStamp[v] == banStamp || bannedArcStamp[arc] == banStamp;
+        }
+
+        void reset() {
+            heapSize = 0;
+            if(++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(reachedStamp, 0);
+                Arrays.fill(settledStamp, 0);
+                stamp = 1;
+            }
+        }
+
+        boolean isReached(int v) {
+            return reachedStamp[v] == stamp;
+        }
+
+        boolean isSettled(int v) {
+            return settledStamp[v] == stamp;
+        }
+
+        void settle(int v) {
+            settledStamp[v] = stamp;
+        }
+
+        void reach(int v, double vWeight, double vCost, double vDelay, double vLossCost, int arc, int previous) {
+            reachedStamp[v] = stamp;
+            weight[v] = vWeight;
+            cost[v] = vCost;
+            delay[v] = vDelay;
+            lossCost[v] = vLossCost;
+            prevArc[v] = arc;
+            prevVertex[v] = previous;
+        }
+
+        Candidate extract(int dst) {
+            int hops = 0;
+            for(int v = dst; prevArc[v] >= 0; v = prevVertex[v]) {
+                hops++;
+            }
+            int[] arcs = new int[hops];
+            for(int v = dst; prevArc[v] >= 0; v = prevVertex[v]) {
+                arcs[--hops] = prevArc[v];
+            }
+            return new Candidate(arcs, cost[dst], delay[dst], lossCost[dst]);
+        }
+
+        boolean isEmpty() {
+            return heapSize == 0;
+        }
+
+        void push(int v) {
+            heap[heapSize] = v;
+            heapPosition[v] = heapSize;
+            siftUp(heapSize++);
+        }
+
+        void decrease(int v) {
+            siftUp(heapPosition[v]);
+        }
+
+        int poll() {
+            int top = heap[0];
+            if(--heapSize > 0) {
+                heap[0] = heap[heapSize];
+                heapPosition[heap[0]] = 0;
+                siftDown(0);
+            }
+            return top;
+        }
+
+        private void siftUp(int i) {
+            int v = heap[i];
+            double w = weight[v];
+            while(i > 0) {
+                int parent = (i - 1) >>> 1;
+                int p = heap[parent];
+                if(weight[p] <= w) {
+                    break;
+                }
+                heap[i] = p;
+                heapPosition[p] = i;
+                i = parent;
+            }
+            heap[i] = v;
+            heapPosition[v] = i;
+        }
+
+        private void siftDown(int i) {
+            int v = heap[i];
+            double w = weight[v];
+            int half = heapSize >>> 1;
+            while(i < half) {
+                int child = 2 * i + 1;
+                int c = heap[child];
+                int right = child + 1;
+                if(right < heapSize && weight[heap[right]] < weight[c]) {
+                    child = right;
+                    c = heap[child];
+                }
+                if(w <= weight[c]) {
+                    break;
+                }
+                heap[i] = c;
+                heapPosition[c] = i;
+                i = child;
+            }
+            heap[i] = v;
+            heapPosition[v] = i;
+        }
+    }
+}
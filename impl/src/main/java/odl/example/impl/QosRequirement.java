@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.AddApplicationInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntry;
+
+import java.math.BigDecimal;
+
+
+/**
+ * The QoS bounds of an application as primitives. Bandwidth is in kbit/s, the unit of
+ * the port current speed, delay and jitter are in milliseconds and packet loss is a ratio.
+ * An absent bound is unconstrained. The delay bound is only as good as the link delays in
+ * {@link LinkQualityTable}, which are not measured; jitter is not checked on paths at all.
+ */
+public final class QosRequirement {
+
+    public static final QosRequirement BEST_EFFORT = new QosRequirement(0, Double.POSITIVE_INFINITY,
+            Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+    private final double bandwidth;
+    private final double maxDelay;
+    private final double maxLoss;
+    private final double maxJitter;
+
+    public QosRequirement(double bandwidth, double maxDelay, double maxLoss, double maxJitter) {
+        this.bandwidth = bandwidth;
+        this.maxDelay = maxDelay;
+        this.maxLoss = maxLoss;
+        this.maxJitter = maxJitter;
+    }
+
+    public static QosRequirement fromEntry(ApplicationRegistryEntry entry) {
+        return new QosRequirement(toDouble(entry.getBandwidth(), 0), toDouble(entry.getPacketDelay(), Double.POSITIVE_INFINITY),
+                toDouble(entry.getPacketLoss(), Double.POSITIVE_INFINITY), toDouble(entry.getJitter(), Double.POSITIVE_INFINITY));
+    }
+
+    public static QosRequirement fromInput(AddApplicationInput input) {
+        return new QosRequirement(toDouble(input.getBandwidth(), 0), toDouble(input.getPacketDelay(), Double.POSITIVE_INFINITY),
+                toDouble(input.getPacketLoss(), Double.POSITIVE_INFINITY), toDouble(input.getJitter(), Double.POSITIVE_INFINITY));
+    }
+
+    private static double toDouble(BigDecimal value, double absent) {
+        if(value == null || value.signum() <= 0) {
+            return absent;
+        }
+        return value.doubleValue();
+    }
+
+    public double getBandwidth() {
+        return bandwidth;
+    }
+
+    public double getMaxDelay() {
+        return maxDelay;
+    }
+
+    public double getMaxLoss() {
+        return maxLoss;
+    }
+
+    public double getMaxJitter() {
+        return maxJitter;
+    }
+
+    public boolean isDelayConstrained() {
+        return maxDelay != Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof QosRequirement)) {
+            return false;
+        }
+        QosRequirement that = (QosRequirement) o;
+        return Double.compare(bandwidth, that.bandwidth) == 0
+                && Double.compare(maxDelay, that.maxDelay) == 0
+                && Double.compare(maxLoss, that.maxLoss) == 0
+                && Double.compare(maxJitter, that.maxJitter) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Double.hashCode(bandwidth);
+        result = 31 * result + Double.hashCode(maxDelay);
+        result = 31 * result + Double.hashCode(maxLoss);
+        result = 31 * result + Double.hashCode(maxJitter);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "QosRequirement [bandwidth=" + bandwidth + ", maxDelay=" + maxDelay + ", maxLoss=" + maxLoss
+                + ", maxJitter=" + maxJitter + "]";
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Shortest path trees of a {@link GraphIndex} for the most recently used source vertices,
+ * kept up to date when arc weights change instead of being recomputed.
+ *
+ * A batch of weight changes is applied to every tree with the dynamic algorithm of
+ * Ramalingam and Reps: the subtrees hanging below changed tree arcs are cut off, each cut
+ * vertex is given its best distance through the rest of the tree, and a Dijkstra search
+ * seeded with those vertices and with the heads of arcs that became cheaper settles only
+ * the vertices whose distance changes. A tree that uses no changed arc and cannot use
+ * any of the cheaper ones is left untouched.
+ *
+ * Weights must not be negative. Not thread safe.
+ */
+final class ShortestPathTrees {
+
+    static final int DEFAULT_MAX_TREES = 64;
+
+    private final GraphIndex index;
+    private final int[] reverseArc;
+    private final Map<Integer, Tree> trees;
+    private double[] weights;
+
+    // scratch space of a repair
+    private final int[] heap;
+    private final int[] heapPosition;
+    private int heapSize;
+    private final int[] cutStamp;
+    private int stamp;
+    private final int[] cut;
+    private double[] distance;
+
+    private long builds;
+    private long repairs;
+
+    ShortestPathTrees(GraphIndex index, double[] weights, final int maxTrees) {
+        this.index = index;
+        this.weights = weights.clone();
+        this.reverseArc = reverseArcs(index);
+        this.trees = new LinkedHashMap<Integer, Tree>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Tree> eldest) {
+                return size() > maxTrees;
+            }
+        };
+        int vertexCount = index.getVertexCount();
+        heap = new int[vertexCount];
+        heapPosition = new int[vertexCount];
+        Arrays.fill(heapPosition, -1);
+        cutStamp = new int[vertexCount];
+        cut = new int[vertexCount];
+    }
+
+    /**
+     * Pairs every arc with the arc of the opposite direction of the same edge.
+     */
+    private static int[] reverseArcs(GraphIndex index) {
+        int[] reverse = new int[index.getArcCount()];
+        Map<Integer, Integer> firstArcOfEdge = new HashMap<>();
+        for(int arc = 0; arc < reverse.length; arc++) {
+            Integer other = firstArcOfEdge.remove(index.getArcEdge(arc));
+            if(other == null) {
+                firstArcOfEdge.put(index.getArcEdge(arc), arc);
+            } else {
+                reverse[arc] = other;
+                reverse[other] = arc;
+            }
+        }
+        return reverse;
+    }
+
+    GraphIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the arcs of the shortest path, or null if the destination is unreachable.
+     */
+    int[] getPath(int src, int dst) {
+        Tree tree = getTree(src);
+        if(tree.distance[dst] == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        int hops = 0;
+        for(int v = dst; tree.parentArc[v] >= 0; v = index.getArcSource(tree.parentArc[v])) {
+            hops++;
+        }
+        int[] arcs = new int[hops];
+        for(int v = dst; tree.parentArc[v] >= 0; v = index.getArcSource(tree.parentArc[v])) {
+            arcs[--hops] = tree.parentArc[v];
+        }
+        return arcs;
+    }
+
+    double getDistance(int src, int dst) {
+        return getTree(src).distance[dst];
+    }
+
+    private Tree getTree(int src) {
+        Tree tree = trees.get(src);
+        if(tree == null) {
+            tree = new Tree(index.getVertexCount());
+            tree.distance[src] = 0;
+            distance = tree.distance;
+            push(src);
+            settle(tree);
+            trees.put(src, tree);
+            builds++;
+        }
+        return tree;
+    }
+
+    /**
+     * Replaces the arc weights and repairs the trees affected by the changes.
+     */
+    void updateWeights(double[] newWeights) {
+        int changed = 0;
+        int[] changedArcs = new int[newWeights.length];
+        for(int arc = 0; arc < newWeights.length; arc++) {
+            if(newWeights[arc] != weights[arc]) {
+                changedArcs[changed++] = arc;
+            }
+        }
+        if(changed == 0) {
+            return;
+        }
+        double[] oldWeights = weights;
+        weights = newWeights.clone();
+        for(Tree tree : trees.values()) {
+            if(repair(tree, changedArcs, changed, oldWeights)) {
+                repairs++;
+            }
+        }
+    }
+
+    private boolean repair(Tree tree, int[] changedArcs, int changed, double[] oldWeights) {
+        distance = tree.distance;
+        if(++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(cutStamp, 0);
+            stamp = 1;
+        }
+        int cutCount = 0;
+        for(int i = 0; i < changed; i++) {
+            int arc = changedArcs[i];
+            int v = index.getArcTarget(arc);
+            if(tree.parentArc[v] == arc && cutStamp[v] != stamp) {
+                cutCount = cutSubtree(tree, v, cutCount);
+            }
+        }
+
+        // the cut vertices reconnect through their best neighbour left in the tree
+        for(int i = 0; i < cutCount; i++) {
+            int v = cut[i];
+            distance[v] = Double.POSITIVE_INFINITY;
+            tree.parentArc[v] = -1;
+        }
+        for(int i = 0; i < cutCount; i++) {
+            int v = cut[i];
+            for(int out = index.firstArc(v); out < index.endArc(v); out++) {
+                int u = index.getArcTarget(out);
+                int in = reverseArc[out];
+                if(cutStamp[u] != stamp && distance[u] + weights[in] < distance[v]) {
+                    distance[v] = distance[u] + weights[in];
+                    tree.parentArc[v] = in;
+                }
+            }
+            if(distance[v] != Double.POSITIVE_INFINITY) {
+                push(v);
+            }
+        }
+
+        // arcs that became cheaper may shorten paths anywhere below their head
+        for(int i = 0; i < changed; i++) {
+            int arc = changedArcs[i];
+            if(weights[arc] < oldWeights[arc]) {
+                relax(tree, arc);
+            }
+        }
+        if(heapSize == 0 && cutCount == 0) {
+            return false;
+        }
+        settle(tree);
+        return true;
+    }
+
+    /**
+     * Marks the subtree rooted at v as cut, appending its vertices to the cut list.
+     */
+    private int cutSubtree(Tree tree, int v, int cutCount) {
+        int head = cutCount;
+        cutStamp[v] = stamp;
+        cut[cutCount++] = v;
+        while(head < cutCount) {
+            int u = cut[head++];
+            for(int arc = index.firstArc(u); arc < index.endArc(u); arc++) {
+                int child = index.getArcTarget(arc);
+                if(tree.parentArc[child] == arc && cutStamp[child] != stamp) {
+                    cutStamp[child] = stamp;
+                    cut[cutCount++] = child;
+                }
+            }
+        }
+        return cutCount;
+    }
+
+    private void relax(Tree tree, int arc) {
+        int u = index.getArcSource(arc);
+        int v = index.getArcTarget(arc);
+        double candidate = distance[u] + weights[arc];
+        if(candidate < distance[v]) {
+            distance[v] = candidate;
+            tree.parentArc[v] = arc;
+            if(heapPosition[v] < 0) {
+                push(v);
+            } else {
+                siftUp(heapPosition[v]);
+            }
+        }
+    }
+
+    private void settle(Tree tree) {
+        while(heapSize > 0) {
+            int u = poll();
+            for(int arc = index.firstArc(u); arc < index.endArc(u); arc++) {
+                relax(tree, arc);
+            }
+        }
+    }
+
+    long getBuildCount() {
+        return builds;
+    }
+
+    long getRepairCount() {
+        return repairs;
+    }
+
+    private void push(int v) {
+        heap[heapSize] = v;
+        heapPosition[v] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private int poll() {
+        int top = heap[0];
+        heapPosition[top] = -1;
+        if(--heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapPosition[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int i) {
+        int v = heap[i];
+        double d = distance[v];
+        while(i > 0) {
+            int parent = (i - 1) >>> 1;
+            int p = heap[parent];
+            if(distance[p] <= d) {
+                break;
+            }
+            heap[i] = p;
+            heapPosition[p] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        heapPosition[v] = i;
+    }
+
+    private void siftDown(int i) {
+        int v = heap[i];
+        double d = distance[v];
+        int half = heapSize >>> 1;
+        while(i < half) {
+            int child = 2 * i + 1;
+            int c = heap[child];
+            int right = child + 1;
+            if(right < heapSize && distance[heap[right]] < distance[c]) {
+                child = right;
+                c = heap[child];
+            }
+            if(d <= distance[c]) {
+                break;
+            }
+            heap[i] = c;
+            heapPosition[c] = i;
+            i = child;
+        }
+        heap[i] = v;
+        heapPosition[v] = i;
+    }
+
+    private static final class Tree {
+        private final double[] distance;
+        private final int[] parentArc;
+
+        private Tree(int vertexCount) {
+            distance = new double[vertexCount];
+            parentArc = new int[vertexCount];
+            Arrays.fill(distance, Double.POSITIVE_INFINITY);
+            Arrays.fill(parentArc, -1);
+        }
+    }
+}
@@ -7,79 +7,45 @@
  */
 package odl.example.impl;
 
-import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicLong;
-
 import org.opendaylight.controller.md.sal.binding.api.DataBroker;
-import org.opendaylight.openflowplugin.api.OFConstants;
-import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Prefix;
-import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Uri;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.action.OutputActionCaseBuilder;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.action.SetQueueActionCaseBuilder;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.action.output.action._case.OutputActionBuilder;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.action.set.queue.action._case.SetQueueActionBuilder;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.list.Action;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.list.ActionBuilder;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowCapableNode;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowId;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.Table;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.TableKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.Flow;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.FlowBuilder;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.FlowKey;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.*;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.FlowCookie;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.FlowModFlags;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.Instructions;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.InstructionsBuilder;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.Match;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.flow.MatchBuilder;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.instruction.instruction.ApplyActionsCaseBuilder;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.instruction.instruction.apply.actions._case.ApplyActions;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.instruction.instruction.apply.actions._case.ApplyActionsBuilder;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.instruction.list.InstructionBuilder;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.instruction.list.Instruction;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeRef;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.l2.types.rev130827.EtherType;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.ethernet.match.fields.EthernetTypeBuilder;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.EthernetMatchBuilder;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.layer._3.match.Ipv4MatchBuilder;
-import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowOutput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.RemoveFlowInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.RemoveFlowInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.RemoveFlowOutput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.SalFlowService;
 import org.opendaylight.yangtools.yang.common.RpcResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.ImmutableList;
-import com.google.common.util.concurrent.FutureCallback;
-import com.google.common.util.concurrent.Futures;
-import com.google.common.util.concurrent.JdkFutureAdapters;
 import com.google.common.util.concurrent.ListenableFuture;
 
+import java.util.ArrayList;
+import java.util.List;
+
 
 public class SwitchConfigurator {
 
     private static final Logger LOG = LoggerFactory.getLogger(SwitchConfigurator.class);
 
-    private static SwitchConfigurator instance = null;
+    private static final SwitchConfigurator instance = new SwitchConfigurator();
     private DataBroker db;
     private SalFlowService salFlowService;
-    private long flowId;
+    private volatile SwitchOwnership switchOwnership = new InMemorySwitchOwnership();
+    private final FlowTemplateCompiler flowTemplateCompiler = new FlowTemplateCompiler();
+    private volatile FlowIdAllocator flowIdAllocator = new FlowIdAllocator();
+    private final FlowRefreshScheduler refreshScheduler = FlowRefreshScheduler.getInstance();
+    private final FlowInstallPipeline flowInstallPipeline = new FlowInstallPipeline(
+            FlowInstallPipeline.DEFAULT_MAX_BATCH_SIZE, FlowInstallPipeline.DEFAULT_MAX_IN_FLIGHT_BATCHES);
+
+    /** Queue the application traffic is sent to on every switch. */
+    public static final long APPLICATION_QUEUE_ID = 1;
 
     protected SwitchConfigurator() {
-        flowId = 1;
     }
 
     public static SwitchConfigurator getInstance() {
-        if(instance == null) {
-            instance = new SwitchConfigurator();
-        }
         return instance;
     }
 
@@ -89,132 +55,124 @@ public class SwitchConfigurator {
 
     public void setSalFlowService(SalFlowService sal) {
         this.salFlowService = sal;
+        flowInstallPipeline.setSalFlowService(sal);
     }
 
-    private AtomicLong flowCookieInc = new AtomicLong(0x2a00000000000000L);
-
-    public void send(String edge_switch, String edge_nodeconnector) {
-
-        LOG.info("Start executing RPC");
-
-        // create the flow
-        Flow createdFlow = createFlow(edge_nodeconnector);
-
-        // build instance identifier for flow
-        InstanceIdentifier<Flow> flowPath = InstanceIdentifier
-                .builder(Nodes.class)
-                .child(Node.class, new NodeKey(new NodeId(edge_switch)))
-                .augmentation(FlowCapableNode.class)
-                .child(Table.class, new TableKey(createdFlow.getTableId()))
-                .child(Flow.class, new FlowKey(createdFlow.getId())).build();
-
-
-        final AddFlowInputBuilder builder = new AddFlowInputBuilder(createdFlow);
-        final InstanceIdentifier<Table> tableInstanceId = flowPath
-                .<Table> firstIdentifierOf(Table.class);
-        final InstanceIdentifier<Node> nodeInstanceId = flowPath
-                .<Node> firstIdentifierOf(Node.class);
-        builder.setNode(new NodeRef(nodeInstanceId));
-        builder.setFlowTable(new FlowTableRef(tableInstanceId));
-        builder.setTransactionUri(new Uri(createdFlow.getId().getValue()));
-        final AddFlowInput flow = builder.build();
-
-        final String sw = edge_switch;
-        LOG.info("onPacketReceived - About to write flow (via SalFlowService) {}", flow);
-        // add flow to sal
-        ListenableFuture<RpcResult<AddFlowOutput>> result = JdkFutureAdapters
-                .listenInPoolThread(salFlowService.addFlow(flow));
-        Futures.addCallback(result, new FutureCallback<RpcResult<AddFlowOutput>>() {
-            @Override
-            public void onSuccess(final RpcResult<AddFlowOutput> o) {
-                LOG.info("Successful outcome.");
-            }
-
-            @Override
-            public void onFailure(final Throwable throwable) {
-                LOG.warn("Failure.");
-                throwable.printStackTrace();
-            }
-        });
+    public void setSwitchOwnership(SwitchOwnership switchOwnership) {
+        this.switchOwnership = switchOwnership;
     }
 
     /**
-     * Adds an application flow by using the REST API.
+     * Allocates the flow ids of this member from now on, apart from those of the other
+     * members and of earlier boots.
      */
-    private Flow createFlow(String edge_nodeconnector) {
+    public void setMemberId(int memberId) {
+        this.flowIdAllocator = new FlowIdAllocator(memberId, System.currentTimeMillis());
+    }
 
+    /**
+     * Returns true if this member programs the switch. Flows for other switches are left
+     * to their owner, which picks them up from the shared {@link DesiredFlowStore}.
+     */
+    public boolean isOwner(String edge_switch) {
+        return switchOwnership.isOwner(edge_switch);
+    }
 
-        FlowBuilder flowBuilder = new FlowBuilder() //
-                .setTableId((short) 0) //
-                .setFlowName("random");
+    /**
+     * Installs the application flow on the switch. The returned future completes with
+     * the result of the flow installation.
+     */
+    public ListenableFuture<RpcResult<AddFlowOutput>> send(String edge_switch, String edge_nodeconnector) {
+        return send(edge_switch, edge_nodeconnector, "10.0.0.1", "10.0.0.2");
+    }
 
-        //
-        flowBuilder.setId(new FlowId(Long.toString(flowBuilder.hashCode())));
+    /**
+     * Installs a flow on the switch forwarding IPv4 traffic between the two host
+     * addresses to the connector.
+     */
+    public ListenableFuture<RpcResult<AddFlowOutput>> send(String edge_switch, String edge_nodeconnector,
+                                                           String srcAddress, String dstAddress) {
 
-        Ipv4Prefix srcIp = new Ipv4Prefix("10.0.0.1/32");
-        Ipv4Prefix dstIp = new Ipv4Prefix("10.0.0.2/32");
-        Match match = new MatchBuilder()
+        LOG.debug("Start executing RPC");
 
-                .setLayer3Match(new Ipv4MatchBuilder()
-                        .setIpv4Source(srcIp)
-                        .setIpv4Destination(dstIp)
-                        .build())
-                .setEthernetMatch(new EthernetMatchBuilder()
-                        .setEthernetType(new EthernetTypeBuilder()
-                                .setType(new EtherType(0x0800L))
-                                .build())
-                        .build())
-                .build();
+        final AddFlowInput flow = buildFlow(edge_switch, edge_nodeconnector, srcAddress, dstAddress);
 
-        ActionBuilder actionBuilder = new ActionBuilder();
-        List<Action> actions = new ArrayList<Action>();
+        LOG.debug("About to write flow (via SalFlowService) {}", flow);
+        // add flow to sal, batched per switch
+        return flowInstallPipeline.addFlow(edge_switch, flow);
+    }
 
-        //Actions
-        //currently changing tos and sending to output connector
+    /**
+     * Installs the desired flow on the switch and schedules its refresh before it times
+     * out.
+     */
+    public ListenableFuture<RpcResult<AddFlowOutput>> send(String edge_switch, DesiredFlow desiredFlow) {
+        ListenableFuture<RpcResult<AddFlowOutput>> result =
+                flowInstallPipeline.addFlow(edge_switch, buildFlow(edge_switch, desiredFlow));
+        refreshScheduler.track(edge_switch, desiredFlow);
+        return result;
+    }
 
-        Action queueAction = actionBuilder
-                .setOrder(0).setAction(new SetQueueActionCaseBuilder()
-                    .setSetQueueAction(new SetQueueActionBuilder()
-                    .setQueueId((long)1)
-                    .build())
-                .build())
-                .build();
-        actions.add(queueAction);
-
-        Action outputNodeConnectorAction = actionBuilder
-                .setOrder(1).setAction(new OutputActionCaseBuilder()
-                        .setOutputAction(new OutputActionBuilder()
-                                .setOutputNodeConnector(new Uri(edge_nodeconnector.split(":")[2]))
-                                .build())
-                        .build())
-                .build();
-        actions.add(outputNodeConnectorAction);
+    /**
+     * Installs the desired flows on the switch together and schedules their refresh before
+     * they time out. Returns the results of their installation in the same order.
+     */
+    public List<ListenableFuture<RpcResult<AddFlowOutput>>> sendFlows(String edge_switch,
+                                                                      List<DesiredFlow> desiredFlows) {
+        List<AddFlowInput> flows = new ArrayList<>(desiredFlows.size());
+        for(DesiredFlow desiredFlow : desiredFlows) {
+            flows.add(buildFlow(edge_switch, desiredFlow));
+        }
+        List<ListenableFuture<RpcResult<AddFlowOutput>>> results = sendAll(edge_switch, flows);
+        for(DesiredFlow desiredFlow : desiredFlows) {
+            refreshScheduler.track(edge_switch, desiredFlow);
+        }
+        return results;
+    }
 
-        //ApplyActions
-        ApplyActions applyActions = new ApplyActionsBuilder().setAction(actions).build();
+    /**
+     * Installs flows built by {@link #buildFlow} on the switch together, and returns the
+     * results of their installation in the same order.
+     */
+    public List<ListenableFuture<RpcResult<AddFlowOutput>>> sendAll(String edge_switch, List<AddFlowInput> flows) {
+        LOG.debug("About to write {} flows to {}", flows.size(), edge_switch);
+        return flowInstallPipeline.addFlows(edge_switch, flows);
+    }
 
-        //Instruction
-        Instruction applyActionsInstruction = new InstructionBuilder() //
-                .setOrder(0).setInstruction(new ApplyActionsCaseBuilder()//
-                        .setApplyActions(applyActions) //
-                        .build()) //
+    /**
+     * Removes the flow from table 0 of the switch. The flow is matched strictly, so only
+     * the entry with its exact match and priority goes.
+     */
+    public ListenableFuture<RpcResult<RemoveFlowOutput>> remove(String edge_switch, Flow flow) {
+        FlowTemplateCompiler.SwitchTarget target = flowTemplateCompiler.getTarget(edge_switch);
+        RemoveFlowInput input = new RemoveFlowInputBuilder(flow)
+                .setNode(target.getNodeRef())
+                .setFlowTable(target.getFlowTableRef())
+                .setStrict(true)
                 .build();
+        LOG.debug("About to remove flow (via SalFlowService) {}", input);
+        return FlowInstallPipeline.toListenable(salFlowService.removeFlow(input));
+    }
 
-        Instructions applyInstructions =  new InstructionsBuilder()
-                .setInstruction(ImmutableList.of(applyActionsInstruction))
-                .build();
+    /**
+     * Builds the flow forwarding IPv4 traffic between the two host addresses to the
+     * connector of the switch.
+     */
+    public AddFlowInput buildFlow(String edge_switch, String edge_nodeconnector, String srcAddress,
+                                  String dstAddress) {
+        return buildFlow(edge_switch, new DesiredFlow(srcAddress, dstAddress, edge_nodeconnector,
+                APPLICATION_QUEUE_ID));
+    }
 
-        // Put our Instruction in a list of Instructions
-        flowBuilder
-                .setMatch(match)
-                .setBufferId(OFConstants.OFP_NO_BUFFER)
-                .setInstructions(applyInstructions)
-                .setPriority(1000)
-                .setHardTimeout((int)300)
-                .setIdleTimeout(0)
-                .setCookie(new FlowCookie(BigInteger.valueOf(flowCookieInc.getAndIncrement())))
-                .setFlags(new FlowModFlags(false, false, false, false, false));
-
-        return flowBuilder.build();
+    /**
+     * Builds the flow installing the desired flow on the switch.
+     */
+    public AddFlowInput buildFlow(String edge_switch, DesiredFlow desiredFlow) {
+        // only the match and the flow number vary, the rest comes from the compiled template
+        FlowTemplateCompiler.FlowTemplate template = flowTemplateCompiler.getTemplate(desiredFlow.getQueueId(),
+                desiredFlow.getEgressConnector());
+        return template.instantiate(flowTemplateCompiler.getTarget(edge_switch),
+                FlowTemplateCompiler.match(desiredFlow.getMatch()),
+                flowIdAllocator.allocate(), desiredFlow.getHardTimeout());
     }
 }
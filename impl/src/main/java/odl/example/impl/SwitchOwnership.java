@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+
+/**
+ * Which switches this cluster member programs and monitors.
+ *
+ * Every member registers as candidate for the switches it sees, and exactly one of the
+ * candidates of a switch owns it at a time. Path computation does not depend on
+ * ownership, every member can serve it.
+ */
+public interface SwitchOwnership extends AutoCloseable {
+
+    interface Listener {
+        /**
+         * Called when this member gains or loses ownership of the switch.
+         */
+        void ownershipChanged(String switchId, boolean isOwner);
+    }
+
+    void registerCandidate(String switchId);
+
+    void unregisterCandidate(String switchId);
+
+    boolean isOwner(String switchId);
+
+    /**
+     * Returns false if no other member can own switches, so nothing has to be shared.
+     */
+    boolean isClustered();
+
+    void addListener(Listener listener);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Hierarchical timing wheel of entries due at a tick, in the manner of Varghese and
+ * Lauck. Three levels of 64 slots cover 2^18 ticks: the first level has a slot per tick,
+ * each slot of the second covers 64 ticks and each of the third 4096. Every 64 ticks the
+ * next slot of the second level is cascaded into the first, and every 4096 ticks the
+ * next slot of the third into the second, so an entry moves at most twice before it is
+ * due. Scheduling, rescheduling and cancelling take constant time, and advancing a tick
+ * only touches the entries of the slots it empties.
+ *
+ * Entries due move to a ready queue in the order of their ticks, and of their scheduling
+ * within a tick, from which the caller takes as many as it can handle. Entries are kept
+ * in parallel arrays and linked by index, so the wheel allocates nothing but its arrays
+ * as they grow. It is not thread safe.
+ */
+final class TimerWheel<T> {
+
+    static final int SLOT_BITS = 6;
+    static final int SLOTS = 1 << SLOT_BITS;
+    static final int LEVELS = 3;
+    /** Entries due further ahead wait in the last slot of the wheel and cascade again. */
+    static final long SPAN = 1L << (SLOT_BITS * LEVELS);
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int READY = LEVELS * SLOTS;
+    private static final int FREE = -2;
+    private static final int NONE = -1;
+
+    private final int[] heads = new int[READY + 1];
+    private final int[] tails = new int[READY + 1];
+    private int readyCount;
+    private long[] deadlines;
+    private int[] next;
+    private int[] prev;
+    private int[] slots;
+    private Object[] payloads;
+    private int freeHead = NONE;
+    private int used;
+    private int size;
+    // the next tick to advance through
+    private long tick;
+
+    TimerWheel(long startTick, int initialCapacity) {
+        this.tick = startTick;
+        int capacity = Math.max(initialCapacity, 16);
+        deadlines = new long[capacity];
+        next = new int[capacity];
+        prev = new int[capacity];
+        slots = new int[capacity];
+        payloads = new Object[capacity];
+        Arrays.fill(heads, NONE);
+        Arrays.fill(tails, NONE);
+    }
+
+    /**
+     * Adds an entry due at the tick and returns its handle, valid until it is cancelled
+     * or taken from the ready queue. Entries due before the next tick are ready at once.
+     */
+    int schedule(T payload, long deadline) {
+        int handle = allocate();
+        payloads[handle] = payload;
+        deadlines[handle] = deadline;
+        insert(handle);
+        size++;
+        return handle;
+    }
+
+    /**
+     * Moves the entry to a new tick, even if it is already in the ready queue.
+     */
+    void reschedule(int handle, long deadline) {
+        checkLive(handle);
+        unlink(handle);
+        deadlines[handle] = deadline;
+        insert(handle);
+    }
+
+    void cancel(int handle) {
+        checkLive(handle);
+        unlink(handle);
+        release(handle);
+    }
+
+    /**
+     * Returns the next tick the wheel has not advanced through.
+     */
+    long getTick() {
+        return tick;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int readySize() {
+        return readyCount;
+    }
+
+    /**
+     * Advances the wheel through the tick, moving the entries due until then to the
+     * ready queue.
+     */
+    void advance(long throughTick) {
+        while(tick <= throughTick) {
+            int index = (int) (tick & SLOT_MASK);
+            if(index == 0 && cascade(1, (int) ((tick >>> SLOT_BITS) & SLOT_MASK)) == 0) {
+                cascade(2, (int) ((tick >>> (2 * SLOT_BITS)) & SLOT_MASK));
+            }
+            for(int handle = detach(index); handle != NONE; ) {
+                int following = next[handle];
+                append(READY, handle);
+                handle = following;
+            }
+            tick++;
+        }
+    }
+
+    /**
+     * Takes up to the given number of entries from the ready queue, earliest due first,
+     * adds their payloads to the list and returns how many were taken. Their handles are
+     * no longer valid.
+     */
+    @SuppressWarnings("unchecked")
+    int poll(int max, List<? super T> out) {
+        int taken = 0;
+        while(taken < max && heads[READY] != NONE) {
+            int handle = heads[READY];
+            out.add((T) payloads[handle]);
+            unlink(handle);
+            release(handle);
+            taken++;
+        }
+        return taken;
+    }
+
+    private void insert(int handle) {
+        long deadline = deadlines[handle];
+        long delta = deadline - tick;
+        int slot;
+        if(delta < 0) {
+            slot = READY;
+        } else if(delta < SLOTS) {
+            slot = (int) (deadline & SLOT_MASK);
+        } else if(delta < 1L << (2 * SLOT_BITS)) {
+            slot = SLOTS + (int) ((deadline >>> SLOT_BITS) & SLOT_MASK);
+        } else {
+            long bounded = delta < SPAN ? deadline : tick + SPAN - 1;
+            slot = 2 * SLOTS + (int) ((bounded >>> (2 * SLOT_BITS)) & SLOT_MASK);
+        }
+        append(slot, handle);
+    }
+
+    /**
+     * Re-inserts the entries of the slot of the level, which now fall into lower levels,
+     * and returns the index of the slot.
+     */
+    private int cascade(int level, int index) {
+        for(int handle = detach(level * SLOTS + index); handle != NONE; ) {
+            int following = next[handle];
+            insert(handle);
+            handle = following;
+        }
+        return index;
+    }
+
+    /**
+     * Empties the slot and returns the first entry of its former list.
+     */
+    private int detach(int slot) {
+        int head = heads[slot];
+        heads[slot] = NONE;
+        tails[slot] = NONE;
+        return head;
+    }
+
+    private void append(int slot, int handle) {
+        int tail = tails[slot];
+        next[handle] = NONE;
+        prev[handle] = tail;
+        if(tail == NONE) {
+            heads[slot] = handle;
+        } else {
+            next[tail] = handle;
+        }
+        tails[slot] = handle;
+        slots[handle] = slot;
+        if(slot == READY) {
+            readyCount++;
+        }
+    }
+
+    private void unlink(int handle) {
+        int slot = slots[handle];
+        int before = prev[handle];
+        int after = next[handle];
+        if(before == NONE) {
+            heads[slot] = after;
+        } else {
+            next[before] = after;
+        }
+        if(after == NONE) {
+            tails[slot] = before;
+        } else {
+            prev[after] = before;
+        }
+        if(slot == READY) {
+            readyCount--;
+        }
+    }
+
+    private int allocate() {
+        if(freeHead != NONE) {
+            int handle = freeHead;
+            freeHead = next[handle];
+            return handle;
+        }
+        if(used == deadlines.length) {
+            int capacity = deadlines.length * 2;
+            deadlines = Arrays.copyOf(deadlines, capacity);
+            next = Arrays.copyOf(next, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+            slots = Arrays.copyOf(slots, capacity);
+            payloads = Arrays.copyOf(payloads, capacity);
+        }
+        return used++;
+    }
+
+    private void release(int handle) {
+        payloads[handle] = null;
+        slots[handle] = FREE;
+        next[handle] = freeHead;
+        freeHead = handle;
+        size--;
+    }
+
+    private void checkLive(int handle) {
+        if(handle < 0 || handle >= used || slots[handle] == FREE) {
+            throw new IllegalArgumentException("No entry with handle " + handle);
+        }
+    }
+}
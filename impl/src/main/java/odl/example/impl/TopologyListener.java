@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.opendaylight.controller.md.sal.binding.api.DataObjectModification;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeChangeListener;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeModification;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.Topology;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+import org.opendaylight.yangtools.yang.binding.DataObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+
+/**
+ * Applies link additions and removals of the operational flow:1 topology to the
+ * network graph as deltas, one published change per modification.
+ */
+public class TopologyListener implements DataTreeChangeListener<Topology> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TopologyListener.class);
+    private final NetworkGraphImpl networkGraph;
+
+    public TopologyListener(NetworkGraphImpl networkGraph) {
+        this.networkGraph = networkGraph;
+    }
+
+    @Override
+    public void onDataTreeChanged(Collection<DataTreeModification<Topology>> changes) {
+        for(DataTreeModification<Topology> change : changes) {
+            List<Link> addedLinks = new ArrayList<>();
+            List<Link> removedLinks = new ArrayList<>();
+            DataObjectModification<Topology> rootNode = change.getRootNode();
+
+            if(rootNode.getModificationType() == DataObjectModification.ModificationType.DELETE) {
+                Topology topology = rootNode.getDataBefore();
+                if(topology != null && topology.getLink() != null) {
+                    removedLinks.addAll(topology.getLink());
+                }
+            } else {
+                for(DataObjectModification<? extends DataObject> child : rootNode.getModifiedChildren()) {
+                    if(!Link.class.equals(child.getDataType())) {
+                        continue;
+                    }
+                    Link before = (Link) child.getDataBefore();
+                    Link after = (Link) child.getDataAfter();
+                    if(child.getModificationType() == DataObjectModification.ModificationType.DELETE) {
+                        if(before != null) {
+                            removedLinks.add(before);
+                        }
+                        continue;
+                    }
+                    if(before != null && !before.equals(after)) {
+                        removedLinks.add(before);
+                    }
+                    if(after != null) {
+                        addedLinks.add(after);
+                    }
+                }
+            }
+
+            LOG.debug("Topology changed: {} links added, {} links removed", addedLinks.size(), removedLinks.size());
+            networkGraph.applyChanges(removedLinks, addedLinks);
+        }
+    }
+}
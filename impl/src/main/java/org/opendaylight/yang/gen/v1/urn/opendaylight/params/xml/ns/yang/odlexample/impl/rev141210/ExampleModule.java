@@ -8,6 +8,7 @@
 package org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.impl.rev141210;
 
 import odl.example.impl.ExampleProvider;
+import org.opendaylight.controller.config.api.JmxAttributeValidationException;
 
 public class ExampleModule extends org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.impl.rev141210.AbstractExampleModule {
     public ExampleModule(org.opendaylight.controller.config.api.ModuleIdentifier identifier, org.opendaylight.controller.config.api.DependencyResolver dependencyResolver) {
@@ -20,12 +21,16 @@ public class ExampleModule extends org.opendaylight.yang.gen.v1.urn.opendaylight
 
     @Override
     public void customValidation() {
-        // add custom validation form module attributes here.
+        // members sharing the switches must not share the ids of their flows
+        JmxAttributeValidationException.checkCondition(getOwnershipService() == null || getMemberId() != null,
+                "is required when ownership-service is set", memberIdJmxAttribute);
     }
 
     @Override
     public java.lang.AutoCloseable createInstance() {
-        ExampleProvider provider = new ExampleProvider();
+        int memberId = getMemberId() == null ? 0 : getMemberId();
+        ExampleProvider provider = getOwnershipService() == null
+                ? new ExampleProvider() : new ExampleProvider(getOwnershipServiceDependency(), memberId);
         getBrokerDependency().registerProvider(provider);
         return provider;
     }
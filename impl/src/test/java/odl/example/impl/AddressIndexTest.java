@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.junit.Test;
+import org.opendaylight.controller.md.sal.binding.api.DataObjectModification;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeIdentifier;
+import org.opendaylight.controller.md.sal.binding.api.DataTreeModification;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv6Address;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressCapableNodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressCapableNodeConnectorBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.Addresses;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.AddressesBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AddressIndexTest {
+
+    private static final AttachmentPoint FIRST = point("openflow:1", "openflow:1:3");
+    private static final AttachmentPoint SECOND = point("openflow:2", "openflow:2:3");
+
+    private final AddressIndex index = new AddressIndex();
+
+    private static AttachmentPoint point(String node, String connector) {
+        return new AttachmentPoint(new NodeId(node), new NodeConnectorId(connector));
+    }
+
+    private static IpAddress ipv4(String address) {
+        return new IpAddress(new Ipv4Address(address));
+    }
+
+    private static IpAddress ipv6(String address) {
+        return new IpAddress(new Ipv6Address(address));
+    }
+
+    /**
+     * Hands the index the addresses now learned on the connector, none if the
+     * connector is gone, as the address tracker listener sees them.
+     */
+    @SuppressWarnings("unchecked")
+    private void learned(AttachmentPoint point, IpAddress... ips) {
+        AddressCapableNodeConnector after = null;
+        if(ips != null) {
+            List<Addresses> addresses = new ArrayList<>();
+            for(int i = 0; i < ips.length; i++) {
+                addresses.add(new AddressesBuilder().setId((long) i).setIp(ips[i]).build());
+            }
+            after = new AddressCapableNodeConnectorBuilder().setAddresses(addresses).build();
+        }
+        InstanceIdentifier<AddressCapableNodeConnector> iid = InstanceIdentifier.create(Nodes.class)
+                .child(Node.class, new NodeKey(point.getNodeId()))
+                .child(NodeConnector.class, new NodeConnectorKey(point.getNodeConnectorId()))
+                .augmentation(AddressCapableNodeConnector.class);
+        DataObjectModification<AddressCapableNodeConnector> node = mock(DataObjectModification.class);
+        when(node.getDataAfter()).thenReturn(after);
+        DataTreeModification<AddressCapableNodeConnector> change = mock(DataTreeModification.class);
+        when(change.getRootPath()).thenReturn(new DataTreeIdentifier<>(LogicalDatastoreType.OPERATIONAL, iid));
+        when(change.getRootNode()).thenReturn(node);
+        index.onDataTreeChanged(Collections.singletonList(change));
+    }
+
+    @Test
+    public void testAddressesAreAddedMovedAndRemoved() {
+        learned(FIRST, ipv4("10.0.0.1"), ipv4("10.0.0.2"));
+        assertEquals(FIRST, index.lookup("10.0.0.1"));
+        assertEquals(FIRST, index.lookup("10.0.0.2"));
+
+        // the host shows up on the second switch before the first one forgets it
+        learned(SECOND, ipv4("10.0.0.2"));
+        assertEquals(SECOND, index.lookup("10.0.0.2"));
+        learned(FIRST, ipv4("10.0.0.1"));
+        assertEquals(SECOND, index.lookup("10.0.0.2"));
+        assertEquals(FIRST, index.lookup("10.0.0.1"));
+
+        // the connector goes away with its addresses
+        learned(FIRST, (IpAddress[]) null);
+        assertNull(index.lookup("10.0.0.1"));
+        assertEquals(SECOND, index.lookup("10.0.0.2"));
+        learned(SECOND);
+        assertNull(index.lookup("10.0.0.2"));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testIpv6AddressesAreNormalized() {
+        learned(FIRST, ipv6("2001:DB8:0:0:0:0:0:1"), ipv4("10.0.0.1"));
+        assertEquals(FIRST, index.lookup("2001:db8::1"));
+        assertEquals(FIRST, index.lookup("2001:0db8:0000::0001"));
+        // an IPv4-mapped address finds the IPv4 host
+        assertEquals(FIRST, index.lookup("::ffff:10.0.0.1"));
+        assertNull(index.lookup("2001:db8::2"));
+        assertNull(index.lookup("not:an:address"));
+        assertEquals(2, index.size());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdmissionQueueTest {
+
+    private final OperationMetrics waits = new OperationMetrics("admission-wait", 4);
+    private final List<String> started = new ArrayList<>();
+    private final List<SettableFuture<String>> running = new ArrayList<>();
+
+    private Callable<ListenableFuture<String>> work(final String name) {
+        return new Callable<ListenableFuture<String>>() {
+            @Override
+            public ListenableFuture<String> call() {
+                started.add(name);
+                SettableFuture<String> future = SettableFuture.create();
+                running.add(future);
+                return future;
+            }
+        };
+    }
+
+    /**
+     * Completes the running submissions one by one, including those they start.
+     */
+    private void completeAll() {
+        for(int i = 0; i < running.size(); i++) {
+            running.get(i).set(started.get(i));
+        }
+    }
+
+    @Test
+    public void testSubmissionsWaitForAFreeSlot() throws Exception {
+        AdmissionQueue queue = new AdmissionQueue(10, 2, waits);
+        ListenableFuture<String> first = queue.submit("a", AdmissionQueue.Priority.BEST_EFFORT, work("1"));
+        queue.submit("a", AdmissionQueue.Priority.BEST_EFFORT, work("2"));
+        ListenableFuture<String> third = queue.submit("a", AdmissionQueue.Priority.BEST_EFFORT, work("3"));
+        assertEquals(Arrays.asList("1", "2"), started);
+        assertEquals(1, queue.getQueued());
+        assertEquals(1, waits.getInFlight());
+
+        running.get(0).set("done");
+        assertEquals("done", first.get());
+        assertEquals(Arrays.asList("1", "2", "3"), started);
+        assertFalse(third.isDone());
+        completeAll();
+        assertEquals("3", third.get());
+        assertEquals(0, queue.getInFlight());
+        assertEquals(0, waits.getInFlight());
+        assertEquals(3, waits.getLatency().getCount());
+    }
+
+    @Test
+    public void testLowDelayGoesFirstAndTenantsTakeTurns() {
+        AdmissionQueue queue = new AdmissionQueue(100, 1, waits);
+        queue.submit("a", AdmissionQueue.Priority.BEST_EFFORT, work("busy"));
+        queue.submit("a", AdmissionQueue.Priority.BEST_EFFORT, work("a-be"));
+        queue.submit("a", AdmissionQueue.Priority.LOW_DELAY, work("a1"));
+        queue.submit("a", AdmissionQueue.Priority.LOW_DELAY, work("a2"));
+        queue.submit("a", AdmissionQueue.Priority.LOW_DELAY, work("a3"));
+        queue.submit("b", AdmissionQueue.Priority.LOW_DELAY, work("b1"));
+        assertEquals(4, queue.getQueued(AdmissionQueue.Priority.LOW_DELAY));
+
+        completeAll();
+        assertEquals(Arrays.asList("busy", "a1", "b1", "a2", "a3", "a-be"), started);
+    }
+
+    @Test
+    public void testBestEffortIsNotStarved() {
+        AdmissionQueue queue = new AdmissionQueue(100, 1, waits);
+        queue.submit(null, AdmissionQueue.Priority.BEST_EFFORT, work("busy"));
+        for(int i = 0; i < 20; i++) {
+            queue.submit(null, AdmissionQueue.Priority.LOW_DELAY, work("low-delay"));
+        }
+        queue.submit(null, AdmissionQueue.Priority.BEST_EFFORT, work("best-effort"));
+        completeAll();
+        // weights 8 and 1 give best effort one of every nine starts, the fifth of the first nine
+        assertEquals(5, started.indexOf("best-effort"));
+    }
+
+    @Test
+    public void testFullQueueRejectsTheLargestTenant() throws Exception {
+        AdmissionQueue queue = new AdmissionQueue(2, 1, waits);
+        queue.submit("a", AdmissionQueue.Priority.GUARANTEED, work("busy"));
+        queue.submit("a", AdmissionQueue.Priority.GUARANTEED, work("a1"));
+        ListenableFuture<String> evicted = queue.submit("a", AdmissionQueue.Priority.GUARANTEED, work("a2"));
+
+        // b takes the place of the newest of a, then a and b are even and a is turned away
+        queue.submit("b", AdmissionQueue.Priority.GUARANTEED, work("b1"));
+        ListenableFuture<String> rejected = queue.submit("a", AdmissionQueue.Priority.LOW_DELAY, work("a3"));
+        assertRejected(evicted);
+        assertRejected(rejected);
+        assertEquals(2, queue.getQueued());
+        assertEquals(2, waits.getFailures());
+
+        completeAll();
+        assertEquals(Arrays.asList("busy", "a1", "b1"), started);
+    }
+
+    private static void assertRejected(ListenableFuture<String> result) throws InterruptedException {
+        assertTrue(result.isDone());
+        try {
+            result.get();
+            fail("Expected a rejection");
+        } catch(ExecutionException e) {
+            AdmissionRejectedException rejection = (AdmissionRejectedException) e.getCause();
+            assertEquals(ApplicationSetupException.RESOURCE_DENIED, rejection.getErrorTag());
+            assertTrue(rejection.getRetryAfterMillis() >= AdmissionQueue.MIN_RETRY_AFTER_MILLIS);
+            assertTrue(rejection.getRetryAfterMillis() <= AdmissionQueue.MAX_RETRY_AFTER_MILLIS);
+        }
+    }
+}
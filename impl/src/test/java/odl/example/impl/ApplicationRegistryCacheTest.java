@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.junit.Test;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.AddApplicationInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.AddApplicationInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntryBuilder;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ApplicationRegistryCacheTest {
+
+    private static AddApplicationInput application(int appId) {
+        return new AddApplicationInputBuilder().setAppId(appId).setBandwidth(BigDecimal.TEN).build();
+    }
+
+    @Test
+    public void testClockEvictsUnreferencedEntry() {
+        ApplicationRegistryCache cache = new ApplicationRegistryCache(2);
+        AddApplicationInput first = application(1);
+        cache.fill(1, first, cache.getGeneration());
+        cache.fill(2, application(2), cache.getGeneration());
+        assertSame(first, cache.get(1));
+
+        cache.fill(3, application(3), cache.getGeneration());
+
+        assertSame(first, cache.get(1));
+        assertNull(cache.get(2));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testListenerUpdatesCachedEntry() {
+        ApplicationRegistryCache cache = new ApplicationRegistryCache(4);
+        cache.fill(1, application(1), cache.getGeneration());
+        cache.fill(2, null, cache.getGeneration());
+        assertSame(ApplicationRegistryCache.ABSENT, cache.get(2));
+
+        cache.update(1, new ApplicationRegistryEntryBuilder().setAppId(1).setBandwidth(BigDecimal.ONE).build());
+        assertEquals(BigDecimal.ONE, cache.get(1).getBandwidth());
+        assertEquals(1, cache.getQos(1).getBandwidth(), 0);
+
+        cache.update(1, null);
+        assertSame(ApplicationRegistryCache.ABSENT, cache.get(1));
+        assertNull(cache.getQos(1));
+    }
+
+    @Test
+    public void testLoadRacingWithChangeIsNotCached() {
+        ApplicationRegistryCache cache = new ApplicationRegistryCache(4);
+        long generation = cache.getGeneration();
+        cache.update(1, new ApplicationRegistryEntryBuilder().setAppId(1).build());
+        cache.fill(1, application(1), generation);
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    public void testNegativeAppIdIsCachedApart() {
+        ApplicationRegistryCache cache = new ApplicationRegistryCache(2);
+        assertNull(cache.get(-1));
+
+        AddApplicationInput application = application(-1);
+        cache.fill(-1, application, cache.getGeneration());
+        cache.fill(0, null, cache.getGeneration());
+        assertSame(application, cache.get(-1));
+        assertEquals(10, cache.getQos(-1).getBandwidth(), 0);
+        assertSame(ApplicationRegistryCache.ABSENT, cache.get(0));
+        assertEquals(2, cache.size());
+
+        cache.get(0);
+        cache.fill(1, application(1), cache.getGeneration());
+        assertNull(cache.get(-1));
+        assertEquals(2, cache.size());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.Test;
+import org.opendaylight.controller.md.sal.binding.api.BindingTransactionChain;
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionChainListener;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntry;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntryBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ApplicationRegistryWriterTest {
+
+    private static ApplicationRegistryEntry entry(int appId, long bandwidth) {
+        return new ApplicationRegistryEntryBuilder().setAppId(appId).setBandwidth(BigDecimal.valueOf(bandwidth)).build();
+    }
+
+    @Test
+    public void testWritesWithinWindowShareOneTransaction() throws Exception {
+        DataBroker db = mock(DataBroker.class);
+        BindingTransactionChain chain = mock(BindingTransactionChain.class);
+        WriteTransaction transaction = mock(WriteTransaction.class);
+        CheckedFuture<Void, TransactionCommitFailedException> committed = Futures.immediateCheckedFuture(null);
+        when(db.createTransactionChain(any(TransactionChainListener.class))).thenReturn(chain);
+        when(chain.newWriteOnlyTransaction()).thenReturn(transaction);
+        when(transaction.submit()).thenReturn(committed);
+
+        ApplicationRegistryWriter writer = new ApplicationRegistryWriter(db, 100, 50);
+        ApplicationRegistryEntry first = entry(1, 10);
+        ApplicationRegistryEntry replaced = entry(1, 20);
+        ApplicationRegistryEntry other = entry(2, 10);
+        ListenableFuture<Void> firstWrite = writer.put(first);
+        ListenableFuture<Void> secondWrite = writer.put(replaced);
+        ListenableFuture<Void> otherWrite = writer.put(other);
+        ListenableFuture<Void> deleted = writer.delete(3);
+
+        assertNull(firstWrite.get(5, TimeUnit.SECONDS));
+        assertNull(secondWrite.get(5, TimeUnit.SECONDS));
+        assertNull(otherWrite.get(5, TimeUnit.SECONDS));
+        assertNull(deleted.get(5, TimeUnit.SECONDS));
+
+        verify(chain, times(1)).newWriteOnlyTransaction();
+        verify(transaction, never()).put(LogicalDatastoreType.OPERATIONAL,
+                ApplicationRegistryWriter.toInstanceIdentifier(1), first);
+        verify(transaction).put(LogicalDatastoreType.OPERATIONAL,
+                ApplicationRegistryWriter.toInstanceIdentifier(1), replaced);
+        verify(transaction).put(LogicalDatastoreType.OPERATIONAL,
+                ApplicationRegistryWriter.toInstanceIdentifier(2), other);
+        verify(transaction).delete(eq(LogicalDatastoreType.OPERATIONAL),
+                eq(ApplicationRegistryWriter.toInstanceIdentifier(3)));
+        writer.close();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BandwidthLedgerTest {
+
+    private LinkQualityTable table;
+    private BandwidthLedger ledger;
+
+    @Before
+    public void setUp() {
+        table = new LinkQualityTable();
+        table.update("s1:1", new LinkQuality(1000, 0, 0));
+        table.update("s2:1", new LinkQuality(500, 0, 0));
+        ledger = new BandwidthLedger(table);
+    }
+
+    @Test
+    public void testFailedHopRollsBackThePath() {
+        List<String> path = Arrays.asList("s1:1", "s2:1");
+        assertTrue(ledger.reserve(path, 400));
+        assertFalse(ledger.reserve(path, 200));
+        assertEquals(400, ledger.getReserved("s1:1"), 1e-9);
+        assertEquals(400, ledger.getReserved("s2:1"), 1e-9);
+
+        ledger.release(path, 400);
+        assertTrue(ledger.reserve(path, 500));
+    }
+
+    @Test
+    public void testUnknownCapacityIsNotLimited() {
+        assertTrue(ledger.reserve(Arrays.asList("s3:1"), 1e9));
+    }
+
+    @Test
+    public void testConcurrentAdmissionsNeverOverbook() throws InterruptedException {
+        final List<String> path = Arrays.asList("s1:1", "s2:1");
+        final AtomicInteger admitted = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for(int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch(InterruptedException e) {
+                        return;
+                    }
+                    for(int i = 0; i < 1000; i++) {
+                        if(ledger.reserve(path, 1)) {
+                            admitted.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(500, admitted.get());
+        assertEquals(500, ledger.getReserved("s1:1"), 1e-9);
+    }
+}
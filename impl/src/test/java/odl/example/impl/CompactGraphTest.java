@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.junit.Test;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static odl.example.impl.QosPathEngineTest.link;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompactGraphTest {
+
+    @Test
+    public void testReverseDirectionIsDeduplicated() {
+        CompactGraph graph = new CompactGraph();
+        assertTrue(graph.addLink(link("a", 1, "b", 1)));
+        assertFalse(graph.addLink(link("b", 1, "a", 1)));
+        assertEquals(1, graph.getEdgeCount());
+        assertEquals(2, graph.getNodeCount());
+    }
+
+    @Test
+    public void testRemoveEitherDirection() {
+        CompactGraph graph = new CompactGraph();
+        graph.addLink(link("a", 1, "b", 1));
+        graph.addLink(link("b", 2, "c", 1));
+        assertNotNull(graph.removeLink(link("b", 1, "a", 1)));
+        assertNull(graph.removeLink(link("a", 1, "b", 1)));
+        assertEquals(1, graph.getEdgeCount());
+        assertTrue(graph.addLink(link("a", 1, "b", 1)));
+        assertEquals(2, graph.getEdgeCount());
+    }
+
+    @Test
+    public void testSnapshotAdjacency() {
+        CompactGraph graph = new CompactGraph();
+        graph.addLink(link("a", 1, "b", 1));
+        graph.addLink(link("b", 2, "c", 1));
+        graph.addLink(link("a", 2, "c", 2));
+        graph.removeLink(link("a", 2, "c", 2));
+        GraphIndex index = graph.snapshot();
+
+        assertEquals(3, index.getVertexCount());
+        assertEquals(4, index.getArcCount());
+        int b = index.indexOf(new NodeId("b"));
+        assertEquals(2, index.endArc(b) - index.firstArc(b));
+        int a = index.indexOf(new NodeId("a"));
+        assertEquals(1, index.endArc(a) - index.firstArc(a));
+        assertEquals("a:1", index.getArcTp(index.firstArc(a)));
+        assertEquals(-1, index.indexOf(new NodeId("z")));
+    }
+
+    @Test
+    public void testSnapshotIsNotAffectedByLaterChanges() {
+        CompactGraph graph = new CompactGraph();
+        graph.addLink(link("a", 1, "b", 1));
+        GraphIndex before = graph.snapshot();
+        assertFalse(graph.addLink(link("b", 1, "a", 1)));
+        assertEquals(before.getEpoch(), graph.getEpoch());
+
+        graph.addLink(link("b", 2, "c", 1));
+        graph.removeLink(link("a", 1, "b", 1));
+        GraphIndex after = graph.snapshot();
+        assertTrue(after.getEpoch() > before.getEpoch());
+        assertEquals(2, before.getVertexCount());
+        assertEquals(2, before.getArcCount());
+        assertEquals(-1, before.indexOf(new NodeId("c")));
+        assertEquals(3, after.getVertexCount());
+        assertEquals(2, after.getArcCount());
+    }
+
+    @Test
+    public void testPatchedSnapshotMatchesRebuild() {
+        // a ring of 64 nodes, then batches changing a few links, recycling edge ids
+        CompactGraph graph = new CompactGraph();
+        for(int i = 0; i < 64; i++) {
+            graph.addLink(link("n" + i, 1, "n" + (i + 1) % 64, 2));
+        }
+        GraphIndex index = graph.snapshot();
+        assertSame(index, graph.snapshot());
+        Random random = new Random(7);
+        for(int batch = 0; batch < 50; batch++) {
+            for(int change = 0; change < 3; change++) {
+                int u = random.nextInt(64);
+                int v = random.nextInt(64);
+                if(random.nextBoolean()) {
+                    graph.addLink(link("n" + u, 3 + v, "n" + v, 3 + u));
+                } else {
+                    graph.removeLink(link("n" + u, 1, "n" + (u + 1) % 64, 2));
+                }
+            }
+            index = graph.snapshot();
+            assertEquals(graph.getEpoch(), index.getEpoch());
+            assertSameAdjacency(GraphIndex.build(graph.getLinks()), index);
+        }
+        // a node added by a patch
+        graph.addLink(link("n0", 100, "m", 1));
+        assertSameAdjacency(GraphIndex.build(graph.getLinks()), graph.snapshot());
+    }
+
+    private static void assertSameAdjacency(GraphIndex expected, GraphIndex actual) {
+        assertEquals(expected.getArcCount(), actual.getArcCount());
+        for(int v = 0; v < expected.getVertexCount(); v++) {
+            NodeId node = expected.getVertex(v);
+            assertEquals(arcs(expected, v), arcs(actual, actual.indexOf(node)));
+        }
+    }
+
+    private static List<String> arcs(GraphIndex index, int vertex) {
+        List<String> arcs = new ArrayList<>();
+        for(int arc = index.firstArc(vertex); arc < index.endArc(vertex); arc++) {
+            assertEquals(vertex, index.getArcSource(arc));
+            arcs.add(index.getArcTp(arc) + "->" + index.getVertex(index.getArcTarget(arc)).getValue()
+                    + "@" + index.getArcLink(arc).getLinkId().getValue());
+        }
+        Collections.sort(arcs);
+        return arcs;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.Futures;
+import org.junit.Test;
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
+import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.ReadFailedException;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.Flow;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.ApplicationRegistry;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.ApplicationRegistryBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.DesiredFlows;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.DesiredFlowsBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntry;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntryBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.desired.flows.ApplicationFlows;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.desired.flows.ApplicationFlowsBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.desired.flows.ApplicationFlowsKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.desired.flows.application.flows.SwitchFlow;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.desired.flows.application.flows.SwitchFlowBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.desired.flows.application.flows.SwitchFlowKey;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DesiredFlowStoreTest {
+
+    private static final ApplicationMatch FIRST = new ApplicationMatch("10.0.0.1", "10.0.0.2",
+            ApplicationMatch.TCP, 5001);
+    private static final ApplicationMatch SECOND = new ApplicationMatch("10.0.0.1", "10.0.0.2",
+            ApplicationMatch.TCP, 5002);
+
+    private final DesiredFlowStore store = new DesiredFlowStore();
+
+    /**
+     * Returns the flows of a path given as pairs of switch and egress connector.
+     */
+    private static Map<String, DesiredFlow> path(ApplicationMatch match, String... hops) {
+        Map<String, DesiredFlow> flows = new LinkedHashMap<>();
+        for(int i = 0; i < hops.length; i += 2) {
+            flows.put(hops[i], new DesiredFlow(match, hops[i + 1], SwitchConfigurator.APPLICATION_QUEUE_ID,
+                    FlowTemplateCompiler.HARD_TIMEOUT));
+        }
+        return flows;
+    }
+
+    @Test
+    public void testApplicationsOnDifferentPathsHaveDistinctFlows() throws Exception {
+        store.setApplication(1, path(FIRST, "openflow:1", "openflow:1:2", "openflow:2", "openflow:2:3"));
+        store.setApplication(2, path(SECOND, "openflow:1", "openflow:1:3", "openflow:3", "openflow:3:3"));
+
+        // both leave the first switch, each through the connector of its own path
+        Map<String, DesiredFlow> shared = store.getFlows("openflow:1");
+        assertEquals(2, shared.size());
+        assertEquals("openflow:1:2", shared.get(FIRST.getKey()).getEgressConnector());
+        assertEquals("openflow:1:3", shared.get(SECOND.getKey()).getEgressConnector());
+        assertEquals(2, FlowReconciler.diff(shared, Collections.<Flow>emptyList()).adds.size());
+        assertEquals(new HashSet<>(Arrays.asList("openflow:1", "openflow:2", "openflow:3")), store.getSwitches());
+
+        store.removeApplication(1);
+        assertEquals(1, store.getFlows("openflow:1").size());
+        assertNull(store.getFlow("openflow:1", FIRST.getKey()));
+        assertNull(store.getApplication(FIRST));
+        assertEquals(Integer.valueOf(2), store.getApplication(SECOND));
+    }
+
+    @Test
+    public void testMatchOfAnotherApplicationIsRejected() throws Exception {
+        store.setApplication(1, path(FIRST, "openflow:1", "openflow:1:2"));
+        try {
+            store.setApplication(2, path(FIRST, "openflow:1", "openflow:1:3"));
+            fail("Expected the match to be taken");
+        } catch(ApplicationSetupException e) {
+            assertEquals(ApplicationSetupException.RESOURCE_DENIED, e.getErrorTag());
+        }
+        assertEquals("openflow:1:2", store.getFlow("openflow:1", FIRST.getKey()).getEgressConnector());
+
+        // the application itself may move to another path
+        store.setApplication(1, path(FIRST, "openflow:1", "openflow:1:3"));
+        assertEquals("openflow:1:3", store.getFlow("openflow:1", FIRST.getKey()).getEgressConnector());
+    }
+
+    private static ApplicationRegistryEntry entry(int appId) {
+        return new ApplicationRegistryEntryBuilder().setAppId(appId).setBandwidth(BigDecimal.TEN).build();
+    }
+
+    private static ApplicationFlows written(int appId, ApplicationMatch match, String switchId, String egress) {
+        SwitchFlow flow = new SwitchFlowBuilder()
+                .setKey(new SwitchFlowKey(switchId))
+                .setSwitchId(switchId)
+                .setSrcAddress(match.getSrcAddress())
+                .setDstAddress(match.getDstAddress())
+                .setIpProtocol(match.getIpProtocol())
+                .setDstPort(match.getDstPort())
+                .setEgressConnector(egress)
+                .setQueueId(SwitchConfigurator.APPLICATION_QUEUE_ID)
+                .setHardTimeout(FlowTemplateCompiler.HARD_TIMEOUT)
+                .build();
+        return new ApplicationFlowsBuilder()
+                .setKey(new ApplicationFlowsKey(appId))
+                .setAppId(appId)
+                .setReservedTp(Arrays.asList(egress))
+                .setBandwidth(BigDecimal.TEN)
+                .setSwitchFlow(Arrays.asList(flow))
+                .build();
+    }
+
+    @Test
+    public void testFlowsAreRebuiltAtStartup() {
+        ApplicationRegistry registry = new ApplicationRegistryBuilder()
+                .setApplicationRegistryEntry(Arrays.asList(entry(1), entry(2)))
+                .build();
+        // application 2 has no flows written, application 3 is no longer registered
+        DesiredFlows shared = new DesiredFlowsBuilder()
+                .setApplicationFlows(Arrays.asList(written(1, FIRST, "openflow:1", "openflow:1:2"),
+                        written(3, SECOND, "openflow:1", "openflow:1:3")))
+                .build();
+        DataBroker db = mock(DataBroker.class);
+        ReadOnlyTransaction read = mock(ReadOnlyTransaction.class);
+        WriteTransaction write = mock(WriteTransaction.class);
+        CheckedFuture<Void, TransactionCommitFailedException> committed = Futures.immediateCheckedFuture(null);
+        when(db.newReadOnlyTransaction()).thenReturn(read);
+        when(db.newWriteOnlyTransaction()).thenReturn(write);
+        when(write.submit()).thenReturn(committed);
+        when(read.read(LogicalDatastoreType.OPERATIONAL, InstanceIdentifier.create(ApplicationRegistry.class)))
+                .thenReturn(Futures.<Optional<ApplicationRegistry>, ReadFailedException>immediateCheckedFuture(
+                        Optional.of(registry)));
+        when(read.read(LogicalDatastoreType.OPERATIONAL, InstanceIdentifier.create(DesiredFlows.class)))
+                .thenReturn(Futures.<Optional<DesiredFlows>, ReadFailedException>immediateCheckedFuture(
+                        Optional.of(shared)));
+        final List<Integer> planned = new ArrayList<>();
+
+        assertFalse(store.isLoaded());
+        store.init(db, new DesiredFlowStore.Planner() {
+            @Override
+            public void plan(List<ApplicationRegistryEntry> entries) {
+                for(ApplicationRegistryEntry entry : entries) {
+                    planned.add(entry.getAppId());
+                }
+            }
+        });
+        try {
+            assertTrue(store.isLoaded());
+            assertEquals(1, store.getApplicationCount());
+            assertEquals("openflow:1:2", store.getFlow("openflow:1", FIRST.getKey()).getEgressConnector());
+            assertEquals(Arrays.asList("openflow:1:2"), MultipathEngine.getInstance().getEgressTps(1));
+            assertEquals(Arrays.asList(2), planned);
+            verify(write).delete(LogicalDatastoreType.OPERATIONAL, DesiredFlowStore.getSharedIid(3));
+        } finally {
+            MultipathEngine.getInstance().release(1);
+        }
+    }
+
+    @Test
+    public void testReservationsOfOtherMembersAreCounted() {
+        try {
+            // another member added application 4 over a port of this member
+            assertEquals(Collections.singleton("openflow:1"),
+                    store.applyShared(4, written(4, FIRST, "openflow:1", "openflow:4:2")));
+            assertEquals(Arrays.asList("openflow:4:2"), MultipathEngine.getInstance().getEgressTps(4));
+            assertEquals(10, BandwidthLedger.getInstance().getReserved("openflow:4:2"), 0);
+
+            // the same write seen again reserves nothing more
+            assertTrue(store.applyShared(4, written(4, FIRST, "openflow:1", "openflow:4:2")).isEmpty());
+            assertEquals(10, BandwidthLedger.getInstance().getReserved("openflow:4:2"), 0);
+
+            store.applyShared(4, null);
+            assertNull(MultipathEngine.getInstance().getEgressTps(4));
+            assertEquals(0, BandwidthLedger.getInstance().getReserved("openflow:4:2"), 0);
+            assertNull(store.getApplication(FIRST));
+        } finally {
+            MultipathEngine.getInstance().release(4);
+        }
+    }
+
+    @Test
+    public void testStagedApplicationsAreWrittenTogether() throws Exception {
+        DataBroker db = mock(DataBroker.class);
+        ReadOnlyTransaction read = mock(ReadOnlyTransaction.class);
+        WriteTransaction write = mock(WriteTransaction.class);
+        CheckedFuture<Void, TransactionCommitFailedException> committed = Futures.immediateCheckedFuture(null);
+        when(db.newReadOnlyTransaction()).thenReturn(read);
+        when(db.newWriteOnlyTransaction()).thenReturn(write);
+        when(write.submit()).thenReturn(committed);
+        when(read.read(LogicalDatastoreType.OPERATIONAL, InstanceIdentifier.create(ApplicationRegistry.class)))
+                .thenReturn(Futures.<Optional<ApplicationRegistry>, ReadFailedException>immediateCheckedFuture(
+                        Optional.<ApplicationRegistry>absent()));
+        when(read.read(LogicalDatastoreType.OPERATIONAL, InstanceIdentifier.create(DesiredFlows.class)))
+                .thenReturn(Futures.<Optional<DesiredFlows>, ReadFailedException>immediateCheckedFuture(
+                        Optional.<DesiredFlows>absent()));
+        store.init(db, null);
+
+        store.stageApplication(1, path(FIRST, "openflow:1", "openflow:1:2"));
+        store.stageApplication(2, path(SECOND, "openflow:1", "openflow:1:3"));
+        verify(db, never()).newWriteOnlyTransaction();
+
+        // application 3 has no flows and is left out
+        store.writeApplications(Arrays.asList(1, 2, 3));
+        verify(db, times(1)).newWriteOnlyTransaction();
+        verify(write).put(eq(LogicalDatastoreType.OPERATIONAL), eq(DesiredFlowStore.getSharedIid(1)),
+                any(ApplicationFlows.class));
+        verify(write).put(eq(LogicalDatastoreType.OPERATIONAL), eq(DesiredFlowStore.getSharedIid(2)),
+                any(ApplicationFlows.class));
+        verify(write, never()).put(eq(LogicalDatastoreType.OPERATIONAL), eq(DesiredFlowStore.getSharedIid(3)),
+                any(ApplicationFlows.class));
+        verify(write).submit();
+        store.close();
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import com.google.common.util.concurrent.CheckedFuture;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.opendaylight.controller.md.sal.binding.api.BindingTransactionChain;
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.WriteTransaction;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionChainListener;
+import org.opendaylight.controller.md.sal.common.api.data.TransactionCommitFailedException;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressCapableNodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressCapableNodeConnectorBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.AddressesBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowOutput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.SalFlowService;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.model.match.types.rev131026.match.layer._4.match.TcpMatch;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.AddApplicationInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.AddApplicationsInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.AddApplicationsOutput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.add.applications.input.Application;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.add.applications.input.ApplicationBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.add.applications.output.ApplicationStatus;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntry;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexample.rev150105.application.registry.ApplicationRegistryEntryBuilder;
+import org.opendaylight.yangtools.yang.common.RpcError.ErrorType;
+import org.opendaylight.yangtools.yang.common.RpcResult;
+import org.opendaylight.yangtools.yang.common.RpcResultBuilder;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ExampleImplTest {
+
+    private final DataBroker db = mock(DataBroker.class);
+    private final WriteTransaction transaction = mock(WriteTransaction.class);
+
+    @Before
+    public void setUp() {
+        BindingTransactionChain chain = mock(BindingTransactionChain.class);
+        CheckedFuture<Void, TransactionCommitFailedException> committed = Futures.immediateCheckedFuture(null);
+        when(db.createTransactionChain(any(TransactionChainListener.class))).thenReturn(chain);
+        when(chain.newWriteOnlyTransaction()).thenReturn(transaction);
+        when(transaction.submit()).thenReturn(committed);
+        ApplicationRegistryUtils.getInstance().setDb(db);
+    }
+
+    @After
+    public void tearDown() {
+        ApplicationRegistryUtils.getInstance().close();
+    }
+
+    @Test
+    public void testFailedSetupLeavesNothingRegistered() throws Exception {
+        // no host is attached to any switch, so planning fails
+        RpcResult<Void> result = new ExampleImpl(db).addApplication(new AddApplicationInputBuilder()
+                .setAppId(7)
+                .setBandwidth(BigDecimal.TEN)
+                .build()).get(5, TimeUnit.SECONDS);
+
+        assertFalse(result.isSuccessful());
+        assertEquals(ApplicationSetupException.DATA_MISSING, result.getErrors().iterator().next().getTag());
+        verify(transaction, never()).delete(LogicalDatastoreType.OPERATIONAL,
+                ApplicationRegistryWriter.toInstanceIdentifier(7));
+        verify(transaction, never()).put(eq(LogicalDatastoreType.OPERATIONAL),
+                eq(ApplicationRegistryWriter.toInstanceIdentifier(7)), any(ApplicationRegistryEntry.class));
+    }
+
+    @Test
+    public void testFailedEntriesOfABatchAreNotRegistered() throws Exception {
+        Application first = new ApplicationBuilder().setAppId(8).setBandwidth(BigDecimal.TEN).build();
+        Application second = new ApplicationBuilder().setAppId(9).setBandwidth(BigDecimal.TEN).build();
+        RpcResult<AddApplicationsOutput> result = new ExampleImpl(db).addApplications(new AddApplicationsInputBuilder()
+                .setApplication(Arrays.asList(first, second))
+                .build()).get(5, TimeUnit.SECONDS);
+
+        assertTrue(result.isSuccessful());
+        for(ApplicationStatus status : result.getResult().getApplicationStatus()) {
+            assertEquals(ApplicationStatus.Status.Failed, status.getStatus());
+            assertEquals(ApplicationSetupException.DATA_MISSING, status.getErrorTag());
+        }
+        verify(transaction, never()).delete(LogicalDatastoreType.OPERATIONAL,
+                ApplicationRegistryWriter.toInstanceIdentifier(9));
+        verify(transaction, never()).put(eq(LogicalDatastoreType.OPERATIONAL),
+                eq(ApplicationRegistryWriter.toInstanceIdentifier(8)), any(ApplicationRegistryEntry.class));
+    }
+
+    @Test
+    public void testEntriesOfABatchAreAdmittedOneByOne() throws Exception {
+        // one slot and no room to wait: the second entry is turned away
+        AdmissionQueue queue = new AdmissionQueue(0, 1, new OperationMetrics("admission-wait", 4));
+        Application first = new ApplicationBuilder().setAppId(11).setTenantId("a")
+                .setSrcAddress("10.0.9.1").setDstAddress("10.0.9.2").build();
+        Application second = new ApplicationBuilder().setAppId(12).setTenantId("b")
+                .setSrcAddress("10.0.9.3").setDstAddress("10.0.9.4").build();
+        RpcResult<AddApplicationsOutput> result = new ExampleImpl(db, queue).addApplications(
+                new AddApplicationsInputBuilder().setApplication(Arrays.asList(first, second)).build())
+                .get(5, TimeUnit.SECONDS);
+
+        assertTrue(result.isSuccessful());
+        List<ApplicationStatus> statuses = result.getResult().getApplicationStatus();
+        assertEquals(ApplicationSetupException.DATA_MISSING, statuses.get(0).getErrorTag());
+        assertEquals(ApplicationSetupException.RESOURCE_DENIED, statuses.get(1).getErrorTag());
+        assertEquals(0, queue.getInFlight());
+    }
+
+    @Test
+    public void testAbandonedSetupKeepsNothingOfItsOwn() throws Exception {
+        ApplicationMatch match = new ApplicationMatch("10.0.0.1", "10.0.0.2", ApplicationMatch.TCP, 10);
+        DesiredFlowStore.getInstance().setApplication(10, flow("openflow:1", match, "openflow:1:2"));
+
+        // the flows of the new application failed to install
+        ExampleImpl.abandon(10);
+
+        assertNull(MultipathEngine.getInstance().getEgressTps(10));
+        assertNull(DesiredFlowStore.getInstance().getApplication(match));
+        assertTrue(DesiredFlowStore.getInstance().getFlows("openflow:1").isEmpty());
+    }
+
+    @Test
+    public void testFailedReAddKeepsTheWorkingApplication() throws Exception {
+        // hosts on two switches joined by one link of 100 kbit/s
+        attach("openflow:1", "openflow:1:1", "10.0.0.1");
+        attach("openflow:2", "openflow:2:1", "10.0.0.2");
+        NetworkGraphImpl.getInstance().addLinks(Arrays.asList(QosPathEngineTest.link("openflow:1", 3, "openflow:2", 3)));
+        LinkQualityTable.getInstance().update("openflow:1:3", new LinkQuality(100, 0, 0));
+        ApplicationMatch match = new ApplicationMatch("10.0.0.1", "10.0.0.2", ApplicationMatch.TCP, 30);
+        Map<String, DesiredFlow> flows = flow("openflow:1", match, "openflow:1:3");
+        try {
+            // application 30 is registered and working with 50 kbit/s
+            DesiredFlowStore.getInstance().setApplication(30, flows);
+            ExampleImpl.commit(30);
+            assertTrue(MultipathEngine.getInstance().restore(30, Arrays.asList("openflow:1:3"), 50));
+
+            RpcResult<Void> result = new ExampleImpl(db).addApplication(new AddApplicationInputBuilder()
+                    .setAppId(30)
+                    .setBandwidth(BigDecimal.valueOf(1000))
+                    .setSrcAddress("10.0.0.1")
+                    .setDstAddress("10.0.0.2")
+                    .setIpProtocol(ApplicationMatch.TCP)
+                    .setDstPort(30)
+                    .build()).get(5, TimeUnit.SECONDS);
+
+            assertFalse(result.isSuccessful());
+            assertEquals(ApplicationSetupException.RESOURCE_DENIED, result.getErrors().iterator().next().getTag());
+            assertEquals(Arrays.asList("openflow:1:3"), MultipathEngine.getInstance().getEgressTps(30));
+            assertEquals(50, BandwidthLedger.getInstance().getReserved("openflow:1:3"), 0);
+            assertEquals(Integer.valueOf(30), DesiredFlowStore.getInstance().getApplication(match));
+            assertEquals(flows.get("openflow:1"), DesiredFlowStore.getInstance().getFlow("openflow:1", match.getKey()));
+            verify(transaction, never()).delete(LogicalDatastoreType.OPERATIONAL,
+                    ApplicationRegistryWriter.toInstanceIdentifier(30));
+            verify(transaction, never()).put(eq(LogicalDatastoreType.OPERATIONAL),
+                    eq(ApplicationRegistryWriter.toInstanceIdentifier(30)), any(ApplicationRegistryEntry.class));
+        } finally {
+            MultipathEngine.getInstance().release(30);
+            DesiredFlowStore.getInstance().removeApplication(30);
+            NetworkGraphImpl.getInstance().clearGraph();
+            LinkQualityTable.getInstance().remove("openflow:1:3");
+            AddressIndex.getInstance().close();
+        }
+    }
+
+    private static Map<String, DesiredFlow> flow(String switchId, ApplicationMatch match, String egressConnector) {
+        Map<String, DesiredFlow> flows = new HashMap<>();
+        flows.put(switchId, new DesiredFlow(match, egressConnector, SwitchConfigurator.APPLICATION_QUEUE_ID,
+                FlowTemplateCompiler.HARD_TIMEOUT));
+        return flows;
+    }
+
+    private static ApplicationRegistryEntry entry(int appId, String srcAddress, int dstPort) {
+        return new ApplicationRegistryEntryBuilder()
+                .setAppId(appId)
+                .setBandwidth(BigDecimal.TEN)
+                .setSrcAddress(srcAddress)
+                .setIpProtocol(ApplicationMatch.TCP)
+                .setDstPort(dstPort)
+                .build();
+    }
+
+    private static void attach(String connector, String address) {
+        attach("openflow:1", connector, address);
+    }
+
+    private static void attach(String node, String connector, String address) {
+        AddressCapableNodeConnector addresses = new AddressCapableNodeConnectorBuilder()
+                .setAddresses(Arrays.asList(new AddressesBuilder()
+                        .setId(0L)
+                        .setIp(new IpAddress(new Ipv4Address(address)))
+                        .build()))
+                .build();
+        AddressIndex.getInstance().update(new AttachmentPoint(new NodeId(node),
+                new NodeConnectorId(connector)), addresses);
+    }
+
+    /**
+     * Returns a flow service failing the flows to the destination port.
+     */
+    private static SalFlowService failingPort(final int dstPort) {
+        SalFlowService service = mock(SalFlowService.class);
+        when(service.addFlow(any(AddFlowInput.class))).thenAnswer(new Answer<ListenableFuture<RpcResult<AddFlowOutput>>>() {
+            @Override
+            public ListenableFuture<RpcResult<AddFlowOutput>> answer(InvocationOnMock invocation) {
+                AddFlowInput flow = (AddFlowInput) invocation.getArguments()[0];
+                TcpMatch tcp = (TcpMatch) flow.getMatch().getLayer4Match();
+                if(tcp.getTcpDestinationPort().getValue() == dstPort) {
+                    return Futures.immediateFuture(RpcResultBuilder.<AddFlowOutput>failed()
+                            .withError(ErrorType.APPLICATION, "table full").build());
+                }
+                return Futures.immediateFuture(RpcResultBuilder.<AddFlowOutput>success().build());
+            }
+        });
+        return service;
+    }
+
+    @Test
+    public void testInstallAllReportsEveryEntry() throws Exception {
+        // both hosts hang off one switch, every path is that switch
+        attach("openflow:1:1", "10.0.0.1");
+        attach("openflow:1:2", "10.0.0.2");
+        InMemorySwitchOwnership ownership = new InMemorySwitchOwnership();
+        ownership.registerCandidate("openflow:1");
+        SwitchConfigurator.getInstance().setSwitchOwnership(ownership);
+        SwitchConfigurator.getInstance().setSalFlowService(failingPort(2));
+        try {
+            List<ApplicationStatus> statuses = new ExampleImpl(db).installAll(Arrays.asList(
+                    entry(21, null, 1),
+                    entry(22, null, 2),
+                    entry(23, "10.0.0.9", 3),
+                    entry(24, null, 1))).get(5, TimeUnit.SECONDS);
+
+            assertEquals(4, statuses.size());
+            assertEquals(Integer.valueOf(21), statuses.get(0).getAppId());
+            assertEquals(ApplicationStatus.Status.Installed, statuses.get(0).getStatus());
+            // the switch refused the flow
+            assertFailed(statuses.get(1), 22, ApplicationSetupException.OPERATION_FAILED);
+            // the source host is unknown
+            assertFailed(statuses.get(2), 23, ApplicationSetupException.DATA_MISSING);
+            // the match is the one of application 21
+            assertFailed(statuses.get(3), 24, ApplicationSetupException.RESOURCE_DENIED);
+        } finally {
+            DesiredFlowStore.getInstance().removeApplication(21);
+            DesiredFlowStore.getInstance().removeApplication(22);
+            AddressIndex.getInstance().close();
+            SwitchConfigurator.getInstance().setSwitchOwnership(new InMemorySwitchOwnership());
+            ownership.close();
+        }
+    }
+
+    private static void assertFailed(ApplicationStatus status, int appId, String errorTag) {
+        assertEquals(Integer.valueOf(appId), status.getAppId());
+        assertEquals(ApplicationStatus.Status.Failed, status.getStatus());
+        assertEquals(errorTag, status.getErrorTag());
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowInputBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowOutput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.SalFlowService;
+import org.opendaylight.yangtools.yang.common.RpcResult;
+import org.opendaylight.yangtools.yang.common.RpcResultBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FlowInstallPipelineTest {
+
+    private final List<AddFlowInput> sent = new ArrayList<>();
+    private final List<SettableFuture<RpcResult<AddFlowOutput>>> rpcs = new ArrayList<>();
+
+    private SalFlowService flowService() {
+        SalFlowService service = mock(SalFlowService.class);
+        when(service.addFlow(any(AddFlowInput.class))).thenAnswer(new Answer<ListenableFuture<RpcResult<AddFlowOutput>>>() {
+            @Override
+            public ListenableFuture<RpcResult<AddFlowOutput>> answer(InvocationOnMock invocation) {
+                sent.add((AddFlowInput) invocation.getArguments()[0]);
+                SettableFuture<RpcResult<AddFlowOutput>> rpc = SettableFuture.create();
+                rpcs.add(rpc);
+                return rpc;
+            }
+        });
+        return service;
+    }
+
+    private static List<AddFlowInput> flows(String... names) {
+        List<AddFlowInput> flows = new ArrayList<>();
+        for(String name : names) {
+            flows.add(new AddFlowInputBuilder().setFlowName(name).build());
+        }
+        return flows;
+    }
+
+    private List<String> sentNames() {
+        List<String> names = new ArrayList<>();
+        for(AddFlowInput flow : sent) {
+            names.add(flow.getFlowName() + (Boolean.TRUE.equals(flow.isBarrier()) ? "|barrier" : ""));
+        }
+        return names;
+    }
+
+    private void succeed(int rpc) {
+        rpcs.get(rpc).set(RpcResultBuilder.<AddFlowOutput>success().build());
+    }
+
+    @Test
+    public void testBatchesWaitForAFreeSlot() throws Exception {
+        FlowInstallPipeline pipeline = new FlowInstallPipeline(2, 1);
+        pipeline.setSalFlowService(flowService());
+        List<ListenableFuture<RpcResult<AddFlowOutput>>> results = pipeline.addFlows("openflow:1",
+                flows("f1", "f2", "f3"));
+        ListenableFuture<RpcResult<AddFlowOutput>> late = pipeline.addFlow("openflow:1", flows("f4").get(0));
+
+        // one batch of two in flight, barrier on its last flow only
+        assertEquals(Arrays.asList("f1", "f2|barrier"), sentNames());
+        assertEquals(2, pipeline.getQueuedFlows());
+
+        succeed(0);
+        assertTrue(results.get(0).get().isSuccessful());
+        assertEquals(2, sent.size());
+        // a failed flow still completes its batch and frees the slot
+        rpcs.get(1).setException(new IllegalStateException("switch gone"));
+        assertEquals(Arrays.asList("f1", "f2|barrier", "f3", "f4|barrier"), sentNames());
+        assertEquals(0, pipeline.getQueuedFlows());
+        assertFailed(results.get(1));
+
+        succeed(2);
+        succeed(3);
+        assertTrue(results.get(2).get().isSuccessful());
+        assertTrue(late.get().isSuccessful());
+    }
+
+    @Test
+    public void testSwitchesDoNotShareSlots() {
+        FlowInstallPipeline pipeline = new FlowInstallPipeline(1, 1);
+        pipeline.setSalFlowService(flowService());
+        pipeline.addFlows("openflow:1", flows("a1", "a2"));
+        pipeline.addFlows("openflow:2", flows("b1"));
+        assertEquals(Arrays.asList("a1|barrier", "b1|barrier"), sentNames());
+        assertEquals(1, pipeline.getQueuedFlows());
+    }
+
+    @Test
+    public void testFutureWithoutCallbacksFailsFast() {
+        ListenableFuture<String> future = FlowInstallPipeline.toListenable(new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, "never run"));
+        assertTrue(future.isDone());
+        assertFailed(future);
+    }
+
+    private static void assertFailed(ListenableFuture<?> future) {
+        assertTrue(future.isDone());
+        try {
+            future.get();
+            fail("Expected a failure");
+        } catch(ExecutionException e) {
+            assertFalse(e.getCause() instanceof ExecutionException);
+        } catch(InterruptedException e) {
+            fail("Interrupted");
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.junit.Test;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.Flow;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.tables.table.FlowBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.types.rev131026.FlowCookie;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FlowReconcilerTest {
+
+    private final FlowTemplateCompiler compiler = new FlowTemplateCompiler();
+    private final FlowIdAllocator allocator = new FlowIdAllocator();
+
+    private Flow installed(DesiredFlow flow) {
+        return new FlowBuilder(compiler.getTemplate(flow.getQueueId(), flow.getEgressConnector())
+                .instantiate(compiler.getTarget("openflow:1"),
+                        FlowTemplateCompiler.match(flow.getMatch()),
+                        allocator.allocate())).build();
+    }
+
+    private static Map<String, DesiredFlow> desired(DesiredFlow... flows) {
+        Map<String, DesiredFlow> byKey = new HashMap<>();
+        for(DesiredFlow flow : flows) {
+            byKey.put(flow.getMatchKey(), flow);
+        }
+        return byKey;
+    }
+
+    @Test
+    public void testSwitchInSyncNeedsNoFlowMods() {
+        DesiredFlow flow = new DesiredFlow("10.0.0.1", "10.0.0.2", "openflow:1:2", 1);
+        assertTrue(FlowReconciler.diff(desired(flow), Arrays.asList(installed(flow))).isEmpty());
+    }
+
+    @Test
+    public void testDiffPushesOnlyTheDrift() {
+        DesiredFlow kept = new DesiredFlow("10.0.0.1", "10.0.0.2", "openflow:1:2", 1);
+        DesiredFlow moved = new DesiredFlow("10.0.0.1", "10.0.0.3", "openflow:1:3", 1);
+        DesiredFlow missing = new DesiredFlow("10.0.0.1", "10.0.0.4", "openflow:1:2", 1);
+        Flow stale = installed(new DesiredFlow("10.0.0.1", "10.0.0.5", "openflow:1:2", 1));
+        Flow foreign = new FlowBuilder(installed(new DesiredFlow("10.0.0.1", "10.0.0.6", "openflow:1:2", 1)))
+                .setCookie(new FlowCookie(BigInteger.ONE)).build();
+
+        FlowReconciler.Delta delta = FlowReconciler.diff(desired(kept, moved, missing), Arrays.asList(
+                installed(kept), installed(new DesiredFlow("10.0.0.1", "10.0.0.3", "openflow:1:2", 1)),
+                stale, foreign));
+
+        assertEquals(Arrays.asList(missing), delta.adds);
+        assertEquals(Arrays.asList(moved), delta.modifies);
+        assertEquals(1, delta.removes.size());
+        assertSame(stale, delta.removes.get(0));
+    }
+
+    @Test
+    public void testApplicationsBetweenTheSameHostsKeepTheirEntries() {
+        DesiredFlow tcp = new DesiredFlow(new ApplicationMatch("10.0.0.1", "10.0.0.2", ApplicationMatch.TCP, 5001),
+                "openflow:1:2", 1, FlowTemplateCompiler.HARD_TIMEOUT);
+        DesiredFlow udp = new DesiredFlow(new ApplicationMatch("10.0.0.1", "10.0.0.2", ApplicationMatch.UDP, 5001),
+                "openflow:1:3", 1, FlowTemplateCompiler.HARD_TIMEOUT);
+        DesiredFlow any = new DesiredFlow("10.0.0.1", "10.0.0.2", "openflow:1:4", 1);
+        assertTrue(FlowReconciler.diff(desired(tcp, udp, any),
+                Arrays.asList(installed(tcp), installed(udp), installed(any))).isEmpty());
+    }
+
+    @Test
+    public void testEmptyStoreAtStartupRemovesNothing() {
+        DesiredFlow flow = new DesiredFlow("10.0.0.1", "10.0.0.2", "openflow:1:2", 1);
+        DesiredFlow restored = new DesiredFlow("10.0.0.1", "10.0.0.3", "openflow:1:3", 1);
+        List<Flow> current = Arrays.asList(installed(flow), installed(restored));
+        assertFalse(new DesiredFlowStore().isLoaded());
+
+        // flows of applications not loaded yet stay, those already known are pushed
+        assertTrue(FlowReconciler.diff(desired(), current, false).isEmpty());
+        DesiredFlow added = new DesiredFlow("10.0.0.1", "10.0.0.4", "openflow:1:2", 1);
+        FlowReconciler.Delta delta = FlowReconciler.diff(desired(restored, added), current, false);
+        assertEquals(Arrays.asList(added), delta.adds);
+        assertTrue(delta.removes.isEmpty());
+
+        // once loaded, flows nobody wants are removed
+        assertEquals(1, FlowReconciler.diff(desired(restored), current, true).removes.size());
+    }
+
+    @Test
+    public void testDuplicateEntryIsRemoved() {
+        DesiredFlow flow = new DesiredFlow("10.0.0.1", "10.0.0.2", "openflow:1:2", 1);
+        FlowReconciler.Delta delta = FlowReconciler.diff(desired(flow),
+                Arrays.asList(installed(flow), installed(flow)));
+        assertTrue(delta.adds.isEmpty());
+        assertEquals(1, delta.removes.size());
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.junit.Test;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowInput;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FlowTemplateCompilerTest {
+
+    @Test
+    public void testTemplatesAreInternedPerQueueAndConnector() {
+        FlowTemplateCompiler compiler = new FlowTemplateCompiler();
+        FlowTemplateCompiler.FlowTemplate template = compiler.getTemplate(1, "openflow:1:2");
+
+        assertSame(template, compiler.getTemplate(1, "openflow:1:2"));
+        assertNotEquals(template, compiler.getTemplate(2, "openflow:1:2"));
+        assertNotEquals(template, compiler.getTemplate(1, "openflow:1:3"));
+        assertEquals(3, compiler.getTemplateCount());
+        assertSame(compiler.getTarget("openflow:1"), compiler.getTarget("openflow:1"));
+    }
+
+    @Test
+    public void testInstancesShareInstructionsButNotIds() {
+        FlowTemplateCompiler compiler = new FlowTemplateCompiler();
+        FlowIdAllocator allocator = new FlowIdAllocator();
+        FlowTemplateCompiler.FlowTemplate template = compiler.getTemplate(1, "openflow:1:2");
+        FlowTemplateCompiler.SwitchTarget target = compiler.getTarget("openflow:1");
+
+        AddFlowInput first = template.instantiate(target,
+                FlowTemplateCompiler.ipv4Match("10.0.0.1", "10.0.0.2"), allocator.allocate());
+        AddFlowInput second = template.instantiate(target,
+                FlowTemplateCompiler.ipv4Match("10.0.0.1", "10.0.0.3"), allocator.allocate());
+
+        assertSame(first.getInstructions(), second.getInstructions());
+        assertNotEquals(first.getCookie(), second.getCookie());
+        assertNotEquals(first.getTransactionUri(), second.getTransactionUri());
+        assertTrue(FlowIdAllocator.isOwnCookie(first.getCookie()));
+        assertEquals("2", FlowTemplateCompiler.portOf("openflow:1:2"));
+    }
+
+    @Test
+    public void testFlowIdsDifferAcrossMembersAndBoots() {
+        long boot = 1500000000000L;
+        FlowIdAllocator first = new FlowIdAllocator(1, boot);
+        FlowIdAllocator other = new FlowIdAllocator(2, boot);
+        FlowIdAllocator rebooted = new FlowIdAllocator(1, boot + 1000);
+
+        long flow = first.allocate();
+        assertNotEquals(flow, other.allocate());
+        assertEquals(1, FlowIdAllocator.memberOf(flow));
+        assertEquals(2, FlowIdAllocator.memberOf(other.allocate()));
+        // a boot a second later starts 2^24 flows further on
+        assertEquals((1L << FlowIdAllocator.EPOCH_SHIFT) + flow, rebooted.allocate());
+        assertEquals(flow + 1, first.allocate());
+        assertTrue(FlowIdAllocator.isOwnCookie(FlowIdAllocator.toCookie(flow)));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InMemorySwitchOwnershipTest {
+
+    @Test
+    public void testSingleMemberOwnsEverySwitch() {
+        InMemorySwitchOwnership ownership = new InMemorySwitchOwnership();
+        assertFalse(ownership.isClustered());
+        assertTrue(ownership.isOwner("openflow:1"));
+        ownership.registerCandidate("openflow:1");
+        assertTrue(ownership.isOwner("openflow:1"));
+    }
+
+    @Test
+    public void testSwitchesArePartitioned() {
+        InMemorySwitchOwnership.Cluster cluster = new InMemorySwitchOwnership.Cluster();
+        InMemorySwitchOwnership[] members = new InMemorySwitchOwnership[3];
+        for(int m = 0; m < members.length; m++) {
+            members[m] = new InMemorySwitchOwnership(cluster);
+        }
+        // every member sees a third of the switches first
+        for(int s = 1; s <= 9; s++) {
+            for(int m = 0; m < members.length; m++) {
+                members[(s + m) % members.length].registerCandidate("openflow:" + s);
+            }
+        }
+        for(InMemorySwitchOwnership member : members) {
+            assertTrue(member.isClustered());
+            assertEquals(3, owned(member, 9));
+        }
+        for(int s = 1; s <= 9; s++) {
+            int owners = 0;
+            for(InMemorySwitchOwnership member : members) {
+                owners += member.isOwner("openflow:" + s) ? 1 : 0;
+            }
+            assertEquals(1, owners);
+        }
+    }
+
+    @Test
+    public void testClosedMemberHandsOver() {
+        InMemorySwitchOwnership.Cluster cluster = new InMemorySwitchOwnership.Cluster();
+        InMemorySwitchOwnership first = new InMemorySwitchOwnership(cluster);
+        InMemorySwitchOwnership second = new InMemorySwitchOwnership(cluster);
+        final List<String> gained = new ArrayList<>();
+        final List<String> lost = new ArrayList<>();
+        second.addListener(new SwitchOwnership.Listener() {
+            @Override
+            public void ownershipChanged(String switchId, boolean isOwner) {
+                gained.add(isOwner ? switchId : null);
+            }
+        });
+        first.addListener(new SwitchOwnership.Listener() {
+            @Override
+            public void ownershipChanged(String switchId, boolean isOwner) {
+                if(!isOwner) {
+                    lost.add(switchId);
+                }
+            }
+        });
+        for(int s = 1; s <= 4; s++) {
+            (s % 2 == 0 ? first : second).registerCandidate("openflow:" + s);
+            (s % 2 == 0 ? second : first).registerCandidate("openflow:" + s);
+        }
+        assertEquals(2, owned(first, 4));
+        gained.clear();
+
+        first.close();
+        assertEquals(2, lost.size());
+        assertEquals(lost, gained);
+        assertEquals(4, owned(second, 4));
+        assertFalse(second.isClustered());
+    }
+
+    @Test
+    public void testWithdrawnCandidateIsNotElected() {
+        InMemorySwitchOwnership.Cluster cluster = new InMemorySwitchOwnership.Cluster();
+        InMemorySwitchOwnership first = new InMemorySwitchOwnership(cluster);
+        InMemorySwitchOwnership second = new InMemorySwitchOwnership(cluster);
+        first.registerCandidate("openflow:1");
+        second.registerCandidate("openflow:1");
+        assertTrue(first.isOwner("openflow:1"));
+
+        second.unregisterCandidate("openflow:1");
+        first.unregisterCandidate("openflow:1");
+        assertFalse(first.isOwner("openflow:1"));
+        assertFalse(second.isOwner("openflow:1"));
+    }
+
+    private static int owned(SwitchOwnership member, int switches) {
+        int owned = 0;
+        for(int s = 1; s <= switches; s++) {
+            owned += member.isOwner("openflow:" + s) ? 1 : 0;
+        }
+        return owned;
+    }
+}
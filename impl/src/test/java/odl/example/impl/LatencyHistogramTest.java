@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram(3);
+        for(long v = 0; v < 8; v++) {
+            histogram.record(v);
+        }
+        assertEquals(8, histogram.getCount());
+        assertEquals(3, histogram.getValueAtQuantile(0.5));
+        assertEquals(7, histogram.getValueAtQuantile(1));
+    }
+
+    @Test
+    public void testPercentilesWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram(7);
+        for(long v = 1; v <= 100000; v++) {
+            histogram.record(v * 1000);
+        }
+        LatencySnapshot snapshot = histogram.getSnapshot();
+        assertEquals(100000, snapshot.getCount());
+        assertEquals(50000500, snapshot.getMean());
+        assertWithin(50000000, snapshot.getP50(), 1 / 64.0);
+        assertWithin(99000000, snapshot.getP99(), 1 / 64.0);
+        assertWithin(99900000, snapshot.getP999(), 1 / 64.0);
+        assertEquals(100000000, snapshot.getMax());
+    }
+
+    @Test
+    public void testOutOfRangeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram(4);
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getValueAtQuantile(0.5));
+        assertEquals((1L << 40) - 1, histogram.getSnapshot().getMax());
+    }
+
+    @Test
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram(4);
+        histogram.record(12345);
+        histogram.reset();
+        LatencySnapshot snapshot = histogram.getSnapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getP99());
+        assertEquals(0, snapshot.getMax());
+    }
+
+    private static void assertWithin(long expected, long actual, double relativeError) {
+        assertTrue(actual + " is not within " + relativeError + " of " + expected,
+                Math.abs(actual - expected) <= expected * relativeError);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.junit.Test;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.LinkId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.LinkBuilder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class NetworkGraphImplTest {
+
+    @Test
+    public void testModifiedLinkNeverDisappears() throws Exception {
+        final NetworkGraphImpl graph = new NetworkGraphImpl();
+        Link link = QosPathEngineTest.link("openflow:1", 1, "openflow:2", 1);
+        Link modified = new LinkBuilder(link).setLinkId(new LinkId("openflow:1:1-modified")).build();
+        graph.addLinks(Arrays.asList(link));
+        final int arcs = graph.getGraphIndex().getArcCount();
+
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicInteger missing = new AtomicInteger();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while(!done.get()) {
+                    if(graph.getGraphIndex().getArcCount() != arcs) {
+                        missing.incrementAndGet();
+                    }
+                }
+            }
+        });
+        reader.start();
+        try {
+            for(int i = 0; i < 2000; i++) {
+                if(i % 2 == 0) {
+                    graph.applyChanges(Arrays.asList(link), Arrays.asList(modified));
+                } else {
+                    graph.applyChanges(Arrays.asList(modified), Arrays.asList(link));
+                }
+            }
+        } finally {
+            done.set(true);
+            reader.join();
+        }
+        assertEquals(0, missing.get());
+        assertEquals(arcs, graph.getGraphIndex().getArcCount());
+    }
+
+    @Test
+    public void testOnlyChangesArePublished() {
+        NetworkGraphImpl graph = new NetworkGraphImpl();
+        Link link = QosPathEngineTest.link("openflow:1", 1, "openflow:2", 1);
+        graph.addLinks(Arrays.asList(link));
+        GraphIndex before = graph.getGraphIndex();
+
+        graph.applyChanges(Arrays.asList(link), Arrays.asList(QosPathEngineTest.link("openflow:1", 2, "openflow:3", 1)));
+
+        GraphIndex after = graph.getGraphIndex();
+        assertNotSame(before, after);
+        assertEquals(before.getArcCount(), after.getArcCount());
+
+        // nothing changed, nothing published
+        graph.applyChanges(Collections.<Link>emptyList(), Collections.<Link>emptyList());
+        assertSame(after, graph.getGraphIndex());
+    }
+}
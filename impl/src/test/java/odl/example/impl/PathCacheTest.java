@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.junit.Test;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static odl.example.impl.QosPathEngineTest.link;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class PathCacheTest {
+
+    private static final NodeId A = new NodeId("a");
+    private static final NodeId B = new NodeId("b");
+    private static final NodeId C = new NodeId("c");
+
+    private static PathResult path(Link... links) {
+        String[] tps = new String[links.length];
+        for(int i = 0; i < links.length; i++) {
+            tps[i] = links[i].getSource().getSourceTp().getValue();
+        }
+        return PathResult.found(Arrays.asList(links), Arrays.asList(tps), links.length, 0, 0);
+    }
+
+    @Test
+    public void testLinkRemovalEvictsOnlyCrossingPaths() {
+        PathCache cache = new PathCache(16);
+        Link ab = link("a", 1, "b", 1);
+        Link bc = link("b", 2, "c", 1);
+        cache.put(A, B, QosRequirement.BEST_EFFORT, path(ab), cache.getGeneration());
+        cache.put(B, C, QosRequirement.BEST_EFFORT, path(bc), cache.getGeneration());
+
+        cache.invalidateLink(link("b", 1, "a", 1));
+
+        assertNull(cache.get(A, B, QosRequirement.BEST_EFFORT));
+        assertNotNull(cache.get(B, C, QosRequirement.BEST_EFFORT));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getInvalidations());
+    }
+
+    @Test
+    public void testStaleResultIsNotCached() {
+        PathCache cache = new PathCache(16);
+        long generation = cache.getGeneration();
+        cache.invalidateTp("a:1");
+        cache.put(A, B, QosRequirement.BEST_EFFORT, path(link("a", 1, "b", 1)), generation);
+        assertNull(cache.get(A, B, QosRequirement.BEST_EFFORT));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        PathCache cache = new PathCache(2);
+        cache.put(A, B, QosRequirement.BEST_EFFORT, path(link("a", 1, "b", 1)), cache.getGeneration());
+        cache.put(B, C, QosRequirement.BEST_EFFORT, path(link("b", 2, "c", 1)), cache.getGeneration());
+        cache.get(A, B, QosRequirement.BEST_EFFORT);
+        cache.put(A, C, QosRequirement.BEST_EFFORT, PathResult.noPath(PathResult.Reason.UNREACHABLE),
+                cache.getGeneration());
+
+        assertNull(cache.get(B, C, QosRequirement.BEST_EFFORT));
+        assertEquals(1, cache.getEvictions());
+        cache.invalidateInfeasible();
+        assertNull(cache.get(A, C, QosRequirement.BEST_EFFORT));
+        assertEquals(Collections.singletonList("a:1"), cache.get(A, B, QosRequirement.BEST_EFFORT).getEgressTps());
+    }
+
+    @Test
+    public void testInvalidationReachesEverySegment() {
+        PathCache cache = new PathCache(PathCache.DEFAULT_MAX_ENTRIES);
+        Link ab = link("a", 1, "b", 1);
+        for(int i = 0; i < 100; i++) {
+            cache.put(new NodeId("s" + i), B, QosRequirement.BEST_EFFORT, path(ab), cache.getGeneration());
+            cache.put(new NodeId("s" + i), C, QosRequirement.BEST_EFFORT, path(link("b", 2, "c", 1)),
+                    cache.getGeneration());
+        }
+        assertEquals(200, cache.size());
+
+        cache.invalidateLink(ab);
+        assertEquals(100, cache.size());
+        assertEquals(100, cache.getInvalidations());
+        for(int i = 0; i < 100; i++) {
+            assertNull(cache.get(new NodeId("s" + i), B, QosRequirement.BEST_EFFORT));
+            assertNotNull(cache.get(new NodeId("s" + i), C, QosRequirement.BEST_EFFORT));
+        }
+    }
+}
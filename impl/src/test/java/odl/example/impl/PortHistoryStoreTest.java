@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+
+public class PortHistoryStoreTest {
+
+    // an hour ago on a minute boundary, so the samples are not expired on opening
+    private static final long START = (System.currentTimeMillis() / 60_000 - 60) * 60_000;
+    private static final long DAY = 86_400;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testHistorySurvivesReopening() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        PortHistoryStore store = new PortHistoryStore(16);
+        store.open(directory, DAY, DAY);
+        for(int i = 0; i < 100; i++) {
+            append(store, "openflow:1:1", START + i * 5000, i);
+            append(store, "openflow:1:2", START + i * 5000, 1000 + i);
+        }
+        store.close();
+
+        store = new PortHistoryStore(16);
+        store.open(directory, DAY, DAY);
+        PortHistory history = store.query("openflow:1:1", START, START + 99 * 5000);
+        assertEquals(0, history.getResolution());
+        assertEquals(100, history.size());
+        for(int i = 0; i < 100; i++) {
+            assertEquals(START + i * 5000, history.getTime(i));
+            assertEquals(i, history.get(PortHistory.Field.TX_BIT_RATE, i), 0);
+        }
+        assertEquals(49, history.getPercentile(PortHistory.Field.TX_BIT_RATE, 0.5), 0);
+        assertEquals(98, history.getPercentile(PortHistory.Field.TX_BIT_RATE, 0.99), 0);
+
+        history = store.query("openflow:1:2", START + 10 * 5000, START + 19 * 5000);
+        assertEquals(10, history.size());
+        assertEquals(1010, history.get(PortHistory.Field.TX_BIT_RATE, 0), 0);
+        assertEquals(0, store.query("openflow:2:1", START, START + 99 * 5000).size());
+
+        append(store, "openflow:1:1", START + 100 * 5000, 100);
+        assertEquals(101, store.query("openflow:1:1", START, START + 100 * 5000).size());
+        store.close();
+    }
+
+    @Test
+    public void testExpiredSamplesAreDownsampled() throws Exception {
+        PortHistoryStore store = new PortHistoryStore(16);
+        store.open(folder.getRoot().toPath(), 60, DAY);
+        // five minutes of samples every five seconds, the rate is the minute
+        for(int i = 0; i < 60; i++) {
+            append(store, "openflow:1:1", START + i * 5000, i / 12);
+        }
+
+        PortHistory recent = store.query("openflow:1:1", START + 240_000, START + 300_000);
+        assertEquals(0, recent.getResolution());
+        assertEquals(12, recent.size());
+
+        PortHistory history = store.query("openflow:1:1", START, START + 300_000);
+        assertEquals(PortHistoryStore.DOWNSAMPLE_SECONDS, history.getResolution());
+        // the last minute is still being accumulated
+        assertEquals(4, history.size());
+        for(int minute = 0; minute < 4; minute++) {
+            assertEquals(START + minute * 60_000, history.getTime(minute));
+            assertEquals(minute, history.get(PortHistory.Field.TX_BIT_RATE, minute), 0);
+        }
+        store.close();
+    }
+
+    @Test
+    public void testVersionOneSegmentsAreStillRead() throws Exception {
+        // a raw segment of the layout without per-port chains, ports 0 and 1 taking turns
+        Path directory = folder.getRoot().toPath();
+        Files.createDirectories(directory.resolve("raw"));
+        Files.write(directory.resolve("ports"), "openflow:1:1\nopenflow:1:2\n".getBytes(StandardCharsets.UTF_8));
+        ByteBuffer segment = ByteBuffer.allocate(HistorySegment.HEADER_SIZE + 16 * HistorySegment.RECORD_SIZE);
+        segment.putInt(0, 0x4f504853).putInt(4, 1).putLong(8, START).putInt(16, 4);
+        for(int i = 0; i < 4; i++) {
+            int offset = HistorySegment.HEADER_SIZE + i * HistorySegment.RECORD_SIZE;
+            segment.putLong(offset, START + i * 5000).putInt(offset + 8, i % 2).putFloat(offset + 48, i);
+        }
+        Files.write(directory.resolve("raw").resolve(String.format("%020d.seg", 0)), segment.array());
+
+        PortHistoryStore store = new PortHistoryStore(16);
+        store.open(directory, DAY, DAY);
+        // the old segment is not appended to
+        append(store, "openflow:1:2", START + 4 * 5000, 4);
+        PortHistory history = store.query("openflow:1:2", START, START + 4 * 5000);
+        assertEquals(3, history.size());
+        assertEquals(1, history.get(PortHistory.Field.TX_BIT_RATE, 0), 0);
+        assertEquals(3, history.get(PortHistory.Field.TX_BIT_RATE, 1), 0);
+        assertEquals(4, history.get(PortHistory.Field.TX_BIT_RATE, 2), 0);
+        assertEquals(2, store.query("openflow:1:1", START, START + 4 * 5000).size());
+        store.close();
+    }
+
+    private static void append(PortHistoryStore store, String port, long time, double txBitRate) {
+        PortRates rates = new PortRates();
+        rates.txBitRate = txBitRate;
+        rates.interval = 5;
+        store.append(port, time, 0, 0, 0, 0, rates);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.Futures;
+import org.junit.Test;
+import org.opendaylight.controller.md.sal.binding.api.DataBroker;
+import org.opendaylight.controller.md.sal.binding.api.ReadOnlyTransaction;
+import org.opendaylight.controller.md.sal.common.api.data.LogicalDatastoreType;
+import org.opendaylight.controller.md.sal.common.api.data.ReadFailedException;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowCapableNodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.inventory.rev130819.FlowCapableNodeConnectorBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodesBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeBuilder;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PortStatisticsCollectorTest {
+
+    @Test
+    public void testPortsOfOtherMembersHaveTheirCapacity() throws Exception {
+        InMemorySwitchOwnership.Cluster cluster = new InMemorySwitchOwnership.Cluster();
+        InMemorySwitchOwnership first = new InMemorySwitchOwnership(cluster);
+        InMemorySwitchOwnership second = new InMemorySwitchOwnership(cluster);
+        first.registerCandidate("openflow:5");
+
+        NodeConnector connector = new NodeConnectorBuilder()
+                .setId(new NodeConnectorId("openflow:5:1"))
+                .addAugmentation(FlowCapableNodeConnector.class,
+                        new FlowCapableNodeConnectorBuilder().setCurrentSpeed(1000000L).build())
+                .build();
+        Nodes nodes = new NodesBuilder()
+                .setNode(Arrays.asList(new NodeBuilder()
+                        .setId(new NodeId("openflow:5"))
+                        .setNodeConnector(Arrays.asList(connector))
+                        .build()))
+                .build();
+        DataBroker db = mock(DataBroker.class);
+        ReadOnlyTransaction transaction = mock(ReadOnlyTransaction.class);
+        when(db.newReadOnlyTransaction()).thenReturn(transaction);
+        when(transaction.read(LogicalDatastoreType.OPERATIONAL, InstanceIdentifier.create(Nodes.class)))
+                .thenReturn(Futures.<Optional<Nodes>, ReadFailedException>immediateCheckedFuture(Optional.of(nodes)));
+
+        // the second member does not own the switch
+        PortStatisticsCollector collector = new PortStatisticsCollector(2);
+        collector.start(db, second, 3600);
+        try {
+            collector.collect();
+            assertEquals(0, collector.getPortCount());
+            assertEquals(1000000, LinkQualityTable.getInstance().get("openflow:5:1").getCapacity(), 0);
+        } finally {
+            collector.close();
+            LinkQualityTable.getInstance().remove("openflow:5:1");
+            first.close();
+            second.close();
+        }
+    }
+}
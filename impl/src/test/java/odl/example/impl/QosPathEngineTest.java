@@ -0,0 +1,169 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.LinkId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.TpId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.link.attributes.DestinationBuilder;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.link.attributes.SourceBuilder;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.LinkBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class QosPathEngineTest {
+
+    private final QosPathEngine engine = new QosPathEngine();
+    private LinkQualityTable table;
+    private GraphIndex index;
+
+    static Link link(String source, int sourcePort, String destination, int destinationPort) {
+        String sourceTp = source + ":" + sourcePort;
+        String destinationTp = destination + ":" + destinationPort;
+        return new LinkBuilder()
+                .setLinkId(new LinkId(sourceTp))
+                .setSource(new SourceBuilder().setSourceNode(new NodeId(source)).setSourceTp(new TpId(sourceTp)).build())
+                .setDestination(new DestinationBuilder().setDestNode(new NodeId(destination))
+                        .setDestTp(new TpId(destinationTp)).build())
+                .build();
+    }
+
+    @Before
+    public void setUp() {
+        // a short slow path a-b-d and a longer fast path a-c-e-d
+        List<Link> links = new ArrayList<>();
+        links.add(link("a", 1, "b", 1));
+        links.add(link("b", 2, "d", 1));
+        links.add(link("a", 2, "c", 1));
+        links.add(link("c", 2, "e", 1));
+        links.add(link("e", 2, "d", 2));
+        index = GraphIndex.build(links);
+
+        table = new LinkQualityTable();
+        table.update("a:1", new LinkQuality(1000000, 10, 0));
+        table.update("b:2", new LinkQuality(1000000, 10, 0));
+        table.update("a:2", new LinkQuality(100, 1, 0));
+        table.update("c:2", new LinkQuality(1000000, 1, 0));
+        table.update("e:2", new LinkQuality(1000000, 1, 0));
+    }
+
+    private PathResult compute(QosRequirement qos) {
+        return engine.computePath(index, ArcMetrics.build(index, table), new NodeId("a"), new NodeId("d"), qos);
+    }
+
+    @Test
+    public void testUnconstrainedPathIsCheapest() {
+        PathResult result = compute(QosRequirement.BEST_EFFORT);
+        assertTrue(result.isFeasible());
+        assertEquals(2, result.getLinks().size());
+        assertEquals("a:1", result.getEgressTps().get(0));
+        assertEquals("b:2", result.getEgressTps().get(1));
+    }
+
+    @Test
+    public void testDelayBoundSelectsFasterPath() {
+        PathResult result = compute(new QosRequirement(0, 5, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY));
+        assertTrue(result.isFeasible());
+        assertEquals(3, result.getLinks().size());
+        assertEquals(3.0, result.getDelay(), 1e-9);
+    }
+
+    @Test
+    public void testInfeasibleDelayBound() {
+        PathResult result = compute(new QosRequirement(0, 2, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY));
+        assertFalse(result.isFeasible());
+        assertEquals(PathResult.Reason.DELAY, result.getReason());
+    }
+
+    @Test
+    public void testBandwidthPrunesFastPath() {
+        PathResult result = compute(new QosRequirement(1000, 5, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY));
+        assertFalse(result.isFeasible());
+        assertEquals(PathResult.Reason.DELAY, result.getReason());
+    }
+
+    @Test
+    public void testUnknownNode() {
+        PathResult result = engine.computePath(index, ArcMetrics.build(index, table), new NodeId("a"),
+                new NodeId("z"), QosRequirement.BEST_EFFORT);
+        assertEquals(PathResult.Reason.UNKNOWN_NODE, result.getReason());
+    }
+
+    @Test
+    public void testCandidatesAreLooplessAndOrderedByCost() {
+        List<PathResult> candidates = engine.computeCandidates(index, ArcMetrics.build(index, table), new NodeId("a"),
+                new NodeId("d"), QosRequirement.BEST_EFFORT, 4);
+        assertEquals(2, candidates.size());
+        assertEquals("a:1", candidates.get(0).getEgressTps().get(0));
+        assertEquals("a:2", candidates.get(1).getEgressTps().get(0));
+        assertTrue(candidates.get(0).getCost() <= candidates.get(1).getCost());
+    }
+
+    @Test
+    public void testCandidatesKeepQosBounds() {
+        List<PathResult> candidates = engine.computeCandidates(index, ArcMetrics.build(index, table), new NodeId("a"),
+                new NodeId("d"), new QosRequirement(0, 5, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY), 4);
+        assertEquals(1, candidates.size());
+        assertEquals(3, candidates.get(0).getLinks().size());
+    }
+
+    @Test
+    public void testBatchMatchesSingleQueries() {
+        QosRequirement delayBound = new QosRequirement(0, 5, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+        List<PathDemand> demands = new ArrayList<>();
+        for(String destination : new String[] {"a", "b", "c", "d", "e", "z"}) {
+            demands.add(new PathDemand(new NodeId("a"), new NodeId(destination), QosRequirement.BEST_EFFORT));
+            demands.add(new PathDemand(new NodeId("a"), new NodeId(destination), delayBound));
+        }
+        demands.add(new PathDemand(new NodeId("b"), new NodeId("c"), QosRequirement.BEST_EFFORT));
+        ArcMetrics metrics = ArcMetrics.build(index, table);
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        List<PathResult> results;
+        try {
+            results = engine.computePaths(index, metrics, demands, pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(demands.size(), results.size());
+        for(int i = 0; i < demands.size(); i++) {
+            PathDemand demand = demands.get(i);
+            PathResult expected = engine.computePath(index, metrics, demand.getSource(), demand.getDestination(),
+                    demand.getQos());
+            assertEquals(demand.toString(), expected.isFeasible(), results.get(i).isFeasible());
+            assertEquals(demand.toString(), expected.getReason(), results.get(i).getReason());
+            if(expected.isFeasible()) {
+                assertEquals(demand.toString(), expected.getEgressTps(), results.get(i).getEgressTps());
+            }
+        }
+    }
+
+    @Test
+    public void testBatchIsTimedApartFromSinglePaths() {
+        OperationMetrics single = MetricsRegistry.getInstance().getPathComputation();
+        OperationMetrics batch = MetricsRegistry.getInstance().getPathBatch();
+        long singles = single.getLatency().getCount();
+        long batches = batch.getLatency().getCount();
+        List<PathDemand> demands = new ArrayList<>();
+        demands.add(new PathDemand(new NodeId("batch-a"), new NodeId("batch-b"), QosRequirement.BEST_EFFORT));
+        demands.add(new PathDemand(new NodeId("batch-a"), new NodeId("batch-c"), QosRequirement.BEST_EFFORT));
+
+        assertEquals(2, engine.computePaths(demands).size());
+        assertEquals(batches + 1, batch.getLatency().getCount());
+        assertEquals(singles, single.getLatency().getCount());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.junit.Test;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShortestPathTreesTest {
+
+    private static GraphIndex randomGraph(Random random, int vertexCount, int extraEdges) {
+        List<Link> links = new ArrayList<>();
+        int port = 1;
+        for(int v = 1; v < vertexCount; v++) {
+            links.add(QosPathEngineTest.link("s" + random.nextInt(v), port++, "s" + v, port++));
+        }
+        for(int i = 0; i < extraEdges; i++) {
+            int a = random.nextInt(vertexCount);
+            int b = random.nextInt(vertexCount);
+            if(a != b) {
+                links.add(QosPathEngineTest.link("s" + a, port++, "s" + b, port++));
+            }
+        }
+        return GraphIndex.build(links);
+    }
+
+    private static double[] randomWeights(Random random, int arcCount) {
+        double[] weights = new double[arcCount];
+        for(int arc = 0; arc < arcCount; arc++) {
+            weights[arc] = 1 + random.nextInt(10);
+        }
+        return weights;
+    }
+
+    @Test
+    public void testRepairedTreesMatchRecomputedTrees() {
+        Random random = new Random(42);
+        GraphIndex index = randomGraph(random, 60, 120);
+        double[] weights = randomWeights(random, index.getArcCount());
+        ShortestPathTrees repaired = new ShortestPathTrees(index, weights, ShortestPathTrees.DEFAULT_MAX_TREES);
+        for(int src = 0; src < 5; src++) {
+            repaired.getDistance(src, 0);
+        }
+
+        for(int round = 0; round < 50; round++) {
+            weights = weights.clone();
+            for(int i = 0; i < 3; i++) {
+                int arc = random.nextInt(weights.length);
+                weights[arc] = Math.max(0, weights[arc] + random.nextInt(9) - 4);
+            }
+            repaired.updateWeights(weights);
+            ShortestPathTrees recomputed = new ShortestPathTrees(index, weights, ShortestPathTrees.DEFAULT_MAX_TREES);
+            for(int src = 0; src < 5; src++) {
+                for(int dst = 0; dst < index.getVertexCount(); dst++) {
+                    assertEquals(recomputed.getDistance(src, dst), repaired.getDistance(src, dst), 1e-9);
+                    double length = 0;
+                    for(int arc : repaired.getPath(src, dst)) {
+                        length += weights[arc];
+                    }
+                    assertEquals(repaired.getDistance(src, dst), length, 1e-9);
+                }
+            }
+        }
+        assertEquals(5, repaired.getBuildCount());
+        assertTrue(repaired.getRepairCount() > 0);
+    }
+
+    @Test
+    public void testChangeOffTheTreeNeedsNoRepair() {
+        // a-b-d is cheaper than a-c-d, so c-d is not part of the tree of a
+        List<Link> links = new ArrayList<>();
+        links.add(QosPathEngineTest.link("a", 1, "b", 1));
+        links.add(QosPathEngineTest.link("b", 2, "d", 1));
+        links.add(QosPathEngineTest.link("a", 2, "c", 1));
+        links.add(QosPathEngineTest.link("c", 2, "d", 2));
+        GraphIndex index = GraphIndex.build(links);
+        double[] weights = new double[index.getArcCount()];
+        Arrays.fill(weights, 1);
+        int a = index.indexOf(new NodeId("a"));
+        int c = index.indexOf(new NodeId("c"));
+        int d = index.indexOf(new NodeId("d"));
+        List<Integer> crossArcs = new ArrayList<>();
+        for(int arc = 0; arc < weights.length; arc++) {
+            int source = index.getArcSource(arc);
+            int target = index.getArcTarget(arc);
+            if((source == c && target == d) || (source == d && target == c)) {
+                crossArcs.add(arc);
+                weights[arc] = 2;
+            }
+        }
+        ShortestPathTrees trees = new ShortestPathTrees(index, weights, ShortestPathTrees.DEFAULT_MAX_TREES);
+        assertEquals(2.0, trees.getDistance(a, d), 1e-9);
+
+        double[] heavier = weights.clone();
+        for(int arc : crossArcs) {
+            heavier[arc] = 5;
+        }
+        trees.updateWeights(heavier);
+        assertEquals(0, trees.getRepairCount());
+        assertEquals(2.0, trees.getDistance(a, d), 1e-9);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2015 George and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package odl.example.impl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimerWheelTest {
+
+    @Test
+    public void testEntriesBecomeReadyAtTheirTickAcrossLevels() {
+        long start = 1000;
+        TimerWheel<Long> wheel = new TimerWheel<>(start, 4);
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for(int i = 0; i < 2000; i++) {
+            // up to twice the span, so some entries wait in the last slot more than once
+            long deadline = start + (long) (random.nextDouble() * 2 * TimerWheel.SPAN);
+            deadlines.add(deadline);
+            wheel.schedule(deadline, deadline);
+        }
+        Collections.sort(deadlines);
+        List<Long> ready = new ArrayList<>();
+        for(long tick = start; tick <= start + 2 * TimerWheel.SPAN; tick++) {
+            wheel.advance(tick);
+            int before = ready.size();
+            wheel.poll(Integer.MAX_VALUE, ready);
+            for(int i = before; i < ready.size(); i++) {
+                assertEquals(tick, (long) ready.get(i));
+            }
+        }
+        assertEquals(deadlines, ready);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testRescheduleAndCancel() {
+        TimerWheel<String> wheel = new TimerWheel<>(0, 16);
+        int moved = wheel.schedule("moved", 10);
+        int cancelled = wheel.schedule("cancelled", 10);
+        wheel.schedule("kept", 10);
+        wheel.reschedule(moved, 5000);
+        wheel.cancel(cancelled);
+
+        List<String> ready = new ArrayList<>();
+        wheel.advance(10);
+        wheel.poll(10, ready);
+        assertEquals(Arrays.asList("kept"), ready);
+        wheel.advance(4999);
+        assertEquals(0, wheel.readySize());
+        wheel.advance(5000);
+        wheel.poll(10, ready);
+        assertEquals(Arrays.asList("kept", "moved"), ready);
+    }
+
+    @Test
+    public void testPollTakesAtMostTheLimitInDueOrder() {
+        TimerWheel<Integer> wheel = new TimerWheel<>(0, 16);
+        for(int i = 0; i < 10; i++) {
+            wheel.schedule(i, i / 5);
+        }
+        // already past, ready right away
+        wheel.schedule(-1, -3);
+        wheel.advance(1);
+        List<Integer> ready = new ArrayList<>();
+        assertEquals(4, wheel.poll(4, ready));
+        assertEquals(Arrays.asList(-1, 0, 1, 2), ready);
+        assertEquals(7, wheel.readySize());
+        // a ready entry can still be moved back onto the wheel
+        int handle = wheel.schedule(99, 1);
+        wheel.reschedule(handle, 3);
+        ready.clear();
+        wheel.poll(100, ready);
+        assertEquals(Arrays.asList(3, 4, 5, 6, 7, 8, 9), ready);
+        wheel.advance(3);
+        ready.clear();
+        wheel.poll(100, ready);
+        assertEquals(Arrays.asList(99), ready);
+    }
+
+    @Test
+    public void testRefreshesAreSpreadBeforeTheTimeout() {
+        Random random = new Random(7);
+        int[] counts = new int[300];
+        for(int i = 0; i < 30000; i++) {
+            counts[FlowRefreshScheduler.refreshDelay(300, random)]++;
+        }
+        for(int delay = 0; delay < 300; delay++) {
+            if(delay > 240 && delay <= 270) {
+                assertTrue(counts[delay] > 700 && counts[delay] < 1300);
+            } else {
+                assertEquals(0, counts[delay]);
+            }
+        }
+        assertTrue(FlowRefreshScheduler.refreshDelay(10, random) >= 1);
+    }
+}
@@ -10,6 +10,7 @@ package org.opendaylight.yang.gen.v1.urn.opendaylight.params.xml.ns.yang.odlexam
 import org.junit.Test;
 import org.opendaylight.controller.config.api.DependencyResolver;
 import org.opendaylight.controller.config.api.JmxAttribute;
+import org.opendaylight.controller.config.api.JmxAttributeValidationException;
 import org.opendaylight.controller.config.api.ModuleIdentifier;
 import org.opendaylight.controller.sal.binding.api.BindingAwareBroker;
 import odl.example.impl.ExampleProvider;
@@ -28,7 +29,23 @@ public class ExampleModuleTest {
         ExampleModule module = new ExampleModule(mock(ModuleIdentifier.class), mock(DependencyResolver.class));
 
         // ensure no exceptions on validation
-        // currently this method is empty
+        module.customValidation();
+    }
+
+    @Test(expected = JmxAttributeValidationException.class)
+    public void testOwnershipServiceRequiresMemberId() throws Exception {
+        ExampleModule module = new ExampleModule(mock(ModuleIdentifier.class), mock(DependencyResolver.class));
+        module.setOwnershipService(new ObjectName("org.opendaylight.controller:type=ownership"));
+
+        module.customValidation();
+    }
+
+    @Test
+    public void testOwnershipServiceWithMemberId() throws Exception {
+        ExampleModule module = new ExampleModule(mock(ModuleIdentifier.class), mock(DependencyResolver.class));
+        module.setOwnershipService(new ObjectName("org.opendaylight.controller:type=ownership"));
+        module.setMemberId((short) 2);
+
         module.customValidation();
     }
 